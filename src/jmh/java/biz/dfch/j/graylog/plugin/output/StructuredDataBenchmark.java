@@ -0,0 +1,96 @@
+package biz.dfch.j.graylog.plugin.output;
+
+import biz.dfch.j.syslog4j.SyslogEncoder;
+import org.graylog2.plugin.Message;
+import org.graylog2.syslog4j.SyslogConstants;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Structured data of a message: grouping the projected fields by SD-ID and
+ * encoding the result as RFC5424 STRUCTURED-DATA.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StructuredDataBenchmark
+{
+    @Param({"5", "50", "500"})
+    public int fieldCount;
+
+    private FieldProjection projection;
+    private StructuredDataMapping mapping;
+    private Message message;
+    private Map<String, Map<String, String>> structuredData;
+    private final SyslogEncoder encoder = new SyslogEncoder(null);
+
+    @Setup
+    public void setUp() throws Exception
+    {
+        projection = new FieldProjection(Collections.singletonList("*"), SyslogOutputFixtures.STREAM_TITLE, false);
+        mapping = new StructuredDataMapping("SDATA", "origin@32473=source; meta@32473=level,facility");
+        message = SyslogOutputFixtures.createMessage(fieldCount);
+        structuredData = collect();
+    }
+
+    @Benchmark
+    public Map<String, Map<String, String>> collect()
+    {
+        final StructuredDataMapping.Collector collector = mapping.newCollector();
+        projection.project(message, new FieldProjection.FieldSink()
+        {
+            @Override
+            public void accept(String name, String label, String value, int priority)
+            {
+                collector.accept(name, value);
+            }
+        });
+        return collector.getStructuredData();
+    }
+
+    @Benchmark
+    public SyslogEncoder encode()
+    {
+        encoder.clear();
+        encoder.beginRfc5424(SyslogConstants.FACILITY_LOCAL0, SyslogConstants.LEVEL_INFO, 0, "web-01.example.com", "benchmark");
+        encoder.writeStructuredData(structuredData);
+        encoder.endFrame();
+        return encoder;
+    }
+}
+
+/*
+    d-fens Graylog SYSLOG Output Plugin
+    Copyright (C) 2015  Ronald Rink, d-fens GmbH
+
+    This library is free software; you can redistribute it and/or
+    modify it under the terms of the GNU Lesser General Public
+    License as published by the Free Software Foundation; either
+    version 2.1 of the License, or (at your option) any later version.
+
+    This library is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+    Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public
+    License along with this library; if not, write to the Free Software
+    Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+
+ */
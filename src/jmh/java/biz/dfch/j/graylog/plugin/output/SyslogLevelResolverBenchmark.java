@@ -0,0 +1,84 @@
+package biz.dfch.j.graylog.plugin.output;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Severity and facility resolution from the values fields typically hold:
+ * numbers, digit strings, names and values that are not a level at all.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SyslogLevelResolverBenchmark
+{
+    private final SyslogLevelResolver severity = SyslogLevelResolver.forSeverity(6);
+    private final SyslogLevelResolver facility = SyslogLevelResolver.forFacility(16);
+    private final Object number = 3;
+    private final Object digits = "4";
+    private final Object severityName = "warning";
+    private final Object facilityName = "local4";
+    private final Object invalid = "not a level";
+
+    @Benchmark
+    public int severityFromNumber()
+    {
+        return severity.resolve(number);
+    }
+
+    @Benchmark
+    public int severityFromDigits()
+    {
+        return severity.resolve(digits);
+    }
+
+    @Benchmark
+    public int severityFromName()
+    {
+        return severity.resolve(severityName);
+    }
+
+    @Benchmark
+    public int severityFromInvalidValue()
+    {
+        return severity.resolve(invalid);
+    }
+
+    @Benchmark
+    public int facilityFromName()
+    {
+        return facility.resolve(facilityName);
+    }
+}
+
+/*
+    d-fens Graylog SYSLOG Output Plugin
+    Copyright (C) 2015  Ronald Rink, d-fens GmbH
+
+    This library is free software; you can redistribute it and/or
+    modify it under the terms of the GNU Lesser General Public
+    License as published by the Free Software Foundation; either
+    version 2.1 of the License, or (at your option) any later version.
+
+    This library is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+    Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public
+    License along with this library; if not, write to the Free Software
+    Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+
+ */
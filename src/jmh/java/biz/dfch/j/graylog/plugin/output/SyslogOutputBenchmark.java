@@ -0,0 +1,86 @@
+package biz.dfch.j.graylog.plugin.output;
+
+import biz.dfch.j.syslog4j.SyslogTestServer;
+import com.codahale.metrics.MetricRegistry;
+import org.graylog2.plugin.Message;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link SyslogOutput#write(Message)} from field projection to the network
+ * write, with all fields of messages of different size sent to a UDP sink
+ * on the loopback interface.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SyslogOutputBenchmark
+{
+    @Param({"5", "50", "500"})
+    public int fieldCount;
+
+    @Param({"UDP-RFC3164", "UDP-RFC5424"})
+    public String protocol;
+
+    private SyslogTestServer sink;
+    private SyslogOutput output;
+    private Message message;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception
+    {
+        sink = SyslogTestServer.udp();
+        sink.setRecording(false);
+        output = new SyslogOutput(SyslogOutputFixtures.createStream(), SyslogOutputFixtures.createConfiguration(protocol, sink.getPort(), true), new MetricRegistry());
+        message = SyslogOutputFixtures.createMessage(fieldCount);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception
+    {
+        output.stop();
+        sink.close();
+    }
+
+    @Benchmark
+    public void write() throws Exception
+    {
+        output.write(message);
+    }
+}
+
+/*
+    d-fens Graylog SYSLOG Output Plugin
+    Copyright (C) 2015  Ronald Rink, d-fens GmbH
+
+    This library is free software; you can redistribute it and/or
+    modify it under the terms of the GNU Lesser General Public
+    License as published by the Free Software Foundation; either
+    version 2.1 of the License, or (at your option) any later version.
+
+    This library is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+    Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public
+    License along with this library; if not, write to the Free Software
+    Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+
+ */
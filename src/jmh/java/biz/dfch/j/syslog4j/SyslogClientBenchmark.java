@@ -0,0 +1,115 @@
+package biz.dfch.j.syslog4j;
+
+import org.graylog2.syslog4j.SyslogConstants;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End-to-end sends of {@link SyslogClient} to a sink on the loopback
+ * interface: single messages and batches, plain and with structured data.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SyslogClientBenchmark
+{
+    private static final int BATCH_SIZE = 100;
+
+    @Param({"UDP", "TCP"})
+    public String transport;
+
+    private SyslogTestServer sink;
+    private SyslogClient client;
+    private SyslogHeader header;
+    private Map<String, Map<String, String>> structuredData;
+    private String message;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException
+    {
+        sink = "UDP".equals(transport) ? SyslogTestServer.udp() : SyslogTestServer.tcp();
+        sink.setRecording(false);
+        client = new SyslogClient(transport, "127.0.0.1", sink.getPort());
+        client.setStructuredData(true, "SDATA");
+        header = new SyslogHeader(16, SyslogConstants.LEVEL_INFO, "benchmark-host", "benchmark", "benchmark-host");
+        Map<String, String> params = new LinkedHashMap<>();
+        for (int i = 0; i < 10; i++)
+        {
+            params.put("field_" + i, "value " + i);
+        }
+        structuredData = new LinkedHashMap<>();
+        structuredData.put("SDATA", params);
+        message = "GET /index.html HTTP/1.1 200 1024 \"Mozilla/5.0 (X11; Linux x86_64)\" 0.012";
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException
+    {
+        client.close();
+        sink.close();
+    }
+
+    @Benchmark
+    public void log()
+    {
+        client.log(header, message);
+    }
+
+    @Benchmark
+    public void logStructured()
+    {
+        client.logStructured(header, structuredData, message);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public void batch() throws IOException
+    {
+        SyslogClient.Batch batch = client.createBatch();
+        for (int i = 0; i < BATCH_SIZE; i++)
+        {
+            batch.add(header, message);
+        }
+        batch.send();
+    }
+}
+
+/*
+    d-fens Graylog SYSLOG Output Plugin
+    Copyright (C) 2015  Ronald Rink, d-fens GmbH
+
+    This library is free software; you can redistribute it and/or
+    modify it under the terms of the GNU Lesser General Public
+    License as published by the Free Software Foundation; either
+    version 2.1 of the License, or (at your option) any later version.
+
+    This library is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+    Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public
+    License along with this library; if not, write to the Free Software
+    Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+
+ */
@@ -0,0 +1,279 @@
+package biz.dfch.j.graylog.plugin.output;
+
+import biz.dfch.j.syslog4j.TimestampCache;
+import org.graylog2.plugin.Message;
+import org.msgpack.annotation.NotNullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Compiled form of CONFIG_FIELDS. The configured field names are turned into
+ * an immutable array of extractors when the output is constructed, so writing
+ * a message only walks that array instead of interpreting the field list.
+ *
+ * Fields are prioritized by their position in CONFIG_FIELDS, the first field
+ * has the highest priority and the message the highest of all. Fields with a
+ * lower priority are shortened first if a message does not fit into a UDP
+ * datagram, see {@link biz.dfch.j.syslog4j.SyslogBody}.
+ */
+public final class FieldProjection
+{
+    private static final Logger LOG = LoggerFactory.getLogger(FieldProjection.class);
+    private static final long WARN_INTERVAL_MILLIS = 60000;
+    public static final int PRIORITY_MESSAGE = Integer.MAX_VALUE - 1;
+
+    /**
+     * Receives the projected fields of a message in configured order.
+     * label is null if field names are not to be included in the message.
+     */
+    public interface FieldSink
+    {
+        void accept(@NotNullable String name, String label, @NotNullable String value, int priority);
+    }
+
+    private final FieldExtractor[] extractors;
+
+    public FieldProjection(@NotNullable List<String> fields, @NotNullable String streamTitle, boolean includeFieldNames)
+    {
+        extractors = new FieldExtractor[fields.size()];
+        for (int i = 0; i < extractors.length; i++)
+        {
+            extractors[i] = compile(fields.get(i), extractors.length - i, streamTitle, includeFieldNames);
+        }
+    }
+
+    public void project(@NotNullable Message message, @NotNullable FieldSink sink)
+    {
+        for (FieldExtractor extractor : extractors)
+        {
+            extractor.extract(message, sink);
+        }
+    }
+
+    private static FieldExtractor compile(String fieldName, int priority, String streamTitle, boolean includeFieldNames)
+    {
+        switch (fieldName)
+        {
+            case "<id>":
+                return new IdExtractor(priority, includeFieldNames);
+            case "<message>":
+                return new MessageExtractor(priority, includeFieldNames);
+            case "<source>":
+                return new SourceExtractor(priority, includeFieldNames);
+            case "<timestamp>":
+                return new TimestampExtractor(priority, includeFieldNames);
+            case "<stream>":
+                return new ConstantExtractor("stream", streamTitle, priority, includeFieldNames);
+            case "*":
+                return new AllFieldsExtractor(priority, includeFieldNames);
+            default:
+                return new UserFieldExtractor(fieldName, priority, includeFieldNames);
+        }
+    }
+
+    private static int getPriority(String name, int priority)
+    {
+        return "message".equals(name) ? PRIORITY_MESSAGE : priority;
+    }
+
+    private static String label(String name)
+    {
+        return "[" + name + "] ";
+    }
+
+    abstract static class FieldExtractor
+    {
+        protected final String name;
+        protected final String label;
+        protected final int priority;
+
+        FieldExtractor(String name, int priority, boolean includeFieldNames)
+        {
+            this.name = name;
+            this.label = includeFieldNames ? label(name) : null;
+            this.priority = getPriority(name, priority);
+        }
+
+        abstract void extract(Message message, FieldSink sink);
+    }
+
+    static final class IdExtractor extends FieldExtractor
+    {
+        IdExtractor(int priority, boolean includeFieldNames)
+        {
+            super("id", priority, includeFieldNames);
+        }
+
+        @Override
+        void extract(Message message, FieldSink sink)
+        {
+            sink.accept(name, label, message.getId(), priority);
+        }
+    }
+
+    static final class MessageExtractor extends FieldExtractor
+    {
+        MessageExtractor(int priority, boolean includeFieldNames)
+        {
+            super("message", priority, includeFieldNames);
+        }
+
+        @Override
+        void extract(Message message, FieldSink sink)
+        {
+            sink.accept(name, label, message.getMessage(), priority);
+        }
+    }
+
+    static final class SourceExtractor extends FieldExtractor
+    {
+        SourceExtractor(int priority, boolean includeFieldNames)
+        {
+            super("source", priority, includeFieldNames);
+        }
+
+        @Override
+        void extract(Message message, FieldSink sink)
+        {
+            sink.accept(name, label, message.getSource(), priority);
+        }
+    }
+
+    static final class TimestampExtractor extends FieldExtractor
+    {
+        TimestampExtractor(int priority, boolean includeFieldNames)
+        {
+            super("timestamp", priority, includeFieldNames);
+        }
+
+        @Override
+        void extract(Message message, FieldSink sink)
+        {
+            sink.accept(name, label, TimestampCache.format(message.getTimestamp()), priority);
+        }
+    }
+
+    static final class ConstantExtractor extends FieldExtractor
+    {
+        private final String value;
+
+        ConstantExtractor(String name, String value, int priority, boolean includeFieldNames)
+        {
+            super(name, priority, includeFieldNames);
+            this.value = value;
+        }
+
+        @Override
+        void extract(Message message, FieldSink sink)
+        {
+            sink.accept(name, label, value, priority);
+        }
+    }
+
+    static final class UserFieldExtractor extends FieldExtractor
+    {
+        private final AtomicLong nextWarnMillis = new AtomicLong();
+        private final AtomicLong missingCount = new AtomicLong();
+
+        UserFieldExtractor(String name, int priority, boolean includeFieldNames)
+        {
+            super(name, priority, includeFieldNames);
+        }
+
+        @Override
+        void extract(Message message, FieldSink sink)
+        {
+            Object value = message.getField(name);
+            if (null == value)
+            {
+                warnMissing();
+                return;
+            }
+            sink.accept(name, label, value.toString(), priority);
+        }
+
+        /**
+         * Warns at most once a minute per field, many messages may lack it.
+         */
+        private void warnMissing()
+        {
+            long suppressed = missingCount.incrementAndGet();
+            long now = System.currentTimeMillis();
+            long next = nextWarnMillis.get();
+            if (now < next || !nextWarnMillis.compareAndSet(next, now + WARN_INTERVAL_MILLIS))
+            {
+                return;
+            }
+            missingCount.addAndGet(-suppressed);
+            LOG.warn(String.format("%s: field name does not exist. Skipping ... (%d messages without the field since last warning).", name, suppressed));
+        }
+    }
+
+    static final class AllFieldsExtractor extends FieldExtractor
+    {
+        private static final int LABEL_CACHE_SIZE_MAX = 1024;
+
+        private final boolean includeFieldNames;
+        // field names repeat from message to message, their labels are built once
+        private final ConcurrentHashMap<String, String> labels = new ConcurrentHashMap<>();
+
+        AllFieldsExtractor(int priority, boolean includeFieldNames)
+        {
+            super("*", priority, false);
+            this.includeFieldNames = includeFieldNames;
+        }
+
+        @Override
+        void extract(Message message, FieldSink sink)
+        {
+            for (Map.Entry<String, Object> entry : message.getFields().entrySet())
+            {
+                if (null == entry.getValue())
+                {
+                    continue;
+                }
+                sink.accept(entry.getKey(), includeFieldNames ? getLabel(entry.getKey()) : null, entry.getValue().toString(), getPriority(entry.getKey(), priority));
+            }
+        }
+
+        private String getLabel(String name)
+        {
+            String cached = labels.get(name);
+            if (null != cached)
+            {
+                return cached;
+            }
+            String label = label(name);
+            if (LABEL_CACHE_SIZE_MAX > labels.size())
+            {
+                labels.putIfAbsent(name, label);
+            }
+            return label;
+        }
+    }
+}
+
+/*
+    d-fens Graylog SYSLOG Output Plugin
+    Copyright (C) 2015  Ronald Rink, d-fens GmbH
+
+    This library is free software; you can redistribute it and/or
+    modify it under the terms of the GNU Lesser General Public
+    License as published by the Free Software Foundation; either
+    version 2.1 of the License, or (at your option) any later version.
+
+    This library is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+    Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public
+    License along with this library; if not, write to the Free Software
+    Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+
+ */
@@ -0,0 +1,228 @@
+package biz.dfch.j.graylog.plugin.output;
+
+import biz.dfch.j.syslog4j.TimestampCache;
+import org.graylog2.plugin.Message;
+import org.msgpack.annotation.NotNullable;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compiled form of a template such as '${source} ${level}: ${message}'. The
+ * template is parsed once into an array of literal chunks and field lookups;
+ * rendering a message only walks that array. Built-in fields are ${id},
+ * ${message}, ${source}, ${timestamp} and ${stream}, any other name refers to
+ * a message field. Fields a message does not have render as empty string.
+ * '$$' renders as '$'.
+ */
+public final class MessageTemplate
+{
+    private final Token[] tokens;
+    private final String constant;
+
+    private MessageTemplate(Token[] tokens, String constant)
+    {
+        this.tokens = tokens;
+        this.constant = constant;
+    }
+
+    public static MessageTemplate compile(@NotNullable String template, @NotNullable String streamTitle)
+    {
+        List<Token> tokens = new ArrayList<>();
+        StringBuilder literal = new StringBuilder();
+        int i = 0;
+        while (i < template.length())
+        {
+            char c = template.charAt(i);
+            if ('$' == c && i + 1 < template.length() && '$' == template.charAt(i + 1))
+            {
+                literal.append('$');
+                i += 2;
+                continue;
+            }
+            if ('$' == c && i + 1 < template.length() && '{' == template.charAt(i + 1))
+            {
+                int end = template.indexOf('}', i + 2);
+                if (0 > end)
+                {
+                    throw new IllegalArgumentException(String.format("template: Parameter validation FAILED. '${' at position %d is not closed in '%s'.", i, template));
+                }
+                String name = template.substring(i + 2, end).trim();
+                if (name.isEmpty())
+                {
+                    throw new IllegalArgumentException(String.format("template: Parameter validation FAILED. Empty field name at position %d in '%s'.", i, template));
+                }
+                if ("stream".equals(name))
+                {
+                    literal.append(streamTitle);
+                }
+                else
+                {
+                    if (0 < literal.length())
+                    {
+                        tokens.add(new Literal(literal.toString()));
+                        literal.setLength(0);
+                    }
+                    tokens.add(compileField(name));
+                }
+                i = end + 1;
+                continue;
+            }
+            literal.append(c);
+            i++;
+        }
+        if (0 < literal.length())
+        {
+            tokens.add(new Literal(literal.toString()));
+        }
+        String constant = null;
+        if (tokens.isEmpty())
+        {
+            constant = "";
+        }
+        else if (1 == tokens.size() && tokens.get(0) instanceof Literal)
+        {
+            constant = ((Literal) tokens.get(0)).value;
+        }
+        return new MessageTemplate(tokens.toArray(new Token[tokens.size()]), constant);
+    }
+
+    /**
+     * @return true if the template contains a ${field} placeholder
+     */
+    public static boolean isTemplate(String value)
+    {
+        return null != value && value.contains("${");
+    }
+
+    public String render(@NotNullable Message message)
+    {
+        if (null != constant)
+        {
+            return constant;
+        }
+        if (1 == tokens.length)
+        {
+            String value = tokens[0].value(message);
+            return null == value ? "" : value;
+        }
+        StringBuilder builder = new StringBuilder(64);
+        for (Token token : tokens)
+        {
+            token.appendTo(message, builder);
+        }
+        return builder.toString();
+    }
+
+    private static Token compileField(String name)
+    {
+        switch (name)
+        {
+            case "id":
+                return new Token()
+                {
+                    @Override
+                    String value(Message message)
+                    {
+                        return message.getId();
+                    }
+                };
+            case "message":
+                return new Token()
+                {
+                    @Override
+                    String value(Message message)
+                    {
+                        return message.getMessage();
+                    }
+                };
+            case "source":
+                return new Token()
+                {
+                    @Override
+                    String value(Message message)
+                    {
+                        return message.getSource();
+                    }
+                };
+            case "timestamp":
+                return new Token()
+                {
+                    @Override
+                    String value(Message message)
+                    {
+                        return TimestampCache.format(message.getTimestamp());
+                    }
+                };
+            default:
+                return new FieldToken(name);
+        }
+    }
+
+    abstract static class Token
+    {
+        abstract String value(Message message);
+
+        void appendTo(Message message, StringBuilder builder)
+        {
+            String value = value(message);
+            if (null != value)
+            {
+                builder.append(value);
+            }
+        }
+    }
+
+    static final class Literal extends Token
+    {
+        private final String value;
+
+        Literal(String value)
+        {
+            this.value = value;
+        }
+
+        @Override
+        String value(Message message)
+        {
+            return value;
+        }
+    }
+
+    static final class FieldToken extends Token
+    {
+        private final String name;
+
+        FieldToken(String name)
+        {
+            this.name = name;
+        }
+
+        @Override
+        String value(Message message)
+        {
+            Object value = message.getField(name);
+            return null == value ? "" : value.toString();
+        }
+    }
+}
+
+/*
+    d-fens Graylog SYSLOG Output Plugin
+    Copyright (C) 2015  Ronald Rink, d-fens GmbH
+
+    This library is free software; you can redistribute it and/or
+    modify it under the terms of the GNU Lesser General Public
+    License as published by the Free Software Foundation; either
+    version 2.1 of the License, or (at your option) any later version.
+
+    This library is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+    Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public
+    License along with this library; if not, write to the Free Software
+    Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+
+ */
@@ -0,0 +1,146 @@
+package biz.dfch.j.graylog.plugin.output;
+
+import org.graylog2.plugin.outputs.MessageOutputConfigurationException;
+import org.msgpack.annotation.NotNullable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compiled form of CONFIG_STRUCTURED_DATA_TAG and CONFIG_STRUCTURED_DATA_MAPPING.
+ * The mapping assigns fields to SD-IDs, i.e. 'origin@32473=source,gl2_remote_ip; meta@32473=level,facility'.
+ * Fields that are not mapped go to the element named by the structured data tag.
+ */
+public final class StructuredDataMapping
+{
+    private static final int SD_ID_LENGTH_MAX = 32;
+
+    private final String[] ids;
+    private final Map<String, Integer> elementByField = new HashMap<>();
+
+    public StructuredDataMapping(@NotNullable String defaultId, String mapping) throws MessageOutputConfigurationException
+    {
+        LinkedHashMap<String, Integer> elementById = new LinkedHashMap<>();
+        elementById.put(validate(defaultId), 0);
+        if (null != mapping && !mapping.trim().isEmpty())
+        {
+            for (String element : mapping.split("\\s*;\\s*"))
+            {
+                if (element.trim().isEmpty())
+                {
+                    continue;
+                }
+                int separator = element.indexOf('=');
+                if (0 >= separator)
+                {
+                    throw new MessageOutputConfigurationException(String.format("CONFIG_STRUCTURED_DATA_MAPPING: Parameter validation FAILED. '%s' is not of the form 'sd-id=field,field'.", element));
+                }
+                String id = validate(element.substring(0, separator).trim());
+                Integer index = elementById.get(id);
+                if (null == index)
+                {
+                    index = elementById.size();
+                    elementById.put(id, index);
+                }
+                for (String field : element.substring(separator + 1).split("\\s*,\\s*"))
+                {
+                    field = field.trim();
+                    if (field.isEmpty())
+                    {
+                        continue;
+                    }
+                    if (elementByField.containsKey(field))
+                    {
+                        throw new MessageOutputConfigurationException(String.format("CONFIG_STRUCTURED_DATA_MAPPING: Parameter validation FAILED. Field '%s' is mapped more than once.", field));
+                    }
+                    elementByField.put(field, index);
+                }
+            }
+        }
+        ids = elementById.keySet().toArray(new String[elementById.size()]);
+    }
+
+    public Collector newCollector()
+    {
+        return new Collector();
+    }
+
+    private static String validate(String id) throws MessageOutputConfigurationException
+    {
+        if (id.isEmpty() || SD_ID_LENGTH_MAX < id.length())
+        {
+            throw new MessageOutputConfigurationException(String.format("CONFIG_STRUCTURED_DATA_MAPPING: Parameter validation FAILED. SD-ID '%s' must be between 1 and %d characters.", id, SD_ID_LENGTH_MAX));
+        }
+        for (int i = 0; i < id.length(); i++)
+        {
+            char c = id.charAt(i);
+            if (33 > c || 126 < c || '=' == c || ']' == c || '"' == c)
+            {
+                throw new MessageOutputConfigurationException(String.format("CONFIG_STRUCTURED_DATA_MAPPING: Parameter validation FAILED. SD-ID '%s' contains invalid character '%c'.", id, c));
+            }
+        }
+        return id;
+    }
+
+    /**
+     * Groups the fields of a single message by SD-ID. Not thread-safe.
+     */
+    public final class Collector
+    {
+        private final List<Map<String, String>> elements = new ArrayList<>(Collections.<Map<String, String>>nCopies(ids.length, null));
+
+        public void accept(@NotNullable String field, @NotNullable String value)
+        {
+            Integer index = elementByField.get(field);
+            int i = null == index ? 0 : index;
+            Map<String, String> element = elements.get(i);
+            if (null == element)
+            {
+                element = new LinkedHashMap<>();
+                elements.set(i, element);
+            }
+            element.put(field, value);
+        }
+
+        /**
+         * @return the structured data elements in configured order, elements without fields are left out
+         */
+        public Map<String, Map<String, String>> getStructuredData()
+        {
+            Map<String, Map<String, String>> structuredData = new LinkedHashMap<>();
+            for (int i = 0; i < ids.length; i++)
+            {
+                Map<String, String> element = elements.get(i);
+                if (null != element)
+                {
+                    structuredData.put(ids[i], element);
+                }
+            }
+            return structuredData;
+        }
+    }
+}
+
+/*
+    d-fens Graylog SYSLOG Output Plugin
+    Copyright (C) 2015  Ronald Rink, d-fens GmbH
+
+    This library is free software; you can redistribute it and/or
+    modify it under the terms of the GNU Lesser General Public
+    License as published by the Free Software Foundation; either
+    version 2.1 of the License, or (at your option) any later version.
+
+    This library is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+    Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public
+    License along with this library; if not, write to the Free Software
+    Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+
+ */
@@ -0,0 +1,179 @@
+package biz.dfch.j.graylog.plugin.output;
+
+import biz.dfch.j.syslog4j.SyslogClientListener;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.RatioGauge;
+import com.codahale.metrics.Timer;
+import org.msgpack.annotation.NotNullable;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Metrics of the messages a SyslogClient sends to one destination.
+ */
+public class SyslogDestinationMetrics implements SyslogClientListener
+{
+    private final Meter messagesOut;
+    private final Meter bytesSent;
+    private final Histogram batchSize;
+    private final Timer encode;
+    private final Timer send;
+    private final Meter reconnects;
+    private final Timer handshake;
+    private final Meter fullHandshakes;
+    private final Meter resumedHandshakes;
+    private final Meter errors;
+    private final Meter ejections;
+    private final Meter recoveries;
+    private final Meter spooled;
+    private final Meter spoolLost;
+    private final Meter replayed;
+    private final Timer acknowledge;
+    private final Meter truncated;
+    private final Meter oversize;
+    private final Meter headerCacheHits;
+    private final Meter headerCacheMisses;
+
+    public SyslogDestinationMetrics(@NotNullable MetricRegistry metricRegistry, @NotNullable String prefix)
+    {
+        messagesOut = metricRegistry.meter(MetricRegistry.name(prefix, "messagesOut"));
+        bytesSent = metricRegistry.meter(MetricRegistry.name(prefix, "bytesSent"));
+        batchSize = metricRegistry.histogram(MetricRegistry.name(prefix, "batchSize"));
+        encode = metricRegistry.timer(MetricRegistry.name(prefix, "encode"));
+        send = metricRegistry.timer(MetricRegistry.name(prefix, "send"));
+        reconnects = metricRegistry.meter(MetricRegistry.name(prefix, "reconnects"));
+        handshake = metricRegistry.timer(MetricRegistry.name(prefix, "handshake"));
+        fullHandshakes = metricRegistry.meter(MetricRegistry.name(prefix, "fullHandshakes"));
+        resumedHandshakes = metricRegistry.meter(MetricRegistry.name(prefix, "resumedHandshakes"));
+        errors = metricRegistry.meter(MetricRegistry.name(prefix, "errors"));
+        ejections = metricRegistry.meter(MetricRegistry.name(prefix, "ejections"));
+        recoveries = metricRegistry.meter(MetricRegistry.name(prefix, "recoveries"));
+        spooled = metricRegistry.meter(MetricRegistry.name(prefix, "spooled"));
+        spoolLost = metricRegistry.meter(MetricRegistry.name(prefix, "spoolLost"));
+        replayed = metricRegistry.meter(MetricRegistry.name(prefix, "replayed"));
+        acknowledge = metricRegistry.timer(MetricRegistry.name(prefix, "acknowledge"));
+        truncated = metricRegistry.meter(MetricRegistry.name(prefix, "truncated"));
+        oversize = metricRegistry.meter(MetricRegistry.name(prefix, "oversize"));
+        headerCacheHits = metricRegistry.meter(MetricRegistry.name(prefix, "headerCacheHits"));
+        headerCacheMisses = metricRegistry.meter(MetricRegistry.name(prefix, "headerCacheMisses"));
+        String hitRatio = MetricRegistry.name(prefix, "headerCacheHitRatio");
+        metricRegistry.remove(hitRatio);
+        metricRegistry.register(hitRatio, new RatioGauge()
+        {
+            @Override
+            protected Ratio getRatio()
+            {
+                double hits = headerCacheHits.getOneMinuteRate();
+                return Ratio.of(hits, hits + headerCacheMisses.getOneMinuteRate());
+            }
+        });
+    }
+
+    @Override
+    public void onEncoded(int messageCount, long nanos)
+    {
+        encode.update(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public void onSent(int messageCount, int byteCount, long nanos)
+    {
+        send.update(nanos, TimeUnit.NANOSECONDS);
+        messagesOut.mark(messageCount);
+        bytesSent.mark(byteCount);
+        batchSize.update(messageCount);
+    }
+
+    @Override
+    public void onReconnect()
+    {
+        reconnects.mark();
+    }
+
+    @Override
+    public void onHandshake(long nanos, boolean isResumed)
+    {
+        handshake.update(nanos, TimeUnit.NANOSECONDS);
+        if (isResumed)
+        {
+            resumedHandshakes.mark();
+        }
+        else
+        {
+            fullHandshakes.mark();
+        }
+    }
+
+    @Override
+    public void onError(Exception ex)
+    {
+        errors.mark();
+    }
+
+    @Override
+    public void onDestinationDown(String destination)
+    {
+        ejections.mark();
+    }
+
+    @Override
+    public void onDestinationUp(String destination)
+    {
+        recoveries.mark();
+    }
+
+    @Override
+    public void onSpooled(int messageCount, int lostCount)
+    {
+        spooled.mark(messageCount);
+        spoolLost.mark(lostCount);
+    }
+
+    @Override
+    public void onReplayed(int messageCount)
+    {
+        replayed.mark(messageCount);
+    }
+
+    @Override
+    public void onAcknowledged(long nanos)
+    {
+        acknowledge.update(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public void onTruncated(int truncatedCount, int oversizeCount)
+    {
+        truncated.mark(truncatedCount);
+        oversize.mark(oversizeCount);
+    }
+
+    @Override
+    public void onHeaderCache(int hitCount, int missCount)
+    {
+        headerCacheHits.mark(hitCount);
+        headerCacheMisses.mark(missCount);
+    }
+}
+
+/*
+    d-fens Graylog SYSLOG Output Plugin
+    Copyright (C) 2015  Ronald Rink, d-fens GmbH
+
+    This library is free software; you can redistribute it and/or
+    modify it under the terms of the GNU Lesser General Public
+    License as published by the Free Software Foundation; either
+    version 2.1 of the License, or (at your option) any later version.
+
+    This library is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+    Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public
+    License along with this library; if not, write to the Free Software
+    Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+
+ */
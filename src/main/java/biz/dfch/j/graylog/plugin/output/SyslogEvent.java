@@ -0,0 +1,107 @@
+package biz.dfch.j.graylog.plugin.output;
+
+import biz.dfch.j.syslog4j.SyslogBody;
+import biz.dfch.j.syslog4j.SyslogHeader;
+import org.msgpack.annotation.NotNullable;
+
+import java.util.Map;
+
+/**
+ * A Graylog message rendered into everything needed to send it to the Syslog
+ * server. Instances are immutable so they can be handed to sender threads.
+ */
+public final class SyslogEvent
+{
+    private final SyslogHeader header;
+    private final Map<String, Map<String, String>> structuredData;
+    private final CharSequence body;
+    private final SyslogRouter.Route route;
+    private final String source;
+
+    public SyslogEvent(@NotNullable SyslogHeader header, Map<String, Map<String, String>> structuredData, @NotNullable CharSequence body)
+    {
+        this(header, structuredData, body, null);
+    }
+
+    /**
+     * @param body the message text, or a {@link SyslogBody} that is shortened by field priority if it does not fit into a datagram
+     */
+    public SyslogEvent(@NotNullable SyslogHeader header, Map<String, Map<String, String>> structuredData, @NotNullable CharSequence body, SyslogRouter.Route route)
+    {
+        this(header, structuredData, body, route, header.getLocalName());
+    }
+
+    /**
+     * @param source the source of the Graylog message, whether or not it is sent as host name
+     */
+    public SyslogEvent(@NotNullable SyslogHeader header, Map<String, Map<String, String>> structuredData, @NotNullable CharSequence body, SyslogRouter.Route route, String source)
+    {
+        this.header = header;
+        this.structuredData = structuredData;
+        this.body = body;
+        this.route = route;
+        this.source = source;
+    }
+
+    public SyslogHeader getHeader()
+    {
+        return header;
+    }
+
+    /**
+     * @return the structured data parameters by SD-ID, or null if structured data is not used
+     */
+    public Map<String, Map<String, String>> getStructuredData()
+    {
+        return structuredData;
+    }
+
+    public String getMessage()
+    {
+        return body.toString();
+    }
+
+    /**
+     * @return the message as it is encoded, see {@link #SyslogEvent(SyslogHeader, Map, CharSequence, SyslogRouter.Route)}
+     */
+    public CharSequence getBody()
+    {
+        return body;
+    }
+
+    /**
+     * @return the source of the Graylog message, or null for events the output creates itself
+     */
+    public String getSource()
+    {
+        return source;
+    }
+
+    /**
+     * @return the destinations chosen by CONFIG_ROUTES, or null for the default destination
+     */
+    public SyslogRouter.Route getRoute()
+    {
+        return route;
+    }
+}
+
+/*
+    d-fens Graylog SYSLOG Output Plugin
+    Copyright (C) 2015  Ronald Rink, d-fens GmbH
+
+    This library is free software; you can redistribute it and/or
+    modify it under the terms of the GNU Lesser General Public
+    License as published by the Free Software Foundation; either
+    version 2.1 of the License, or (at your option) any later version.
+
+    This library is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+    Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public
+    License along with this library; if not, write to the Free Software
+    Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+
+ */
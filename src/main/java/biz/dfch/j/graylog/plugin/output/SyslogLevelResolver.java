@@ -0,0 +1,213 @@
+package biz.dfch.j.graylog.plugin.output;
+
+import com.google.common.collect.ImmutableMap;
+import org.msgpack.annotation.NotNullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Resolves the severity or facility of a message from a field value that is
+ * either a number or a name such as 'INFO' or 'local0'. Names are looked up
+ * case-insensitively in a table built once, and the result for each distinct
+ * value is cached, so resolving does not parse, allocate or throw per message.
+ * Unknown values resolve to the default; the warning about them is logged at
+ * most once per minute.
+ */
+public final class SyslogLevelResolver
+{
+    private static final Logger LOG = LoggerFactory.getLogger(SyslogLevelResolver.class);
+    private static final int CACHE_SIZE_MAX = 1024;
+    private static final long WARN_INTERVAL_MILLIS = 60000;
+
+    private static final Map<String, Integer> SEVERITY_NAMES = ImmutableMap.<String, Integer>builder()
+            .put("EMERGENCY", 0)
+            .put("ALERT", 1)
+            .put("ALRT", 1)
+            .put("CRITICAL", 2)
+            .put("ERROR", 3)
+            .put("ERR", 3)
+            .put("WARNING", 4)
+            .put("WARN", 4)
+            .put("NOTICE", 5)
+            .put("INFORMATIONAL", 6)
+            .put("INFORMATION", 6)
+            .put("INFO", 6)
+            .put("DBG", 7)
+            .put("DEBUG", 7)
+            .put("TRACE", 7)
+            .build();
+
+    private static final Map<String, Integer> FACILITY_NAMES = ImmutableMap.<String, Integer>builder()
+            .put("KERN", 0)
+            .put("USER", 1)
+            .put("MAIL", 2)
+            .put("DAEMON", 3)
+            .put("AUTH", 4)
+            .put("SYSLOG", 5)
+            .put("LPR", 6)
+            .put("NEWS", 7)
+            .put("UUCP", 8)
+            .put("CRON", 9)
+            .put("AUTHPRIV", 10)
+            .put("FTP", 11)
+            .put("LOCAL0", 16)
+            .put("LOCAL1", 17)
+            .put("LOCAL2", 18)
+            .put("LOCAL3", 19)
+            .put("LOCAL4", 20)
+            .put("LOCAL5", 21)
+            .put("LOCAL6", 22)
+            .put("LOCAL7", 23)
+            .build();
+
+    private final String kind;
+    private final Map<String, Integer> names;
+    private final int max;
+    private final int defaultValue;
+    private final ConcurrentHashMap<String, Integer> cache = new ConcurrentHashMap<>();
+    private final AtomicLong nextWarnMillis = new AtomicLong();
+    private final AtomicLong unknownCount = new AtomicLong();
+
+    private SyslogLevelResolver(String kind, Map<String, Integer> names, int max, int defaultValue)
+    {
+        this.kind = kind;
+        this.names = names;
+        this.max = max;
+        this.defaultValue = defaultValue;
+    }
+
+    public static SyslogLevelResolver forSeverity(int defaultSeverity)
+    {
+        return new SyslogLevelResolver("severity", SEVERITY_NAMES, 7, defaultSeverity);
+    }
+
+    public static SyslogLevelResolver forFacility(int defaultFacility)
+    {
+        return new SyslogLevelResolver("facility", FACILITY_NAMES, 23, defaultFacility);
+    }
+
+    public int resolve(@NotNullable Object value)
+    {
+        if (value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte)
+        {
+            long number = ((Number) value).longValue();
+            if (0 <= number && max >= number)
+            {
+                return (int) number;
+            }
+        }
+        String text = value.toString();
+        Integer resolved = cache.get(text);
+        if (null != resolved)
+        {
+            return resolved;
+        }
+        int result = lookup(text);
+        if (CACHE_SIZE_MAX > cache.size())
+        {
+            cache.putIfAbsent(text, result);
+        }
+        return result;
+    }
+
+    private int lookup(String text)
+    {
+        int level = parse(text, names, max);
+        if (0 <= level)
+        {
+            return level;
+        }
+        warnUnknown(text);
+        return defaultValue;
+    }
+
+    /**
+     * Parses a severity number or name like resolve() does, but without a
+     * default and without logging, i.e. to validate configuration values.
+     *
+     * @return the severity, or -1 if the text is not a valid severity
+     */
+    public static int parseSeverity(@NotNullable String text)
+    {
+        return parse(text, SEVERITY_NAMES, 7);
+    }
+
+    private static int parse(String text, Map<String, Integer> names, int max)
+    {
+        int number = parseDigits(text);
+        if (0 <= number && max >= number)
+        {
+            return number;
+        }
+        if (0 > number)
+        {
+            Integer named = names.get(text.trim().toUpperCase(Locale.ENGLISH));
+            if (null != named)
+            {
+                return named;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return the value of a string consisting of at most 9 decimal digits, or -1 if it is anything else
+     */
+    private static int parseDigits(String text)
+    {
+        int length = text.length();
+        if (0 == length || 9 < length)
+        {
+            return -1;
+        }
+        int number = 0;
+        for (int i = 0; i < length; i++)
+        {
+            char c = text.charAt(i);
+            if ('0' > c || '9' < c)
+            {
+                return -1;
+            }
+            number = 10 * number + (c - '0');
+        }
+        return number;
+    }
+
+    private void warnUnknown(String text)
+    {
+        long suppressed = unknownCount.incrementAndGet();
+        long now = System.currentTimeMillis();
+        long next = nextWarnMillis.get();
+        if (now < next || !nextWarnMillis.compareAndSet(next, now + WARN_INTERVAL_MILLIS))
+        {
+            return;
+        }
+        unknownCount.addAndGet(-suppressed);
+        LOG.warn(String.format("%s: Parameter validation FAILED. Parameter is not a valid syslog %s. Assigned default %s '%d' (%d unknown values since last warning).", text, kind, kind, defaultValue, suppressed));
+    }
+}
+
+/*
+    d-fens Graylog SYSLOG Output Plugin
+    Copyright (C) 2015  Ronald Rink, d-fens GmbH
+
+    This library is free software; you can redistribute it and/or
+    modify it under the terms of the GNU Lesser General Public
+    License as published by the Free Software Foundation; either
+    version 2.1 of the License, or (at your option) any later version.
+
+    This library is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+    Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public
+    License along with this library; if not, write to the Free Software
+    Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+
+ */
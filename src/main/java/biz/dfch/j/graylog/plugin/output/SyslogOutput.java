@@ -1,8 +1,22 @@
 package biz.dfch.j.graylog.plugin.output;
 
 import biz.dfch.j.syslog4j.SyslogClient;
+import biz.dfch.j.syslog4j.SyslogConnectionPool;
+import biz.dfch.j.syslog4j.SyslogDestination;
+import biz.dfch.j.syslog4j.SyslogBody;
+import biz.dfch.j.syslog4j.SyslogDestinationGroup;
+import biz.dfch.j.syslog4j.SyslogEncoder;
+import biz.dfch.j.syslog4j.SyslogFraming;
+import biz.dfch.j.syslog4j.SyslogHeader;
+import biz.dfch.j.syslog4j.SyslogSpool;
+import biz.dfch.j.syslog4j.SyslogTlsConfig;
+import biz.dfch.j.syslog4j.SyslogTransportRegistry;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.base.Joiner;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.hash.Hashing;
 import com.google.inject.assistedinject.Assisted;
 import org.graylog2.plugin.Message;
 import org.graylog2.plugin.configuration.Configuration;
@@ -17,7 +31,15 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.inject.Inject;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
 import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
@@ -29,6 +51,7 @@ public class SyslogOutput implements MessageOutput {
     private static final String CONFIG_SERVER_PORT = "CONFIG_SERVER_PORT";
     private static final String CONFIG_MESSAGE_ID = "CONFIG_MESSAGE_ID";
     private static final String CONFIG_STRUCTURED_DATA_TAG = "CONFIG_STRUCTURED_DATA_TAG";
+    private static final String CONFIG_STRUCTURED_DATA_MAPPING = "CONFIG_STRUCTURED_DATA_MAPPING";
     private static final String CONFIG_USE_STRUCTURED_DATA = "CONFIG_USE_STRUCTURED_DATA";
     private static final String CONFIG_TRANSPORT_PROTOCOL = "CONFIG_TRANSPORT_PROTOCOL";
     private static final Map<String, String> CONFIG_TRANSPORT_PROTOCOL_OPTIONS = ImmutableMap.of(
@@ -39,12 +62,103 @@ public class SyslogOutput implements MessageOutput {
             "TCP-RFC5424", "TCP-RFC5424"
             ,
             "TCPTLS-RFC5424", "TCPTLS-RFC5424"
+            ,
+            "RELP-RFC5424", "RELP-RFC5424"
     );
     private static final String CONFIG_LOGLEVEL_SEVERITY = "CONFIG_LOGLEVEL_SEVERITY";
     private static final String CONFIG_LOGLEVEL_FACILITY = "CONFIG_LOGLEVEL_FACILITY";
     private static final String CONFIG_FIELDS = "CONFIG_FIELDS";
+    private static final String CONFIG_MESSAGE_TEMPLATE = "CONFIG_MESSAGE_TEMPLATE";
     private static final String CONFIG_INCLUDE_FIELD_NAMES = "CONFIG_INCLUDE_FIELD_NAMES";
     private static final String CONFIG_USE_MESSAGE_SOURCE = "CONFIG_USE_MESSAGE_SOURCE";
+    private static final String CONFIG_ASYNC_ENABLED = "CONFIG_ASYNC_ENABLED";
+    private static final String CONFIG_ASYNC_QUEUE_CAPACITY = "CONFIG_ASYNC_QUEUE_CAPACITY";
+    private static final String CONFIG_ASYNC_SENDER_THREADS = "CONFIG_ASYNC_SENDER_THREADS";
+    private static final String CONFIG_ASYNC_OVERFLOW_POLICY = "CONFIG_ASYNC_OVERFLOW_POLICY";
+    private static final Map<String, String> CONFIG_ASYNC_OVERFLOW_POLICY_OPTIONS = ImmutableMap.of(
+            "BLOCK", "BLOCK"
+            ,
+            "DROP_NEWEST", "DROP_NEWEST"
+            ,
+            "DROP_OLDEST", "DROP_OLDEST"
+    );
+    private static final String CONFIG_CONNECTIONS = "CONFIG_CONNECTIONS";
+    private static final String CONFIG_CONNECTION_SHARDING = "CONFIG_CONNECTION_SHARDING";
+    private static final Map<String, String> CONFIG_CONNECTION_SHARDING_OPTIONS = ImmutableMap.of(
+            "ROUND_ROBIN", "ROUND_ROBIN"
+            ,
+            "SOURCE_HASH", "SOURCE_HASH"
+    );
+    private static final String CONFIG_BALANCING_POLICY = "CONFIG_BALANCING_POLICY";
+    private static final Map<String, String> CONFIG_BALANCING_POLICY_OPTIONS = ImmutableMap.of(
+            "FAILOVER", "FAILOVER"
+            ,
+            "ROUND_ROBIN", "ROUND_ROBIN"
+            ,
+            "LEAST_OUTSTANDING", "LEAST_OUTSTANDING"
+    );
+    private static final String CONFIG_TLS_TRUSTSTORE = "CONFIG_TLS_TRUSTSTORE";
+    private static final String CONFIG_TLS_TRUSTSTORE_PASSWORD = "CONFIG_TLS_TRUSTSTORE_PASSWORD";
+    private static final String CONFIG_TLS_KEYSTORE = "CONFIG_TLS_KEYSTORE";
+    private static final String CONFIG_TLS_KEYSTORE_PASSWORD = "CONFIG_TLS_KEYSTORE_PASSWORD";
+    private static final String CONFIG_TLS_PROTOCOLS = "CONFIG_TLS_PROTOCOLS";
+    private static final Map<String, String> CONFIG_TLS_PROTOCOLS_OPTIONS = ImmutableMap.of(
+            "DEFAULT", "DEFAULT"
+            ,
+            "TLSv1.2", "TLSv1.2"
+            ,
+            "TLSv1.3", "TLSv1.3"
+            ,
+            "TLSv1.2,TLSv1.3", "TLSv1.2,TLSv1.3"
+    );
+    private static final String CONFIG_TLS_CIPHER_SUITES = "CONFIG_TLS_CIPHER_SUITES";
+    private static final String CONFIG_TLS_SKIP_HOSTNAME_VERIFICATION = "CONFIG_TLS_SKIP_HOSTNAME_VERIFICATION";
+    private static final String CONFIG_TCP_FRAMING = "CONFIG_TCP_FRAMING";
+    private static final Map<String, String> CONFIG_TCP_FRAMING_OPTIONS = ImmutableMap.of(
+            "NON_TRANSPARENT", "NON_TRANSPARENT"
+            ,
+            "OCTET_COUNTING", "OCTET_COUNTING"
+    );
+    private static final String CONFIG_TCP_FRAMING_TRAILER = "CONFIG_TCP_FRAMING_TRAILER";
+    private static final Map<String, String> CONFIG_TCP_FRAMING_TRAILER_OPTIONS = ImmutableMap.of(
+            "LF", "LF"
+            ,
+            "CRLF", "CRLF"
+            ,
+            "NUL", "NUL"
+    );
+    private static final String CONFIG_RELP_WINDOW = "CONFIG_RELP_WINDOW";
+    private static final String CONFIG_UDP_MAX_DATAGRAM_SIZE = "CONFIG_UDP_MAX_DATAGRAM_SIZE";
+    private static final String CONFIG_SPOOL_DIRECTORY = "CONFIG_SPOOL_DIRECTORY";
+    private static final String CONFIG_SPOOL_MAX_SIZE = "CONFIG_SPOOL_MAX_SIZE";
+    private static final String CONFIG_SPOOL_EVICTION = "CONFIG_SPOOL_EVICTION";
+    private static final Map<String, String> CONFIG_SPOOL_EVICTION_OPTIONS = ImmutableMap.of(
+            "DROP_OLDEST", "DROP_OLDEST"
+            ,
+            "DROP_NEWEST", "DROP_NEWEST"
+    );
+    private static final String CONFIG_SPOOL_REPLAY_RATE = "CONFIG_SPOOL_REPLAY_RATE";
+    private static final String CONFIG_RATE_LIMIT_MESSAGES = "CONFIG_RATE_LIMIT_MESSAGES";
+    private static final String CONFIG_RATE_LIMIT_BYTES = "CONFIG_RATE_LIMIT_BYTES";
+    private static final String CONFIG_RATE_LIMIT_BURST = "CONFIG_RATE_LIMIT_BURST";
+    private static final String CONFIG_RATE_LIMIT_EXEMPT_SEVERITY = "CONFIG_RATE_LIMIT_EXEMPT_SEVERITY";
+    private static final String CONFIG_RATE_LIMIT_NOTICE_INTERVAL = "CONFIG_RATE_LIMIT_NOTICE_INTERVAL";
+    private static final String CONFIG_REPEAT_WINDOW = "CONFIG_REPEAT_WINDOW";
+    private static final String CONFIG_REPEAT_MAX_ENTRIES = "CONFIG_REPEAT_MAX_ENTRIES";
+    private static final String CONFIG_SAMPLING_RULES = "CONFIG_SAMPLING_RULES";
+    private static final String CONFIG_ROUTE_DESTINATIONS = "CONFIG_ROUTE_DESTINATIONS";
+    private static final String CONFIG_ROUTES = "CONFIG_ROUTES";
+    private static final int ASYNC_QUEUE_CAPACITY_DEFAULT = 10000;
+    // MTU of Ethernet less the IPv4 and UDP headers
+    private static final int UDP_MAX_DATAGRAM_SIZE_DEFAULT = 1500 - 20 - 8;
+    private static final int SPOOL_MAX_SIZE_DEFAULT = 1024;
+    private static final int SPOOL_SEGMENT_SIZE_MAX = 64 * 1024 * 1024;
+    private static final int SPOOL_REPLAY_RATE_DEFAULT = 1000;
+    private static final int RATE_LIMIT_BURST_DEFAULT = 1;
+    private static final int RATE_LIMIT_NOTICE_INTERVAL_DEFAULT = 60;
+    private static final String RATE_LIMIT_NOTICE_MESSAGE_ID = "RATELIMIT";
+    private static final int REPEAT_MAX_ENTRIES_DEFAULT = 10000;
+    private static final long LOG_SAMPLE_INTERVAL = 1000;
     
     private static final Logger LOG = LoggerFactory.getLogger(SyslogOutput.class);
     private final AtomicBoolean isRunning = new AtomicBoolean(false);
@@ -60,18 +174,64 @@ public class SyslogOutput implements MessageOutput {
     private boolean isSyslogFacilityNumber = false;
     private int syslogFacilityNumber = 16;
     private String syslogMessageId = null;
+    private MessageTemplate messageIdTemplate;
+    private MessageTemplate bodyTemplate;
     private String configTransportProtocol = null;
+    private boolean useMessageSource = false;
+    private boolean useStructuredData = false;
+    private boolean useSourceRouting = false;
+    private FieldProjection fieldProjection;
+    private SyslogLevelResolver severityResolver;
+    private SyslogLevelResolver facilityResolver;
+    private StructuredDataMapping structuredDataMapping;
 
     SyslogClient syslogClient;
+    private final List<SyslogClient> routeClients = new ArrayList<>();
+    private SyslogRouter router;
+    private boolean hasRfc5424Destination = true;
+    private SyslogSendQueue<SyslogEvent> sendQueue;
+    private SyslogRateLimiter rateLimiter;
+    private int rateLimitNoticeInterval;
+    private SyslogRepeatFilter repeatFilter;
+    private SyslogSampler sampler;
+    private int repeatWindow;
+    private ScheduledExecutorService scheduler;
+    private SyslogOutputMetrics metrics;
+    private final SyslogTransportRegistry transportRegistry;
+    private String instanceName;
+
+    // names of the outputs of this JVM, so outputs on the same stream do not share a spool
+    private static final Set<String> INSTANCE_NAMES = new HashSet<>();
+
+    /**
+     * Creates an output with connections of its own, which are not shared with other outputs.
+     */
+    public SyslogOutput
+            (
+                    @NotNullable Stream stream,
+                    @NotNullable Configuration configuration,
+                    @NotNullable MetricRegistry metricRegistry
+            )
+            throws MessageOutputConfigurationException {
+
+        this(stream, configuration, metricRegistry, new SyslogTransportRegistry());
+    }
 
+    /**
+     * @param transportRegistry shares connections with other outputs sending to the same servers, see {@link SyslogOutputModule}
+     */
     @Inject
     public SyslogOutput
             (
                     @NotNullable @Assisted Stream stream,
-                    @NotNullable @Assisted Configuration configuration
+                    @NotNullable @Assisted Configuration configuration,
+                    @NotNullable MetricRegistry metricRegistry,
+                    @NotNullable SyslogTransportRegistry transportRegistry
             )
             throws MessageOutputConfigurationException {
 
+        this.transportRegistry = transportRegistry;
+
         try {
             LOG.debug("Verifying configuration ...");
 
@@ -97,19 +257,28 @@ public class SyslogOutput implements MessageOutput {
 
             int configServerPort = configuration.getInt("CONFIG_SERVER_PORT");
             if (0 >= configServerPort || 65535 < configServerPort) {
-                switch (configTransportProtocol) 
+                configServerPort = getDefaultPort(configTransportProtocol);
+                LOG.info(String.format("CONFIG_SERVER_PORT: Port was set to '<=0'. Set to default '%d' (configTransportProtocol '%s')", configServerPort, configTransportProtocol));
+            }
+
+            List<SyslogDestination> destinations;
+            try
+            {
+                destinations = SyslogDestination.parseList(configServerName, configServerPort);
+            }
+            catch (IllegalArgumentException ex)
+            {
+                throw new MessageOutputConfigurationException(String.format("CONFIG_SERVER_NAME: %s", ex.getMessage()));
+            }
+            SyslogDestinationGroup.Policy balancingPolicy = SyslogDestinationGroup.Policy.FAILOVER;
+            String configBalancingPolicy = configuration.getString(CONFIG_BALANCING_POLICY);
+            if (null != configBalancingPolicy && !configBalancingPolicy.isEmpty())
+            {
+                if (!CONFIG_BALANCING_POLICY_OPTIONS.containsKey(configBalancingPolicy.toUpperCase()))
                 {
-                    case "TCP-RFC5424":
-                        configServerPort = 6514;
-                        break;
-                    case "TCPTLS-RFC5424":
-                        configServerPort = 10514;
-                        break;
-                    default:
-                        configServerPort = 514;
-                        break;
+                    throw new MessageOutputConfigurationException(String.format("CONFIG_BALANCING_POLICY: Parameter validation FAILED. '%s' is not a valid balancing policy.", configBalancingPolicy));
                 }
-                LOG.info(String.format("CONFIG_SERVER_PORT: Port was set to '<=0'. Set to default '%d' (configTransportProtocol '%s')", configServerPort));
+                balancingPolicy = SyslogDestinationGroup.Policy.valueOf(configBalancingPolicy.toUpperCase());
             }
 
             syslogSeveritySource = configuration.getString("CONFIG_LOGLEVEL_SEVERITY");
@@ -161,12 +330,32 @@ public class SyslogOutput implements MessageOutput {
             {
                 syslogStructuredDataTag = "SDATA";
             }
+            structuredDataMapping = new StructuredDataMapping(syslogStructuredDataTag, configuration.getString(CONFIG_STRUCTURED_DATA_MAPPING));
+
+            String configSamplingRules = configuration.getString(CONFIG_SAMPLING_RULES);
+            if (null != configSamplingRules && !configSamplingRules.trim().isEmpty())
+            {
+                sampler = new SyslogSampler(configSamplingRules);
+            }
             
             syslogMessageId = configuration.getString("CONFIG_MESSAGE_ID");
             if (null == syslogMessageId || syslogMessageId.isEmpty())
             {
                 syslogMessageId = streamTitle;
             }
+            String configMessageTemplate = configuration.getString(CONFIG_MESSAGE_TEMPLATE);
+            try
+            {
+                messageIdTemplate = MessageTemplate.compile(toMessageIdTemplate(syslogMessageId), streamTitle);
+                if (null != configMessageTemplate && !configMessageTemplate.isEmpty())
+                {
+                    bodyTemplate = MessageTemplate.compile(configMessageTemplate, streamTitle);
+                }
+            }
+            catch (IllegalArgumentException ex)
+            {
+                throw new MessageOutputConfigurationException(String.format("CONFIG_MESSAGE_TEMPLATE/CONFIG_MESSAGE_ID: %s", ex.getMessage()));
+            }
 
             fields = Arrays.asList(configuration.getString(CONFIG_FIELDS).split("\\s*,\\s*"));
             if(configuration.getString(CONFIG_FIELDS).isEmpty() || 0 >= fields.size() || fields.isEmpty())
@@ -179,350 +368,982 @@ public class SyslogOutput implements MessageOutput {
 //                fields.add("<message>");
                 fields.add("*");
             }
+            fieldProjection = new FieldProjection(fields, streamTitle, configuration.getBoolean(CONFIG_INCLUDE_FIELD_NAMES));
+            useMessageSource = configuration.getBoolean(CONFIG_USE_MESSAGE_SOURCE);
+            useStructuredData = configuration.getBoolean(CONFIG_USE_STRUCTURED_DATA);
+            severityResolver = SyslogLevelResolver.forSeverity(syslogSeverityNumber);
+            facilityResolver = SyslogLevelResolver.forFacility(syslogFacilityNumber);
             LOG.info("Verifying configuration SUCCEEDED.");
 
             
             LOG.debug(String.format("Connecting to Syslog server '%s://%s:%d' ...", configTransportProtocol, configServerName, configServerPort));
 
-            switch (configTransportProtocol)
+            instanceName = acquireInstanceName(stream.getId() + "-" + Hashing.murmur3_32().hashString(configTransportProtocol + "://" + Joiner.on(',').join(destinations), StandardCharsets.UTF_8));
+            metrics = new SyslogOutputMetrics(metricRegistry, instanceName);
+            syslogClient = createClient(configuration, configTransportProtocol, destinations, balancingPolicy, instanceName);
+            hasRfc5424Destination = !configTransportProtocol.endsWith("RFC3164");
+            configureRoutes(configuration, balancingPolicy, instanceName);
+            configureRateLimit(configuration);
+            configureRepeatFilter(configuration);
+
+            LOG.info(String.format("Connecting to Syslog server '%s://%s:%d' SUCCEEDED.", configTransportProtocol, configServerName, configServerPort));
+
+            if(configuration.getBoolean(CONFIG_ASYNC_ENABLED))
             {
-                case "TCP-RFC5424":
-                    syslogClient = new SyslogClient("TCP", configServerName, configServerPort);
-                    break;
-                case "TCPTLS-RFC5424":
-                    syslogClient = new SyslogClient("TCPTLS", configServerName, configServerPort);
-                    break;
-                default:
-                    syslogClient = new SyslogClient("UDP", configServerName, configServerPort);
-                    break;
+                sendQueue = createSendQueue(configuration);
+                metrics.registerQueueDepth(sendQueue);
+                sendQueue.start();
             }
-            if(isSyslogFacilityNumber)
+            if(null != rateLimiter || null != repeatFilter)
             {
-                syslogClient.setFacility(syslogFacilityNumber);
+                startScheduler();
             }
 
-            LOG.info(String.format("Connecting to Syslog server '%s://%s:%d' SUCCEEDED.", configTransportProtocol, configServerName, configServerPort));
-
             isRunning.set(true);
         } 
         catch (MessageOutputConfigurationException ex) 
         {
             LOG.error("Connecting to Syslog server FAILED.", ex);
+            release();
             throw ex;
         } catch (Exception ex) 
         {
             LOG.error("Connecting to Syslog server FAILED.", ex);
+            release();
             throw new MessageOutputConfigurationException(ex.getMessage());
         }
     }
 
-    @Override
-    public boolean isRunning() {
-        return isRunning.get();
-    }
-
-    @Override
-    public void stop() {
-        try {
-            LOG.debug("Stopping ...");
-            isRunning.set(false);
-            LOG.info("Stopping SUCCEEDED.");
-        } catch (Throwable ex) {
-            LOG.error("Stopping FAILED.");
+    /**
+     * Returns the given name, or the name with a number appended if another
+     * output of this JVM already uses it. The name is used for the spool
+     * directory and the metrics of the output. Outputs on the same stream with the
+     * same destinations get the same names after a restart if they are
+     * started in the same order.
+     */
+    private static String acquireInstanceName(@NotNullable String name)
+    {
+        synchronized (INSTANCE_NAMES)
+        {
+            String instanceName = name;
+            for (int i = 2; !INSTANCE_NAMES.add(instanceName); i++)
+            {
+                instanceName = name + "-" + i;
+            }
+            return instanceName;
         }
     }
 
-    @Override
-    public void write(Message message) throws Exception {
-        if (!isRunning.get()) 
+    /**
+     * Closes the clients of the output, which releases their spools, removes
+     * its metrics and frees the instance name.
+     */
+    private void release()
+    {
+        if (null != syslogClient)
         {
-            return;
+            syslogClient.close();
         }
-        try 
+        for (SyslogClient client : routeClients)
         {
-            if(!isSyslogFacilityNumber)
-            {
-                int syslogFacility = getSyslogFacilityFromMessage(message);
-                syslogClient.setFacility(syslogFacility);
-            }
-            int syslogSeverity = syslogSeverityNumber;
-            if(!isSyslogSeverityNumber)
+            client.close();
+        }
+        if (null != metrics)
+        {
+            metrics.remove();
+        }
+        if (null != instanceName)
+        {
+            synchronized (INSTANCE_NAMES)
             {
-                syslogSeverity = getSyslogSeverityFromMessage(message);
+                INSTANCE_NAMES.remove(instanceName);
             }
+        }
+    }
 
-            if(configuration.getBoolean("CONFIG_USE_MESSAGE_SOURCE"))
-            {
-                syslogClient.setLocalName(message.getSource());
-            }
+    private static int getDefaultPort(@NotNullable String protocol)
+    {
+        switch (protocol)
+        {
+            case "TCP-RFC5424":
+                return 6514;
+            case "TCPTLS-RFC5424":
+                return 10514;
+            case "RELP-RFC5424":
+                return 2514;
+            default:
+                return 514;
+        }
+    }
 
-            Map<String, Object> messageFields = message.getFields();
-            boolean fIncludeFieldNames = configuration.getBoolean("CONFIG_INCLUDE_FIELD_NAMES");
-            StringBuilder sb = new StringBuilder();
-            Map<String, String> structuredData = new HashMap<>();
-            for (String fieldName : fields) {
-                switch (fieldName) {
-                    case "<id>":
-                        if (fIncludeFieldNames) {
-                            sb.append("[id] ");
-                        }
-                        structuredData.put("id", message.getId());
-                        sb.append(message.getId());
-                        sb.append("|");
-                        break;
-                    case "<message>":
-                        if (fIncludeFieldNames) {
-                            sb.append("[message] ");
-                        }
-                        structuredData.put("message", message.getMessage());
-                        sb.append(message.getMessage());
-                        sb.append("|");
-                        break;
-                    case "<source>":
-                        if (fIncludeFieldNames) {
-                            sb.append("[source] ");
-                        }
-                        structuredData.put("source", message.getSource());
-                        sb.append(message.getSource());
-                        sb.append("|");
-                        break;
-                    case "<timestamp>":
-                        if (fIncludeFieldNames) {
-                            sb.append("[timestamp] ");
-                        }
-                        structuredData.put("timestamp", message.getTimestamp().toDateTimeISO().toString());
-                        sb.append(message.getTimestamp());
-                        sb.append("|");
-                        break;
-                    case "<stream>":
-                        if (fIncludeFieldNames) {
-                            sb.append("[stream] ");
-                        }
-                        structuredData.put("stream", streamTitle);
-                        sb.append(streamTitle);
-                        sb.append("|");
-                        break;
-                    case "*":
-                        for(Map.Entry<String, Object> entry : messageFields.entrySet())
-                        {
-                            if (fIncludeFieldNames) {
-                                sb.append("[");
-                                sb.append(entry.getKey());
-                                sb.append("] ");
-                            }
-                            String fieldValue = entry.getValue().toString();
-                            structuredData.put(fieldName, fieldValue);
-                            sb.append(fieldValue);
-                            sb.append("|");
-                        }
-                        break;
-                    default:
-                        if (!messageFields.containsKey(fieldName)) {
-                            LOG.warn(String.format("%s: field name does not exist. Skipping ...", fieldName));
-                            continue;
-                        }
-                        if (fIncludeFieldNames) {
-                            sb.append("[");
-                            sb.append(fieldName);
-                            sb.append("] ");
-                        }
-                        String fieldValue = messageFields.get(fieldName).toString();
-                        structuredData.put(fieldName, fieldValue);
-                        sb.append(fieldValue);
-                        sb.append("|");
-                        break;
+    /**
+     * Creates a client for one of CONFIG_TRANSPORT_PROTOCOL_OPTIONS with the
+     * facility, connection, framing, TLS and spool settings of the output.
+     *
+     * @param spoolName name of the spool sub-directory, unique to the output
+     */
+    private SyslogClient createClient(@NotNullable Configuration configuration, @NotNullable String protocol, @NotNullable List<SyslogDestination> destinations,
+                                      @NotNullable SyslogDestinationGroup.Policy balancingPolicy, @NotNullable String spoolName) throws MessageOutputConfigurationException
+    {
+        SyslogClient client;
+        switch (protocol)
+        {
+            case "TCP-RFC5424":
+                client = new SyslogClient("TCP", destinations.get(0).getHost(), destinations.get(0).getPort());
+                break;
+            case "TCPTLS-RFC5424":
+                client = new SyslogClient("TCPTLS", destinations.get(0).getHost(), destinations.get(0).getPort());
+                break;
+            case "RELP-RFC5424":
+                client = new SyslogClient("RELP", destinations.get(0).getHost(), destinations.get(0).getPort());
+                if(configuration.intIsSet(CONFIG_RELP_WINDOW) && 0 < configuration.getInt(CONFIG_RELP_WINDOW))
+                {
+                    client.setRelpWindow(configuration.getInt(CONFIG_RELP_WINDOW));
                 }
-            }
+                break;
+            default:
+                client = new SyslogClient("UDP", destinations.get(0).getHost(), destinations.get(0).getPort());
+                configureDatagramSize(client, configuration);
+                break;
+        }
+        if(isSyslogFacilityNumber)
+        {
+            client.setFacility(syslogFacilityNumber);
+        }
+        configureConnectionPool(client, configuration);
+        if(protocol.startsWith("TCP"))
+        {
+            configureFraming(client, configuration);
+        }
+        if("TCPTLS-RFC5424".equals(protocol))
+        {
+            configureTls(client, configuration);
+        }
+        if(1 < destinations.size())
+        {
+            LOG.info(String.format("Sending to %d destinations (%s).", destinations.size(), balancingPolicy));
+            client.setDestinations(destinations, balancingPolicy);
+        }
+        client.setListener(metrics.forDestination(Joiner.on(',').join(destinations)));
+        client.setTransportRegistry(transportRegistry);
+        // last, so the spool is not left locked if the configuration is invalid
+        configureSpool(client, configuration, spoolName);
+        return client;
+    }
 
-            LOG.info(String.format("%s: [sev %d] [fac %d] [%b] %s", configTransportProtocol, syslogSeverity, syslogFacilityNumber, configuration.getBoolean("CONFIG_USE_STRUCTURED_DATA"), sb.toString()));
-            if(configTransportProtocol.endsWith("RFC3164"))
+    /**
+     * Creates the clients of CONFIG_ROUTE_DESTINATIONS, which have the form
+     * 'name=PROTOCOL://host:port[,host:port]' separated by ';', and compiles
+     * CONFIG_ROUTES for them.
+     */
+    private void configureRoutes(@NotNullable Configuration configuration, @NotNullable SyslogDestinationGroup.Policy balancingPolicy, @NotNullable String instanceName) throws MessageOutputConfigurationException
+    {
+        String configRoutes = configuration.getString(CONFIG_ROUTES);
+        if(null == configRoutes || configRoutes.trim().isEmpty())
+        {
+            return;
+        }
+        Map<String, SyslogRouter.Destination> destinations = new LinkedHashMap<>();
+        destinations.put(SyslogRouter.DEFAULT_DESTINATION, new SyslogRouter.Destination(SyslogRouter.DEFAULT_DESTINATION, syslogClient, configTransportProtocol.endsWith("RFC3164")));
+        String configDestinations = configuration.getString(CONFIG_ROUTE_DESTINATIONS);
+        if(null != configDestinations)
+        {
+            for (String destination : configDestinations.split("\\s*;\\s*"))
             {
-                switch(syslogSeverity)
+                if(destination.trim().isEmpty())
                 {
-                    case 7:
-                        syslogClient.logDebug(sb.toString());
-                        break;
-                    default:
-                    case 6:
-                        syslogClient.logInfo(sb.toString());
-                        break;
-                    case 5:
-                        syslogClient.logNotice(sb.toString());
-                        break;
-                    case 4:
-                        syslogClient.logWarn(sb.toString());
-                        break;
-                    case 3:
-                        syslogClient.logError(sb.toString());
-                        break;
-                    case 2:
-                        syslogClient.logCritical(sb.toString());
-                        break;
-                    case 1:
-                        syslogClient.logAlert(sb.toString());
-                        break;
-                    case 0:
-                        syslogClient.logEmergency(sb.toString());
-                        break;
+                    continue;
                 }
-            }
-            else
-            {
-                if(syslogMessageId.startsWith("<") && syslogMessageId.endsWith(">"))
+                int equals = destination.indexOf('=');
+                int scheme = destination.indexOf("://");
+                if(0 >= equals || equals > scheme)
                 {
-                    if(message.hasField(syslogMessageId))
-                    {
-                        syslogMessageId = message.getField(syslogMessageId).toString();
-                    }
+                    throw new MessageOutputConfigurationException(String.format("CONFIG_ROUTE_DESTINATIONS: Parameter validation FAILED. '%s' is not of the form 'name=PROTOCOL://host:port'.", destination));
+                }
+                String name = destination.substring(0, equals).trim();
+                String protocol = destination.substring(equals + 1, scheme).trim().toUpperCase();
+                if(destinations.containsKey(name))
+                {
+                    throw new MessageOutputConfigurationException(String.format("CONFIG_ROUTE_DESTINATIONS: Parameter validation FAILED. Destination '%s' is defined more than once.", name));
                 }
-                if(!configuration.getBoolean("CONFIG_USE_STRUCTURED_DATA"))
+                if(!CONFIG_TRANSPORT_PROTOCOL_OPTIONS.containsKey(protocol))
                 {
-                    syslogClient.log(syslogSeverity, syslogMessageId, null, sb.toString());
+                    throw new MessageOutputConfigurationException(String.format("CONFIG_ROUTE_DESTINATIONS: Parameter validation FAILED. '%s' is not a valid transport protocol.", protocol));
                 }
-                else
+                List<SyslogDestination> servers;
+                try
                 {
-                    syslogClient.log(syslogSeverity, syslogMessageId, structuredData, sb.toString());
+                    servers = SyslogDestination.parseList(destination.substring(scheme + 3).trim(), getDefaultPort(protocol));
                 }
+                catch (IllegalArgumentException ex)
+                {
+                    throw new MessageOutputConfigurationException(String.format("CONFIG_ROUTE_DESTINATIONS: %s", ex.getMessage()));
+                }
+                SyslogClient client = createClient(configuration, protocol, servers, balancingPolicy, instanceName + "-" + name);
+                routeClients.add(client);
+                destinations.put(name, new SyslogRouter.Destination(name, client, protocol.endsWith("RFC3164")));
+                hasRfc5424Destination |= !protocol.endsWith("RFC3164");
             }
-        } 
-        catch (Exception ex) 
+        }
+        router = new SyslogRouter(configRoutes, destinations);
+        LOG.info(String.format("Routing messages to %s.", Joiner.on(", ").join(destinations.keySet())));
+    }
+
+    /**
+     * Turns the legacy MSGID syntax into a template: '<name>' refers to a
+     * built-in or user-defined field, anything without '${' is a fixed string.
+     */
+    private static String toMessageIdTemplate(@NotNullable String messageId)
+    {
+        if (MessageTemplate.isTemplate(messageId))
         {
-            LOG.error("Exception occurred.", ex);
-            ex.printStackTrace();
-            throw ex;
+            return messageId;
+        }
+        if (2 < messageId.length() && messageId.startsWith("<") && messageId.endsWith(">"))
+        {
+            return "${" + messageId.substring(1, messageId.length() - 1) + "}";
         }
+        return messageId.replace("$", "$$");
     }
 
-    private int getSyslogSeverityFromMessage(@NotNullable Message message)
+    private void configureTls(@NotNullable SyslogClient client, @NotNullable Configuration configuration) throws MessageOutputConfigurationException
     {
-        // default syslog severity level
-        int syslogSeverity = syslogSeverityNumber;
-        // try to get severity from field (can be string or number)
-        String syslogSeverityName = syslogSeveritySource;
-        if(message.hasField(syslogSeveritySource))
+        String[] protocols = null;
+        String configProtocols = configuration.getString(CONFIG_TLS_PROTOCOLS);
+        if(null != configProtocols && !configProtocols.isEmpty() && !"DEFAULT".equalsIgnoreCase(configProtocols))
+        {
+            if(!CONFIG_TLS_PROTOCOLS_OPTIONS.containsKey(configProtocols))
+            {
+                throw new MessageOutputConfigurationException(String.format("CONFIG_TLS_PROTOCOLS: Parameter validation FAILED. '%s' is not a valid protocol selection.", configProtocols));
+            }
+            protocols = configProtocols.split(",");
+        }
+        String[] cipherSuites = null;
+        String configCipherSuites = configuration.getString(CONFIG_TLS_CIPHER_SUITES);
+        if(null != configCipherSuites && !configCipherSuites.trim().isEmpty())
+        {
+            cipherSuites = configCipherSuites.trim().split("\\s*,\\s*");
+        }
+        SyslogTlsConfig tlsConfig = new SyslogTlsConfig(
+                configuration.getString(CONFIG_TLS_TRUSTSTORE), configuration.getString(CONFIG_TLS_TRUSTSTORE_PASSWORD),
+                configuration.getString(CONFIG_TLS_KEYSTORE), configuration.getString(CONFIG_TLS_KEYSTORE_PASSWORD),
+                protocols, cipherSuites, SyslogTlsConfig.SESSION_CACHE_SIZE_DEFAULT, SyslogTlsConfig.SESSION_TIMEOUT_SECONDS_DEFAULT,
+                !configuration.getBoolean(CONFIG_TLS_SKIP_HOSTNAME_VERIFICATION));
+        if (!tlsConfig.isHostnameVerified())
         {
-            syslogSeverityName = message.getField(syslogSeveritySource).toString();
+            LOG.warn("CONFIG_TLS_SKIP_HOSTNAME_VERIFICATION is set. Any certificate the truststore trusts is accepted for any Syslog server.");
         }
         try
         {
-            // we presume the contents is a number
-            syslogSeverity = Integer.parseInt(syslogSeverityName);
+            client.setTlsConfig(tlsConfig);
+        }
+        catch (GeneralSecurityException | IOException ex)
+        {
+            throw new MessageOutputConfigurationException(String.format("CONFIG_TLS_TRUSTSTORE/CONFIG_TLS_KEYSTORE: Loading TLS configuration FAILED. %s", ex.getMessage()));
         }
-        catch(NumberFormatException ex)
+    }
+
+    private void configureFraming(@NotNullable SyslogClient client, @NotNullable Configuration configuration) throws MessageOutputConfigurationException
+    {
+        SyslogFraming framing = SyslogFraming.NON_TRANSPARENT;
+        String configFraming = configuration.getString(CONFIG_TCP_FRAMING);
+        if(null != configFraming && !configFraming.isEmpty())
         {
-            // treat contents as string if number conversion failed
-            switch(syslogSeverityName.toUpperCase())
+            if(!CONFIG_TCP_FRAMING_OPTIONS.containsKey(configFraming.toUpperCase()))
             {
-                case "EMERGENCY":
-                    syslogSeverity = 0;
-                    break;
-                case "ALERT":
-                case "ALRT":
-                    syslogSeverity = 1;
-                    break;
-                case "CRITICAL":
-                    syslogSeverity = 2;
-                    break;
-                case "ERROR":
-                case "ERR":
-                    syslogSeverity = 3;
-                    break;
-                case "WARNING":
-                case "WARN":
-                    syslogSeverity = 4;
-                    break;
-                case "NOTICE":
-                    syslogSeverity = 5;
+                throw new MessageOutputConfigurationException(String.format("CONFIG_TCP_FRAMING: Parameter validation FAILED. '%s' is not a valid framing.", configFraming));
+            }
+            framing = SyslogFraming.valueOf(configFraming.toUpperCase());
+        }
+        byte[] trailer = null;
+        String configTrailer = configuration.getString(CONFIG_TCP_FRAMING_TRAILER);
+        if(null != configTrailer && !configTrailer.isEmpty())
+        {
+            switch (configTrailer.toUpperCase())
+            {
+                case "LF":
+                    trailer = SyslogFraming.TRAILER_LF;
                     break;
-                case "INFORMATIONAL":
-                case "INFORMATION":
-                case "INFO":
-                    syslogSeverity = 6;
+                case "CRLF":
+                    trailer = SyslogFraming.TRAILER_CRLF;
                     break;
-                case "DBG":
-                case "DEBUG":
-                case "TRACE":
-                    syslogSeverity = 7;
+                case "NUL":
+                    trailer = SyslogFraming.TRAILER_NUL;
                     break;
                 default:
-                    syslogSeverity = syslogSeverityNumber;
-                    LOG.warn(String.format("%s: Parameter validation FAILED. Parameter is not a valid syslog severity. Assigned default severity '%d'.", syslogSeverityName, syslogSeverity));
-                    break;
+                    throw new MessageOutputConfigurationException(String.format("CONFIG_TCP_FRAMING_TRAILER: Parameter validation FAILED. '%s' is not a valid trailer.", configTrailer));
             }
         }
-        return syslogSeverity;
+        LOG.info(String.format("Framing messages with %s.", framing));
+        client.setFraming(framing, trailer);
     }
 
-    private int getSyslogFacilityFromMessage(@NotNullable Message message)
+    private void configureSpool(@NotNullable SyslogClient client, @NotNullable Configuration configuration, @NotNullable String spoolName) throws MessageOutputConfigurationException
     {
-        // default syslog facility level
-        int syslogFacility = syslogFacilityNumber;
-        // try to get severity from field (can be string or number)
-        String syslogFacilityName = syslogFacilitySource;
-        if(message.hasField(syslogFacilitySource))
+        String configDirectory = configuration.getString(CONFIG_SPOOL_DIRECTORY);
+        if(null == configDirectory || configDirectory.trim().isEmpty())
+        {
+            return;
+        }
+        long maxBytes = SPOOL_MAX_SIZE_DEFAULT * 1024L * 1024L;
+        if(configuration.intIsSet(CONFIG_SPOOL_MAX_SIZE) && 0 < configuration.getInt(CONFIG_SPOOL_MAX_SIZE))
+        {
+            maxBytes = configuration.getInt(CONFIG_SPOOL_MAX_SIZE) * 1024L * 1024L;
+        }
+        SyslogSpool.Eviction eviction = SyslogSpool.Eviction.DROP_OLDEST;
+        String configEviction = configuration.getString(CONFIG_SPOOL_EVICTION);
+        if(null != configEviction && !configEviction.isEmpty())
+        {
+            if(!CONFIG_SPOOL_EVICTION_OPTIONS.containsKey(configEviction.toUpperCase()))
+            {
+                throw new MessageOutputConfigurationException(String.format("CONFIG_SPOOL_EVICTION: Parameter validation FAILED. '%s' is not a valid eviction policy.", configEviction));
+            }
+            eviction = SyslogSpool.Eviction.valueOf(configEviction.toUpperCase());
+        }
+        int replayRate = SPOOL_REPLAY_RATE_DEFAULT;
+        if(configuration.intIsSet(CONFIG_SPOOL_REPLAY_RATE) && 0 < configuration.getInt(CONFIG_SPOOL_REPLAY_RATE))
         {
-            syslogFacilityName = message.getField(syslogFacilitySource).toString();
+            replayRate = configuration.getInt(CONFIG_SPOOL_REPLAY_RATE);
         }
+        File directory = new File(configDirectory.trim(), spoolName);
         try
         {
-            // we presume the contents is a number
-            syslogFacility = Integer.parseInt(syslogFacilityName, 10);
+            SyslogSpool spool = new SyslogSpool(directory, (int) Math.min(SPOOL_SEGMENT_SIZE_MAX, maxBytes / 4), maxBytes, eviction);
+            LOG.info(String.format("Spooling to '%s' while the Syslog server is unreachable (%d MB, %s).", directory, maxBytes / 1024 / 1024, eviction));
+            client.setSpool(spool, replayRate);
         }
-        catch(NumberFormatException ex)
+        catch (IOException | IllegalArgumentException ex)
         {
-            syslogFacility = syslogFacilityNumber;
-            LOG.warn(String.format("%s: Parameter validation FAILED. Parameter is not a valid syslog facility. Assigned default facility '%d'.", syslogFacilityName, syslogFacility));
+            throw new MessageOutputConfigurationException(String.format("CONFIG_SPOOL_DIRECTORY: Opening spool FAILED. %s", ex.getMessage()));
         }
-        return syslogFacility;
     }
 
-    @Override
-    public void write(List<Message> messages) throws Exception
+    private void configureRateLimit(@NotNullable Configuration configuration) throws MessageOutputConfigurationException
     {
-        if (!isRunning.get())
+        int messagesPerSecond = configuration.intIsSet(CONFIG_RATE_LIMIT_MESSAGES) ? configuration.getInt(CONFIG_RATE_LIMIT_MESSAGES) : 0;
+        int bytesPerSecond = configuration.intIsSet(CONFIG_RATE_LIMIT_BYTES) ? configuration.getInt(CONFIG_RATE_LIMIT_BYTES) : 0;
+        if(0 >= messagesPerSecond && 0 >= bytesPerSecond)
         {
             return;
         }
-        for (Message message : messages)
+        int burst = RATE_LIMIT_BURST_DEFAULT;
+        if(configuration.intIsSet(CONFIG_RATE_LIMIT_BURST) && 0 < configuration.getInt(CONFIG_RATE_LIMIT_BURST))
+        {
+            burst = configuration.getInt(CONFIG_RATE_LIMIT_BURST);
+        }
+        int exemptSeverity = -1;
+        if(configuration.intIsSet(CONFIG_RATE_LIMIT_EXEMPT_SEVERITY))
+        {
+            exemptSeverity = configuration.getInt(CONFIG_RATE_LIMIT_EXEMPT_SEVERITY);
+            if(7 < exemptSeverity)
+            {
+                throw new MessageOutputConfigurationException(String.format("CONFIG_RATE_LIMIT_EXEMPT_SEVERITY: Parameter validation FAILED. Severity level must be between (including) -1 and 7."));
+            }
+        }
+        rateLimitNoticeInterval = RATE_LIMIT_NOTICE_INTERVAL_DEFAULT;
+        if(configuration.intIsSet(CONFIG_RATE_LIMIT_NOTICE_INTERVAL) && 0 < configuration.getInt(CONFIG_RATE_LIMIT_NOTICE_INTERVAL))
         {
-            write(message);
+            rateLimitNoticeInterval = configuration.getInt(CONFIG_RATE_LIMIT_NOTICE_INTERVAL);
         }
+        LOG.info(String.format("Limiting to %d messages/s and %d bytes/s (burst %d s, exempt severity %d).", Math.max(0, messagesPerSecond), Math.max(0, bytesPerSecond), burst, exemptSeverity));
+        rateLimiter = new SyslogRateLimiter(Math.max(0, messagesPerSecond), Math.max(0, bytesPerSecond), burst, exemptSeverity);
     }
 
-    public static class Config extends MessageOutput.Config
+    private void configureRepeatFilter(@NotNullable Configuration configuration)
     {
-        @Override
-        public ConfigurationRequest getRequestedConfiguration()
+        if(!configuration.intIsSet(CONFIG_REPEAT_WINDOW) || 0 >= configuration.getInt(CONFIG_REPEAT_WINDOW))
         {
-            final ConfigurationRequest configurationRequest = new ConfigurationRequest();
+            return;
+        }
+        repeatWindow = configuration.getInt(CONFIG_REPEAT_WINDOW);
+        int maxEntries = REPEAT_MAX_ENTRIES_DEFAULT;
+        if(configuration.intIsSet(CONFIG_REPEAT_MAX_ENTRIES) && 0 < configuration.getInt(CONFIG_REPEAT_MAX_ENTRIES))
+        {
+            maxEntries = configuration.getInt(CONFIG_REPEAT_MAX_ENTRIES);
+        }
+        LOG.info(String.format("Suppressing repeated messages within %d s (tracking %d messages).", repeatWindow, maxEntries));
+        repeatFilter = new SyslogRepeatFilter(TimeUnit.SECONDS.toMillis(repeatWindow), maxEntries);
+    }
 
-            configurationRequest.addField(new TextField(
-                            CONFIG_SERVER_NAME, "Name or IP address of Syslog server", "localhost",
-                            "Specifies the name, FQDN or IP address of the Syslog server to send messages to.",
-                            ConfigurationField.Optional.NOT_OPTIONAL)
-            );
+    /**
+     * Starts the thread that sends rate limit notices and summarizes
+     * repeated messages whose window ended.
+     */
+    private void startScheduler()
+    {
+        scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory()
+        {
+            @Override
+            public Thread newThread(Runnable runnable)
+            {
+                Thread thread = new Thread(runnable, String.format("syslog-output-%s-scheduler", streamTitle));
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        if(null != rateLimiter)
+        {
+            scheduler.scheduleWithFixedDelay(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    sendRateLimitNotice();
+                }
+            }, rateLimitNoticeInterval, rateLimitNoticeInterval, TimeUnit.SECONDS);
+        }
+        if(null != repeatFilter)
+        {
+            scheduler.scheduleWithFixedDelay(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    sendRepeatSummaries(false);
+                }
+            }, repeatWindow, repeatWindow, TimeUnit.SECONDS);
+        }
+    }
 
-            configurationRequest.addField(new NumberField(
-                            CONFIG_SERVER_PORT, "Port of Syslog server", 514,
-                            "Specifies the TCP or UDP port of the Syslog server to send messages to. Common defaults are UDP:514, TCP:10514, TCP/TLS 6514",
-                            ConfigurationField.Optional.NOT_OPTIONAL)
-            );
+    /**
+     * @param isFlushing true to summarize all repeats, false to only summarize those whose window ended
+     */
+    private void sendRepeatSummaries(boolean isFlushing)
+    {
+        List<SyslogEvent> summaries = new ArrayList<>();
+        if(isFlushing)
+        {
+            repeatFilter.flush(summaries);
+        }
+        else
+        {
+            repeatFilter.expire(System.currentTimeMillis(), summaries);
+        }
+        try
+        {
+            dispatch(summaries);
+        }
+        catch (Exception ex)
+        {
+            LOG.error("Sending repeated message summaries FAILED.", ex);
+        }
+    }
 
-            configurationRequest.addField(new DropdownField(
-                            CONFIG_TRANSPORT_PROTOCOL, "Syslog Transport Protocol", CONFIG_TRANSPORT_PROTOCOL_OPTIONS.get("UDP-RFC3164"), CONFIG_TRANSPORT_PROTOCOL_OPTIONS,
-                            "Specifies the transport protocol to use",
-                            ConfigurationField.Optional.NOT_OPTIONAL)
-            );
+    /**
+     * Tells the Syslog server how many messages were dropped by the rate
+     * limit since the last notice, so it knows data was shed.
+     */
+    private void sendRateLimitNotice()
+    {
+        long suppressedCount = rateLimiter.drainSuppressedCount();
+        if(0 >= suppressedCount)
+        {
+            return;
+        }
+        String message = String.format("%d messages suppressed by rate limit of stream '%s'.", suppressedCount, streamTitle);
+        LOG.warn(message);
+        try
+        {
+            send(new SyslogEvent(new SyslogHeader(syslogFacilityNumber, SyslogConstants.LEVEL_NOTICE, null, RATE_LIMIT_NOTICE_MESSAGE_ID), null, message));
+        }
+        catch (Exception ex)
+        {
+            LOG.error("Sending rate limit notice FAILED.", ex);
+        }
+    }
 
-            configurationRequest.addField(new TextField(
-                            CONFIG_LOGLEVEL_SEVERITY, "Syslog severity log level", "<stream>",
-                            "Specifies which severity log level to be used for messages. Log level can either be derived from a stream name ('<stream>'), a field names (use '<>' for built-in fields and plain field name for user-defined fields), or a fixed severity log level (0..7)",
-                            ConfigurationField.Optional.NOT_OPTIONAL)
-            );
+    /**
+     * Adds the event to the events to send unless it is a repeat or exceeds
+     * the rate limit. Summaries of repeats that ended are added as well;
+     * they are not rate limited.
+     */
+    private void collect(@NotNullable SyslogEvent event, @NotNullable List<SyslogEvent> events)
+    {
+        if(null != repeatFilter && !repeatFilter.tryAccept(event, System.currentTimeMillis(), events))
+        {
+            metrics.getMessagesRepeated().mark();
+            return;
+        }
+        if(isWithinRateLimit(event))
+        {
+            events.add(event);
+        }
+    }
+
+    /**
+     * @return false if the event exceeds the rate limit and is to be dropped
+     */
+    private boolean isWithinRateLimit(@NotNullable SyslogEvent event)
+    {
+        if(null == rateLimiter || rateLimiter.tryAcquire(event))
+        {
+            return true;
+        }
+        metrics.getMessagesRateLimited().mark();
+        return false;
+    }
+
+    private void configureConnectionPool(@NotNullable SyslogClient client, @NotNullable Configuration configuration) throws MessageOutputConfigurationException
+    {
+        int connections = 1;
+        if(configuration.intIsSet(CONFIG_CONNECTIONS) && 0 < configuration.getInt(CONFIG_CONNECTIONS))
+        {
+            connections = configuration.getInt(CONFIG_CONNECTIONS);
+        }
+        String configSharding = configuration.getString(CONFIG_CONNECTION_SHARDING);
+        if(null != configSharding && !configSharding.isEmpty())
+        {
+            if(!CONFIG_CONNECTION_SHARDING_OPTIONS.containsKey(configSharding.toUpperCase()))
+            {
+                throw new MessageOutputConfigurationException(String.format("CONFIG_CONNECTION_SHARDING: Parameter validation FAILED. '%s' is not a valid sharding.", configSharding));
+            }
+            useSourceRouting = "SOURCE_HASH".equalsIgnoreCase(configSharding);
+        }
+        if(1 < connections)
+        {
+            LOG.info(String.format("Sending over %d connections (%s).", connections, useSourceRouting ? "SOURCE_HASH" : "ROUND_ROBIN"));
+            client.setConnectionPool(connections, useSourceRouting ? SyslogConnectionPool.Sharding.KEY_HASH : SyslogConnectionPool.Sharding.ROUND_ROBIN);
+        }
+    }
+
+    private void configureDatagramSize(@NotNullable SyslogClient client, @NotNullable Configuration configuration) throws MessageOutputConfigurationException
+    {
+        int size = UDP_MAX_DATAGRAM_SIZE_DEFAULT;
+        if(configuration.intIsSet(CONFIG_UDP_MAX_DATAGRAM_SIZE))
+        {
+            size = configuration.getInt(CONFIG_UDP_MAX_DATAGRAM_SIZE);
+        }
+        if(0 != size && SyslogEncoder.MAX_FRAME_LENGTH_MIN > size)
+        {
+            throw new MessageOutputConfigurationException(String.format("CONFIG_UDP_MAX_DATAGRAM_SIZE: Parameter validation FAILED. Value must be 0 or at least %d (was '%d').", SyslogEncoder.MAX_FRAME_LENGTH_MIN, size));
+        }
+        client.setMaxDatagramSize(size);
+    }
+
+    private SyslogSendQueue<SyslogEvent> createSendQueue(@NotNullable Configuration configuration) throws MessageOutputConfigurationException
+    {
+        int capacity = ASYNC_QUEUE_CAPACITY_DEFAULT;
+        if(configuration.intIsSet(CONFIG_ASYNC_QUEUE_CAPACITY) && 0 < configuration.getInt(CONFIG_ASYNC_QUEUE_CAPACITY))
+        {
+            capacity = configuration.getInt(CONFIG_ASYNC_QUEUE_CAPACITY);
+        }
+        int senderThreads = 1;
+        if(configuration.intIsSet(CONFIG_ASYNC_SENDER_THREADS) && 0 < configuration.getInt(CONFIG_ASYNC_SENDER_THREADS))
+        {
+            senderThreads = configuration.getInt(CONFIG_ASYNC_SENDER_THREADS);
+        }
+        SyslogSendQueue.OverflowPolicy overflowPolicy = SyslogSendQueue.OverflowPolicy.BLOCK;
+        String configOverflowPolicy = configuration.getString(CONFIG_ASYNC_OVERFLOW_POLICY);
+        if(null != configOverflowPolicy && !configOverflowPolicy.isEmpty())
+        {
+            if(!CONFIG_ASYNC_OVERFLOW_POLICY_OPTIONS.containsKey(configOverflowPolicy.toUpperCase()))
+            {
+                throw new MessageOutputConfigurationException(String.format("CONFIG_ASYNC_OVERFLOW_POLICY: Parameter validation FAILED. '%s' is not a valid overflow policy.", configOverflowPolicy));
+            }
+            overflowPolicy = SyslogSendQueue.OverflowPolicy.valueOf(configOverflowPolicy.toUpperCase());
+        }
+        LOG.info(String.format("Sending asynchronously (capacity %d, sender threads %d, overflow policy %s).", capacity, senderThreads, overflowPolicy));
+
+        return new SyslogSendQueue<>(String.format("syslog-output-%s", streamTitle), capacity, overflowPolicy, senderThreads, new SyslogSendQueue.Sender<SyslogEvent>()
+        {
+            @Override
+            public void send(List<SyslogEvent> events) throws IOException
+            {
+                SyslogOutput.this.send(events);
+            }
+        });
+    }
+
+    @Override
+    public boolean isRunning() {
+        return isRunning.get();
+    }
+
+    @Override
+    public void stop() {
+        try {
+            LOG.debug("Stopping ...");
+            isRunning.set(false);
+            if(null != scheduler)
+            {
+                scheduler.shutdownNow();
+            }
+            if(null != repeatFilter)
+            {
+                sendRepeatSummaries(true);
+            }
+            if(null != sendQueue)
+            {
+                sendQueue.stop();
+                LOG.info(String.format("Send queue stopped. %d messages dropped, %d messages failed.", sendQueue.getDroppedCount(), sendQueue.getFailedCount()));
+            }
+            if(null != rateLimiter)
+            {
+                sendRateLimitNotice();
+            }
+            release();
+            LOG.info("Stopping SUCCEEDED.");
+        } catch (Throwable ex) {
+            LOG.error("Stopping FAILED.");
+        }
+    }
+
+    @Override
+    public void write(Message message) throws Exception {
+        if (!isRunning.get()) 
+        {
+            return;
+        }
+        try 
+        {
+            SyslogEvent event = render(message);
+            if(null == event)
+            {
+                return;
+            }
+            if(null != repeatFilter)
+            {
+                List<SyslogEvent> events = new ArrayList<>(2);
+                collect(event, events);
+                dispatch(events);
+                return;
+            }
+            if(!isWithinRateLimit(event))
+            {
+                return;
+            }
+            if(null != sendQueue)
+            {
+                offer(event);
+            }
+            else
+            {
+                send(event);
+            }
+        } 
+        catch (Exception ex) 
+        {
+            LOG.error(String.format("Writing message '%s' FAILED.", message.getId()), ex);
+            throw ex;
+        }
+    }
+
+    /**
+     * Queues the events or, if messages are sent synchronously, sends them with one network write.
+     */
+    private void dispatch(@NotNullable List<SyslogEvent> events) throws Exception
+    {
+        if(null != sendQueue)
+        {
+            for (SyslogEvent event : events)
+            {
+                offer(event);
+            }
+        }
+        else if(!events.isEmpty())
+        {
+            send(events);
+        }
+    }
+
+    private void offer(@NotNullable SyslogEvent event) throws InterruptedException
+    {
+        if(!sendQueue.offer(event))
+        {
+            metrics.getMessagesDropped().mark();
+        }
+    }
+
+    /**
+     * @return the rendered message, or null if it was dropped by sampling
+     */
+    private SyslogEvent render(@NotNullable Message message)
+    {
+        metrics.getMessagesIn().mark();
+        int syslogSeverity = syslogSeverityNumber;
+        if(!isSyslogSeverityNumber)
+        {
+            syslogSeverity = getSyslogSeverityFromMessage(message);
+        }
+        if(null != sampler && !sampler.isSampled(syslogSeverity, message))
+        {
+            metrics.getMessagesSampledOut().mark();
+            return null;
+        }
+        Timer.Context context = metrics.getRender().time();
+        try
+        {
+            return renderEvent(message, syslogSeverity, null == router ? null : router.route(message, syslogSeverity));
+        }
+        finally
+        {
+            context.stop();
+        }
+    }
+
+    private SyslogEvent renderEvent(@NotNullable Message message, int syslogSeverity, SyslogRouter.Route route)
+    {
+        int syslogFacility = syslogFacilityNumber;
+        if(!isSyslogFacilityNumber)
+        {
+            syslogFacility = getSyslogFacilityFromMessage(message);
+        }
+
+        String localName = null;
+        if(useMessageSource)
+        {
+            localName = message.getSource();
+        }
+        String routingKey = useSourceRouting ? message.getSource() : null;
+        // the header carries the time of the event, not the time it is sent
+        long timestamp = null == message.getTimestamp() ? SyslogHeader.TIMESTAMP_NOW : message.getTimestamp().getMillis();
+
+        boolean isRfc3164 = !hasRfc5424Destination;
+        StructuredDataMapping.Collector structuredData = null;
+        if(useStructuredData && !isRfc3164)
+        {
+            structuredData = structuredDataMapping.newCollector();
+        }
+        CharSequence body;
+        if(null == bodyTemplate)
+        {
+            MessageRenderer renderer = new MessageRenderer(structuredData);
+            fieldProjection.project(message, renderer);
+            body = renderer.body.build();
+        }
+        else
+        {
+            if(null != structuredData)
+            {
+                fieldProjection.project(message, new MessageRenderer(structuredData, false));
+            }
+            body = bodyTemplate.render(message);
+        }
+
+        if(LOG.isDebugEnabled() && 0 == metrics.getMessagesIn().getCount() % LOG_SAMPLE_INTERVAL)
+        {
+            LOG.debug(String.format("%s: [sev %d] [fac %d] [%b] %s", configTransportProtocol, syslogSeverity, syslogFacility, useStructuredData, body));
+        }
+        if(isRfc3164)
+        {
+            return new SyslogEvent(new SyslogHeader(syslogFacility, syslogSeverity, localName, null, routingKey, timestamp), null, body, route, message.getSource());
+        }
+        String messageId = messageIdTemplate.render(message);
+        return new SyslogEvent(new SyslogHeader(syslogFacility, syslogSeverity, localName, messageId, routingKey, timestamp), null == structuredData ? null : structuredData.getStructuredData(), body, route, message.getSource());
+    }
+
+    /**
+     * Formats all events first and sends them with one network write.
+     */
+    private void send(@NotNullable List<SyslogEvent> events) throws IOException
+    {
+        if(null != router)
+        {
+            sendRouted(events);
+            return;
+        }
+        SyslogClient.Batch batch = syslogClient.createBatch();
+        add(batch, configTransportProtocol.endsWith("RFC3164"), events);
+        batch.send();
+    }
+
+    private static void add(@NotNullable SyslogClient.Batch batch, boolean isRfc3164, @NotNullable List<SyslogEvent> events)
+    {
+        for (SyslogEvent event : events)
+        {
+            if(isRfc3164)
+            {
+                batch.add(event.getHeader(), event.getBody());
+            }
+            else
+            {
+                batch.addStructured(event.getHeader(), event.getStructuredData(), event.getBody());
+            }
+        }
+    }
+
+    /**
+     * Sends the events of every route to its destinations. Events are encoded
+     * once per format and the encoded batch is sent to all destinations of
+     * that format. A failing destination does not keep the events from the
+     * other destinations; the first error is thrown once all were tried.
+     */
+    private void sendRouted(@NotNullable List<SyslogEvent> events) throws IOException
+    {
+        Map<SyslogRouter.Route, List<SyslogEvent>> eventsByRoute = new LinkedHashMap<>();
+        for (SyslogEvent event : events)
+        {
+            SyslogRouter.Route route = null == event.getRoute() ? router.getDefaultRoute() : event.getRoute();
+            List<SyslogEvent> routeEvents = eventsByRoute.get(route);
+            if(null == routeEvents)
+            {
+                routeEvents = new ArrayList<>();
+                eventsByRoute.put(route, routeEvents);
+            }
+            routeEvents.add(event);
+        }
+        IOException failure = null;
+        for (Map.Entry<SyslogRouter.Route, List<SyslogEvent>> entry : eventsByRoute.entrySet())
+        {
+            for (SyslogRouter.Destination[] group : entry.getKey().getGroups())
+            {
+                SyslogClient.Batch batch = group[0].getClient().createBatch();
+                add(batch, group[0].isRfc3164(), entry.getValue());
+                for (SyslogRouter.Destination destination : group)
+                {
+                    try
+                    {
+                        batch.sendTo(destination.getClient());
+                    }
+                    catch (IOException | RuntimeException ex)
+                    {
+                        LOG.error(String.format("Sending to destination '%s' FAILED.", destination), ex);
+                        if(null == failure)
+                        {
+                            failure = ex instanceof IOException ? (IOException) ex : new IOException(ex);
+                        }
+                    }
+                }
+            }
+        }
+        if(null != failure)
+        {
+            throw failure;
+        }
+    }
+
+    private void send(@NotNullable SyslogEvent event) throws IOException
+    {
+        if(null != router)
+        {
+            sendRouted(Collections.singletonList(event));
+            return;
+        }
+        if(configTransportProtocol.endsWith("RFC3164"))
+        {
+            syslogClient.log(event.getHeader(), event.getBody());
+        }
+        else
+        {
+            syslogClient.logStructured(event.getHeader(), event.getStructuredData(), event.getBody());
+        }
+    }
+
+    /**
+     * Collects the projected fields of a single message into the message body
+     * and the structured data parameters.
+     */
+    private static final class MessageRenderer implements FieldProjection.FieldSink
+    {
+        private final SyslogBody.Builder body;
+        private final StructuredDataMapping.Collector structuredData;
+
+        MessageRenderer(StructuredDataMapping.Collector structuredData)
+        {
+            this(structuredData, true);
+        }
+
+        MessageRenderer(StructuredDataMapping.Collector structuredData, boolean isRenderingBody)
+        {
+            this.structuredData = structuredData;
+            this.body = isRenderingBody ? new SyslogBody.Builder() : null;
+        }
+
+        @Override
+        public void accept(String name, String label, String value, int priority)
+        {
+            if (null != structuredData)
+            {
+                structuredData.accept(name, value);
+            }
+            if (null == body)
+            {
+                return;
+            }
+            if (null != label)
+            {
+                body.append(label);
+            }
+            body.append(value, priority);
+            body.append("|");
+        }
+    }
+
+    private int getSyslogSeverityFromMessage(@NotNullable Message message)
+    {
+        // try to get severity from field (can be string or number)
+        Object syslogSeverity = message.getField(syslogSeveritySource);
+        return severityResolver.resolve(null == syslogSeverity ? syslogSeveritySource : syslogSeverity);
+    }
+
+    private int getSyslogFacilityFromMessage(@NotNullable Message message)
+    {
+        // try to get facility from field (can be string or number)
+        Object syslogFacility = message.getField(syslogFacilitySource);
+        return facilityResolver.resolve(null == syslogFacility ? syslogFacilitySource : syslogFacility);
+    }
+
+    @Override
+    public void write(List<Message> messages) throws Exception
+    {
+        if (!isRunning.get())
+        {
+            return;
+        }
+        try
+        {
+            List<SyslogEvent> events = new ArrayList<>(messages.size());
+            for (Message message : messages)
+            {
+                SyslogEvent event = render(message);
+                if(null != event)
+                {
+                    collect(event, events);
+                }
+            }
+            dispatch(events);
+        }
+        catch (Exception ex)
+        {
+            LOG.error("Exception occurred.", ex);
+            throw ex;
+        }
+    }
+
+    public static class Config extends MessageOutput.Config
+    {
+        @Override
+        public ConfigurationRequest getRequestedConfiguration()
+        {
+            final ConfigurationRequest configurationRequest = new ConfigurationRequest();
+
+            configurationRequest.addField(new TextField(
+                            CONFIG_SERVER_NAME, "Name or IP address of Syslog server", "localhost",
+                            "Specifies the name, FQDN or IP address of the Syslog server to send messages to. Several servers can be specified as comma separated list, i.e. 'relay1:514, relay2:514'; servers without port use CONFIG_SERVER_PORT.",
+                            ConfigurationField.Optional.NOT_OPTIONAL)
+            );
+
+            configurationRequest.addField(new NumberField(
+                            CONFIG_SERVER_PORT, "Port of Syslog server", 514,
+                            "Specifies the TCP or UDP port of the Syslog server to send messages to. Common defaults are UDP:514, TCP:10514, TCP/TLS 6514",
+                            ConfigurationField.Optional.NOT_OPTIONAL)
+            );
+
+            configurationRequest.addField(new DropdownField(
+                            CONFIG_TRANSPORT_PROTOCOL, "Syslog Transport Protocol", CONFIG_TRANSPORT_PROTOCOL_OPTIONS.get("UDP-RFC3164"), CONFIG_TRANSPORT_PROTOCOL_OPTIONS,
+                            "Specifies the transport protocol to use",
+                            ConfigurationField.Optional.NOT_OPTIONAL)
+            );
+
+            configurationRequest.addField(new TextField(
+                            CONFIG_LOGLEVEL_SEVERITY, "Syslog severity log level", "<stream>",
+                            "Specifies which severity log level to be used for messages. Log level can either be derived from a stream name ('<stream>'), a field names (use '<>' for built-in fields and plain field name for user-defined fields), or a fixed severity log level (0..7)",
+                            ConfigurationField.Optional.NOT_OPTIONAL)
+            );
 
             configurationRequest.addField(new TextField(
                             CONFIG_LOGLEVEL_FACILITY, "Syslog facility log level", "16",
-                            "Specifies which facility log level to be used for messages. Log level can either be derived from a stream name ('<stream>'), a field names (use '<>' for built-in fields and plain field name for user-defined fields) that resolves to a valid facility number, or a fixed facility log level (0..23)",
+                            "Specifies which facility log level to be used for messages. Log level can either be derived from a stream name ('<stream>'), a field names (use '<>' for built-in fields and plain field name for user-defined fields) that resolves to a valid facility number or name (i.e. 'local0'), or a fixed facility log level (0..23)",
                             ConfigurationField.Optional.NOT_OPTIONAL)
             );
 
@@ -532,6 +1353,12 @@ public class SyslogOutput implements MessageOutput {
                             ConfigurationField.Optional.OPTIONAL)
             );
 
+            configurationRequest.addField(new TextField(
+                            CONFIG_MESSAGE_TEMPLATE, "Message template", "",
+                            "Specifies the message text as template with field placeholders, i.e. '${source} ${level}: ${message}'. Use ${id}, ${message}, ${source}, ${timestamp} and ${stream} for built-in fields and ${name} for user-defined fields. If empty, the fields in CONFIG_FIELDS are sent separated by '|'.",
+                            ConfigurationField.Optional.OPTIONAL)
+            );
+
             configurationRequest.addField(new BooleanField(
                             CONFIG_INCLUDE_FIELD_NAMES, "Include field names in message", true,
                             "Set to true to include field names in message, or set to false to omit field names and only send field contents.")
@@ -553,9 +1380,15 @@ public class SyslogOutput implements MessageOutput {
                             ConfigurationField.Optional.OPTIONAL)
             );
 
+            configurationRequest.addField(new TextField(
+                            CONFIG_STRUCTURED_DATA_MAPPING, "Syslog structured data mapping", "",
+                            "[RFC5424] Only used if CONFIG_USE_STRUCTURED_DATA is specified. Maps fields to additional structured data elements, i.e. 'origin@32473=source,gl2_remote_ip; meta@32473=level,facility'. Fields that are not mapped are sent in the element named by CONFIG_STRUCTURED_DATA_TAG.",
+                            ConfigurationField.Optional.OPTIONAL)
+            );
+
             configurationRequest.addField(new TextField(
                             CONFIG_MESSAGE_ID, "Syslog message id", "<id>",
-                            "[RFC5424] Specifies the MSGID field in a syslog message. Message id can either be derived from a stream name ('<stream>'), a field names (use '<>' for built-in fields and plain field name for user-defined fields), or a fixed string.",
+                            "[RFC5424] Specifies the MSGID field in a syslog message. Message id can either be derived from a stream name ('<stream>'), a field name ('<id>', '<source>' or '<level>'), a template ('${source}-${level}'), or a fixed string.",
                             ConfigurationField.Optional.OPTIONAL)
             );
 
@@ -564,6 +1397,196 @@ public class SyslogOutput implements MessageOutput {
                             "Set to true to use the source from the message field instead of the graylog node name.")
             );
 
+            configurationRequest.addField(new BooleanField(
+                            CONFIG_ASYNC_ENABLED, "Send messages asynchronously", false,
+                            "Set to true to queue messages and send them from dedicated sender threads instead of the Graylog output buffer thread.")
+            );
+
+            configurationRequest.addField(new NumberField(
+                            CONFIG_ASYNC_QUEUE_CAPACITY, "Send queue capacity", ASYNC_QUEUE_CAPACITY_DEFAULT,
+                            "Only used if CONFIG_ASYNC_ENABLED is specified. Maximum number of messages waiting to be sent.",
+                            ConfigurationField.Optional.OPTIONAL)
+            );
+
+            configurationRequest.addField(new NumberField(
+                            CONFIG_ASYNC_SENDER_THREADS, "Number of sender threads", 1,
+                            "Only used if CONFIG_ASYNC_ENABLED is specified. Number of threads sending queued messages to the Syslog server.",
+                            ConfigurationField.Optional.OPTIONAL)
+            );
+
+            configurationRequest.addField(new DropdownField(
+                            CONFIG_ASYNC_OVERFLOW_POLICY, "Send queue overflow policy", CONFIG_ASYNC_OVERFLOW_POLICY_OPTIONS.get("BLOCK"), CONFIG_ASYNC_OVERFLOW_POLICY_OPTIONS,
+                            "Only used if CONFIG_ASYNC_ENABLED is specified. Specifies whether to wait (BLOCK), to drop the new message (DROP_NEWEST) or to drop the oldest queued message (DROP_OLDEST) when the send queue is full.",
+                            ConfigurationField.Optional.OPTIONAL)
+            );
+
+            configurationRequest.addField(new NumberField(
+                            CONFIG_RELP_WINDOW, "RELP window", 128,
+                            "[RELP] Maximum number of messages sent to the Syslog server but not yet acknowledged.",
+                            ConfigurationField.Optional.OPTIONAL)
+            );
+
+            configurationRequest.addField(new NumberField(
+                            CONFIG_UDP_MAX_DATAGRAM_SIZE, "UDP datagram size", UDP_MAX_DATAGRAM_SIZE_DEFAULT,
+                            "[UDP] Maximum size of a datagram in bytes, 0 for no limit. Longer messages are shortened, the fields last in CONFIG_FIELDS first and the message last, so datagrams are not fragmented.",
+                            ConfigurationField.Optional.OPTIONAL)
+            );
+
+            configurationRequest.addField(new TextField(
+                            CONFIG_SPOOL_DIRECTORY, "Spool directory", "",
+                            "Directory to spool messages to while the Syslog server cannot be reached. Spooled messages are sent once the server is reachable again. If empty, messages are not spooled.",
+                            ConfigurationField.Optional.OPTIONAL)
+            );
+
+            configurationRequest.addField(new NumberField(
+                            CONFIG_SPOOL_MAX_SIZE, "Spool size (MB)", SPOOL_MAX_SIZE_DEFAULT,
+                            "Only used if CONFIG_SPOOL_DIRECTORY is specified. Maximum disk space the spool takes in MB.",
+                            ConfigurationField.Optional.OPTIONAL)
+            );
+
+            configurationRequest.addField(new DropdownField(
+                            CONFIG_SPOOL_EVICTION, "Spool eviction policy", CONFIG_SPOOL_EVICTION_OPTIONS.get("DROP_OLDEST"), CONFIG_SPOOL_EVICTION_OPTIONS,
+                            "Only used if CONFIG_SPOOL_DIRECTORY is specified. Specifies whether to drop the oldest spooled messages (DROP_OLDEST) or new messages (DROP_NEWEST) when the spool is full.",
+                            ConfigurationField.Optional.OPTIONAL)
+            );
+
+            configurationRequest.addField(new NumberField(
+                            CONFIG_SPOOL_REPLAY_RATE, "Spool replay rate", SPOOL_REPLAY_RATE_DEFAULT,
+                            "Only used if CONFIG_SPOOL_DIRECTORY is specified. Maximum number of spooled messages sent per second once the Syslog server is reachable again.",
+                            ConfigurationField.Optional.OPTIONAL)
+            );
+
+            configurationRequest.addField(new TextField(
+                            CONFIG_TLS_TRUSTSTORE, "TLS truststore", "",
+                            "[TCPTLS] Path to a JKS or PKCS12 (.p12) file with the certificates to trust. If empty, the certificates trusted by the JRE are used.",
+                            ConfigurationField.Optional.OPTIONAL)
+            );
+
+            configurationRequest.addField(new TextField(
+                            CONFIG_TLS_TRUSTSTORE_PASSWORD, "TLS truststore password", "",
+                            "[TCPTLS] Password of the truststore.",
+                            ConfigurationField.Optional.OPTIONAL, TextField.Attribute.IS_PASSWORD)
+            );
+
+            configurationRequest.addField(new TextField(
+                            CONFIG_TLS_KEYSTORE, "TLS keystore", "",
+                            "[TCPTLS] Path to a JKS or PKCS12 (.p12) file with the client certificate. Only needed if the Syslog server requires client authentication.",
+                            ConfigurationField.Optional.OPTIONAL)
+            );
+
+            configurationRequest.addField(new TextField(
+                            CONFIG_TLS_KEYSTORE_PASSWORD, "TLS keystore password", "",
+                            "[TCPTLS] Password of the keystore and its key.",
+                            ConfigurationField.Optional.OPTIONAL, TextField.Attribute.IS_PASSWORD)
+            );
+
+            configurationRequest.addField(new DropdownField(
+                            CONFIG_TLS_PROTOCOLS, "TLS protocols", CONFIG_TLS_PROTOCOLS_OPTIONS.get("DEFAULT"), CONFIG_TLS_PROTOCOLS_OPTIONS,
+                            "[TCPTLS] Specifies the TLS versions to use. DEFAULT uses the versions enabled in the JRE.",
+                            ConfigurationField.Optional.OPTIONAL)
+            );
+
+            configurationRequest.addField(new TextField(
+                            CONFIG_TLS_CIPHER_SUITES, "TLS cipher suites", "",
+                            "[TCPTLS] Comma separated list of cipher suites to use, i.e. 'TLS_ECDHE_RSA_WITH_AES_128_GCM_SHA256'. If empty, the cipher suites enabled in the JRE are used.",
+                            ConfigurationField.Optional.OPTIONAL)
+            );
+
+            configurationRequest.addField(new BooleanField(
+                            CONFIG_TLS_SKIP_HOSTNAME_VERIFICATION, "Skip TLS hostname verification", false,
+                            "[TCPTLS] Set to true to accept a trusted certificate even if it was not issued for the Syslog server's host name. Only use this if the certificates of your servers cannot be fixed.")
+            );
+
+            configurationRequest.addField(new DropdownField(
+                            CONFIG_BALANCING_POLICY, "Balancing policy", CONFIG_BALANCING_POLICY_OPTIONS.get("FAILOVER"), CONFIG_BALANCING_POLICY_OPTIONS,
+                            "Only used if several servers are specified in CONFIG_SERVER_NAME. Specifies whether to send to the first healthy server (FAILOVER), to the healthy servers in turn (ROUND_ROBIN) or to the healthy server with the fewest pending sends (LEAST_OUTSTANDING). Servers that fail are skipped until they are reachable again.",
+                            ConfigurationField.Optional.OPTIONAL)
+            );
+
+            configurationRequest.addField(new NumberField(
+                            CONFIG_CONNECTIONS, "Number of connections", 1,
+                            "Number of connections to the Syslog server messages are spread over.",
+                            ConfigurationField.Optional.OPTIONAL)
+            );
+
+            configurationRequest.addField(new DropdownField(
+                            CONFIG_CONNECTION_SHARDING, "Connection sharding", CONFIG_CONNECTION_SHARDING_OPTIONS.get("ROUND_ROBIN"), CONFIG_CONNECTION_SHARDING_OPTIONS,
+                            "Only used if CONFIG_CONNECTIONS is greater than 1. Specifies whether to use the connections in turn (ROUND_ROBIN) or to always send messages from the same source over the same connection to keep their order (SOURCE_HASH).",
+                            ConfigurationField.Optional.OPTIONAL)
+            );
+
+            configurationRequest.addField(new DropdownField(
+                            CONFIG_TCP_FRAMING, "TCP framing", CONFIG_TCP_FRAMING_OPTIONS.get("NON_TRANSPARENT"), CONFIG_TCP_FRAMING_OPTIONS,
+                            "[RFC6587] Only used with TCP and TCPTLS. Specifies whether messages are followed by CONFIG_TCP_FRAMING_TRAILER (NON_TRANSPARENT) or preceded by their length (OCTET_COUNTING). Use OCTET_COUNTING to send multi-line messages such as stack traces.",
+                            ConfigurationField.Optional.OPTIONAL)
+            );
+
+            configurationRequest.addField(new DropdownField(
+                            CONFIG_TCP_FRAMING_TRAILER, "TCP framing trailer", CONFIG_TCP_FRAMING_TRAILER_OPTIONS.get("LF"), CONFIG_TCP_FRAMING_TRAILER_OPTIONS,
+                            "[RFC6587] Only used if CONFIG_TCP_FRAMING is NON_TRANSPARENT. Specifies the character sequence following every message.",
+                            ConfigurationField.Optional.OPTIONAL)
+            );
+
+            configurationRequest.addField(new NumberField(
+                            CONFIG_RATE_LIMIT_MESSAGES, "Rate limit (messages/s)", 0,
+                            "Maximum number of messages per second sent to the Syslog server. Messages above the limit are dropped. If 0, the number of messages is not limited.",
+                            ConfigurationField.Optional.OPTIONAL)
+            );
+
+            configurationRequest.addField(new NumberField(
+                            CONFIG_RATE_LIMIT_BYTES, "Rate limit (bytes/s)", 0,
+                            "Maximum number of bytes per second sent to the Syslog server, counted as characters of the message, structured data, hostname and message id. Messages above the limit are dropped. If 0, the number of bytes is not limited.",
+                            ConfigurationField.Optional.OPTIONAL)
+            );
+
+            configurationRequest.addField(new NumberField(
+                            CONFIG_RATE_LIMIT_BURST, "Rate limit burst (s)", RATE_LIMIT_BURST_DEFAULT,
+                            "Only used if CONFIG_RATE_LIMIT_MESSAGES or CONFIG_RATE_LIMIT_BYTES is specified. Number of seconds of unused rate that may be sent at once after a quiet period.",
+                            ConfigurationField.Optional.OPTIONAL)
+            );
+
+            configurationRequest.addField(new NumberField(
+                            CONFIG_RATE_LIMIT_EXEMPT_SEVERITY, "Rate limit exempt severity", -1,
+                            "Only used if CONFIG_RATE_LIMIT_MESSAGES or CONFIG_RATE_LIMIT_BYTES is specified. Messages with this severity or a more severe one (0..7, i.e. 3 exempts error, critical, alert and emergency) are never dropped. If -1, all messages are limited.",
+                            ConfigurationField.Optional.OPTIONAL)
+            );
+
+            configurationRequest.addField(new NumberField(
+                            CONFIG_RATE_LIMIT_NOTICE_INTERVAL, "Rate limit notice interval (s)", RATE_LIMIT_NOTICE_INTERVAL_DEFAULT,
+                            "Only used if CONFIG_RATE_LIMIT_MESSAGES or CONFIG_RATE_LIMIT_BYTES is specified. Interval in which a notice with MSGID 'RATELIMIT' and the number of dropped messages is sent to the Syslog server.",
+                            ConfigurationField.Optional.OPTIONAL)
+            );
+
+            configurationRequest.addField(new TextField(
+                            CONFIG_ROUTE_DESTINATIONS, "Route destinations", "",
+                            "Additional Syslog servers messages can be routed to by CONFIG_ROUTES, i.e. 'siem=TCPTLS-RFC5424://siem.example.com:6514; archive=UDP-RFC3164://archive1:514,archive2:514'. They use the TLS, framing, connection and spool settings of this output. The server in CONFIG_SERVER_NAME is named 'default'.",
+                            ConfigurationField.Optional.OPTIONAL)
+            );
+
+            configurationRequest.addField(new TextField(
+                            CONFIG_ROUTES, "Routes", "",
+                            "Ordered rules of the form 'condition => destination,destination' separated by ';', i.e. '<severity>=..error => siem,default; <source>^=web- & component~=^pay => siem; * => archive'. A condition is '*' or predicates on <severity>, <source> or a field joined by '&': 'field=value', 'field^=prefix', 'field~=regex' or 'field=low..high'. The first matching rule decides; messages no rule matches go to 'default'. If empty, all messages go to CONFIG_SERVER_NAME.",
+                            ConfigurationField.Optional.OPTIONAL)
+            );
+
+            configurationRequest.addField(new TextField(
+                            CONFIG_SAMPLING_RULES, "Sampling rules", "",
+                            "Sends only a fraction of the messages of some severities, i.e. 'debug:0.01; info/component=payments:1; info:0.1@trace_id'. Rules have the form 'severities[/field=value]:rate[@hashField]'; the first rule matching the severity (or '*') and field condition keeps a message with probability rate. With @hashField the decision depends on that field only, so messages with the same value are kept together. Messages without a matching rule are sent. If empty, all messages are sent.",
+                            ConfigurationField.Optional.OPTIONAL)
+            );
+
+            configurationRequest.addField(new NumberField(
+                            CONFIG_REPEAT_WINDOW, "Repeated message window (s)", 0,
+                            "Messages with the same text, severity and source as a message sent less than this many seconds earlier are not sent; once the window ends a single 'last message repeated N times' message is sent instead. If 0, all messages are sent.",
+                            ConfigurationField.Optional.OPTIONAL)
+            );
+
+            configurationRequest.addField(new NumberField(
+                            CONFIG_REPEAT_MAX_ENTRIES, "Repeated message entries", REPEAT_MAX_ENTRIES_DEFAULT,
+                            "Only used if CONFIG_REPEAT_WINDOW is specified. Maximum number of distinct messages remembered; the least recently seen message is forgotten first.",
+                            ConfigurationField.Optional.OPTIONAL)
+            );
+
             return configurationRequest;
         }
     }
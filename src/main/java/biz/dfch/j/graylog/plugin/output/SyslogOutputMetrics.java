@@ -0,0 +1,139 @@
+package biz.dfch.j.graylog.plugin.output;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.Metric;
+import com.codahale.metrics.MetricFilter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import org.msgpack.annotation.NotNullable;
+
+/**
+ * Metrics of one SyslogOutput, registered with the MetricRegistry of Graylog.
+ * Metric names start with the name of the output, which is unique even if
+ * several outputs send the same stream, i.e.
+ * 'biz.dfch.j.graylog.plugin.output.SyslogOutput.[stream id]-[hash].messagesIn';
+ * per destination metrics add the destination, see {@link SyslogDestinationMetrics}.
+ */
+public class SyslogOutputMetrics
+{
+    private final MetricRegistry metricRegistry;
+    private final String prefix;
+    private final Meter messagesIn;
+    private final Meter messagesDropped;
+    private final Meter messagesRateLimited;
+    private final Meter messagesRepeated;
+    private final Meter messagesSampledOut;
+    private final Timer render;
+
+    /**
+     * @param outputName name of the output, no other output may use it while the metrics are registered
+     */
+    public SyslogOutputMetrics(@NotNullable MetricRegistry metricRegistry, @NotNullable String outputName)
+    {
+        this.metricRegistry = metricRegistry;
+        this.prefix = MetricRegistry.name(SyslogOutput.class, outputName);
+        this.messagesIn = metricRegistry.meter(MetricRegistry.name(prefix, "messagesIn"));
+        this.messagesDropped = metricRegistry.meter(MetricRegistry.name(prefix, "messagesDropped"));
+        this.messagesRateLimited = metricRegistry.meter(MetricRegistry.name(prefix, "messagesRateLimited"));
+        this.messagesRepeated = metricRegistry.meter(MetricRegistry.name(prefix, "messagesRepeated"));
+        this.messagesSampledOut = metricRegistry.meter(MetricRegistry.name(prefix, "messagesSampledOut"));
+        this.render = metricRegistry.timer(MetricRegistry.name(prefix, "render"));
+    }
+
+    public Meter getMessagesIn()
+    {
+        return messagesIn;
+    }
+
+    public Meter getMessagesDropped()
+    {
+        return messagesDropped;
+    }
+
+    /**
+     * Messages dropped by the {@link SyslogRateLimiter}.
+     */
+    public Meter getMessagesRateLimited()
+    {
+        return messagesRateLimited;
+    }
+
+    /**
+     * Messages not sent because they repeat a recent message, see {@link SyslogRepeatFilter}.
+     */
+    public Meter getMessagesRepeated()
+    {
+        return messagesRepeated;
+    }
+
+    /**
+     * Messages dropped by CONFIG_SAMPLING_RULES before they were rendered, see {@link SyslogSampler}.
+     */
+    public Meter getMessagesSampledOut()
+    {
+        return messagesSampledOut;
+    }
+
+    /**
+     * Time to turn a Graylog message into a SyslogEvent.
+     */
+    public Timer getRender()
+    {
+        return render;
+    }
+
+    public void registerQueueDepth(@NotNullable final SyslogSendQueue<?> sendQueue)
+    {
+        String name = MetricRegistry.name(prefix, "queueDepth");
+        metricRegistry.remove(name);
+        metricRegistry.register(name, new Gauge<Integer>()
+        {
+            @Override
+            public Integer getValue()
+            {
+                return sendQueue.size();
+            }
+        });
+    }
+
+    public SyslogDestinationMetrics forDestination(@NotNullable String destination)
+    {
+        return new SyslogDestinationMetrics(metricRegistry, MetricRegistry.name(prefix, destination));
+    }
+
+    /**
+     * Removes all metrics of this output from the registry.
+     */
+    public void remove()
+    {
+        metricRegistry.removeMatching(new MetricFilter()
+        {
+            @Override
+            public boolean matches(String name, Metric metric)
+            {
+                return name.startsWith(prefix + ".");
+            }
+        });
+    }
+}
+
+/*
+    d-fens Graylog SYSLOG Output Plugin
+    Copyright (C) 2015  Ronald Rink, d-fens GmbH
+
+    This library is free software; you can redistribute it and/or
+    modify it under the terms of the GNU Lesser General Public
+    License as published by the Free Software Foundation; either
+    version 2.1 of the License, or (at your option) any later version.
+
+    This library is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+    Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public
+    License along with this library; if not, write to the Free Software
+    Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+
+ */
@@ -1,5 +1,7 @@
 package biz.dfch.j.graylog.plugin.output;
 
+import biz.dfch.j.syslog4j.SyslogTransportRegistry;
+import com.google.inject.Scopes;
 //import com.google.inject.multibindings.MapBinder;
 import org.graylog2.plugin.PluginConfigBean;
 import org.graylog2.plugin.PluginModule;
@@ -48,6 +50,8 @@ public class SyslogOutputModule extends PluginModule
         // use addMessageOutput instead of MapBinder/installOuput
         // see https://github.com/Graylog2/graylog2-plugin-archetype/issues/2#issuecomment-75053951
         addMessageOutput(SyslogOutput.class, SyslogOutput.Factory.class);
+        // one registry for all outputs, so outputs sending to the same server share the connection
+        bind(SyslogTransportRegistry.class).in(Scopes.SINGLETON);
 //        final MapBinder<String, MessageOutput.Factory<? extends MessageOutput>> outputMapBinder = outputsMapBinder();
 //        installOutput(outputMapBinder, SyslogOutput.class, SyslogOutput.Factory.class);
     }
@@ -0,0 +1,190 @@
+package biz.dfch.j.graylog.plugin.output;
+
+import org.msgpack.annotation.NotNullable;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Limits the messages and bytes per second one SyslogOutput sends. Both
+ * limits are token buckets that hold up to burstSeconds worth of tokens, so
+ * a quiet stream may send a burst before it is held to the rate. Messages
+ * with a severity at or above exemptSeverity (numerically lower or equal) are
+ * never limited. Rejected messages are counted until the next call to
+ * {@link #drainSuppressedCount()}.
+ *
+ * All methods are lock-free, as write() is called from several threads.
+ */
+public final class SyslogRateLimiter
+{
+    private final TokenBucket messages;
+    private final TokenBucket bytes;
+    private final int exemptSeverity;
+    private final AtomicLong suppressedCount = new AtomicLong();
+
+    /**
+     * @param messagesPerSecond 0 to not limit messages
+     * @param bytesPerSecond 0 to not limit bytes
+     * @param exemptSeverity -1 to limit all severities
+     */
+    public SyslogRateLimiter(long messagesPerSecond, long bytesPerSecond, int burstSeconds, int exemptSeverity)
+    {
+        this(messagesPerSecond, bytesPerSecond, burstSeconds, exemptSeverity, System.nanoTime());
+    }
+
+    SyslogRateLimiter(long messagesPerSecond, long bytesPerSecond, int burstSeconds, int exemptSeverity, long now)
+    {
+        if (0 > messagesPerSecond || 0 > bytesPerSecond)
+        {
+            throw new IllegalArgumentException(String.format("messagesPerSecond/bytesPerSecond: Parameter validation FAILED. Value must not be negative (was '%d'/'%d').", messagesPerSecond, bytesPerSecond));
+        }
+        if (0 >= burstSeconds)
+        {
+            throw new IllegalArgumentException(String.format("burstSeconds: Parameter validation FAILED. Value must be greater than 0 (was '%d').", burstSeconds));
+        }
+        this.messages = 0 < messagesPerSecond ? new TokenBucket(messagesPerSecond, burstSeconds, now) : null;
+        this.bytes = 0 < bytesPerSecond ? new TokenBucket(bytesPerSecond, burstSeconds, now) : null;
+        this.exemptSeverity = exemptSeverity;
+    }
+
+    /**
+     * @return true if the event may be sent, false if it is to be dropped
+     */
+    public boolean tryAcquire(@NotNullable SyslogEvent event)
+    {
+        return tryAcquire(event.getHeader().getSeverity(), sizeOf(event), System.nanoTime());
+    }
+
+    boolean tryAcquire(int severity, int size, long now)
+    {
+        if (severity <= exemptSeverity)
+        {
+            return true;
+        }
+        if (null != messages && !messages.tryAcquire(1, now))
+        {
+            suppressedCount.incrementAndGet();
+            return false;
+        }
+        if (null != bytes && !bytes.tryAcquire(size, now))
+        {
+            if (null != messages)
+            {
+                messages.release(1);
+            }
+            suppressedCount.incrementAndGet();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * @return the number of messages dropped since the last call
+     */
+    public long drainSuppressedCount()
+    {
+        return suppressedCount.getAndSet(0);
+    }
+
+    /**
+     * Approximates the encoded size with the number of characters of the
+     * header fields, structured data and message.
+     */
+    static int sizeOf(@NotNullable SyslogEvent event)
+    {
+        int size = event.getMessage().length();
+        if (null != event.getHeader().getLocalName())
+        {
+            size += event.getHeader().getLocalName().length();
+        }
+        if (null != event.getHeader().getMessageId())
+        {
+            size += event.getHeader().getMessageId().length();
+        }
+        if (null != event.getStructuredData())
+        {
+            for (Map.Entry<String, Map<String, String>> element : event.getStructuredData().entrySet())
+            {
+                size += element.getKey().length() + 2;
+                for (Map.Entry<String, String> param : element.getValue().entrySet())
+                {
+                    size += param.getKey().length() + param.getValue().length() + 4;
+                }
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Token bucket stored as the single time at which it is full again, so
+     * taking tokens is one compare-and-set. A bucket that is full admits one
+     * request even if it costs more than the bucket holds, so oversized
+     * messages are delayed rather than dropped forever.
+     */
+    static final class TokenBucket
+    {
+        private final long ratePerSecond;
+        private final long capacityNanos;
+        private final AtomicLong fullAt;
+
+        TokenBucket(long ratePerSecond, int burstSeconds, long now)
+        {
+            this.ratePerSecond = ratePerSecond;
+            this.capacityNanos = TimeUnit.SECONDS.toNanos(burstSeconds);
+            this.fullAt = new AtomicLong(now);
+        }
+
+        boolean tryAcquire(long tokens, long now)
+        {
+            long cost = toNanos(tokens);
+            while (true)
+            {
+                long current = fullAt.get();
+                boolean isFull = 0 >= current - now;
+                long next = (isFull ? now : current) + cost;
+                if (!isFull && next - now > capacityNanos)
+                {
+                    return false;
+                }
+                if (fullAt.compareAndSet(current, next))
+                {
+                    return true;
+                }
+            }
+        }
+
+        /**
+         * Returns tokens taken by a request that was rejected by another limit.
+         */
+        void release(long tokens)
+        {
+            fullAt.addAndGet(-toNanos(tokens));
+        }
+
+        private long toNanos(long tokens)
+        {
+            return tokens * TimeUnit.SECONDS.toNanos(1) / ratePerSecond;
+        }
+    }
+}
+
+/*
+    d-fens Graylog SYSLOG Output Plugin
+    Copyright (C) 2015  Ronald Rink, d-fens GmbH
+
+    This library is free software; you can redistribute it and/or
+    modify it under the terms of the GNU Lesser General Public
+    License as published by the Free Software Foundation; either
+    version 2.1 of the License, or (at your option) any later version.
+
+    This library is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+    Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public
+    License along with this library; if not, write to the Free Software
+    Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+
+ */
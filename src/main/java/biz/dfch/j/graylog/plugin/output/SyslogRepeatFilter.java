@@ -0,0 +1,206 @@
+package biz.dfch.j.graylog.plugin.output;
+
+import biz.dfch.j.syslog4j.SyslogHeader;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+import org.msgpack.annotation.NotNullable;
+
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Collapses repeated messages. Events with the same message, severity and
+ * source as an event sent less than windowMillis earlier are suppressed;
+ * when the window ends a single 'last message repeated N times' event with
+ * the header of the first event is sent instead.
+ *
+ * Events are identified by a 64 bit hash and kept in LRU maps of at most
+ * maxEntries together, so memory does not grow with the number of distinct
+ * messages. An entry that is evicted before its window ends is summarized at
+ * once. Large filters are split into stripes by hash, each with its own lock
+ * and its own share of maxEntries, so sending threads rarely wait for each
+ * other; the least recently seen entry of a stripe is evicted first.
+ */
+public final class SyslogRepeatFilter
+{
+    static final String SUMMARY_FORMAT = "last message repeated %d times";
+
+    private static final HashFunction HASH_FUNCTION = Hashing.murmur3_128();
+    private static final int STRIPES_MAX = 16;
+    private static final int STRIPE_ENTRIES_MIN = 256;
+
+    private final long windowMillis;
+    private final Stripe[] stripes;
+
+    public SyslogRepeatFilter(long windowMillis, int maxEntries)
+    {
+        if (0 >= windowMillis)
+        {
+            throw new IllegalArgumentException(String.format("windowMillis: Parameter validation FAILED. Value must be greater than 0 (was '%d').", windowMillis));
+        }
+        if (0 >= maxEntries)
+        {
+            throw new IllegalArgumentException(String.format("maxEntries: Parameter validation FAILED. Value must be greater than 0 (was '%d').", maxEntries));
+        }
+        this.windowMillis = windowMillis;
+        // a power of two, small filters keep a single exact LRU
+        int stripeCount = 1;
+        while (STRIPES_MAX > stripeCount && maxEntries / (2 * stripeCount) >= STRIPE_ENTRIES_MIN)
+        {
+            stripeCount *= 2;
+        }
+        this.stripes = new Stripe[stripeCount];
+        for (int i = 0; i < stripeCount; i++)
+        {
+            // the first stripes take the remainder, so the stripes hold maxEntries together
+            stripes[i] = new Stripe(maxEntries / stripeCount + (i < maxEntries % stripeCount ? 1 : 0));
+        }
+    }
+
+    /**
+     * @param summaries receives the summaries to send before the event
+     * @return true if the event is to be sent, false if it is a repeat
+     */
+    public boolean tryAccept(@NotNullable SyslogEvent event, long nowMillis, @NotNullable Collection<SyslogEvent> summaries)
+    {
+        long key = keyOf(event);
+        Stripe stripe = stripes[(int) key & (stripes.length - 1)];
+        synchronized (stripe)
+        {
+            LinkedHashMap<Long, Entry> entries = stripe.entries;
+            Entry entry = entries.get(key);
+            if (null != entry && nowMillis - entry.windowStart < windowMillis)
+            {
+                entry.repeatCount++;
+                return false;
+            }
+            if (null != entry && 0 < entry.repeatCount)
+            {
+                summaries.add(entry.summarize());
+            }
+            entries.put(key, new Entry(event, nowMillis));
+            if (entries.size() > stripe.maxEntries)
+            {
+                Iterator<Entry> eldest = entries.values().iterator();
+                Entry evicted = eldest.next();
+                eldest.remove();
+                if (0 < evicted.repeatCount)
+                {
+                    summaries.add(evicted.summarize());
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Removes the entries whose window ended and summarizes their repeats.
+     */
+    public void expire(long nowMillis, @NotNullable Collection<SyslogEvent> summaries)
+    {
+        for (Stripe stripe : stripes)
+        {
+            synchronized (stripe)
+            {
+                Iterator<Entry> iterator = stripe.entries.values().iterator();
+                while (iterator.hasNext())
+                {
+                    Entry entry = iterator.next();
+                    if (nowMillis - entry.windowStart < windowMillis)
+                    {
+                        continue;
+                    }
+                    iterator.remove();
+                    if (0 < entry.repeatCount)
+                    {
+                        summaries.add(entry.summarize());
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Removes all entries and summarizes their repeats, i.e. on stop.
+     */
+    public void flush(@NotNullable Collection<SyslogEvent> summaries)
+    {
+        expire(Long.MAX_VALUE, summaries);
+    }
+
+    public int size()
+    {
+        int size = 0;
+        for (Stripe stripe : stripes)
+        {
+            synchronized (stripe)
+            {
+                size += stripe.entries.size();
+            }
+        }
+        return size;
+    }
+
+    private static long keyOf(SyslogEvent event)
+    {
+        String source = null == event.getSource() ? "" : event.getSource();
+        return HASH_FUNCTION.newHasher()
+                .putInt(event.getHeader().getSeverity())
+                .putInt(source.length())
+                .putUnencodedChars(source)
+                .putUnencodedChars(event.getMessage())
+                .hash().asLong();
+    }
+
+    private static final class Stripe
+    {
+        private final LinkedHashMap<Long, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+        private final int maxEntries;
+
+        Stripe(int maxEntries)
+        {
+            this.maxEntries = maxEntries;
+        }
+    }
+
+    private static final class Entry
+    {
+        private final SyslogEvent first;
+        private final long windowStart;
+        private int repeatCount = 0;
+
+        Entry(SyslogEvent first, long windowStart)
+        {
+            this.first = first;
+            this.windowStart = windowStart;
+        }
+
+        SyslogEvent summarize()
+        {
+            // stamped when it is sent, as the repeats happened after the first message
+            return new SyslogEvent(first.getHeader().withTimestamp(SyslogHeader.TIMESTAMP_NOW), null, String.format(SUMMARY_FORMAT, repeatCount), first.getRoute(), first.getSource());
+        }
+    }
+}
+
+/*
+    d-fens Graylog SYSLOG Output Plugin
+    Copyright (C) 2015  Ronald Rink, d-fens GmbH
+
+    This library is free software; you can redistribute it and/or
+    modify it under the terms of the GNU Lesser General Public
+    License as published by the Free Software Foundation; either
+    version 2.1 of the License, or (at your option) any later version.
+
+    This library is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+    Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public
+    License along with this library; if not, write to the Free Software
+    Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+
+ */
@@ -0,0 +1,515 @@
+package biz.dfch.j.graylog.plugin.output;
+
+import biz.dfch.j.syslog4j.SyslogClient;
+import org.graylog2.plugin.Message;
+import org.graylog2.plugin.outputs.MessageOutputConfigurationException;
+import org.msgpack.annotation.NotNullable;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Compiled form of CONFIG_ROUTES. Rules are separated by ';' and have the
+ * form 'condition => destination[,destination]', i.e.
+ * '&lt;severity&gt;=..error => siem,archive; &lt;source&gt;^=web- &amp; component~=^pay => siem; * => archive'.
+ *
+ * A condition is '*' or predicates joined by '&amp;'. A predicate refers to
+ * '&lt;severity&gt;' (the resolved syslog severity), '&lt;source&gt;' or a
+ * message field and is one of 'field=value' (equals), 'field^=value'
+ * (prefix), 'field~=regex' (regex found in the value) or 'field=low..high'
+ * (inclusive numeric range, either bound may be left out; severities may
+ * be given by name).
+ *
+ * The first rule whose condition matches decides where a message goes;
+ * messages no rule matches go to the destination named 'default'. Rules are
+ * compiled into a tree of predicates once, and the destinations of every
+ * rule are grouped by format, so a message is encoded only once per format
+ * no matter how many destinations it is sent to.
+ */
+public final class SyslogRouter
+{
+    public static final String DEFAULT_DESTINATION = "default";
+
+    private static final String SEVERITY = "<severity>";
+    private static final String SOURCE = "<source>";
+
+    private final Predicate[] conditions;
+    private final Route[] routes;
+    private final Route defaultRoute;
+
+    /**
+     * @param destinations destinations by name, must contain {@link #DEFAULT_DESTINATION}
+     */
+    public SyslogRouter(@NotNullable String rules, @NotNullable Map<String, Destination> destinations) throws MessageOutputConfigurationException
+    {
+        Destination defaultDestination = destinations.get(DEFAULT_DESTINATION);
+        if (null == defaultDestination)
+        {
+            throw new MessageOutputConfigurationException(String.format("CONFIG_ROUTES: Parameter validation FAILED. Destination '%s' is missing.", DEFAULT_DESTINATION));
+        }
+        defaultRoute = new Route(new Destination[] {defaultDestination});
+        List<Predicate> compiledConditions = new ArrayList<>();
+        List<Route> compiledRoutes = new ArrayList<>();
+        for (String rule : rules.split("\\s*;\\s*"))
+        {
+            if (rule.trim().isEmpty())
+            {
+                continue;
+            }
+            int arrow = rule.indexOf("=>");
+            if (0 >= arrow)
+            {
+                throw new MessageOutputConfigurationException(String.format("CONFIG_ROUTES: Parameter validation FAILED. '%s' is not of the form 'condition => destination,destination'.", rule));
+            }
+            compiledConditions.add(compileCondition(rule.substring(0, arrow).trim()));
+            List<Destination> targets = new ArrayList<>();
+            for (String name : rule.substring(arrow + 2).trim().split("\\s*,\\s*"))
+            {
+                Destination destination = destinations.get(name);
+                if (null == destination)
+                {
+                    throw new MessageOutputConfigurationException(String.format("CONFIG_ROUTES: Parameter validation FAILED. Destination '%s' of '%s' is not defined in CONFIG_ROUTE_DESTINATIONS.", name, rule));
+                }
+                if (!targets.contains(destination))
+                {
+                    targets.add(destination);
+                }
+            }
+            compiledRoutes.add(new Route(targets.toArray(new Destination[targets.size()])));
+        }
+        conditions = compiledConditions.toArray(new Predicate[compiledConditions.size()]);
+        routes = compiledRoutes.toArray(new Route[compiledRoutes.size()]);
+    }
+
+    /**
+     * @param severity the resolved syslog severity of the message
+     */
+    public Route route(@NotNullable Message message, int severity)
+    {
+        for (int i = 0; i < conditions.length; i++)
+        {
+            if (conditions[i].test(message, severity))
+            {
+                return routes[i];
+            }
+        }
+        return defaultRoute;
+    }
+
+    public Route getDefaultRoute()
+    {
+        return defaultRoute;
+    }
+
+    private static Predicate compileCondition(String condition) throws MessageOutputConfigurationException
+    {
+        if ("*".equals(condition))
+        {
+            return new AnyPredicate();
+        }
+        String[] terms = condition.split("\\s*&\\s*");
+        if (1 == terms.length)
+        {
+            return compilePredicate(terms[0].trim());
+        }
+        Predicate[] predicates = new Predicate[terms.length];
+        for (int i = 0; i < terms.length; i++)
+        {
+            predicates[i] = compilePredicate(terms[i].trim());
+        }
+        return new AndPredicate(predicates);
+    }
+
+    private static Predicate compilePredicate(String predicate) throws MessageOutputConfigurationException
+    {
+        int equals = predicate.indexOf('=');
+        if (0 >= equals)
+        {
+            throw new MessageOutputConfigurationException(String.format("CONFIG_ROUTES: Parameter validation FAILED. '%s' is not of the form 'field=value', 'field^=prefix', 'field~=regex' or 'field=low..high'.", predicate));
+        }
+        char operator = predicate.charAt(equals - 1);
+        boolean isOperator = '^' == operator || '~' == operator;
+        String field = predicate.substring(0, isOperator ? equals - 1 : equals).trim();
+        String value = predicate.substring(equals + 1).trim();
+        if (field.isEmpty())
+        {
+            throw new MessageOutputConfigurationException(String.format("CONFIG_ROUTES: Parameter validation FAILED. Field of '%s' cannot be empty.", predicate));
+        }
+        if ('^' == operator)
+        {
+            return new PrefixPredicate(field, value);
+        }
+        if ('~' == operator)
+        {
+            try
+            {
+                return new RegexPredicate(field, Pattern.compile(value));
+            }
+            catch (PatternSyntaxException ex)
+            {
+                throw new MessageOutputConfigurationException(String.format("CONFIG_ROUTES: Parameter validation FAILED. '%s' is not a valid regular expression. %s", value, ex.getDescription()));
+            }
+        }
+        int dots = value.indexOf("..");
+        if (0 <= dots)
+        {
+            Double low = parseBound(field, value.substring(0, dots).trim());
+            Double high = parseBound(field, value.substring(dots + 2).trim());
+            if (null != low && null != high)
+            {
+                return new RangePredicate(field, low, high);
+            }
+        }
+        if (SEVERITY.equals(field))
+        {
+            int severity = SyslogLevelResolver.parseSeverity(value);
+            if (0 > severity)
+            {
+                throw new MessageOutputConfigurationException(String.format("CONFIG_ROUTES: Parameter validation FAILED. '%s' of '%s' is not a valid severity.", value, predicate));
+            }
+            return new RangePredicate(field, severity, severity);
+        }
+        return new EqualsPredicate(field, value);
+    }
+
+    /**
+     * @return the bound, NaN for an empty bound or null if it is not a number or severity
+     */
+    private static Double parseBound(String field, String bound)
+    {
+        if (bound.isEmpty())
+        {
+            return Double.NaN;
+        }
+        if (SEVERITY.equals(field))
+        {
+            int severity = SyslogLevelResolver.parseSeverity(bound);
+            return 0 > severity ? null : (double) severity;
+        }
+        try
+        {
+            return Double.parseDouble(bound);
+        }
+        catch (NumberFormatException ex)
+        {
+            return null;
+        }
+    }
+
+    /**
+     * A named destination and the syslog format messages are encoded in for it.
+     */
+    public static final class Destination
+    {
+        private final String name;
+        private final SyslogClient client;
+        private final boolean isRfc3164;
+
+        public Destination(@NotNullable String name, @NotNullable SyslogClient client, boolean isRfc3164)
+        {
+            this.name = name;
+            this.client = client;
+            this.isRfc3164 = isRfc3164;
+        }
+
+        public String getName()
+        {
+            return name;
+        }
+
+        public SyslogClient getClient()
+        {
+            return client;
+        }
+
+        public boolean isRfc3164()
+        {
+            return isRfc3164;
+        }
+
+        String getFormat()
+        {
+            return (isRfc3164 ? "RFC3164/" : "RFC5424/") + client.getFormat();
+        }
+
+        @Override
+        public String toString()
+        {
+            return name;
+        }
+    }
+
+    /**
+     * The destinations of a rule grouped by format. The first destination of
+     * every group encodes the messages, the others reuse the encoded bytes.
+     */
+    public static final class Route
+    {
+        private final Destination[][] groups;
+
+        Route(Destination[] destinations)
+        {
+            Map<String, List<Destination>> byFormat = new LinkedHashMap<>();
+            for (Destination destination : destinations)
+            {
+                String format = destination.getFormat();
+                List<Destination> group = byFormat.get(format);
+                if (null == group)
+                {
+                    group = new ArrayList<>();
+                    byFormat.put(format, group);
+                }
+                group.add(destination);
+            }
+            groups = new Destination[byFormat.size()][];
+            int i = 0;
+            for (List<Destination> group : byFormat.values())
+            {
+                groups[i++] = group.toArray(new Destination[group.size()]);
+            }
+        }
+
+        public Destination[][] getGroups()
+        {
+            return groups;
+        }
+    }
+
+    interface Predicate
+    {
+        boolean test(Message message, int severity);
+    }
+
+    static final class AnyPredicate implements Predicate
+    {
+        @Override
+        public boolean test(Message message, int severity)
+        {
+            return true;
+        }
+    }
+
+    static final class AndPredicate implements Predicate
+    {
+        private final Predicate[] predicates;
+
+        AndPredicate(Predicate[] predicates)
+        {
+            this.predicates = predicates;
+        }
+
+        @Override
+        public boolean test(Message message, int severity)
+        {
+            for (Predicate predicate : predicates)
+            {
+                if (!predicate.test(message, severity))
+                {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    abstract static class FieldPredicate implements Predicate
+    {
+        protected final String field;
+
+        FieldPredicate(String field)
+        {
+            this.field = field;
+        }
+
+        /**
+         * @return the value of the field, or null if the message does not have it
+         */
+        protected Object valueOf(Message message, int severity)
+        {
+            switch (field)
+            {
+                case SEVERITY:
+                    return severity;
+                case SOURCE:
+                    return message.getSource();
+                default:
+                    return message.getField(field);
+            }
+        }
+
+        @Override
+        public boolean test(Message message, int severity)
+        {
+            Object value = valueOf(message, severity);
+            return null != value && test(value);
+        }
+
+        abstract boolean test(Object value);
+    }
+
+    static final class EqualsPredicate extends FieldPredicate
+    {
+        private final String value;
+
+        EqualsPredicate(String field, String value)
+        {
+            super(field);
+            this.value = value;
+        }
+
+        @Override
+        boolean test(Object value)
+        {
+            return this.value.equals(value.toString());
+        }
+    }
+
+    static final class PrefixPredicate extends FieldPredicate
+    {
+        private final String prefix;
+
+        PrefixPredicate(String field, String prefix)
+        {
+            super(field);
+            this.prefix = prefix;
+        }
+
+        @Override
+        boolean test(Object value)
+        {
+            return value.toString().startsWith(prefix);
+        }
+    }
+
+    static final class RegexPredicate extends FieldPredicate
+    {
+        private final Pattern pattern;
+
+        RegexPredicate(String field, Pattern pattern)
+        {
+            super(field);
+            this.pattern = pattern;
+        }
+
+        @Override
+        boolean test(Object value)
+        {
+            return pattern.matcher(value.toString()).find();
+        }
+    }
+
+    static final class RangePredicate extends FieldPredicate
+    {
+        private final double low;
+        private final double high;
+
+        /**
+         * @param low NaN for no lower bound
+         * @param high NaN for no upper bound
+         */
+        RangePredicate(String field, double low, double high)
+        {
+            super(field);
+            this.low = Double.isNaN(low) ? Double.NEGATIVE_INFINITY : low;
+            this.high = Double.isNaN(high) ? Double.POSITIVE_INFINITY : high;
+        }
+
+        @Override
+        boolean test(Object value)
+        {
+            double number;
+            if (value instanceof Number)
+            {
+                number = ((Number) value).doubleValue();
+            }
+            else
+            {
+                String text = value.toString();
+                if (!isDecimal(text))
+                {
+                    return false;
+                }
+                number = Double.parseDouble(text);
+            }
+            return low <= number && high >= number;
+        }
+
+        /**
+         * Checks for '[+-]digits[.digits][(e|E)[+-]digits]' so that most
+         * values that are not numbers are rejected without parsing and none
+         * throws.
+         */
+        static boolean isDecimal(String text)
+        {
+            int length = text.length();
+            int i = 0;
+            if (i < length && ('+' == text.charAt(i) || '-' == text.charAt(i)))
+            {
+                i++;
+            }
+            int digits = 0;
+            for (; i < length && isDigit(text.charAt(i)); i++)
+            {
+                digits++;
+            }
+            if (i < length && '.' == text.charAt(i))
+            {
+                for (i++; i < length && isDigit(text.charAt(i)); i++)
+                {
+                    digits++;
+                }
+            }
+            if (0 == digits)
+            {
+                return false;
+            }
+            if (i < length && ('e' == text.charAt(i) || 'E' == text.charAt(i)))
+            {
+                i++;
+                if (i < length && ('+' == text.charAt(i) || '-' == text.charAt(i)))
+                {
+                    i++;
+                }
+                int exponentDigits = 0;
+                for (; i < length && isDigit(text.charAt(i)); i++)
+                {
+                    exponentDigits++;
+                }
+                if (0 == exponentDigits)
+                {
+                    return false;
+                }
+            }
+            return i == length;
+        }
+
+        private static boolean isDigit(char c)
+        {
+            return '0' <= c && '9' >= c;
+        }
+    }
+}
+
+/*
+    d-fens Graylog SYSLOG Output Plugin
+    Copyright (C) 2015  Ronald Rink, d-fens GmbH
+
+    This library is free software; you can redistribute it and/or
+    modify it under the terms of the GNU Lesser General Public
+    License as published by the Free Software Foundation; either
+    version 2.1 of the License, or (at your option) any later version.
+
+    This library is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+    Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public
+    License along with this library; if not, write to the Free Software
+    Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+
+ */
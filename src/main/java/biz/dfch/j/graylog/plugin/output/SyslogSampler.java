@@ -0,0 +1,210 @@
+package biz.dfch.j.graylog.plugin.output;
+
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+import org.graylog2.plugin.Message;
+import org.graylog2.plugin.outputs.MessageOutputConfigurationException;
+import org.msgpack.annotation.NotNullable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Compiled form of CONFIG_SAMPLING_RULES. Rules are separated by ';' and
+ * have the form 'severities[/field=value]:rate[@hashField]', i.e.
+ * 'debug:0.01; info/component=payments:1; info:0.1@trace_id'.
+ *
+ * Severities are names or numbers separated by ',' or '*' for all. The first
+ * rule that matches the severity and field condition of a message decides:
+ * the message is kept with the probability rate (0..1). Without hashField
+ * this is a random decision per message; with hashField it depends on the
+ * hash of that field only, so all messages with the same value, such as the
+ * events of one trace, are kept or dropped together. Messages without the
+ * hash field are sampled randomly. Messages no rule matches are kept.
+ *
+ * Rules are grouped by severity when compiled, so sampling a message only
+ * reads the fields its rules refer to.
+ */
+public final class SyslogSampler
+{
+    private static final long SCALE = 1L << 32;
+    private static final HashFunction HASH_FUNCTION = Hashing.murmur3_32();
+    private static final Rule[] NO_RULES = new Rule[0];
+
+    private final Rule[][] rulesBySeverity = new Rule[8][];
+
+    public SyslogSampler(@NotNullable String rules) throws MessageOutputConfigurationException
+    {
+        List<List<Rule>> rulesByLevel = new ArrayList<>();
+        for (int severity = 0; severity < rulesBySeverity.length; severity++)
+        {
+            rulesByLevel.add(new ArrayList<Rule>());
+        }
+        for (String rule : rules.split("\\s*;\\s*"))
+        {
+            if (rule.trim().isEmpty())
+            {
+                continue;
+            }
+            compile(rule.trim(), rulesByLevel);
+        }
+        for (int severity = 0; severity < rulesBySeverity.length; severity++)
+        {
+            rulesBySeverity[severity] = rulesByLevel.get(severity).toArray(NO_RULES);
+        }
+    }
+
+    /**
+     * @return true if the message is to be sent
+     */
+    public boolean isSampled(int severity, @NotNullable Message message)
+    {
+        if (0 > severity || rulesBySeverity.length <= severity)
+        {
+            return true;
+        }
+        for (Rule rule : rulesBySeverity[severity])
+        {
+            if (rule.matches(message))
+            {
+                return rule.isSampled(message);
+            }
+        }
+        return true;
+    }
+
+    private static void compile(String rule, List<List<Rule>> rulesByLevel) throws MessageOutputConfigurationException
+    {
+        int colon = rule.lastIndexOf(':');
+        if (0 >= colon)
+        {
+            throw new MessageOutputConfigurationException(String.format("CONFIG_SAMPLING_RULES: Parameter validation FAILED. '%s' is not of the form 'severities[/field=value]:rate[@hashField]'.", rule));
+        }
+        String condition = rule.substring(0, colon).trim();
+        String sampling = rule.substring(colon + 1).trim();
+
+        String hashField = null;
+        int at = sampling.indexOf('@');
+        if (0 <= at)
+        {
+            hashField = sampling.substring(at + 1).trim();
+            sampling = sampling.substring(0, at).trim();
+            if (hashField.isEmpty())
+            {
+                throw new MessageOutputConfigurationException(String.format("CONFIG_SAMPLING_RULES: Parameter validation FAILED. Hash field of '%s' cannot be empty.", rule));
+            }
+        }
+        double rate;
+        try
+        {
+            rate = Double.parseDouble(sampling);
+        }
+        catch (NumberFormatException ex)
+        {
+            rate = -1;
+        }
+        if (0 > rate || 1 < rate)
+        {
+            throw new MessageOutputConfigurationException(String.format("CONFIG_SAMPLING_RULES: Parameter validation FAILED. Rate '%s' of '%s' must be between (including) 0 and 1.", sampling, rule));
+        }
+
+        String fieldName = null;
+        String fieldValue = null;
+        int slash = condition.indexOf('/');
+        if (0 <= slash)
+        {
+            String field = condition.substring(slash + 1);
+            condition = condition.substring(0, slash).trim();
+            int equals = field.indexOf('=');
+            if (0 >= equals)
+            {
+                throw new MessageOutputConfigurationException(String.format("CONFIG_SAMPLING_RULES: Parameter validation FAILED. Field condition of '%s' is not of the form 'field=value'.", rule));
+            }
+            fieldName = field.substring(0, equals).trim();
+            fieldValue = field.substring(equals + 1).trim();
+        }
+
+        Rule compiled = new Rule(fieldName, fieldValue, (long) (rate * SCALE), hashField);
+        for (String severity : condition.split("\\s*,\\s*"))
+        {
+            if ("*".equals(severity))
+            {
+                for (List<Rule> rules : rulesByLevel)
+                {
+                    rules.add(compiled);
+                }
+                continue;
+            }
+            int level = SyslogLevelResolver.parseSeverity(severity);
+            if (0 > level)
+            {
+                throw new MessageOutputConfigurationException(String.format("CONFIG_SAMPLING_RULES: Parameter validation FAILED. '%s' of '%s' is not a valid severity.", severity, rule));
+            }
+            rulesByLevel.get(level).add(compiled);
+        }
+    }
+
+    static final class Rule
+    {
+        private final String fieldName;
+        private final String fieldValue;
+        private final long threshold;
+        private final String hashField;
+
+        Rule(String fieldName, String fieldValue, long threshold, String hashField)
+        {
+            this.fieldName = fieldName;
+            this.fieldValue = fieldValue;
+            this.threshold = threshold;
+            this.hashField = hashField;
+        }
+
+        boolean matches(Message message)
+        {
+            if (null == fieldName)
+            {
+                return true;
+            }
+            Object value = message.getField(fieldName);
+            return null != value && fieldValue.equals(value.toString());
+        }
+
+        boolean isSampled(Message message)
+        {
+            if (SCALE <= threshold)
+            {
+                return true;
+            }
+            if (0 >= threshold)
+            {
+                return false;
+            }
+            Object value = null == hashField ? null : message.getField(hashField);
+            int sample = null == value
+                    ? ThreadLocalRandom.current().nextInt()
+                    : HASH_FUNCTION.hashUnencodedChars(value.toString()).asInt();
+            return (sample & 0xffffffffL) < threshold;
+        }
+    }
+}
+
+/*
+    d-fens Graylog SYSLOG Output Plugin
+    Copyright (C) 2015  Ronald Rink, d-fens GmbH
+
+    This library is free software; you can redistribute it and/or
+    modify it under the terms of the GNU Lesser General Public
+    License as published by the Free Software Foundation; either
+    version 2.1 of the License, or (at your option) any later version.
+
+    This library is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+    Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public
+    License along with this library; if not, write to the Free Software
+    Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+
+ */
@@ -0,0 +1,223 @@
+package biz.dfch.j.graylog.plugin.output;
+
+import org.msgpack.annotation.NotNullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded queue between the Graylog output buffer and the Syslog server.
+ * Producers offer elements without touching the network, one or more sender
+ * threads drain the queue and hand whatever has accumulated as one batch to a
+ * {@link Sender}. When the
+ * queue is full the {@link OverflowPolicy} decides whether the producer waits
+ * or which element is dropped; every dropped element is counted.
+ */
+public class SyslogSendQueue<E>
+{
+    private static final Logger LOG = LoggerFactory.getLogger(SyslogSendQueue.class);
+    private static final long POLL_TIMEOUT_MILLIS = 500;
+    private static final long STOP_TIMEOUT_MILLIS = 5000;
+    private static final int MAX_BATCH_SIZE = 512;
+
+    public enum OverflowPolicy
+    {
+        BLOCK,
+        DROP_NEWEST,
+        DROP_OLDEST
+    }
+
+    public interface Sender<E>
+    {
+        void send(List<E> elements) throws Exception;
+    }
+
+    private final ArrayBlockingQueue<E> queue;
+    private final OverflowPolicy overflowPolicy;
+    private final Sender<E> sender;
+    private final Thread[] senderThreads;
+    private final AtomicLong droppedCount = new AtomicLong();
+    private final AtomicLong failedCount = new AtomicLong();
+    private volatile boolean isRunning = false;
+
+    public SyslogSendQueue(@NotNullable String name, int capacity, @NotNullable OverflowPolicy overflowPolicy, int senderThreadCount, @NotNullable Sender<E> sender)
+    {
+        if (0 >= capacity)
+        {
+            throw new IllegalArgumentException(String.format("capacity: Parameter validation FAILED. Value must be greater than 0 (was '%d').", capacity));
+        }
+        if (0 >= senderThreadCount)
+        {
+            throw new IllegalArgumentException(String.format("senderThreadCount: Parameter validation FAILED. Value must be greater than 0 (was '%d').", senderThreadCount));
+        }
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.overflowPolicy = overflowPolicy;
+        this.sender = sender;
+        this.senderThreads = new Thread[senderThreadCount];
+        for (int i = 0; i < senderThreadCount; i++)
+        {
+            Thread thread = new Thread(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    drain();
+                }
+            }, String.format("%s-sender-%d", name, i));
+            thread.setDaemon(true);
+            senderThreads[i] = thread;
+        }
+    }
+
+    public void start()
+    {
+        isRunning = true;
+        for (Thread thread : senderThreads)
+        {
+            thread.start();
+        }
+    }
+
+    /**
+     * Stops the sender threads after they have sent what is still queued.
+     */
+    public void stop()
+    {
+        isRunning = false;
+        long deadline = System.currentTimeMillis() + STOP_TIMEOUT_MILLIS;
+        for (Thread thread : senderThreads)
+        {
+            try
+            {
+                thread.join(Math.max(1, deadline - System.currentTimeMillis()));
+            }
+            catch (InterruptedException ex)
+            {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        int remaining = queue.size();
+        if (0 < remaining)
+        {
+            droppedCount.addAndGet(remaining);
+            queue.clear();
+            LOG.warn(String.format("Stopping send queue: %d queued messages could not be sent and were dropped.", remaining));
+        }
+    }
+
+    /**
+     * @return false if the element (or an older one, depending on the overflow policy) was dropped
+     */
+    public boolean offer(@NotNullable E element) throws InterruptedException
+    {
+        switch (overflowPolicy)
+        {
+            case BLOCK:
+                queue.put(element);
+                return true;
+            case DROP_OLDEST:
+                boolean dropped = false;
+                while (!queue.offer(element))
+                {
+                    if (null != queue.poll())
+                    {
+                        droppedCount.incrementAndGet();
+                        dropped = true;
+                    }
+                }
+                return !dropped;
+            case DROP_NEWEST:
+            default:
+                if (queue.offer(element))
+                {
+                    return true;
+                }
+                droppedCount.incrementAndGet();
+                return false;
+        }
+    }
+
+    public int size()
+    {
+        return queue.size();
+    }
+
+    public long getDroppedCount()
+    {
+        return droppedCount.get();
+    }
+
+    public long getFailedCount()
+    {
+        return failedCount.get();
+    }
+
+    private void drain()
+    {
+        List<E> batch = new ArrayList<>(MAX_BATCH_SIZE);
+        try
+        {
+            while (isRunning)
+            {
+                E element = queue.poll(POLL_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+                if (null != element)
+                {
+                    batch.add(element);
+                    queue.drainTo(batch, MAX_BATCH_SIZE - 1);
+                    send(batch);
+                }
+            }
+            while (0 < queue.drainTo(batch, MAX_BATCH_SIZE))
+            {
+                send(batch);
+            }
+        }
+        catch (InterruptedException ex)
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void send(List<E> batch)
+    {
+        try
+        {
+            sender.send(batch);
+        }
+        catch (Exception ex)
+        {
+            failedCount.addAndGet(batch.size());
+            LOG.error(String.format("Sending %d queued messages FAILED.", batch.size()), ex);
+        }
+        finally
+        {
+            batch.clear();
+        }
+    }
+}
+
+/*
+    d-fens Graylog SYSLOG Output Plugin
+    Copyright (C) 2015  Ronald Rink, d-fens GmbH
+
+    This library is free software; you can redistribute it and/or
+    modify it under the terms of the GNU Lesser General Public
+    License as published by the Free Software Foundation; either
+    version 2.1 of the License, or (at your option) any later version.
+
+    This library is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+    Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public
+    License along with this library; if not, write to the Free Software
+    Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+
+ */
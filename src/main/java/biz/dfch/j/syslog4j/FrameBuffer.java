@@ -0,0 +1,105 @@
+package biz.dfch.j.syslog4j;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Frames copied from other buffers, i.e. the frames of a batch that go to
+ * the same connection or frames read back from a {@link SyslogSpool}.
+ */
+final class FrameBuffer implements SyslogFrames
+{
+    private byte[] bytes = new byte[4096];
+    private int length = 0;
+    private int[] frameEnds = new int[16];
+    private int[] frameKeys = new int[16];
+    private int frameCount = 0;
+
+    void add(byte[] source, int offset, int frameLength, int key)
+    {
+        ensureCapacity(frameLength);
+        System.arraycopy(source, offset, bytes, length, frameLength);
+        length += frameLength;
+        endFrame(key);
+    }
+
+    /**
+     * Copies the next frameLength bytes of the source.
+     */
+    void add(ByteBuffer source, int frameLength, int key)
+    {
+        ensureCapacity(frameLength);
+        source.get(bytes, length, frameLength);
+        length += frameLength;
+        endFrame(key);
+    }
+
+    private void ensureCapacity(int frameLength)
+    {
+        if (bytes.length < length + frameLength)
+        {
+            bytes = Arrays.copyOf(bytes, Math.max(2 * bytes.length, length + frameLength));
+        }
+    }
+
+    private void endFrame(int key)
+    {
+        if (frameCount == frameEnds.length)
+        {
+            frameEnds = Arrays.copyOf(frameEnds, 2 * frameCount);
+            frameKeys = Arrays.copyOf(frameKeys, 2 * frameCount);
+        }
+        frameKeys[frameCount] = key;
+        frameEnds[frameCount++] = length;
+    }
+
+    void clear()
+    {
+        length = 0;
+        frameCount = 0;
+    }
+
+    @Override
+    public int getFrameCount()
+    {
+        return frameCount;
+    }
+
+    @Override
+    public int getFrameEnd(int index)
+    {
+        return frameEnds[index];
+    }
+
+    @Override
+    public int getFrameKey(int index)
+    {
+        return frameKeys[index];
+    }
+
+    @Override
+    public ByteBuffer getFrames()
+    {
+        return ByteBuffer.wrap(bytes, 0, length).slice();
+    }
+}
+
+/*
+    d-fens Graylog SYSLOG Output Plugin
+    Copyright (C) 2015  Ronald Rink, d-fens GmbH
+
+    This library is free software; you can redistribute it and/or
+    modify it under the terms of the GNU Lesser General Public
+    License as published by the Free Software Foundation; either
+    version 2.1 of the License, or (at your option) any later version.
+
+    This library is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+    Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public
+    License along with this library; if not, write to the Free Software
+    Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+
+ */
@@ -0,0 +1,586 @@
+package biz.dfch.j.syslog4j;
+
+import org.msgpack.annotation.NotNullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Sends messages with RELP, the Reliable Event Logging Protocol of rsyslog.
+ * Every message is sent as 'syslog' command that the server acknowledges
+ * with a response of the same transaction number.
+ *
+ * Messages are pipelined: up to window messages are in flight without
+ * waiting for their acknowledgment, so a batch is written with one flush.
+ * Messages that are not acknowledged when the connection breaks are sent
+ * again, in order, on the next connection.
+ */
+public class RelpSyslogTransport implements SyslogTransport
+{
+    private static final Logger LOG = LoggerFactory.getLogger(RelpSyslogTransport.class);
+    private static final byte[] OFFERS = "relp_version=0\nrelp_software=graylog-output-syslog\ncommands=syslog".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] NO_DATA = new byte[0];
+    private static final int TXNR_MAX = 999999999;
+    private static final int CONNECT_TIMEOUT_MILLIS = 5000;
+    private static final int BUFFER_SIZE = 65536;
+    private static final long ACKNOWLEDGE_TIMEOUT_MILLIS = 30000;
+    private static final long CLOSE_TIMEOUT_MILLIS = 5000;
+
+    private final InetSocketAddress address;
+    private final int window;
+    private final long acknowledgeTimeoutMillis;
+    private final SyslogClientListener listener;
+    private final Map<Integer, Pending> pending = new LinkedHashMap<>();
+    private Connection connection;
+
+    public RelpSyslogTransport(@NotNullable String host, int port, int window, @NotNullable SyslogClientListener listener)
+    {
+        this(host, port, window, ACKNOWLEDGE_TIMEOUT_MILLIS, listener);
+    }
+
+    /**
+     * @param window maximum number of messages sent but not yet acknowledged
+     * @param acknowledgeTimeoutMillis time to wait for an acknowledgment when the window is full before reconnecting
+     */
+    public RelpSyslogTransport(@NotNullable String host, int port, int window, long acknowledgeTimeoutMillis, @NotNullable SyslogClientListener listener)
+    {
+        if (0 >= window)
+        {
+            throw new IllegalArgumentException(String.format("window: Parameter validation FAILED. Value must be greater than 0 (was '%d').", window));
+        }
+        this.address = new InetSocketAddress(host, port);
+        this.window = window;
+        this.acknowledgeTimeoutMillis = acknowledgeTimeoutMillis;
+        this.listener = listener;
+    }
+
+    @Override
+    public synchronized void send(SyslogFrames frames) throws IOException
+    {
+        ByteBuffer buffer = frames.getFrames();
+        // acknowledgments arrive on the reader thread, they go to the client that sent the message
+        SyslogClientListener sender = SyslogTransportRegistry.getSender(listener);
+        List<Pending> batch = new ArrayList<>(frames.getFrameCount());
+        try
+        {
+            for (int attempt = 0; ; attempt++)
+            {
+                Connection connection = getConnection();
+                try
+                {
+                    while (batch.size() < frames.getFrameCount())
+                    {
+                        int next = batch.size();
+                        int start = 0 == next ? 0 : frames.getFrameEnd(next - 1);
+                        byte[] frame = new byte[frames.getFrameEnd(next) - start];
+                        System.arraycopy(buffer.array(), buffer.arrayOffset() + start, frame, 0, frame.length);
+                        awaitWindow(connection);
+                        int txnr = connection.nextTxnr();
+                        Pending message = new Pending(frame, sender);
+                        synchronized (pending)
+                        {
+                            pending.put(txnr, message);
+                        }
+                        // once pending, the frame is sent again with the others if writing it fails
+                        batch.add(message);
+                        connection.write(txnr, "syslog", frame);
+                    }
+                    connection.flush();
+                    return;
+                }
+                catch (IOException ex)
+                {
+                    connection.close();
+                    if (0 < attempt)
+                    {
+                        throw ex;
+                    }
+                    // messages written so far are pending and are sent again on the new connection
+                    LOG.debug(String.format("Sending to '%s' FAILED. Reconnecting ...", address), ex);
+                }
+            }
+        }
+        catch (IOException | RuntimeException ex)
+        {
+            // the caller keeps the batch, so its messages must not be sent again with the next one
+            forget(batch);
+            throw ex;
+        }
+    }
+
+    /**
+     * Removes the given messages from the unacknowledged messages. Their
+     * transaction numbers may have changed on reconnect, so they are looked
+     * up by identity.
+     */
+    private void forget(List<Pending> messages)
+    {
+        if (messages.isEmpty())
+        {
+            return;
+        }
+        Set<Pending> forgotten = Collections.newSetFromMap(new IdentityHashMap<Pending, Boolean>());
+        forgotten.addAll(messages);
+        synchronized (pending)
+        {
+            pending.values().removeAll(forgotten);
+            pending.notifyAll();
+        }
+    }
+
+    /**
+     * @return number of messages sent but not yet acknowledged
+     */
+    public int getUnacknowledgedCount()
+    {
+        synchronized (pending)
+        {
+            return pending.size();
+        }
+    }
+
+    @Override
+    public synchronized void close()
+    {
+        Connection connection = this.connection;
+        if (null == connection)
+        {
+            return;
+        }
+        if (!connection.isBroken)
+        {
+            try
+            {
+                connection.flush();
+                awaitAcknowledgments(connection, CLOSE_TIMEOUT_MILLIS);
+                connection.write(connection.nextTxnr(), "close", NO_DATA);
+                connection.flush();
+            }
+            catch (IOException ex)
+            {
+                LOG.debug(String.format("Closing RELP session with '%s' FAILED.", address), ex);
+            }
+        }
+        int lostCount;
+        synchronized (pending)
+        {
+            lostCount = pending.size();
+            pending.clear();
+            this.connection = null;
+        }
+        if (0 < lostCount)
+        {
+            LOG.warn(String.format("Closing RELP session with '%s' with %d unacknowledged messages.", address, lostCount));
+        }
+        connection.close();
+    }
+
+    /**
+     * Returns the open connection or opens a new one and sends all
+     * unacknowledged messages again.
+     */
+    private Connection getConnection() throws IOException
+    {
+        if (null != connection && !connection.isBroken)
+        {
+            return connection;
+        }
+        if (null != connection)
+        {
+            connection.close();
+            listener.onReconnect();
+        }
+        Connection opened = new Connection();
+        opened.open();
+
+        Map<Integer, Pending> resend = new LinkedHashMap<>();
+        synchronized (pending)
+        {
+            for (Pending message : pending.values())
+            {
+                message.sentNanos = System.nanoTime();
+                resend.put(opened.nextTxnr(), message);
+            }
+            pending.clear();
+            pending.putAll(resend);
+            connection = opened;
+        }
+        try
+        {
+            for (Map.Entry<Integer, Pending> message : resend.entrySet())
+            {
+                opened.write(message.getKey(), "syslog", message.getValue().frame);
+            }
+            opened.flush();
+        }
+        catch (IOException ex)
+        {
+            opened.close();
+            throw ex;
+        }
+        if (!resend.isEmpty())
+        {
+            LOG.info(String.format("Sent %d unacknowledged messages to '%s' again.", resend.size(), address));
+        }
+        return opened;
+    }
+
+    private void awaitWindow(Connection connection) throws IOException
+    {
+        synchronized (pending)
+        {
+            if (window > pending.size())
+            {
+                return;
+            }
+        }
+        // the server only acknowledges what it received
+        connection.flush();
+        synchronized (pending)
+        {
+            long deadline = System.currentTimeMillis() + acknowledgeTimeoutMillis;
+            while (window <= pending.size())
+            {
+                waitForAcknowledgment(connection, deadline);
+            }
+        }
+    }
+
+    private void awaitAcknowledgments(Connection connection, long timeoutMillis) throws IOException
+    {
+        synchronized (pending)
+        {
+            long deadline = System.currentTimeMillis() + timeoutMillis;
+            while (!pending.isEmpty())
+            {
+                waitForAcknowledgment(connection, deadline);
+            }
+        }
+    }
+
+    private void waitForAcknowledgment(Connection connection, long deadline) throws IOException
+    {
+        if (connection.isBroken)
+        {
+            throw new IOException(String.format("Connection to '%s' was closed.", address));
+        }
+        long remaining = deadline - System.currentTimeMillis();
+        if (0 >= remaining)
+        {
+            throw new IOException(String.format("Waiting for acknowledgments from '%s' FAILED. No acknowledgment within %d ms.", address, acknowledgeTimeoutMillis));
+        }
+        try
+        {
+            pending.wait(remaining);
+        }
+        catch (InterruptedException ex)
+        {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException(String.format("Waiting for acknowledgments from '%s' was interrupted.", address));
+        }
+    }
+
+    private void acknowledge(Connection connection, RelpFrame response)
+    {
+        Pending message;
+        synchronized (pending)
+        {
+            if (connection != this.connection)
+            {
+                return;
+            }
+            message = pending.remove(response.getTxnr());
+            pending.notifyAll();
+        }
+        if (null == message)
+        {
+            return;
+        }
+        if (response.isOk())
+        {
+            message.sender.onAcknowledged(System.nanoTime() - message.sentNanos);
+        }
+        else
+        {
+            LOG.warn(String.format("'%s' rejected a message: %s", address, response.getDataAsString()));
+            message.sender.onError(new IOException(String.format("'%s' rejected a message: %s", address, response.getDataAsString())));
+        }
+    }
+
+    private void disconnected(Connection connection)
+    {
+        synchronized (pending)
+        {
+            connection.isBroken = true;
+            pending.notifyAll();
+        }
+    }
+
+    private static final class Pending
+    {
+        private final byte[] frame;
+        private final SyslogClientListener sender;
+        private long sentNanos = System.nanoTime();
+
+        Pending(byte[] frame, SyslogClientListener sender)
+        {
+            this.frame = frame;
+            this.sender = sender;
+        }
+    }
+
+    private final class Connection implements Runnable
+    {
+        private final Socket socket = new Socket();
+        private final byte[] number = new byte[10];
+        private OutputStream out;
+        private InputStream in;
+        private int txnr = 1;
+        private volatile boolean isBroken = false;
+
+        void open() throws IOException
+        {
+            try
+            {
+                socket.connect(address, CONNECT_TIMEOUT_MILLIS);
+                socket.setKeepAlive(true);
+                out = new BufferedOutputStream(socket.getOutputStream(), BUFFER_SIZE);
+                in = new BufferedInputStream(socket.getInputStream());
+
+                int openTxnr = nextTxnr();
+                write(openTxnr, "open", OFFERS);
+                flush();
+                socket.setSoTimeout((int) Math.min(Integer.MAX_VALUE, acknowledgeTimeoutMillis));
+                RelpFrame response = RelpFrame.read(in);
+                socket.setSoTimeout(0);
+                if (openTxnr != response.getTxnr() || !"rsp".equals(response.getCommand()) || !response.isOk())
+                {
+                    throw new IOException(String.format("Opening RELP session with '%s' FAILED. %s", address, response.getDataAsString()));
+                }
+            }
+            catch (IOException ex)
+            {
+                close();
+                throw ex;
+            }
+            Thread reader = new Thread(this, "relp-reader-" + address);
+            reader.setDaemon(true);
+            reader.start();
+        }
+
+        int nextTxnr()
+        {
+            int next = txnr;
+            txnr = TXNR_MAX == txnr ? 1 : txnr + 1;
+            return next;
+        }
+
+        void write(int txnr, String command, byte[] data) throws IOException
+        {
+            writeNumber(txnr);
+            out.write(' ');
+            out.write(command.getBytes(StandardCharsets.US_ASCII));
+            out.write(' ');
+            writeNumber(data.length);
+            if (0 < data.length)
+            {
+                out.write(' ');
+                out.write(data);
+            }
+            out.write('\n');
+        }
+
+        void flush() throws IOException
+        {
+            out.flush();
+        }
+
+        void close()
+        {
+            disconnected(this);
+            try
+            {
+                socket.close();
+            }
+            catch (IOException ex)
+            {
+                LOG.warn(String.format("Closing RELP connection to '%s' FAILED.", address), ex);
+            }
+        }
+
+        @Override
+        public void run()
+        {
+            try
+            {
+                for (RelpFrame frame = RelpFrame.read(in); !"serverclose".equals(frame.getCommand()); frame = RelpFrame.read(in))
+                {
+                    if ("rsp".equals(frame.getCommand()))
+                    {
+                        acknowledge(this, frame);
+                    }
+                }
+                LOG.info(String.format("'%s' closed the RELP session.", address));
+            }
+            catch (IOException ex)
+            {
+                if (!isBroken)
+                {
+                    LOG.debug(String.format("Reading from '%s' FAILED.", address), ex);
+                }
+            }
+            finally
+            {
+                close();
+            }
+        }
+
+        private void writeNumber(int value) throws IOException
+        {
+            int index = number.length;
+            do
+            {
+                number[--index] = (byte) ('0' + value % 10);
+                value /= 10;
+            }
+            while (0 < value);
+            out.write(number, index, number.length - index);
+        }
+    }
+
+    /**
+     * A RELP frame: TXNR SP COMMAND SP DATALEN [SP DATA] LF.
+     */
+    static final class RelpFrame
+    {
+        private final int txnr;
+        private final String command;
+        private final byte[] data;
+
+        RelpFrame(int txnr, @NotNullable String command, @NotNullable byte[] data)
+        {
+            this.txnr = txnr;
+            this.command = command;
+            this.data = data;
+        }
+
+        int getTxnr()
+        {
+            return txnr;
+        }
+
+        String getCommand()
+        {
+            return command;
+        }
+
+        byte[] getData()
+        {
+            return data;
+        }
+
+        String getDataAsString()
+        {
+            return new String(data, StandardCharsets.UTF_8);
+        }
+
+        /**
+         * @return true if this is a response with status 200
+         */
+        boolean isOk()
+        {
+            return 3 <= data.length && '2' == data[0] && '0' == data[1] && '0' == data[2];
+        }
+
+        static RelpFrame read(@NotNullable InputStream in) throws IOException
+        {
+            int txnr = 0;
+            int c;
+            for (c = readByte(in); '0' <= c && '9' >= c; c = readByte(in))
+            {
+                txnr = txnr * 10 + c - '0';
+            }
+            if (' ' != c)
+            {
+                throw new IOException("Reading RELP frame FAILED. Invalid transaction number.");
+            }
+            StringBuilder command = new StringBuilder();
+            for (c = readByte(in); ' ' != c; c = readByte(in))
+            {
+                command.append((char) c);
+            }
+            int length = 0;
+            for (c = readByte(in); '0' <= c && '9' >= c; c = readByte(in))
+            {
+                length = length * 10 + c - '0';
+            }
+            byte[] data = new byte[length];
+            if (' ' == c)
+            {
+                for (int read = 0; read < length; )
+                {
+                    int count = in.read(data, read, length - read);
+                    if (0 > count)
+                    {
+                        throw new EOFException();
+                    }
+                    read += count;
+                }
+                c = readByte(in);
+            }
+            if ('\n' != c)
+            {
+                throw new IOException("Reading RELP frame FAILED. Missing trailer.");
+            }
+            return new RelpFrame(txnr, command.toString(), data);
+        }
+
+        private static int readByte(InputStream in) throws IOException
+        {
+            int c = in.read();
+            if (0 > c)
+            {
+                throw new EOFException();
+            }
+            return c;
+        }
+    }
+}
+
+/*
+    d-fens Graylog SYSLOG Output Plugin
+    Copyright (C) 2015  Ronald Rink, d-fens GmbH
+
+    This library is free software; you can redistribute it and/or
+    modify it under the terms of the GNU Lesser General Public
+    License as published by the Free Software Foundation; either
+    version 2.1 of the License, or (at your option) any later version.
+
+    This library is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+    Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public
+    License along with this library; if not, write to the Free Software
+    Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+
+ */
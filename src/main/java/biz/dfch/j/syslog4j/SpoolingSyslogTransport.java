@@ -0,0 +1,170 @@
+package biz.dfch.j.syslog4j;
+
+import org.msgpack.annotation.NotNullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+
+/**
+ * Writes messages to a {@link SyslogSpool} instead of losing them when the
+ * destination cannot be reached. While the spool holds messages, new messages
+ * are appended to it as well to keep their order; a replay thread sends the
+ * spooled messages at a limited rate and acknowledges them once they are sent.
+ *
+ * Messages are sent at least once: a batch that failed halfway is spooled and
+ * replayed as a whole.
+ */
+public class SpoolingSyslogTransport implements SyslogTransport
+{
+    private static final Logger LOG = LoggerFactory.getLogger(SpoolingSyslogTransport.class);
+    private static final long RETRY_INTERVAL_MILLIS = 1000;
+    private static final int REPLAY_BATCH_SIZE_MAX = 500;
+
+    private final SyslogTransport transport;
+    private final SyslogSpool spool;
+    private final int replayRate;
+    private final SyslogClientListener listener;
+    private final Thread replayer;
+    private volatile boolean isClosed = false;
+
+    /**
+     * @param replayRate maximum number of spooled messages sent per second
+     */
+    public SpoolingSyslogTransport(@NotNullable SyslogTransport transport, @NotNullable SyslogSpool spool, int replayRate, @NotNullable SyslogClientListener listener)
+    {
+        if (0 >= replayRate)
+        {
+            throw new IllegalArgumentException(String.format("replayRate: Parameter validation FAILED. Value must be greater than 0 (was '%d').", replayRate));
+        }
+        this.transport = transport;
+        this.spool = spool;
+        this.replayRate = replayRate;
+        this.listener = listener;
+        replayer = new Thread(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                replay();
+            }
+        }, "syslog-spool-replay");
+        replayer.setDaemon(true);
+        replayer.start();
+    }
+
+    @Override
+    public void send(SyslogFrames frames) throws IOException
+    {
+        if (spool.isEmpty())
+        {
+            try
+            {
+                transport.send(frames);
+                return;
+            }
+            catch (IOException ex)
+            {
+                LOG.warn("Sending FAILED. Spooling messages until the destination is reachable again.", ex);
+                listener.onError(ex);
+            }
+        }
+        int lostCount = spool.append(frames);
+        listener.onSpooled(frames.getFrameCount() - lostCount, lostCount);
+    }
+
+    @Override
+    public void close()
+    {
+        isClosed = true;
+        replayer.interrupt();
+        try
+        {
+            replayer.join(RETRY_INTERVAL_MILLIS);
+        }
+        catch (InterruptedException ex)
+        {
+            Thread.currentThread().interrupt();
+        }
+        transport.close();
+        try
+        {
+            spool.close();
+        }
+        catch (IOException ex)
+        {
+            LOG.warn("Closing spool FAILED.", ex);
+        }
+    }
+
+    private void replay()
+    {
+        FrameBuffer frames = new FrameBuffer();
+        while (!isClosed)
+        {
+            try
+            {
+                if (!spool.awaitFrames(RETRY_INTERVAL_MILLIS))
+                {
+                    continue;
+                }
+                frames.clear();
+                int count = spool.read(frames, Math.min(replayRate, REPLAY_BATCH_SIZE_MAX));
+                if (0 == count)
+                {
+                    continue;
+                }
+                long start = System.currentTimeMillis();
+                transport.send(frames);
+                spool.acknowledge();
+                listener.onReplayed(count);
+                long pause = count * 1000L / replayRate - (System.currentTimeMillis() - start);
+                if (0 < pause)
+                {
+                    Thread.sleep(pause);
+                }
+            }
+            catch (InterruptedException ex)
+            {
+                return;
+            }
+            catch (IOException | RuntimeException ex)
+            {
+                if (isClosed)
+                {
+                    return;
+                }
+                LOG.debug("Replaying spooled messages FAILED.", ex);
+                listener.onError(ex);
+                try
+                {
+                    Thread.sleep(RETRY_INTERVAL_MILLIS);
+                }
+                catch (InterruptedException interrupted)
+                {
+                    return;
+                }
+            }
+        }
+    }
+}
+
+/*
+    d-fens Graylog SYSLOG Output Plugin
+    Copyright (C) 2015  Ronald Rink, d-fens GmbH
+
+    This library is free software; you can redistribute it and/or
+    modify it under the terms of the GNU Lesser General Public
+    License as published by the Free Software Foundation; either
+    version 2.1 of the License, or (at your option) any later version.
+
+    This library is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+    Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public
+    License along with this library; if not, write to the Free Software
+    Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+
+ */
@@ -0,0 +1,138 @@
+package biz.dfch.j.syslog4j;
+
+import org.msgpack.annotation.NotNullable;
+
+import java.util.Arrays;
+
+/**
+ * A message text made of parts with a priority each. If the message does not
+ * fit into the maximum frame length of the encoder, parts with the lowest
+ * priority are shortened first, see {@link SyslogEncoder#setMaxFrameLength(int)}.
+ * Parts with {@link #PRIORITY_FIXED}, i.e. labels and separators, are never shortened.
+ * As a CharSequence it is the whole text, so it can be passed wherever a message is.
+ */
+public final class SyslogBody implements CharSequence
+{
+    public static final int PRIORITY_FIXED = Integer.MAX_VALUE;
+
+    private final String text;
+    private final int[] partEnds;
+    private final int[] priorities;
+
+    private SyslogBody(String text, int[] partEnds, int[] priorities)
+    {
+        this.text = text;
+        this.partEnds = partEnds;
+        this.priorities = priorities;
+    }
+
+    public int getPartCount()
+    {
+        return partEnds.length;
+    }
+
+    public int getPartStart(int index)
+    {
+        return 0 == index ? 0 : partEnds[index - 1];
+    }
+
+    public int getPartEnd(int index)
+    {
+        return partEnds[index];
+    }
+
+    public int getPriority(int index)
+    {
+        return priorities[index];
+    }
+
+    @Override
+    public int length()
+    {
+        return text.length();
+    }
+
+    @Override
+    public char charAt(int index)
+    {
+        return text.charAt(index);
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end)
+    {
+        return text.subSequence(start, end);
+    }
+
+    /**
+     * @return the whole text of all parts
+     */
+    @Override
+    public String toString()
+    {
+        return text;
+    }
+
+    public static final class Builder
+    {
+        private final StringBuilder text = new StringBuilder();
+        private int[] partEnds = new int[16];
+        private int[] priorities = new int[16];
+        private int partCount = 0;
+
+        /**
+         * Appends a part that is never shortened.
+         */
+        public Builder append(@NotNullable CharSequence value)
+        {
+            return append(value, PRIORITY_FIXED);
+        }
+
+        public Builder append(@NotNullable CharSequence value, int priority)
+        {
+            if (0 == value.length())
+            {
+                return this;
+            }
+            text.append(value);
+            if (0 < partCount && PRIORITY_FIXED == priority && PRIORITY_FIXED == priorities[partCount - 1])
+            {
+                partEnds[partCount - 1] = text.length();
+                return this;
+            }
+            if (partCount == partEnds.length)
+            {
+                partEnds = Arrays.copyOf(partEnds, 2 * partCount);
+                priorities = Arrays.copyOf(priorities, 2 * partCount);
+            }
+            partEnds[partCount] = text.length();
+            priorities[partCount++] = priority;
+            return this;
+        }
+
+        public SyslogBody build()
+        {
+            return new SyslogBody(text.toString(), Arrays.copyOf(partEnds, partCount), Arrays.copyOf(priorities, partCount));
+        }
+    }
+}
+
+/*
+    d-fens Graylog SYSLOG Output Plugin
+    Copyright (C) 2015  Ronald Rink, d-fens GmbH
+
+    This library is free software; you can redistribute it and/or
+    modify it under the terms of the GNU Lesser General Public
+    License as published by the Free Software Foundation; either
+    version 2.1 of the License, or (at your option) any later version.
+
+    This library is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+    Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public
+    License along with this library; if not, write to the Free Software
+    Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+
+ */
@@ -8,11 +8,17 @@ import org.graylog2.syslog4j.impl.message.modifier.hash.HashSyslogMessageModifie
 import org.graylog2.syslog4j.impl.message.modifier.sequential.SequentialSyslogMessageModifier;
 import org.graylog2.syslog4j.impl.message.structured.StructuredSyslogMessage;
 import org.graylog2.syslog4j.impl.net.tcp.TCPNetSyslogConfig;
+import org.graylog2.syslog4j.impl.net.tcp.TCPNetSyslogConfigIF;
 import org.graylog2.syslog4j.impl.net.tcp.ssl.SSLTCPNetSyslogConfig;
 import org.graylog2.syslog4j.impl.net.udp.UDPNetSyslog;
 import org.graylog2.syslog4j.impl.net.udp.UDPNetSyslogConfig;
 
-import java.util.HashMap;
+import javax.net.ssl.SSLSocketFactory;
+import java.io.IOException;
+import java.security.GeneralSecurityException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -20,13 +26,43 @@ import java.util.Map;
  */
 public class SyslogClient 
 {
-    private SyslogIF syslog = null;
     private SyslogConfigIF syslogConfig = null;
     private String syslogStructuredDataTag = "SDATA";
+    private final String syslogTransport;
+    private volatile SyslogTransport transport = null;
+    private volatile SyslogClientListener listener = SyslogClientListener.NONE;
+    private int connectionCount = 1;
+    private SyslogConnectionPool.Sharding sharding = SyslogConnectionPool.Sharding.ROUND_ROBIN;
+    private List<SyslogDestination> destinations = null;
+    private SSLSocketFactory sslSocketFactory = null;
+    private String[] tlsProtocols = null;
+    private String[] tlsCipherSuites = null;
+    private boolean isTlsHostnameVerified = true;
+    private String tlsKey = null;
+    private SyslogDestinationGroup.Policy policy = SyslogDestinationGroup.Policy.FAILOVER;
+    private SyslogFraming framing = SyslogFraming.NON_TRANSPARENT;
+    private byte[] trailer = null;
+    private SyslogSpool spool = null;
+    private int relpWindow = RELP_WINDOW_DEFAULT;
+    private int spoolReplayRate = 0;
+    private SyslogTransportRegistry transportRegistry = null;
+    private int maxDatagramSize = 0;
+    private final ThreadLocal<SyslogEncoder> encoders = new ThreadLocal<SyslogEncoder>()
+    {
+        @Override
+        protected SyslogEncoder initialValue()
+        {
+            SyslogEncoder encoder = new SyslogEncoder(getFraming(), getTrailer());
+            encoder.setMaxFrameLength(getMaxFrameLength());
+            return encoder;
+        }
+    };
 
     private static final int SYSLOG_PORT_UDP_DEFAULT = 514;
     private static final int SYSLOG_PORT_TCP_DEFAULT = 5514;
     private static final int SYSLOG_PORT_TCPTLS_DEFAULT = 10514;
+    private static final long DESTINATION_PROBE_INTERVAL_MILLIS = 5000;
+    private static final int RELP_WINDOW_DEFAULT = 128;
 
     private static final int SYSLOG_SEVERITY_EMERGENCY = 0;
     private static final int SYSLOG_SEVERITY_ALERT = 1;
@@ -43,20 +79,22 @@ public class SyslogClient
     
     public SyslogClient(@NotNullable String transport,@NotNullable String serverName, int serverPort)
     {
-        switch(transport.toUpperCase())
+        syslogTransport = transport.toUpperCase();
+        // messages are sent by the transports of this package, the syslog4j
+        // config only holds the settings; every client has its own, as the
+        // configs of the syslog4j instances are shared by the whole JVM
+        switch(syslogTransport)
         {
             case "TCP":
-                syslog = Syslog.getInstance("tcp");
-                syslogConfig = syslog.getConfig();
+            case "RELP":
+                syslogConfig = new TCPNetSyslogConfig();
                 break;
             case "TCPTLS":
                 syslogConfig = new SSLTCPNetSyslogConfig();
-                syslog = Syslog.createInstance("sslTcp", syslogConfig);
                 break;
             case "UDP":
             default:
-                syslog = Syslog.getInstance("udp");
-                syslogConfig = syslog.getConfig();
+                syslogConfig = new UDPNetSyslogConfig();
                 break;
         }
         if(null == serverName || serverName.isEmpty())
@@ -72,96 +110,208 @@ public class SyslogClient
         
     }
 
-    public SyslogConfigIF getConfig()
+    private synchronized SyslogFraming getFraming()
     {
-        return this.syslogConfig;
+        return "UDP".equals(syslogTransport) || "RELP".equals(syslogTransport) ? SyslogFraming.NON_TRANSPARENT : framing;
     }
 
-    public void setFacility(int val)
+    private synchronized byte[] getTrailer()
     {
-        if(SYSLOG_FACILITY_0 > val && SYSLOG_FACILITY_MAX < val)
+        if ("RELP".equals(syslogTransport))
         {
-            val = SYSLOG_FACILITY_LOCAL0;
+            return null;
         }
-        switch(val)
+        if (null != trailer && !"UDP".equals(syslogTransport))
         {
-            case 0:
-                syslog.getConfig().setFacility(SyslogConstants.FACILITY_KERN);
-                break;
-            case 1:
-                syslog.getConfig().setFacility(SyslogConstants.FACILITY_USER);
-                break;
-            case 2:
-                syslog.getConfig().setFacility(SyslogConstants.FACILITY_MAIL);
-                break;
-            case 3:
-                syslog.getConfig().setFacility(SyslogConstants.FACILITY_DAEMON);
-                break;
-            case 4:
-                syslog.getConfig().setFacility(SyslogConstants.FACILITY_AUTH);
-                break;
-            case 5:
-                syslog.getConfig().setFacility(SyslogConstants.FACILITY_SYSLOG);
-                break;
-            case 6:
-                syslog.getConfig().setFacility(SyslogConstants.FACILITY_LPR);
-                break;
-            case 7:
-                syslog.getConfig().setFacility(SyslogConstants.FACILITY_NEWS);
-                break;
-            case 8:
-                syslog.getConfig().setFacility(SyslogConstants.FACILITY_UUCP);
-                break;
-            case 9:
-                syslog.getConfig().setFacility(SyslogConstants.FACILITY_CRON);
-                break;
-            case 10:
-                syslog.getConfig().setFacility(SyslogConstants.FACILITY_AUTHPRIV);
-                break;
-            case 11:
-                syslog.getConfig().setFacility(SyslogConstants.FACILITY_FTP);
-                break;
-            case 12:
-                syslog.getConfig().setFacility(SyslogConstants.FACILITY_FTP);
-                break;
-            case 13:
-                syslog.getConfig().setFacility(SyslogConstants.FACILITY_AUTH);
-                break;
-            case 14:
-                syslog.getConfig().setFacility(SyslogConstants.FACILITY_AUTH);
-                break;
-            case 15:
-                syslog.getConfig().setFacility(SyslogConstants.FACILITY_CRON);
-                break;
-            case 16:
-                syslog.getConfig().setFacility(SyslogConstants.FACILITY_LOCAL0);
-                break;
-            case 17:
-                syslog.getConfig().setFacility(SyslogConstants.FACILITY_LOCAL1);
-                break;
-            case 18:
-                syslog.getConfig().setFacility(SyslogConstants.FACILITY_LOCAL2);
-                break;
-            case 19:
-                syslog.getConfig().setFacility(SyslogConstants.FACILITY_LOCAL3);
-                break;
-            case 20:
-                syslog.getConfig().setFacility(SyslogConstants.FACILITY_LOCAL4);
-                break;
-            case 21:
-                syslog.getConfig().setFacility(SyslogConstants.FACILITY_LOCAL5);
-                break;
-            case 22:
-                syslog.getConfig().setFacility(SyslogConstants.FACILITY_LOCAL6);
-                break;
-            case 23:
-                syslog.getConfig().setFacility(SyslogConstants.FACILITY_LOCAL7);
-                break;
-            default:
-                syslog.getConfig().setFacility(SyslogConstants.SYSLOG_FACILITY_DEFAULT);
-                break;
+            return trailer;
+        }
+        if (syslogConfig instanceof TCPNetSyslogConfigIF)
+        {
+            return ((TCPNetSyslogConfigIF) syslogConfig).getDelimiterSequence();
         }
+        return null;
     }
+
+    private synchronized int getMaxFrameLength()
+    {
+        return "UDP".equals(syslogTransport) ? maxDatagramSize : 0;
+    }
+
+    /**
+     * Describes everything besides the messages themselves that determines
+     * the encoded bytes: framing, trailer, maximum datagram size, default
+     * local name and whether plain messages use RFC5424. A batch of one client can be sent over
+     * another client with the same format, see {@link Batch#sendTo(SyslogClient)}.
+     */
+    public String getFormat()
+    {
+        StringBuilder format = new StringBuilder(getFraming().name());
+        byte[] trailer = getTrailer();
+        if (null != trailer)
+        {
+            for (byte b : trailer)
+            {
+                format.append(String.format(":%02x", b));
+            }
+        }
+        int maxFrameLength = getMaxFrameLength();
+        if (0 < maxFrameLength)
+        {
+            format.append("/max").append(maxFrameLength);
+        }
+        format.append(syslogConfig.isUseStructuredData() ? "/RFC5424/" : "/");
+        return format.append(syslogConfig.getLocalName()).toString();
+    }
+
+    /**
+     * Sets the listener that is notified about encoded and sent messages.
+     * Must be set before the first message is sent.
+     */
+    public void setListener(@NotNullable SyslogClientListener listener)
+    {
+        this.listener = listener;
+    }
+
+    /**
+     * Sends over several connections to the server instead of one.
+     * Must be set before the first message is sent.
+     *
+     * @param sharding how messages are spread over the connections, see {@link SyslogHeader#getRoutingKey()}
+     */
+    public synchronized void setConnectionPool(int connectionCount, @NotNullable SyslogConnectionPool.Sharding sharding)
+    {
+        if (0 >= connectionCount)
+        {
+            throw new IllegalArgumentException(String.format("connectionCount: Parameter validation FAILED. Value must be greater than 0 (was '%d').", connectionCount));
+        }
+        this.connectionCount = connectionCount;
+        this.sharding = sharding;
+    }
+
+    /**
+     * Sends to several servers instead of the one the client was created for.
+     * Must be set before the first message is sent.
+     *
+     * @param policy how a server is picked for each batch, see {@link SyslogDestinationGroup}
+     */
+    public synchronized void setDestinations(@NotNullable List<SyslogDestination> destinations, @NotNullable SyslogDestinationGroup.Policy policy)
+    {
+        if (destinations.isEmpty())
+        {
+            throw new IllegalArgumentException("destinations: Parameter validation FAILED. Value must contain at least one destination.");
+        }
+        this.destinations = new ArrayList<>(destinations);
+        this.policy = policy;
+    }
+
+    /**
+     * Sets the keystores, protocols, cipher suites and hostname verification of TLS connections.
+     * Must be set before the first message is sent. All connections of the
+     * client share one SSLContext, so reconnects can resume TLS sessions.
+     */
+    public synchronized void setTlsConfig(@NotNullable SyslogTlsConfig tlsConfig) throws GeneralSecurityException, IOException
+    {
+        sslSocketFactory = tlsConfig.createSslContext().getSocketFactory();
+        tlsProtocols = tlsConfig.getProtocols();
+        tlsCipherSuites = tlsConfig.getCipherSuites();
+        isTlsHostnameVerified = tlsConfig.isHostnameVerified();
+        tlsKey = tlsConfig.getKey();
+    }
+
+    /**
+     * Sets how messages are delimited on TCP and TLS connections. UDP sends
+     * one message per datagram and ignores the framing.
+     * Must be set before the first message is sent.
+     *
+     * @param trailer bytes following every message with non-transparent framing, or null for the syslog4j delimiter
+     */
+    public synchronized void setFraming(@NotNullable SyslogFraming framing, byte[] trailer)
+    {
+        if (null != trailer && 0 == trailer.length)
+        {
+            throw new IllegalArgumentException("trailer: Parameter validation FAILED. Value must not be empty.");
+        }
+        this.framing = framing;
+        this.trailer = null == trailer ? null : trailer.clone();
+    }
+
+    /**
+     * Spools messages to disk while the server cannot be reached and sends
+     * them once it is reachable again. The client closes the spool.
+     * Must be set before the first message is sent.
+     *
+     * @param replayRate maximum number of spooled messages sent per second
+     */
+    public synchronized void setSpool(@NotNullable SyslogSpool spool, int replayRate)
+    {
+        if (0 >= replayRate)
+        {
+            throw new IllegalArgumentException(String.format("replayRate: Parameter validation FAILED. Value must be greater than 0 (was '%d').", replayRate));
+        }
+        this.spool = spool;
+        this.spoolReplayRate = replayRate;
+    }
+
+    /**
+     * Limits the size of UDP datagrams, i.e. to the MTU of the network less
+     * the IP and UDP headers, so messages are not fragmented. Longer messages
+     * are shortened while they are encoded: the parts of a {@link SyslogBody}
+     * with the lowest priority first, other messages at their end.
+     * Ignored by TCP, TLS and RELP. Must be set before the first message is sent.
+     *
+     * @param size maximum size in bytes, or 0 for no limit
+     */
+    public synchronized void setMaxDatagramSize(int size)
+    {
+        if (0 != size && SyslogEncoder.MAX_FRAME_LENGTH_MIN > size)
+        {
+            throw new IllegalArgumentException(String.format("size: Parameter validation FAILED. Value must be 0 or at least %d (was '%d').", SyslogEncoder.MAX_FRAME_LENGTH_MIN, size));
+        }
+        this.maxDatagramSize = size;
+    }
+
+    /**
+     * Sets the maximum number of RELP messages sent but not yet acknowledged.
+     * Must be set before the first message is sent.
+     */
+    public synchronized void setRelpWindow(int window)
+    {
+        if (0 >= window)
+        {
+            throw new IllegalArgumentException(String.format("window: Parameter validation FAILED. Value must be greater than 0 (was '%d').", window));
+        }
+        this.relpWindow = window;
+    }
+
+    /**
+     * Shares the connections with the other clients of the registry that send
+     * to the same servers with the same connection, framing and TLS settings.
+     * Closing the client releases the connections, the last client closes them.
+     * Must be set before the first message is sent.
+     */
+    public synchronized void setTransportRegistry(@NotNullable SyslogTransportRegistry transportRegistry)
+    {
+        this.transportRegistry = transportRegistry;
+    }
+
+    public SyslogConfigIF getConfig()
+    {
+        return this.syslogConfig;
+    }
+
+    /**
+     * Sets the facility used by the log methods without a {@link SyslogHeader}.
+     * This changes shared state, use a header when sending from several threads.
+     */
+    public void setFacility(int val)
+    {
+        syslogConfig.setFacility(SyslogHeader.toFacilityCode(val));
+    }
+
+    /**
+     * Sets the local name used by the log methods without a {@link SyslogHeader}
+     * and by headers without a local name.
+     */
     public void setLocalName(@NotNullable String val)
     {
       syslogConfig.setLocalName(val);
@@ -179,88 +329,466 @@ public class SyslogClient
 
     public void log(int severity, @NotNullable String message)
     {
-        if(SYSLOG_SEVERITY_EMERGENCY > severity && SYSLOG_SEVERITY_DEBUG < severity)
-        {
-            severity = SYSLOG_SEVERITY_INFORMATIONAL;
-        }
-        syslog.log(severity, message);
+        SyslogEncoder encoder = getEncoder();
+        long encodeStart = System.nanoTime();
+        encode(encoder, severity, message);
+        send(encoder, encodeStart);
     }
 
     public void log(int severity, int facility, @NotNullable String message)
     {
-        if(SYSLOG_SEVERITY_EMERGENCY > severity && SYSLOG_SEVERITY_DEBUG < severity)
-        {
-            severity = SYSLOG_SEVERITY_INFORMATIONAL;
-        }
-        if(SYSLOG_FACILITY_0 > facility && SYSLOG_FACILITY_MAX < facility)
-        {
-            facility = SYSLOG_FACILITY_LOCAL0;
-        }
-        syslogConfig.setFacility(facility);
-        syslog.log(severity, message);
+        log(new SyslogHeader(facility, severity, null, null), message);
     }
 
-    public void log(int severity, @NotNullable String messageId, @NotNullable Map<String, String> structuredData, String message)
+    /**
+     * Sends a message with the facility, severity, timestamp and local name of the header.
+     * Safe to call from several threads at once.
+     *
+     * @param message the text, or a {@link SyslogBody} to shorten it by priority if it exceeds the maximum datagram size
+     */
+    public void log(@NotNullable SyslogHeader header, @NotNullable CharSequence message)
     {
-        if(SYSLOG_SEVERITY_EMERGENCY > severity && SYSLOG_SEVERITY_DEBUG < severity)
-        {
-            severity = SYSLOG_SEVERITY_INFORMATIONAL;
-        }
+        SyslogEncoder encoder = getEncoder();
+        long encodeStart = System.nanoTime();
+        encode(encoder, header, message);
+        send(encoder, encodeStart);
+    }
+
+    /**
+     * Sends an RFC5424 message with the facility, severity, timestamp, local
+     * name and MSGID of the header. Safe to call from several threads at once.
+     *
+     * @param structuredData parameters by SD-ID, or null for no structured data
+     * @param message the text, or a {@link SyslogBody} to shorten it by priority if it exceeds the maximum datagram size
+     */
+    public void logStructured(@NotNullable SyslogHeader header, Map<String, Map<String, String>> structuredData, CharSequence message)
+    {
+        SyslogEncoder encoder = getEncoder();
+        long encodeStart = System.nanoTime();
+        encode(encoder, header, structuredData, message);
+        send(encoder, encodeStart);
+    }
 
-        Map structuredDataContainer = new HashMap();
-        structuredDataContainer.put(syslogStructuredDataTag, structuredData);
+    /**
+     * Sends an RFC5424 message with the structured data parameters in one
+     * element named by the structured data tag.
+     */
+    public void log(int severity, @NotNullable String messageId, Map<String, String> structuredData, String message)
+    {
+        logStructured(severity, messageId, wrapStructuredData(structuredData), message);
+    }
 
-        StructuredSyslogMessage structuredMessage = new StructuredSyslogMessage(
-                messageId
-                ,
-                null
-                ,
-                structuredDataContainer
-                ,
-                message
-        );
-        syslog.info(structuredMessage);
-        this.log(severity, message);
+    /**
+     * Sends an RFC5424 message.
+     *
+     * @param structuredData parameters by SD-ID, or null for no structured data
+     */
+    public void logStructured(int severity, @NotNullable String messageId, Map<String, Map<String, String>> structuredData, String message)
+    {
+        SyslogEncoder encoder = getEncoder();
+        long encodeStart = System.nanoTime();
+        encode(encoder, severity, messageId, structuredData, message);
+        send(encoder, encodeStart);
     }
 
     public void logDebug(@NotNullable String message)
     {
-        syslog.debug(message);
+        log(SyslogConstants.LEVEL_DEBUG, message);
     }
 
     public void logInfo(@NotNullable String message)
     {
-        syslog.info(message);
+        log(SyslogConstants.LEVEL_INFO, message);
     }
 
     public void logNotice(@NotNullable String message)
     {
-        syslog.notice(message);
+        log(SyslogConstants.LEVEL_NOTICE, message);
     }
 
     public void logWarn(@NotNullable String message)
     {
-        syslog.warn(message);
+        log(SyslogConstants.LEVEL_WARN, message);
     }
 
     public void logError(@NotNullable String message)
     {
-        syslog.error(message);
+        log(SyslogConstants.LEVEL_ERROR, message);
     }
 
     public void logCritical(@NotNullable String message)
     {
-        syslog.critical(message);
+        log(SyslogConstants.LEVEL_CRITICAL, message);
     }
 
     public void logAlert(@NotNullable String message)
     {
-        syslog.alert(message);
+        log(SyslogConstants.LEVEL_ALERT, message);
     }
 
     public void logEmergency(@NotNullable String message)
     {
-        syslog.emergency(message);
+        log(SyslogConstants.LEVEL_EMERGENCY, message);
+    }
+
+    /**
+     * Creates a batch of messages that are encoded like the corresponding
+     * log methods would do, but sent with a single network write. The batch
+     * uses the encoder of the calling thread, so the thread must not log
+     * anything else before the batch is sent.
+     */
+    public Batch createBatch()
+    {
+        return new Batch(getEncoder());
+    }
+
+    public synchronized void close()
+    {
+        if (null != transport)
+        {
+            transport.close();
+            transport = null;
+        }
+        else if (null != spool)
+        {
+            try
+            {
+                spool.close();
+            }
+            catch (IOException ex)
+            {
+                throw new SyslogRuntimeException(ex);
+            }
+        }
+        spool = null;
+    }
+
+    private SyslogEncoder getEncoder()
+    {
+        SyslogEncoder encoder = encoders.get();
+        encoder.clear();
+        return encoder;
+    }
+
+    private void encode(@NotNullable SyslogEncoder encoder, int severity, @NotNullable String message)
+    {
+        encodePlain(encoder, syslogConfig.getFacility(), validateSeverity(severity), System.currentTimeMillis(), syslogConfig.getLocalName(), null, 0, message);
+    }
+
+    private void encode(@NotNullable SyslogEncoder encoder, int severity, @NotNullable String messageId, Map<String, Map<String, String>> structuredData, String message)
+    {
+        encodeStructured(encoder, syslogConfig.getFacility(), validateSeverity(severity), System.currentTimeMillis(), syslogConfig.getLocalName(), messageId, 0, structuredData, message);
+    }
+
+    private void encode(@NotNullable SyslogEncoder encoder, @NotNullable SyslogHeader header, @NotNullable CharSequence message)
+    {
+        encodePlain(encoder, header.getFacility(), header.getSeverity(), getTimestamp(header), getLocalName(header), header.getMessageId(), header.getRoutingKey(), message);
+    }
+
+    private void encode(@NotNullable SyslogEncoder encoder, @NotNullable SyslogHeader header, Map<String, Map<String, String>> structuredData, CharSequence message)
+    {
+        encodeStructured(encoder, header.getFacility(), header.getSeverity(), getTimestamp(header), getLocalName(header), header.getMessageId(), header.getRoutingKey(), structuredData, message);
+    }
+
+    private void encodePlain(SyslogEncoder encoder, int facility, int severity, long timestamp, String localName, String messageId, int routingKey, CharSequence message)
+    {
+        if (syslogConfig.isUseStructuredData())
+        {
+            encoder.beginRfc5424(facility, severity, timestamp, localName, messageId);
+            encoder.writeStructuredData(null);
+        }
+        else
+        {
+            encoder.beginRfc3164(facility, severity, timestamp, localName);
+        }
+        encoder.write(message);
+        encoder.endFrame(routingKey);
+    }
+
+    private void encodeStructured(SyslogEncoder encoder, int facility, int severity, long timestamp, String localName, String messageId, int routingKey, Map<String, Map<String, String>> structuredData, CharSequence message)
+    {
+        encoder.beginRfc5424(facility, severity, timestamp, localName, messageId);
+        encoder.writeStructuredData(structuredData);
+        if (null != message)
+        {
+            encoder.beginMessage();
+            encoder.write(message);
+        }
+        encoder.endFrame(routingKey);
+    }
+
+    private static long getTimestamp(SyslogHeader header)
+    {
+        return SyslogHeader.TIMESTAMP_NOW == header.getTimestamp() ? System.currentTimeMillis() : header.getTimestamp();
+    }
+
+    private String getLocalName(SyslogHeader header)
+    {
+        return null == header.getLocalName() ? syslogConfig.getLocalName() : header.getLocalName();
+    }
+
+    private static int validateSeverity(int severity)
+    {
+        if(SYSLOG_SEVERITY_EMERGENCY > severity || SYSLOG_SEVERITY_DEBUG < severity)
+        {
+            return SYSLOG_SEVERITY_INFORMATIONAL;
+        }
+        return severity;
+    }
+
+    private Map<String, Map<String, String>> wrapStructuredData(Map<String, String> structuredData)
+    {
+        if (null == structuredData)
+        {
+            return null;
+        }
+        return Collections.singletonMap(syslogStructuredDataTag, structuredData);
+    }
+
+    private void send(@NotNullable SyslogEncoder encoder, long encodeStart)
+    {
+        try
+        {
+            sendFrames(encoder, encodeStart);
+        }
+        catch (IOException ex)
+        {
+            throw new SyslogRuntimeException(ex);
+        }
+    }
+
+    private void sendFrames(@NotNullable SyslogEncoder encoder, long encodeStart) throws IOException
+    {
+        SyslogClientListener listener = this.listener;
+        int frameCount = encoder.getFrameCount();
+        long sendStart = System.nanoTime();
+        listener.onEncoded(frameCount, sendStart - encodeStart);
+        try
+        {
+            getTransport().send(encoder);
+        }
+        catch (IOException | RuntimeException ex)
+        {
+            listener.onError(ex);
+            throw ex;
+        }
+        listener.onSent(frameCount, encoder.getFrameEnd(frameCount - 1), System.nanoTime() - sendStart);
+        if (0 < encoder.getTruncatedCount() || 0 < encoder.getOversizeCount())
+        {
+            listener.onTruncated(encoder.getTruncatedCount(), encoder.getOversizeCount());
+        }
+        listener.onHeaderCache(encoder.getHeaderCacheHitCount(), encoder.getHeaderCacheMissCount());
+    }
+
+    private SyslogTransport getTransport()
+    {
+        SyslogTransport transport = this.transport;
+        if (null != transport)
+        {
+            return transport;
+        }
+        synchronized (this)
+        {
+            if (null == this.transport)
+            {
+                this.transport = createTransport();
+            }
+            return this.transport;
+        }
+    }
+
+    private SyslogTransport createTransport()
+    {
+        SyslogTransport transport;
+        if (null == transportRegistry)
+        {
+            transport = createDestinations(listener);
+        }
+        else
+        {
+            transport = transportRegistry.acquire(getTransportKey(), listener, new SyslogTransportRegistry.Factory()
+            {
+                @Override
+                public SyslogTransport create(@NotNullable SyslogClientListener listener)
+                {
+                    return createDestinations(listener);
+                }
+            });
+        }
+        if (null == spool)
+        {
+            return transport;
+        }
+        return new SpoolingSyslogTransport(transport, spool, spoolReplayRate, listener);
+    }
+
+    /**
+     * Describes everything that determines the transport of the client, i.e.
+     * which clients can share it.
+     */
+    private String getTransportKey()
+    {
+        StringBuilder key = new StringBuilder(syslogTransport).append('|');
+        if (null == destinations)
+        {
+            key.append(syslogConfig.getHost()).append(':').append(syslogConfig.getPort());
+        }
+        else
+        {
+            key.append(destinations).append('|').append(policy);
+        }
+        key.append('|').append(connectionCount).append('|').append(sharding);
+        key.append('|').append(getFraming());
+        byte[] trailer = getTrailer();
+        if (null != trailer)
+        {
+            for (byte b : trailer)
+            {
+                key.append(String.format(":%02x", b));
+            }
+        }
+        if ("RELP".equals(syslogTransport))
+        {
+            key.append('|').append(relpWindow);
+        }
+        if ("TCPTLS".equals(syslogTransport))
+        {
+            key.append('|').append(tlsKey);
+        }
+        return key.toString();
+    }
+
+    private SyslogTransport createDestinations(SyslogClientListener listener)
+    {
+        if (null == destinations)
+        {
+            return createConnections(syslogConfig.getHost(), syslogConfig.getPort(), listener);
+        }
+        List<SyslogTransport> transports = new ArrayList<>(destinations.size());
+        for (SyslogDestination destination : destinations)
+        {
+            transports.add(createConnections(destination.getHost(), destination.getPort(), listener));
+        }
+        if (1 == transports.size())
+        {
+            return transports.get(0);
+        }
+        return new SyslogDestinationGroup(destinations, transports, policy, !"UDP".equals(syslogTransport), DESTINATION_PROBE_INTERVAL_MILLIS, listener);
+    }
+
+    private SyslogTransport createConnections(String host, int port, SyslogClientListener listener)
+    {
+        if (1 == connectionCount)
+        {
+            return createConnection(host, port, listener);
+        }
+        SyslogTransport[] connections = new SyslogTransport[connectionCount];
+        for (int i = 0; i < connections.length; i++)
+        {
+            connections[i] = createConnection(host, port, listener);
+        }
+        return new SyslogConnectionPool(connections, sharding);
+    }
+
+    private SyslogTransport createConnection(String host, int port, SyslogClientListener listener)
+    {
+        switch(syslogTransport)
+        {
+            case "TCP":
+                return new TcpSyslogTransport(host, port, listener);
+            case "TCPTLS":
+                if (null == sslSocketFactory)
+                {
+                    sslSocketFactory = (SSLSocketFactory) SSLSocketFactory.getDefault();
+                }
+                return new TlsSyslogTransport(host, port, sslSocketFactory, tlsProtocols, tlsCipherSuites, isTlsHostnameVerified, listener);
+            case "RELP":
+                return new RelpSyslogTransport(host, port, relpWindow, listener);
+            case "UDP":
+            default:
+                return new UdpSyslogTransport(host, port);
+        }
+    }
+
+    public class Batch
+    {
+        private final SyslogEncoder encoder;
+        private final long encodeStart;
+
+        private Batch(@NotNullable SyslogEncoder encoder)
+        {
+            this.encoder = encoder;
+            this.encodeStart = System.nanoTime();
+        }
+
+        /**
+         * Adds a message as {@link SyslogClient#log(int, String)} would send it,
+         * using the facility and local name currently set on the client.
+         */
+        public void add(int severity, @NotNullable String message)
+        {
+            encode(encoder, severity, message);
+        }
+
+        /**
+         * Adds a message as {@link SyslogClient#log(int, String, Map, String)} would send it,
+         * using the facility and local name currently set on the client.
+         */
+        public void add(int severity, @NotNullable String messageId, Map<String, String> structuredData, String message)
+        {
+            encode(encoder, severity, messageId, wrapStructuredData(structuredData), message);
+        }
+
+        /**
+         * Adds a message as {@link SyslogClient#log(SyslogHeader, CharSequence)} would send it.
+         */
+        public void add(@NotNullable SyslogHeader header, @NotNullable CharSequence message)
+        {
+            encode(encoder, header, message);
+        }
+
+        /**
+         * Adds a message as {@link SyslogClient#logStructured(SyslogHeader, Map, CharSequence)} would send it.
+         */
+        public void addStructured(@NotNullable SyslogHeader header, Map<String, Map<String, String>> structuredData, CharSequence message)
+        {
+            encode(encoder, header, structuredData, message);
+        }
+
+        /**
+         * Adds a message as {@link SyslogClient#logStructured(int, String, Map, String)} would send it,
+         * using the facility and local name currently set on the client.
+         */
+        public void addStructured(int severity, @NotNullable String messageId, Map<String, Map<String, String>> structuredData, String message)
+        {
+            encode(encoder, severity, messageId, structuredData, message);
+        }
+
+        public int size()
+        {
+            return encoder.getFrameCount();
+        }
+
+        public void send() throws IOException
+        {
+            sendTo(SyslogClient.this);
+            encoder.clear();
+        }
+
+        /**
+         * Sends the encoded messages over another client with the same
+         * {@link SyslogClient#getFormat()}, so a message sent to several
+         * servers is encoded only once. The batch is kept and can be sent to
+         * further clients.
+         */
+        public void sendTo(@NotNullable SyslogClient client) throws IOException
+        {
+            if (0 == encoder.getFrameCount())
+            {
+                return;
+            }
+            client.sendFrames(encoder, encodeStart);
+        }
     }
 }
 
@@ -0,0 +1,93 @@
+package biz.dfch.j.syslog4j;
+
+/**
+ * Receives notifications about what a {@link SyslogClient} encodes and sends,
+ * i.e. to record metrics. Called on the sending thread, so implementations
+ * must be thread-safe and must not block.
+ */
+public interface SyslogClientListener
+{
+    SyslogClientListener NONE = new SyslogClientListenerAdapter()
+    {
+    };
+
+    void onEncoded(int messageCount, long nanos);
+
+    void onSent(int messageCount, int byteCount, long nanos);
+
+    /**
+     * A broken connection was replaced by a new one.
+     */
+    void onReconnect();
+
+    /**
+     * A TLS handshake completed.
+     *
+     * @param isResumed true if an earlier session was resumed, false for a full handshake
+     */
+    void onHandshake(long nanos, boolean isResumed);
+
+    void onError(Exception ex);
+
+    /**
+     * Sending to the destination failed, it does not take messages until it is reachable again.
+     */
+    void onDestinationDown(String destination);
+
+    void onDestinationUp(String destination);
+
+    /**
+     * Messages were written to the spool because the destination could not be reached.
+     *
+     * @param lostCount number of messages dropped or evicted because the spool is full
+     */
+    void onSpooled(int messageCount, int lostCount);
+
+    /**
+     * Spooled messages were sent.
+     */
+    void onReplayed(int messageCount);
+
+    /**
+     * The server acknowledged a message, i.e. with RELP.
+     *
+     * @param nanos time from sending the message to its acknowledgment
+     */
+    void onAcknowledged(long nanos);
+
+    /**
+     * Messages of a batch were shortened to fit the maximum datagram size.
+     *
+     * @param truncatedCount number of messages whose text was shortened
+     * @param oversizeCount number of messages whose header and structured data alone were too long, they were cut
+     */
+    void onTruncated(int truncatedCount, int oversizeCount);
+
+    /**
+     * Headers of a batch were encoded from cached bytes or had to be encoded first.
+     *
+     * @param hitCount number of headers taken from the cache
+     * @param missCount number of headers with a priority or host name not cached yet
+     */
+    void onHeaderCache(int hitCount, int missCount);
+}
+
+/*
+    d-fens Graylog SYSLOG Output Plugin
+    Copyright (C) 2015  Ronald Rink, d-fens GmbH
+
+    This library is free software; you can redistribute it and/or
+    modify it under the terms of the GNU Lesser General Public
+    License as published by the Free Software Foundation; either
+    version 2.1 of the License, or (at your option) any later version.
+
+    This library is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+    Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public
+    License along with this library; if not, write to the Free Software
+    Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+
+ */
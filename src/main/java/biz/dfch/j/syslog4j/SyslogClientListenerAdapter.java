@@ -0,0 +1,88 @@
+package biz.dfch.j.syslog4j;
+
+/**
+ * {@link SyslogClientListener} that ignores all notifications, so listeners
+ * only override the ones they are interested in.
+ */
+public abstract class SyslogClientListenerAdapter implements SyslogClientListener
+{
+    @Override
+    public void onEncoded(int messageCount, long nanos)
+    {
+    }
+
+    @Override
+    public void onSent(int messageCount, int byteCount, long nanos)
+    {
+    }
+
+    @Override
+    public void onReconnect()
+    {
+    }
+
+    @Override
+    public void onHandshake(long nanos, boolean isResumed)
+    {
+    }
+
+    @Override
+    public void onError(Exception ex)
+    {
+    }
+
+    @Override
+    public void onDestinationDown(String destination)
+    {
+    }
+
+    @Override
+    public void onDestinationUp(String destination)
+    {
+    }
+
+    @Override
+    public void onSpooled(int messageCount, int lostCount)
+    {
+    }
+
+    @Override
+    public void onReplayed(int messageCount)
+    {
+    }
+
+    @Override
+    public void onAcknowledged(long nanos)
+    {
+    }
+
+    @Override
+    public void onTruncated(int truncatedCount, int oversizeCount)
+    {
+    }
+
+    @Override
+    public void onHeaderCache(int hitCount, int missCount)
+    {
+    }
+}
+
+/*
+    d-fens Graylog SYSLOG Output Plugin
+    Copyright (C) 2015  Ronald Rink, d-fens GmbH
+
+    This library is free software; you can redistribute it and/or
+    modify it under the terms of the GNU Lesser General Public
+    License as published by the Free Software Foundation; either
+    version 2.1 of the License, or (at your option) any later version.
+
+    This library is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+    Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public
+    License along with this library; if not, write to the Free Software
+    Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+
+ */
@@ -0,0 +1,142 @@
+package biz.dfch.j.syslog4j;
+
+import org.msgpack.annotation.NotNullable;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Spreads messages over several connections to the same destination, so
+ * that several threads can send at the same time and the receiver can read
+ * the connections in parallel. With {@link Sharding#ROUND_ROBIN} every batch
+ * goes to the next connection; with {@link Sharding#KEY_HASH} a message always
+ * goes to the connection selected by its routing key, which keeps the order
+ * of messages with the same key.
+ */
+public class SyslogConnectionPool implements SyslogTransport
+{
+    public enum Sharding
+    {
+        ROUND_ROBIN,
+        KEY_HASH
+    }
+
+    private final SyslogTransport[] connections;
+    private final Sharding sharding;
+    private final AtomicInteger next = new AtomicInteger();
+    private final ThreadLocal<FrameBuffer[]> subsets = new ThreadLocal<FrameBuffer[]>()
+    {
+        @Override
+        protected FrameBuffer[] initialValue()
+        {
+            FrameBuffer[] subsets = new FrameBuffer[connections.length];
+            for (int i = 0; i < subsets.length; i++)
+            {
+                subsets[i] = new FrameBuffer();
+            }
+            return subsets;
+        }
+    };
+
+    public SyslogConnectionPool(@NotNullable SyslogTransport[] connections, @NotNullable Sharding sharding)
+    {
+        if (0 == connections.length)
+        {
+            throw new IllegalArgumentException("connections: Parameter validation FAILED. At least one connection is required.");
+        }
+        this.connections = connections.clone();
+        this.sharding = sharding;
+    }
+
+    @Override
+    public void send(SyslogFrames frames) throws IOException
+    {
+        if (1 == connections.length)
+        {
+            connections[0].send(frames);
+            return;
+        }
+        if (Sharding.ROUND_ROBIN == sharding)
+        {
+            connections[(next.getAndIncrement() & Integer.MAX_VALUE) % connections.length].send(frames);
+            return;
+        }
+
+        int frameCount = frames.getFrameCount();
+        int connection = frames.getFrameKey(0) % connections.length;
+        boolean isSingleConnection = true;
+        for (int i = 1; i < frameCount && isSingleConnection; i++)
+        {
+            isSingleConnection = connection == frames.getFrameKey(i) % connections.length;
+        }
+        if (isSingleConnection)
+        {
+            connections[connection].send(frames);
+            return;
+        }
+
+        FrameBuffer[] subsets = this.subsets.get();
+        ByteBuffer buffer = frames.getFrames();
+        int start = 0;
+        for (int i = 0; i < frameCount; i++)
+        {
+            int end = frames.getFrameEnd(i);
+            subsets[frames.getFrameKey(i) % connections.length].add(buffer.array(), buffer.arrayOffset() + start, end - start, frames.getFrameKey(i));
+            start = end;
+        }
+        IOException failure = null;
+        for (int i = 0; i < subsets.length; i++)
+        {
+            if (0 == subsets[i].getFrameCount())
+            {
+                continue;
+            }
+            try
+            {
+                connections[i].send(subsets[i]);
+            }
+            catch (IOException ex)
+            {
+                failure = ex;
+            }
+            finally
+            {
+                subsets[i].clear();
+            }
+        }
+        if (null != failure)
+        {
+            throw failure;
+        }
+    }
+
+    @Override
+    public void close()
+    {
+        for (SyslogTransport connection : connections)
+        {
+            connection.close();
+        }
+    }
+}
+
+/*
+    d-fens Graylog SYSLOG Output Plugin
+    Copyright (C) 2015  Ronald Rink, d-fens GmbH
+
+    This library is free software; you can redistribute it and/or
+    modify it under the terms of the GNU Lesser General Public
+    License as published by the Free Software Foundation; either
+    version 2.1 of the License, or (at your option) any later version.
+
+    This library is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+    Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public
+    License along with this library; if not, write to the Free Software
+    Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+
+ */
@@ -0,0 +1,129 @@
+package biz.dfch.j.syslog4j;
+
+import org.msgpack.annotation.NotNullable;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Host and port of a Syslog server.
+ */
+public final class SyslogDestination
+{
+    private final String host;
+    private final int port;
+
+    public SyslogDestination(@NotNullable String host, int port)
+    {
+        if (host.isEmpty())
+        {
+            throw new IllegalArgumentException("host: Parameter validation FAILED. Value cannot be empty.");
+        }
+        if (0 >= port || 65535 < port)
+        {
+            throw new IllegalArgumentException(String.format("port: Parameter validation FAILED. Port must be between 1 and 65535 (was '%d').", port));
+        }
+        this.host = host;
+        this.port = port;
+    }
+
+    /**
+     * Parses a comma separated list of destinations of the form 'host', 'host:port' or '[ipv6]:port'.
+     *
+     * @param defaultPort port of destinations that do not specify one
+     */
+    public static List<SyslogDestination> parseList(@NotNullable String destinations, int defaultPort)
+    {
+        List<SyslogDestination> result = new ArrayList<>();
+        for (String destination : destinations.split(","))
+        {
+            destination = destination.trim();
+            if (destination.isEmpty())
+            {
+                continue;
+            }
+            result.add(parse(destination, defaultPort));
+        }
+        if (result.isEmpty())
+        {
+            throw new IllegalArgumentException("destinations: Parameter validation FAILED. Value must contain at least one destination.");
+        }
+        return result;
+    }
+
+    private static SyslogDestination parse(String destination, int defaultPort)
+    {
+        String host = destination;
+        String port = null;
+        if (destination.startsWith("["))
+        {
+            int end = destination.indexOf(']');
+            if (0 > end)
+            {
+                throw new IllegalArgumentException(String.format("destination: Parameter validation FAILED. '%s' is missing ']'.", destination));
+            }
+            host = destination.substring(1, end);
+            if (destination.length() > end + 1)
+            {
+                if (':' != destination.charAt(end + 1))
+                {
+                    throw new IllegalArgumentException(String.format("destination: Parameter validation FAILED. '%s' is not of the form '[host]:port'.", destination));
+                }
+                port = destination.substring(end + 2);
+            }
+        }
+        else if (destination.indexOf(':') == destination.lastIndexOf(':') && 0 <= destination.indexOf(':'))
+        {
+            host = destination.substring(0, destination.indexOf(':'));
+            port = destination.substring(destination.indexOf(':') + 1);
+        }
+        if (null == port)
+        {
+            return new SyslogDestination(host, defaultPort);
+        }
+        try
+        {
+            return new SyslogDestination(host, Integer.parseInt(port.trim(), 10));
+        }
+        catch (NumberFormatException ex)
+        {
+            throw new IllegalArgumentException(String.format("destination: Parameter validation FAILED. '%s' is not a valid port.", port));
+        }
+    }
+
+    public String getHost()
+    {
+        return host;
+    }
+
+    public int getPort()
+    {
+        return port;
+    }
+
+    @Override
+    public String toString()
+    {
+        return host.contains(":") ? String.format("[%s]:%d", host, port) : String.format("%s:%d", host, port);
+    }
+}
+
+/*
+    d-fens Graylog SYSLOG Output Plugin
+    Copyright (C) 2015  Ronald Rink, d-fens GmbH
+
+    This library is free software; you can redistribute it and/or
+    modify it under the terms of the GNU Lesser General Public
+    License as published by the Free Software Foundation; either
+    version 2.1 of the License, or (at your option) any later version.
+
+    This library is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+    Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public
+    License along with this library; if not, write to the Free Software
+    Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+
+ */
@@ -0,0 +1,271 @@
+package biz.dfch.j.syslog4j;
+
+import org.msgpack.annotation.NotNullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Sends messages to one of several Syslog servers. The {@link Policy} picks
+ * a server for each batch; if sending fails the server is ejected and the
+ * batch is sent to the next healthy one. Ejected servers are probed in the
+ * background and take messages again as soon as they are reachable.
+ */
+public class SyslogDestinationGroup implements SyslogTransport
+{
+    private static final Logger LOG = LoggerFactory.getLogger(SyslogDestinationGroup.class);
+    private static final int PROBE_CONNECT_TIMEOUT_MILLIS = 2000;
+
+    public enum Policy
+    {
+        FAILOVER,
+        ROUND_ROBIN,
+        LEAST_OUTSTANDING
+    }
+
+    private final Member[] members;
+    private final Policy policy;
+    private final boolean isProbedByConnect;
+    private final long probeIntervalMillis;
+    private final SyslogClientListener listener;
+    private final AtomicInteger next = new AtomicInteger();
+    private ScheduledExecutorService prober;
+
+    /**
+     * @param transports transport to each destination, in the same order as the destinations
+     * @param isProbedByConnect true to only take back an ejected destination once a TCP connection to it succeeds,
+     *                          false to take it back after the probe interval (i.e. for UDP)
+     */
+    public SyslogDestinationGroup(@NotNullable List<SyslogDestination> destinations, @NotNullable List<? extends SyslogTransport> transports, @NotNullable Policy policy, boolean isProbedByConnect, long probeIntervalMillis, @NotNullable SyslogClientListener listener)
+    {
+        if (destinations.isEmpty() || destinations.size() != transports.size())
+        {
+            throw new IllegalArgumentException("transports: Parameter validation FAILED. There must be one transport for each destination.");
+        }
+        this.members = new Member[destinations.size()];
+        for (int i = 0; i < members.length; i++)
+        {
+            members[i] = new Member(destinations.get(i), transports.get(i));
+        }
+        this.policy = policy;
+        this.isProbedByConnect = isProbedByConnect;
+        this.probeIntervalMillis = probeIntervalMillis;
+        this.listener = listener;
+    }
+
+    @Override
+    public void send(SyslogFrames frames) throws IOException
+    {
+        int first = select();
+        if (0 > first)
+        {
+            throw new IOException(String.format("Sending to %d destinations FAILED. No destination is healthy.", members.length));
+        }
+        IOException failure = null;
+        for (int i = 0; i < members.length; i++)
+        {
+            Member member = members[(first + i) % members.length];
+            if (!member.isHealthy.get())
+            {
+                continue;
+            }
+            member.outstanding.incrementAndGet();
+            try
+            {
+                member.transport.send(frames);
+                return;
+            }
+            catch (IOException ex)
+            {
+                failure = ex;
+                eject(member, ex);
+            }
+            catch (RuntimeException ex)
+            {
+                // i.e. UnresolvedAddressException, the destination failed as much as with an IOException
+                failure = new IOException(String.format("Sending to '%s' FAILED. %s", member.destination, ex), ex);
+                eject(member, ex);
+            }
+            finally
+            {
+                member.outstanding.decrementAndGet();
+            }
+        }
+        throw null == failure ? new IOException("Sending FAILED. No destination is healthy.") : failure;
+    }
+
+    /**
+     * @return the number of destinations that currently take messages
+     */
+    public int getHealthyCount()
+    {
+        int count = 0;
+        for (Member member : members)
+        {
+            if (member.isHealthy.get())
+            {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    @Override
+    public void close()
+    {
+        synchronized (this)
+        {
+            if (null != prober)
+            {
+                prober.shutdownNow();
+                prober = null;
+            }
+        }
+        for (Member member : members)
+        {
+            member.transport.close();
+        }
+    }
+
+    private int select()
+    {
+        int start = 0;
+        if (Policy.FAILOVER != policy)
+        {
+            start = (next.getAndIncrement() & Integer.MAX_VALUE) % members.length;
+        }
+        int selected = -1;
+        for (int i = 0; i < members.length; i++)
+        {
+            int index = (start + i) % members.length;
+            Member member = members[index];
+            if (!member.isHealthy.get())
+            {
+                continue;
+            }
+            if (Policy.LEAST_OUTSTANDING != policy)
+            {
+                return index;
+            }
+            if (0 > selected || members[selected].outstanding.get() > member.outstanding.get())
+            {
+                selected = index;
+            }
+        }
+        return selected;
+    }
+
+    private void eject(Member member, Exception ex)
+    {
+        if (!member.isHealthy.compareAndSet(true, false))
+        {
+            return;
+        }
+        LOG.warn(String.format("Sending to '%s' FAILED. Ejecting destination until it is reachable again.", member.destination), ex);
+        member.transport.close();
+        listener.onDestinationDown(member.destination.toString());
+        startProber();
+    }
+
+    private synchronized void startProber()
+    {
+        if (null != prober)
+        {
+            return;
+        }
+        prober = Executors.newSingleThreadScheduledExecutor(new ThreadFactory()
+        {
+            @Override
+            public Thread newThread(Runnable runnable)
+            {
+                Thread thread = new Thread(runnable, "syslog-destination-prober");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        prober.scheduleWithFixedDelay(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                probe();
+            }
+        }, probeIntervalMillis, probeIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private void probe()
+    {
+        for (Member member : members)
+        {
+            if (member.isHealthy.get() || !isReachable(member.destination))
+            {
+                continue;
+            }
+            member.isHealthy.set(true);
+            LOG.info(String.format("Destination '%s' is reachable again.", member.destination));
+            listener.onDestinationUp(member.destination.toString());
+        }
+    }
+
+    private boolean isReachable(SyslogDestination destination)
+    {
+        if (!isProbedByConnect)
+        {
+            return true;
+        }
+        try (Socket socket = new Socket())
+        {
+            socket.connect(new InetSocketAddress(destination.getHost(), destination.getPort()), PROBE_CONNECT_TIMEOUT_MILLIS);
+            return true;
+        }
+        catch (IOException ex)
+        {
+            LOG.debug(String.format("Probing '%s' FAILED.", destination), ex);
+            return false;
+        }
+    }
+
+    private static final class Member
+    {
+        private final SyslogDestination destination;
+        private final SyslogTransport transport;
+        private final AtomicBoolean isHealthy = new AtomicBoolean(true);
+        private final AtomicInteger outstanding = new AtomicInteger();
+
+        private Member(SyslogDestination destination, SyslogTransport transport)
+        {
+            this.destination = destination;
+            this.transport = transport;
+        }
+    }
+}
+
+/*
+    d-fens Graylog SYSLOG Output Plugin
+    Copyright (C) 2015  Ronald Rink, d-fens GmbH
+
+    This library is free software; you can redistribute it and/or
+    modify it under the terms of the GNU Lesser General Public
+    License as published by the Free Software Foundation; either
+    version 2.1 of the License, or (at your option) any later version.
+
+    This library is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+    Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public
+    License along with this library; if not, write to the Free Software
+    Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+
+ */
@@ -0,0 +1,842 @@
+package biz.dfch.j.syslog4j;
+
+import org.graylog2.syslog4j.util.SyslogUtility;
+import org.joda.time.format.DateTimeFormat;
+import org.joda.time.format.DateTimeFormatter;
+import org.msgpack.annotation.NotNullable;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Encodes RFC3164 and RFC5424 syslog messages straight into a reusable buffer
+ * as UTF-8, without building intermediate Strings. Headers are byte for byte
+ * what syslog4j's message processors produce for the same input.
+ *
+ * Several messages can be encoded one after the other; they are kept back to
+ * back in the buffer and exposed as {@link SyslogFrames}. An encoder keeps
+ * state between calls and must only be used by one thread at a time.
+ *
+ * With octet-counting framing, space for the length prefix is reserved in
+ * front of each message and filled in once the message is complete. The space
+ * reserved is sized after the previous message, so the message only has to be
+ * moved within the buffer when its length has a different number of digits.
+ *
+ * With a maximum frame length, i.e. the payload size of a UDP datagram that is
+ * not fragmented, messages that do not fit are shortened while they are
+ * written: the parts of a {@link SyslogBody} with the lowest priority first,
+ * then the end of the frame. Every shortened part ends with '...'.
+ *
+ * The bytes of a header around its timestamp are cached once encoded: the PRI
+ * (and VERSION) for every priority, HOSTNAME, APP-NAME and PROCID for the
+ * {@link #HEADER_CACHE_SIZE} host names used most recently. A header then
+ * takes two array copies plus the timestamp.
+ */
+public class SyslogEncoder implements SyslogFrames
+{
+    private static final int INITIAL_CAPACITY = 4096;
+    private static final byte[] NIL = {'-'};
+    private static final int SD_NAME_LENGTH_MAX = 32;
+    private static final byte[] RFC5424_VERSION = {'1', ' '};
+    private static final String APPLICATION_NAME_DEFAULT = "unknown";
+    private static final byte[] TRUNCATION_MARKER = {'.', '.', '.'};
+    /**
+     * Smallest maximum frame length, every receiver must accept messages of this size (RFC5426).
+     */
+    public static final int MAX_FRAME_LENGTH_MIN = 480;
+    /**
+     * Number of host names whose header bytes are kept, the least recently used is dropped first.
+     */
+    public static final int HEADER_CACHE_SIZE = 1024;
+    private static final int PRIORITY_MAX = 191;
+
+    private final boolean isOctetCounting;
+    private final byte[] trailer;
+    private final byte[] defaultLocalName;
+    private final byte[] applicationName;
+    private final byte[] processId;
+    private final DateTimeFormatter rfc3164TimestampFormatter = DateTimeFormat.forPattern("MMM dd HH:mm:ss").withLocale(Locale.ENGLISH);
+    private final TimestampCache rfc5424Timestamps = new TimestampCache();
+    private final StringBuilder timestamp = new StringBuilder(32);
+    private long rfc3164Second = Long.MIN_VALUE;
+    private byte[] rfc3164Timestamp;
+
+    private ByteBuffer buffer = ByteBuffer.allocate(INITIAL_CAPACITY);
+    private int[] frameEnds = new int[16];
+    private int[] frameKeys = new int[16];
+    private int frameCount = 0;
+    private int messageStart = -1;
+    private boolean isRfc5424Message = false;
+    private int payloadStart = 0;
+    private int prefixDigits = 3;
+    private int maxFrameLength = 0;
+    private boolean isTruncated = false;
+    private int truncatedCount = 0;
+    private int oversizeCount = 0;
+    private int[] partLengths = new int[16];
+    private int[] partKeeps = new int[16];
+    private final byte[][] rfc3164Priorities = new byte[PRIORITY_MAX + 1][];
+    private final byte[][] rfc5424Priorities = new byte[PRIORITY_MAX + 1][];
+    private final HostPrefix defaultHost = new HostPrefix();
+    private final LinkedHashMap<String, HostPrefix> hosts = new LinkedHashMap<String, HostPrefix>(16, 0.75f, true)
+    {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, HostPrefix> eldest)
+        {
+            return HEADER_CACHE_SIZE < size();
+        }
+    };
+    private boolean isHeaderCached = false;
+    private int headerCacheHitCount = 0;
+    private int headerCacheMissCount = 0;
+
+    /**
+     * @param trailer bytes appended to every frame, e.g. the delimiter of a TCP stream, or null for none
+     */
+    public SyslogEncoder(byte[] trailer)
+    {
+        this(SyslogFraming.NON_TRANSPARENT, trailer);
+    }
+
+    /**
+     * @param trailer bytes appended to every frame with non-transparent framing, or null for none
+     */
+    public SyslogEncoder(@NotNullable SyslogFraming framing, byte[] trailer)
+    {
+        this.isOctetCounting = SyslogFraming.OCTET_COUNTING == framing;
+        this.trailer = null == trailer || isOctetCounting ? new byte[0] : trailer.clone();
+        this.defaultLocalName = SyslogUtility.getLocalName().getBytes(StandardCharsets.UTF_8);
+        this.applicationName = APPLICATION_NAME_DEFAULT.getBytes(StandardCharsets.UTF_8);
+        this.processId = NIL;
+    }
+
+    /**
+     * Forgets all frames encoded so far.
+     */
+    public void clear()
+    {
+        buffer.clear();
+        frameCount = 0;
+        messageStart = -1;
+        truncatedCount = 0;
+        oversizeCount = 0;
+        headerCacheHitCount = 0;
+        headerCacheMissCount = 0;
+    }
+
+    /**
+     * Limits the length of every frame, without the octet-counting prefix.
+     *
+     * @param maxFrameLength maximum length in bytes, or 0 for no limit
+     */
+    public void setMaxFrameLength(int maxFrameLength)
+    {
+        if (0 != maxFrameLength && MAX_FRAME_LENGTH_MIN > maxFrameLength)
+        {
+            throw new IllegalArgumentException(String.format("maxFrameLength: Parameter validation FAILED. Value must be 0 or at least %d (was '%d').", MAX_FRAME_LENGTH_MIN, maxFrameLength));
+        }
+        this.maxFrameLength = maxFrameLength;
+    }
+
+    /**
+     * @return number of frames encoded since {@link #clear()} whose message was shortened to fit the maximum frame length
+     */
+    public int getTruncatedCount()
+    {
+        return truncatedCount;
+    }
+
+    /**
+     * @return number of frames encoded since {@link #clear()} whose header and structured data alone did not fit the maximum frame length, they were cut
+     */
+    public int getOversizeCount()
+    {
+        return oversizeCount;
+    }
+
+    /**
+     * @return number of headers encoded since {@link #clear()} entirely from cached bytes
+     */
+    public int getHeaderCacheHitCount()
+    {
+        return headerCacheHitCount;
+    }
+
+    /**
+     * @return number of headers encoded since {@link #clear()} with a priority or host name not cached yet
+     */
+    public int getHeaderCacheMissCount()
+    {
+        return headerCacheMissCount;
+    }
+
+    /**
+     * Writes an RFC3164 header: PRI, TIMESTAMP and HOSTNAME.
+     *
+     * @param facility syslog4j facility, i.e. the facility code already shifted left by 3
+     * @param localName host name to send, or null for the name of the local host
+     */
+    public void beginRfc3164(int facility, int severity, long timestampMillis, String localName)
+    {
+        beginFrame();
+        isHeaderCached = true;
+        writePriority(rfc3164Priorities, facility | severity, false);
+        writeBytes(getRfc3164Timestamp(timestampMillis));
+        writeHost(localName, false);
+        countHeader();
+        messageStart = buffer.position();
+        isRfc5424Message = false;
+    }
+
+    /**
+     * Writes an RFC5424 header: PRI, VERSION, TIMESTAMP, HOSTNAME, APP-NAME,
+     * PROCID and MSGID. Structured data has to follow before the message.
+     *
+     * @param facility syslog4j facility, i.e. the facility code already shifted left by 3
+     * @param localName host name to send, or null for the name of the local host
+     */
+    public void beginRfc5424(int facility, int severity, long timestampMillis, String localName, String messageId)
+    {
+        beginFrame();
+        isHeaderCached = true;
+        writePriority(rfc5424Priorities, facility | severity, true);
+        timestamp.setLength(0);
+        rfc5424Timestamps.appendTo(timestamp, timestampMillis);
+        writeAscii(timestamp);
+        writeHost(localName, true);
+        countHeader();
+        writeNilProtected(messageId);
+        writeByte(' ');
+        messageStart = -1;
+        isRfc5424Message = true;
+    }
+
+    /**
+     * Writes the STRUCTURED-DATA part. Elements without parameters are left
+     * out and NILVALUE is written if no element remains. SD-IDs and parameter
+     * names are restricted to the characters RFC5424 allows, parameter values
+     * are escaped.
+     */
+    public void writeStructuredData(Map<String, Map<String, String>> structuredData)
+    {
+        boolean isEmpty = true;
+        if (null != structuredData)
+        {
+            for (Map.Entry<String, Map<String, String>> element : structuredData.entrySet())
+            {
+                if (null == element.getValue() || element.getValue().isEmpty())
+                {
+                    continue;
+                }
+                writeByte('[');
+                writeName(element.getKey());
+                for (Map.Entry<String, String> param : element.getValue().entrySet())
+                {
+                    writeByte(' ');
+                    writeName(param.getKey());
+                    writeByte('=');
+                    writeByte('"');
+                    writeEscaped(param.getValue());
+                    writeByte('"');
+                }
+                writeByte(']');
+                isEmpty = false;
+            }
+        }
+        if (isEmpty)
+        {
+            writeBytes(NIL);
+        }
+    }
+
+    /**
+     * Starts the MSG part of an RFC5424 message. An empty message is sent
+     * without the separating space.
+     */
+    public void beginMessage()
+    {
+        writeByte(' ');
+        messageStart = buffer.position();
+    }
+
+    /**
+     * Writes the value as UTF-8, a {@link SyslogBody} as {@link #write(SyslogBody)} does.
+     */
+    public void write(@NotNullable CharSequence value)
+    {
+        if (value instanceof SyslogBody)
+        {
+            write((SyslogBody) value);
+            return;
+        }
+        writeUtf8(value);
+    }
+
+    public void write(@NotNullable byte[] value)
+    {
+        writeBytes(value);
+    }
+
+    /**
+     * Writes the parts of the body. If they do not fit into the rest of the
+     * maximum frame length, parts are shortened by priority, the lowest
+     * first and among equal priorities the last first, until they fit.
+     */
+    public void write(@NotNullable SyslogBody body)
+    {
+        String text = body.toString();
+        int budget = payloadStart + maxFrameLength - trailer.length - buffer.position();
+        // a char takes at most 3 bytes, so most messages fit without counting
+        if (0 == maxFrameLength || 3 * text.length() <= budget)
+        {
+            writeUtf8(text);
+            return;
+        }
+        int partCount = body.getPartCount();
+        if (partLengths.length < partCount)
+        {
+            partLengths = new int[Math.max(partCount, 2 * partLengths.length)];
+            partKeeps = new int[partLengths.length];
+        }
+        int excess = -budget;
+        for (int i = 0; i < partCount; i++)
+        {
+            partLengths[i] = utf8Length(text, body.getPartStart(i), body.getPartEnd(i));
+            partKeeps[i] = -1;
+            excess += partLengths[i];
+        }
+        while (0 < excess)
+        {
+            int part = -1;
+            for (int i = partCount - 1; 0 <= i; i--)
+            {
+                if (SyslogBody.PRIORITY_FIXED == body.getPriority(i) || 0 <= partKeeps[i] || TRUNCATION_MARKER.length >= partLengths[i])
+                {
+                    continue;
+                }
+                if (-1 == part || body.getPriority(i) < body.getPriority(part))
+                {
+                    part = i;
+                }
+            }
+            if (-1 == part)
+            {
+                // the frame is cut when it ends
+                break;
+            }
+            partKeeps[part] = Math.max(0, partLengths[part] - excess - TRUNCATION_MARKER.length);
+            excess -= partLengths[part] - partKeeps[part] - TRUNCATION_MARKER.length;
+        }
+        for (int i = 0; i < partCount; i++)
+        {
+            if (0 > partKeeps[i])
+            {
+                writeUtf8(text, body.getPartStart(i), body.getPartEnd(i), Integer.MAX_VALUE);
+            }
+            else
+            {
+                writeUtf8(text, body.getPartStart(i), body.getPartEnd(i), partKeeps[i]);
+                writeBytes(TRUNCATION_MARKER);
+                isTruncated = true;
+            }
+        }
+    }
+
+    /**
+     * Completes the current message and appends the trailer or fills in the
+     * length prefix.
+     */
+    public void endFrame()
+    {
+        endFrame(0);
+    }
+
+    /**
+     * Completes the current message and appends the trailer or fills in the
+     * length prefix.
+     *
+     * @param key routing key of the message, see {@link SyslogFrames#getFrameKey(int)}
+     */
+    public void endFrame(int key)
+    {
+        if (isRfc5424Message && messageStart == buffer.position())
+        {
+            buffer.position(messageStart - 1);
+        }
+        if (0 < maxFrameLength)
+        {
+            limitFrameLength();
+        }
+        if (isOctetCounting)
+        {
+            writeLengthPrefix();
+        }
+        else
+        {
+            writeBytes(trailer);
+        }
+        if (frameCount == frameEnds.length)
+        {
+            frameEnds = Arrays.copyOf(frameEnds, frameCount * 2);
+            frameKeys = Arrays.copyOf(frameKeys, frameCount * 2);
+        }
+        frameKeys[frameCount] = key;
+        frameEnds[frameCount++] = buffer.position();
+        messageStart = -1;
+        isRfc5424Message = false;
+    }
+
+    @Override
+    public int getFrameCount()
+    {
+        return frameCount;
+    }
+
+    @Override
+    public int getFrameEnd(int index)
+    {
+        return frameEnds[index];
+    }
+
+    @Override
+    public int getFrameKey(int index)
+    {
+        return frameKeys[index];
+    }
+
+    @Override
+    public ByteBuffer getFrames()
+    {
+        ByteBuffer frames = buffer.duplicate();
+        frames.flip();
+        return frames;
+    }
+
+    /**
+     * RFC3164 timestamps only have seconds, so the timestamp is formatted once per second.
+     */
+    private byte[] getRfc3164Timestamp(long timestampMillis)
+    {
+        long second = 0 <= timestampMillis ? timestampMillis / 1000 : (timestampMillis - 999) / 1000;
+        if (rfc3164Second != second)
+        {
+            StringBuilder formatted = new StringBuilder(rfc3164TimestampFormatter.print(timestampMillis));
+            if ('0' == formatted.charAt(4))
+            {
+                formatted.setCharAt(4, ' ');
+            }
+            rfc3164Timestamp = formatted.toString().getBytes(StandardCharsets.US_ASCII);
+            rfc3164Second = second;
+        }
+        return rfc3164Timestamp;
+    }
+
+    private void beginFrame()
+    {
+        if (isOctetCounting)
+        {
+            ensureCapacity(prefixDigits + 1);
+            buffer.position(buffer.position() + prefixDigits + 1);
+        }
+        payloadStart = buffer.position();
+        isTruncated = false;
+    }
+
+    /**
+     * Cuts a frame that is longer than the maximum frame length at a
+     * character boundary and marks the cut.
+     */
+    private void limitFrameLength()
+    {
+        int limit = payloadStart + maxFrameLength - trailer.length;
+        if (buffer.position() <= limit)
+        {
+            if (isTruncated)
+            {
+                truncatedCount++;
+            }
+            return;
+        }
+        int cut = limit - TRUNCATION_MARKER.length;
+        byte[] array = buffer.array();
+        while (payloadStart < cut && 0x80 == (array[cut] & 0xc0))
+        {
+            cut--;
+        }
+        buffer.position(cut);
+        writeBytes(TRUNCATION_MARKER);
+        if (0 <= messageStart && messageStart <= cut)
+        {
+            truncatedCount++;
+        }
+        else
+        {
+            oversizeCount++;
+        }
+    }
+
+    /**
+     * Writes 'MSG-LEN SP' right in front of the message. If the reserved space
+     * does not fit the length, the message is moved and the next frame
+     * reserves as many digits as this one needed.
+     */
+    private void writeLengthPrefix()
+    {
+        int length = buffer.position() - payloadStart;
+        int digits = 1;
+        for (int value = length; 10 <= value; value /= 10)
+        {
+            digits++;
+        }
+        if (digits != prefixDigits)
+        {
+            int shift = digits - prefixDigits;
+            ensureCapacity(Math.max(0, shift));
+            byte[] array = buffer.array();
+            System.arraycopy(array, payloadStart, array, payloadStart + shift, length);
+            payloadStart += shift;
+            buffer.position(buffer.position() + shift);
+            prefixDigits = digits;
+        }
+        int index = payloadStart - 1;
+        buffer.put(index, (byte) ' ');
+        for (int value = length; 0 < digits; digits--, value /= 10)
+        {
+            buffer.put(--index, (byte) ('0' + value % 10));
+        }
+    }
+
+    /**
+     * Writes '<PRI>', followed by VERSION for RFC5424, from the cache.
+     */
+    private void writePriority(byte[][] cache, int priority, boolean isRfc5424)
+    {
+        boolean isCacheable = 0 <= priority && PRIORITY_MAX >= priority;
+        if (isCacheable && null != cache[priority])
+        {
+            writeBytes(cache[priority]);
+            return;
+        }
+        isHeaderCached = false;
+        int start = buffer.position();
+        writeByte('<');
+        writeInt(priority);
+        writeByte('>');
+        if (isRfc5424)
+        {
+            writeBytes(RFC5424_VERSION);
+        }
+        if (isCacheable)
+        {
+            cache[priority] = Arrays.copyOfRange(buffer.array(), start, buffer.position());
+        }
+    }
+
+    /**
+     * Writes ' HOSTNAME ', followed by 'APP-NAME PROCID ' for RFC5424, from the cache.
+     */
+    private void writeHost(String localName, boolean isRfc5424)
+    {
+        HostPrefix host = null == localName ? defaultHost : hosts.get(localName);
+        byte[] cached = null == host ? null : isRfc5424 ? host.rfc5424 : host.rfc3164;
+        if (null != cached)
+        {
+            writeBytes(cached);
+            return;
+        }
+        isHeaderCached = false;
+        int start = buffer.position();
+        writeByte(' ');
+        writeLocalName(localName);
+        if (isRfc5424)
+        {
+            writeBytes(applicationName);
+            writeByte(' ');
+            writeBytes(processId);
+            writeByte(' ');
+        }
+        byte[] encoded = Arrays.copyOfRange(buffer.array(), start, buffer.position());
+        if (null == host)
+        {
+            host = new HostPrefix();
+            hosts.put(localName, host);
+        }
+        if (isRfc5424)
+        {
+            host.rfc5424 = encoded;
+        }
+        else
+        {
+            host.rfc3164 = encoded;
+        }
+    }
+
+    private void countHeader()
+    {
+        if (isHeaderCached)
+        {
+            headerCacheHitCount++;
+        }
+        else
+        {
+            headerCacheMissCount++;
+        }
+    }
+
+    private void writeLocalName(String localName)
+    {
+        if (null == localName)
+        {
+            writeBytes(defaultLocalName);
+        }
+        else
+        {
+            writeUtf8(localName);
+        }
+        writeByte(' ');
+    }
+
+    private void writeNilProtected(String value)
+    {
+        if (isBlank(value))
+        {
+            writeBytes(NIL);
+        }
+        else
+        {
+            writeUtf8(value);
+        }
+    }
+
+    /**
+     * Writes an SD-NAME: at most 32 printable US-ASCII characters except '=',
+     * ' ', ']' and '"'. Other characters are replaced by '_'.
+     */
+    private void writeName(String name)
+    {
+        int length = Math.min(name.length(), SD_NAME_LENGTH_MAX);
+        ensureCapacity(length);
+        for (int i = 0; i < length; i++)
+        {
+            char c = name.charAt(i);
+            if (33 > c || 126 < c || '=' == c || ']' == c || '"' == c)
+            {
+                c = '_';
+            }
+            buffer.put((byte) c);
+        }
+    }
+
+    private void writeEscaped(String value)
+    {
+        if (null == value)
+        {
+            return;
+        }
+        for (int i = 0; i < value.length(); i++)
+        {
+            char c = value.charAt(i);
+            if ('"' == c || '\\' == c || ']' == c)
+            {
+                writeByte('\\');
+            }
+            writeChar(value, i, c);
+            if (Character.isHighSurrogate(c) && i + 1 < value.length() && Character.isLowSurrogate(value.charAt(i + 1)))
+            {
+                i++;
+            }
+        }
+    }
+
+    private static boolean isBlank(String value)
+    {
+        if (null == value)
+        {
+            return true;
+        }
+        for (int i = 0; i < value.length(); i++)
+        {
+            if (!Character.isWhitespace(value.charAt(i)))
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void writeInt(int value)
+    {
+        if (0 > value)
+        {
+            writeByte('-');
+            value = -value;
+        }
+        int divisor = 1;
+        while (10 <= value / divisor)
+        {
+            divisor *= 10;
+        }
+        ensureCapacity(10);
+        for (; 0 < divisor; divisor /= 10)
+        {
+            buffer.put((byte) ('0' + value / divisor % 10));
+        }
+    }
+
+    private void writeAscii(CharSequence value)
+    {
+        int length = value.length();
+        ensureCapacity(length);
+        for (int i = 0; i < length; i++)
+        {
+            buffer.put((byte) value.charAt(i));
+        }
+    }
+
+    private void writeUtf8(CharSequence value)
+    {
+        int length = value.length();
+        for (int i = 0; i < length; i++)
+        {
+            char c = value.charAt(i);
+            writeChar(value, i, c);
+            if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(value.charAt(i + 1)))
+            {
+                i++;
+            }
+        }
+    }
+
+    /**
+     * Writes the characters from start to end as UTF-8, but only as many
+     * whole characters as fit into maxBytes.
+     */
+    private void writeUtf8(CharSequence value, int start, int end, int maxBytes)
+    {
+        int limit = buffer.position() + Math.min(maxBytes, 4 * (end - start));
+        for (int i = start; i < end; i++)
+        {
+            char c = value.charAt(i);
+            boolean isPair = Character.isHighSurrogate(c) && i + 1 < value.length() && Character.isLowSurrogate(value.charAt(i + 1));
+            if (limit - buffer.position() < utf8Length(c, isPair))
+            {
+                return;
+            }
+            writeChar(value, i, c);
+            if (isPair)
+            {
+                i++;
+            }
+        }
+    }
+
+    private static int utf8Length(CharSequence value, int start, int end)
+    {
+        int length = 0;
+        for (int i = start; i < end; i++)
+        {
+            char c = value.charAt(i);
+            boolean isPair = Character.isHighSurrogate(c) && i + 1 < value.length() && Character.isLowSurrogate(value.charAt(i + 1));
+            length += utf8Length(c, isPair);
+            if (isPair)
+            {
+                i++;
+            }
+        }
+        return length;
+    }
+
+    /**
+     * @return number of bytes {@link #writeChar(CharSequence, int, char)} writes for the character
+     */
+    private static int utf8Length(char c, boolean isPair)
+    {
+        if (0x80 > c)
+        {
+            return 1;
+        }
+        if (0x800 > c)
+        {
+            return 2;
+        }
+        if (Character.isSurrogate(c))
+        {
+            return isPair ? 4 : 1;
+        }
+        return 3;
+    }
+
+    /**
+     * Writes the character at index as UTF-8. A valid surrogate pair is written
+     * as one code point, the caller skips the low surrogate.
+     */
+    private void writeChar(CharSequence value, int index, char c)
+    {
+        ensureCapacity(4);
+        if (0x80 > c)
+        {
+            buffer.put((byte) c);
+        }
+        else if (0x800 > c)
+        {
+            buffer.put((byte) (0xc0 | (c >> 6)));
+            buffer.put((byte) (0x80 | (c & 0x3f)));
+        }
+        else if (Character.isSurrogate(c))
+        {
+            if (Character.isHighSurrogate(c) && index + 1 < value.length() && Character.isLowSurrogate(value.charAt(index + 1)))
+            {
+                int codePoint = Character.toCodePoint(c, value.charAt(index + 1));
+                buffer.put((byte) (0xf0 | (codePoint >> 18)));
+                buffer.put((byte) (0x80 | ((codePoint >> 12) & 0x3f)));
+                buffer.put((byte) (0x80 | ((codePoint >> 6) & 0x3f)));
+                buffer.put((byte) (0x80 | (codePoint & 0x3f)));
+            }
+            else
+            {
+                // malformed surrogate, replaced like String.getBytes does
+                buffer.put((byte) '?');
+            }
+        }
+        else
+        {
+            buffer.put((byte) (0xe0 | (c >> 12)));
+            buffer.put((byte) (0x80 | ((c >> 6) & 0x3f)));
+            buffer.put((byte) (0x80 | (c & 0x3f)));
+        }
+    }
+
+    private void writeBytes(byte[] value)
+    {
+        ensureCapacity(value.length);
+        buffer.put(value);
+    }
+
+    private void writeByte(char value)
+    {
+        ensureCapacity(1);
+        buffer.put((byte) value);
+    }
+
+    private void ensureCapacity(int length)
+    {
+        if (buffer.remaining() >= length)
+        {
+            return;
+        }
+        ByteBuffer grown = ByteBuffer.allocate(Math.max(2 * buffer.capacity(), buffer.position() + length));
+        buffer.flip();
+        grown.put(buffer);
+        buffer = grown;
+    }
+
+    private static final class HostPrefix
+    {
+        private byte[] rfc3164;
+        private byte[] rfc5424;
+    }
+}
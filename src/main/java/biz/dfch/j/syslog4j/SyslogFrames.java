@@ -0,0 +1,27 @@
+package biz.dfch.j.syslog4j;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Encoded syslog messages stored back to back in one buffer. Each frame is a
+ * complete message including any framing the transport needs.
+ */
+public interface SyslogFrames
+{
+    int getFrameCount();
+
+    /**
+     * @return offset in {@link #getFrames()} right after the frame at the given index
+     */
+    int getFrameEnd(int index);
+
+    /**
+     * @return non-negative routing key of the frame at the given index, frames with equal keys are sent over the same connection
+     */
+    int getFrameKey(int index);
+
+    /**
+     * @return a buffer holding all frames, from position 0 up to its limit
+     */
+    ByteBuffer getFrames();
+}
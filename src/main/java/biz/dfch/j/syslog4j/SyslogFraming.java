@@ -0,0 +1,45 @@
+package biz.dfch.j.syslog4j;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * How messages are delimited on a TCP or TLS stream, see RFC6587.
+ */
+public enum SyslogFraming
+{
+    /**
+     * Every message is followed by a trailer, usually LF. Messages must not
+     * contain the trailer, so multi-line messages are split by the receiver.
+     */
+    NON_TRANSPARENT,
+
+    /**
+     * Every message is preceded by its length in bytes and a space, so it can
+     * contain any character.
+     */
+    OCTET_COUNTING;
+
+    public static final byte[] TRAILER_LF = "\n".getBytes(StandardCharsets.US_ASCII);
+    public static final byte[] TRAILER_CRLF = "\r\n".getBytes(StandardCharsets.US_ASCII);
+    public static final byte[] TRAILER_NUL = {0};
+}
+
+/*
+    d-fens Graylog SYSLOG Output Plugin
+    Copyright (C) 2015  Ronald Rink, d-fens GmbH
+
+    This library is free software; you can redistribute it and/or
+    modify it under the terms of the GNU Lesser General Public
+    License as published by the Free Software Foundation; either
+    version 2.1 of the License, or (at your option) any later version.
+
+    This library is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+    Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public
+    License along with this library; if not, write to the Free Software
+    Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+
+ */
@@ -0,0 +1,172 @@
+package biz.dfch.j.syslog4j;
+
+import org.graylog2.syslog4j.SyslogConstants;
+
+/**
+ * Everything that varies per message in a syslog header. Instances are
+ * immutable, so a single SyslogClient can be shared by several threads that
+ * send messages with different facilities, severities and local names.
+ */
+public final class SyslogHeader
+{
+    private static final int SYSLOG_FACILITY_LOCAL0 = 16;
+    private static final int SYSLOG_SEVERITY_INFORMATIONAL = 6;
+    /**
+     * Timestamp of messages that are stamped with the time they are encoded.
+     */
+    public static final long TIMESTAMP_NOW = Long.MIN_VALUE;
+
+    private static final int[] FACILITIES =
+    {
+            SyslogConstants.FACILITY_KERN,
+            SyslogConstants.FACILITY_USER,
+            SyslogConstants.FACILITY_MAIL,
+            SyslogConstants.FACILITY_DAEMON,
+            SyslogConstants.FACILITY_AUTH,
+            SyslogConstants.FACILITY_SYSLOG,
+            SyslogConstants.FACILITY_LPR,
+            SyslogConstants.FACILITY_NEWS,
+            SyslogConstants.FACILITY_UUCP,
+            SyslogConstants.FACILITY_CRON,
+            SyslogConstants.FACILITY_AUTHPRIV,
+            SyslogConstants.FACILITY_FTP,
+            SyslogConstants.FACILITY_FTP,
+            SyslogConstants.FACILITY_AUTH,
+            SyslogConstants.FACILITY_AUTH,
+            SyslogConstants.FACILITY_CRON,
+            SyslogConstants.FACILITY_LOCAL0,
+            SyslogConstants.FACILITY_LOCAL1,
+            SyslogConstants.FACILITY_LOCAL2,
+            SyslogConstants.FACILITY_LOCAL3,
+            SyslogConstants.FACILITY_LOCAL4,
+            SyslogConstants.FACILITY_LOCAL5,
+            SyslogConstants.FACILITY_LOCAL6,
+            SyslogConstants.FACILITY_LOCAL7
+    };
+
+    private final int facility;
+    private final int severity;
+    private final String localName;
+    private final String messageId;
+    private final int routingKey;
+    private final long timestamp;
+
+    public SyslogHeader(int facility, int severity, String localName, String messageId)
+    {
+        this(facility, severity, localName, messageId, null);
+    }
+
+    /**
+     * @param facility facility number between 0 and 23, other values are sent as local0
+     * @param severity severity between 0 and 7, other values are sent as informational
+     * @param localName HOSTNAME to send, or null for the local name configured on the client
+     * @param messageId [RFC5424] MSGID to send, or null for none
+     * @param routingKey messages with equal keys are sent over the same connection, i.e. the message source, or null
+     */
+    public SyslogHeader(int facility, int severity, String localName, String messageId, String routingKey)
+    {
+        this(facility, severity, localName, messageId, routingKey, TIMESTAMP_NOW);
+    }
+
+    /**
+     * @param timestamp TIMESTAMP to send in milliseconds since the epoch, i.e. the time of the event, or {@link #TIMESTAMP_NOW}
+     */
+    public SyslogHeader(int facility, int severity, String localName, String messageId, String routingKey, long timestamp)
+    {
+        this.facility = toFacilityCode(facility);
+        this.severity = (0 > severity || 7 < severity) ? SYSLOG_SEVERITY_INFORMATIONAL : severity;
+        this.localName = localName;
+        this.messageId = messageId;
+        this.routingKey = null == routingKey ? 0 : routingKey.hashCode() & Integer.MAX_VALUE;
+        this.timestamp = timestamp;
+    }
+
+    private SyslogHeader(SyslogHeader header, long timestamp)
+    {
+        this.facility = header.facility;
+        this.severity = header.severity;
+        this.localName = header.localName;
+        this.messageId = header.messageId;
+        this.routingKey = header.routingKey;
+        this.timestamp = timestamp;
+    }
+
+    /**
+     * @return a header that only differs in its timestamp
+     */
+    public SyslogHeader withTimestamp(long timestamp)
+    {
+        return new SyslogHeader(this, timestamp);
+    }
+
+    /**
+     * @return the facility as syslog4j facility code, i.e. already shifted for the PRI part
+     */
+    public int getFacility()
+    {
+        return facility;
+    }
+
+    public int getSeverity()
+    {
+        return severity;
+    }
+
+    public String getLocalName()
+    {
+        return localName;
+    }
+
+    public String getMessageId()
+    {
+        return messageId;
+    }
+
+    /**
+     * @return TIMESTAMP in milliseconds since the epoch, or {@link #TIMESTAMP_NOW}
+     */
+    public long getTimestamp()
+    {
+        return timestamp;
+    }
+
+    /**
+     * @return hash of the routing key, 0 if there is none
+     */
+    public int getRoutingKey()
+    {
+        return routingKey;
+    }
+
+    /**
+     * Converts a facility number between 0 and 23 to the syslog4j facility code.
+     */
+    public static int toFacilityCode(int facility)
+    {
+        if (0 > facility || FACILITIES.length <= facility)
+        {
+            facility = SYSLOG_FACILITY_LOCAL0;
+        }
+        return FACILITIES[facility];
+    }
+}
+
+/*
+    d-fens Graylog SYSLOG Output Plugin
+    Copyright (C) 2015  Ronald Rink, d-fens GmbH
+
+    This library is free software; you can redistribute it and/or
+    modify it under the terms of the GNU Lesser General Public
+    License as published by the Free Software Foundation; either
+    version 2.1 of the License, or (at your option) any later version.
+
+    This library is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+    Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public
+    License along with this library; if not, write to the Free Software
+    Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+
+ */
@@ -0,0 +1,430 @@
+package biz.dfch.j.syslog4j;
+
+import org.msgpack.annotation.NotNullable;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.util.TreeMap;
+
+/**
+ * Append-only journal of encoded frames on disk. The journal is split into
+ * segment files of a fixed size that are memory-mapped, so spooled frames do
+ * not take heap space. Each record is the frame length, its routing key and
+ * the frame itself.
+ *
+ * Frames are read back in the order they were appended. The position after
+ * the last acknowledged frame is kept in a separate offset file, so frames
+ * that were sent before a restart are not sent again. Segments are deleted
+ * once all their frames are acknowledged. Appended frames are written to the
+ * page cache, they are forced to disk when a segment is full and on close.
+ *
+ * The total size of all segments is capped. If the cap is reached, either
+ * the oldest segment is deleted with all frames still in it
+ * ({@link Eviction#DROP_OLDEST}) or new frames are dropped
+ * ({@link Eviction#DROP_NEWEST}).
+ */
+public class SyslogSpool implements Closeable
+{
+    public enum Eviction
+    {
+        DROP_OLDEST,
+        DROP_NEWEST
+    }
+
+    private static final String SEGMENT_SUFFIX = ".spool";
+    private static final String OFFSET_FILE_NAME = "offset";
+    private static final String LOCK_FILE_NAME = "lock";
+    private static final int OFFSET_FILE_LENGTH = 12;
+    private static final int RECORD_HEADER_LENGTH = 8;
+    private static final int END_OF_SEGMENT = -1;
+    private static final int SEGMENT_SIZE_MIN = 4096;
+
+    private final File directory;
+    private final int segmentSize;
+    private final int segmentCountMax;
+    private final Eviction eviction;
+    private final RandomAccessFile lockFile;
+    private final FileLock lock;
+    private final MappedByteBuffer offset;
+    private final TreeMap<Long, File> segments = new TreeMap<>();
+    private long writeSegment;
+    private MappedByteBuffer writeBuffer;
+    private long readSegment;
+    private MappedByteBuffer readBuffer;
+    private int pendingPosition = -1;
+
+    /**
+     * Opens the spool in the given directory and continues after the last
+     * acknowledged frame of an earlier spool in the same directory.
+     *
+     * @param maxBytes maximum size of all segments, at least two segments
+     */
+    public SyslogSpool(@NotNullable File directory, int segmentSize, long maxBytes, @NotNullable Eviction eviction) throws IOException
+    {
+        if (SEGMENT_SIZE_MIN > segmentSize)
+        {
+            throw new IllegalArgumentException(String.format("segmentSize: Parameter validation FAILED. Value must be at least %d (was '%d').", SEGMENT_SIZE_MIN, segmentSize));
+        }
+        if (2L * segmentSize > maxBytes)
+        {
+            throw new IllegalArgumentException(String.format("maxBytes: Parameter validation FAILED. Value must be at least twice the segment size (was '%d').", maxBytes));
+        }
+        if (!directory.isDirectory() && !directory.mkdirs())
+        {
+            throw new IOException(String.format("Creating spool directory '%s' FAILED.", directory));
+        }
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.segmentCountMax = (int) Math.min(Integer.MAX_VALUE, maxBytes / segmentSize);
+        this.eviction = eviction;
+
+        lockFile = new RandomAccessFile(new File(directory, LOCK_FILE_NAME), "rw");
+        FileLock lock = null;
+        try
+        {
+            lock = lockFile.getChannel().tryLock();
+        }
+        catch (OverlappingFileLockException ex)
+        {
+            // locked by another spool of this JVM
+        }
+        finally
+        {
+            if (null == lock)
+            {
+                lockFile.close();
+            }
+        }
+        if (null == lock)
+        {
+            throw new IOException(String.format("Opening spool directory '%s' FAILED. It is used by another spool.", directory));
+        }
+        this.lock = lock;
+
+        try (RandomAccessFile file = new RandomAccessFile(new File(directory, OFFSET_FILE_NAME), "rw"))
+        {
+            offset = file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, OFFSET_FILE_LENGTH);
+            open();
+        }
+        catch (IOException | RuntimeException ex)
+        {
+            // release the directory, nothing can close a spool that failed to open
+            lockFile.close();
+            throw ex;
+        }
+    }
+
+    private void open() throws IOException
+    {
+        File[] files = directory.listFiles();
+        if (null != files)
+        {
+            for (File file : files)
+            {
+                String name = file.getName();
+                if (name.endsWith(SEGMENT_SUFFIX))
+                {
+                    try
+                    {
+                        segments.put(Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length())), file);
+                    }
+                    catch (NumberFormatException ex)
+                    {
+                        // not a segment
+                    }
+                }
+            }
+        }
+
+        readSegment = offset.getLong(0);
+        int readPosition = offset.getInt(8);
+        while (!segments.isEmpty() && segments.firstKey() < readSegment)
+        {
+            deleteSegment(segments.firstKey());
+        }
+        if (segments.isEmpty())
+        {
+            segments.put(readSegment, segmentFile(readSegment));
+        }
+        if (segments.firstKey() != readSegment)
+        {
+            readSegment = segments.firstKey();
+            readPosition = 0;
+        }
+
+        writeSegment = segments.lastKey();
+        writeBuffer = map(writeSegment);
+        int writePosition = 0;
+        while (!isEndOfSegment(writeBuffer, writePosition))
+        {
+            writePosition += RECORD_HEADER_LENGTH + writeBuffer.getInt(writePosition);
+        }
+        if (writePosition + RECORD_HEADER_LENGTH <= segmentSize && END_OF_SEGMENT == writeBuffer.getInt(writePosition))
+        {
+            writePosition = segmentSize;
+        }
+        writeBuffer.position(writePosition);
+
+        readBuffer = readSegment == writeSegment ? writeBuffer.duplicate() : map(readSegment);
+        readBuffer.position(Math.min(readPosition, segmentSize));
+        writeOffset();
+    }
+
+    /**
+     * Appends all frames. Frames that do not fit into a segment are dropped.
+     *
+     * @return number of frames lost by this call, either frames of the batch or evicted older frames
+     */
+    public synchronized int append(@NotNullable SyslogFrames frames) throws IOException
+    {
+        ByteBuffer buffer = frames.getFrames();
+        int lostCount = 0;
+        int start = 0;
+        for (int i = 0; i < frames.getFrameCount(); i++)
+        {
+            int end = frames.getFrameEnd(i);
+            lostCount += appendFrame(buffer, start, end - start, frames.getFrameKey(i));
+            start = end;
+        }
+        notifyAll();
+        return lostCount;
+    }
+
+    /**
+     * Reads frames after the last acknowledged one, at most up to the end of
+     * the current segment. Reading again without acknowledging returns the
+     * same frames.
+     *
+     * @return number of frames added to the target
+     */
+    synchronized int read(@NotNullable FrameBuffer target, int maxFrames) throws IOException
+    {
+        while (readSegment != writeSegment && isEndOfSegment(readBuffer.position()))
+        {
+            nextReadSegment();
+        }
+        int position = readBuffer.position();
+        int count = 0;
+        while (count < maxFrames && !isEndOfSegment(position))
+        {
+            if (readSegment == writeSegment && position >= writeBuffer.position())
+            {
+                break;
+            }
+            int length = readBuffer.getInt(position);
+            ByteBuffer source = readBuffer.duplicate();
+            source.position(position + RECORD_HEADER_LENGTH);
+            target.add(source, length, readBuffer.getInt(position + 4));
+            position += RECORD_HEADER_LENGTH + length;
+            count++;
+        }
+        pendingPosition = position;
+        return count;
+    }
+
+    /**
+     * Marks the frames returned by the last read as sent. Does nothing if
+     * they were evicted in the meantime.
+     */
+    synchronized void acknowledge()
+    {
+        if (0 > pendingPosition)
+        {
+            return;
+        }
+        readBuffer.position(pendingPosition);
+        pendingPosition = -1;
+        writeOffset();
+    }
+
+    /**
+     * @return true if all appended frames were acknowledged
+     */
+    public synchronized boolean isEmpty()
+    {
+        return readSegment == writeSegment && readBuffer.position() >= writeBuffer.position();
+    }
+
+    /**
+     * Waits until frames are appended if the spool is empty.
+     *
+     * @return true if the spool is not empty
+     */
+    synchronized boolean awaitFrames(long timeoutMillis) throws InterruptedException
+    {
+        if (isEmpty())
+        {
+            wait(timeoutMillis);
+        }
+        return !isEmpty();
+    }
+
+    /**
+     * @return number of bytes the segments take on disk
+     */
+    public synchronized long getSize()
+    {
+        return (long) segments.size() * segmentSize;
+    }
+
+    @Override
+    public synchronized void close() throws IOException
+    {
+        try
+        {
+            writeBuffer.force();
+            writeOffset();
+            lock.release();
+        }
+        finally
+        {
+            lockFile.close();
+        }
+    }
+
+    private int appendFrame(ByteBuffer buffer, int start, int length, int key) throws IOException
+    {
+        if (RECORD_HEADER_LENGTH + length > segmentSize)
+        {
+            return 1;
+        }
+        int lostCount = 0;
+        if (writeBuffer.remaining() < RECORD_HEADER_LENGTH + length)
+        {
+            if (segments.size() >= segmentCountMax)
+            {
+                if (Eviction.DROP_NEWEST == eviction)
+                {
+                    return 1;
+                }
+                lostCount = evictOldestSegment();
+            }
+            nextWriteSegment();
+        }
+        int position = writeBuffer.position();
+        ByteBuffer frame = buffer.duplicate();
+        frame.limit(start + length).position(start);
+        writeBuffer.putInt(position + 4, key);
+        writeBuffer.position(position + RECORD_HEADER_LENGTH);
+        writeBuffer.put(frame);
+        writeBuffer.putInt(position, length);
+        return lostCount;
+    }
+
+    private void nextWriteSegment() throws IOException
+    {
+        if (RECORD_HEADER_LENGTH <= writeBuffer.remaining())
+        {
+            writeBuffer.putInt(writeBuffer.position(), END_OF_SEGMENT);
+        }
+        writeBuffer.force();
+        long next = writeSegment + 1;
+        MappedByteBuffer buffer = map(next);
+        segments.put(next, segmentFile(next));
+        writeSegment = next;
+        writeBuffer = buffer;
+    }
+
+    private void nextReadSegment() throws IOException
+    {
+        long next = segments.higherKey(readSegment);
+        deleteSegment(readSegment);
+        readSegment = next;
+        readBuffer = readSegment == writeSegment ? writeBuffer.duplicate() : map(readSegment);
+        readBuffer.position(0);
+        pendingPosition = -1;
+        writeOffset();
+    }
+
+    /**
+     * @return number of unacknowledged frames in the evicted segment
+     */
+    private int evictOldestSegment() throws IOException
+    {
+        int count = 0;
+        for (int position = readBuffer.position(); !isEndOfSegment(position); position += RECORD_HEADER_LENGTH + readBuffer.getInt(position))
+        {
+            count++;
+        }
+        nextReadSegment();
+        return count;
+    }
+
+    private boolean isEndOfSegment(int position)
+    {
+        return isEndOfSegment(readBuffer, position);
+    }
+
+    /**
+     * @return true if there is no complete record at the given position
+     */
+    private boolean isEndOfSegment(ByteBuffer segment, int position)
+    {
+        if (position + RECORD_HEADER_LENGTH > segmentSize)
+        {
+            return true;
+        }
+        int length = segment.getInt(position);
+        return 0 >= length || position + RECORD_HEADER_LENGTH + length > segmentSize;
+    }
+
+    private MappedByteBuffer map(long segment) throws IOException
+    {
+        try (RandomAccessFile file = new RandomAccessFile(segmentFile(segment), "rw"))
+        {
+            if (file.length() < segmentSize)
+            {
+                file.setLength(segmentSize);
+            }
+            return file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        }
+    }
+
+    private void deleteSegment(long segment) throws IOException
+    {
+        File file = segments.remove(segment);
+        if (null != file && !file.delete() && file.exists())
+        {
+            throw new IOException(String.format("Deleting spool segment '%s' FAILED.", file));
+        }
+    }
+
+    private File segmentFile(long segment)
+    {
+        return new File(directory, String.format("%020d%s", segment, SEGMENT_SUFFIX));
+    }
+
+    private void writeOffset()
+    {
+        offset.putLong(0, readSegment);
+        offset.putInt(8, readBuffer.position());
+        offset.force();
+    }
+}
+
+/*
+    d-fens Graylog SYSLOG Output Plugin
+    Copyright (C) 2015  Ronald Rink, d-fens GmbH
+
+    This library is free software; you can redistribute it and/or
+    modify it under the terms of the GNU Lesser General Public
+    License as published by the Free Software Foundation; either
+    version 2.1 of the License, or (at your option) any later version.
+
+    This library is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+    Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public
+    License along with this library; if not, write to the Free Software
+    Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+
+ */
@@ -0,0 +1,159 @@
+package biz.dfch.j.syslog4j;
+
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSessionContext;
+import javax.net.ssl.TrustManagerFactory;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+import java.util.Arrays;
+
+/**
+ * Settings of TLS connections to a Syslog server. Without a truststore the
+ * trusted certificates of the JRE are used; a keystore is only needed if the
+ * server requires client certificates. Protocols and cipher suites left null
+ * use the JRE defaults. The certificate of the server is checked against the
+ * host name connected to, unless hostname verification is turned off.
+ */
+public final class SyslogTlsConfig
+{
+    public static final int SESSION_CACHE_SIZE_DEFAULT = 64;
+    public static final int SESSION_TIMEOUT_SECONDS_DEFAULT = 86400;
+
+    private final String trustStorePath;
+    private final char[] trustStorePassword;
+    private final String keyStorePath;
+    private final char[] keyStorePassword;
+    private final String[] protocols;
+    private final String[] cipherSuites;
+    private final int sessionCacheSize;
+    private final int sessionTimeoutSeconds;
+    private final boolean isHostnameVerified;
+
+    public SyslogTlsConfig(String trustStorePath, String trustStorePassword, String keyStorePath, String keyStorePassword, String[] protocols, String[] cipherSuites)
+    {
+        this(trustStorePath, trustStorePassword, keyStorePath, keyStorePassword, protocols, cipherSuites, SESSION_CACHE_SIZE_DEFAULT, SESSION_TIMEOUT_SECONDS_DEFAULT);
+    }
+
+    public SyslogTlsConfig(String trustStorePath, String trustStorePassword, String keyStorePath, String keyStorePassword, String[] protocols, String[] cipherSuites, int sessionCacheSize, int sessionTimeoutSeconds)
+    {
+        this(trustStorePath, trustStorePassword, keyStorePath, keyStorePassword, protocols, cipherSuites, sessionCacheSize, sessionTimeoutSeconds, true);
+    }
+
+    /**
+     * @param isHostnameVerified false to accept any trusted certificate regardless of the host name it was issued for
+     */
+    public SyslogTlsConfig(String trustStorePath, String trustStorePassword, String keyStorePath, String keyStorePassword, String[] protocols, String[] cipherSuites, int sessionCacheSize, int sessionTimeoutSeconds, boolean isHostnameVerified)
+    {
+        this.trustStorePath = trustStorePath;
+        this.trustStorePassword = null == trustStorePassword ? null : trustStorePassword.toCharArray();
+        this.keyStorePath = keyStorePath;
+        this.keyStorePassword = null == keyStorePassword ? null : keyStorePassword.toCharArray();
+        this.protocols = null == protocols ? null : protocols.clone();
+        this.cipherSuites = null == cipherSuites ? null : cipherSuites.clone();
+        this.sessionCacheSize = sessionCacheSize;
+        this.sessionTimeoutSeconds = sessionTimeoutSeconds;
+        this.isHostnameVerified = isHostnameVerified;
+    }
+
+    /**
+     * @return the enabled protocols, i.e. 'TLSv1.2', or null for the JRE defaults
+     */
+    public String[] getProtocols()
+    {
+        return null == protocols ? null : protocols.clone();
+    }
+
+    /**
+     * @return the enabled cipher suites, or null for the JRE defaults
+     */
+    public String[] getCipherSuites()
+    {
+        return null == cipherSuites ? null : cipherSuites.clone();
+    }
+
+    /**
+     * @return whether the certificate of the server has to match the host name connected to
+     */
+    public boolean isHostnameVerified()
+    {
+        return isHostnameVerified;
+    }
+
+    /**
+     * Creates the context all connections of a client share. Sessions are
+     * cached in the context, so reconnects can resume a session instead of
+     * doing a full handshake.
+     */
+    public SSLContext createSslContext() throws GeneralSecurityException, IOException
+    {
+        KeyManagerFactory keyManagerFactory = null;
+        if (isSet(keyStorePath))
+        {
+            keyManagerFactory = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+            keyManagerFactory.init(loadKeyStore(keyStorePath, keyStorePassword), keyStorePassword);
+        }
+        TrustManagerFactory trustManagerFactory = null;
+        if (isSet(trustStorePath))
+        {
+            trustManagerFactory = TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
+            trustManagerFactory.init(loadKeyStore(trustStorePath, trustStorePassword));
+        }
+        SSLContext sslContext = SSLContext.getInstance("TLS");
+        sslContext.init(null == keyManagerFactory ? null : keyManagerFactory.getKeyManagers(), null == trustManagerFactory ? null : trustManagerFactory.getTrustManagers(), null);
+        SSLSessionContext sessionContext = sslContext.getClientSessionContext();
+        sessionContext.setSessionCacheSize(sessionCacheSize);
+        sessionContext.setSessionTimeout(sessionTimeoutSeconds);
+        return sslContext;
+    }
+
+    /**
+     * Describes the settings without the passwords, so clients with equal
+     * settings can share their connections, see {@link SyslogTransportRegistry}.
+     */
+    String getKey()
+    {
+        return String.format("%s|%s|%s|%s|%d|%d|%b", trustStorePath, keyStorePath,
+                null == protocols ? null : Arrays.toString(protocols), null == cipherSuites ? null : Arrays.toString(cipherSuites),
+                sessionCacheSize, sessionTimeoutSeconds, isHostnameVerified);
+    }
+
+    private static KeyStore loadKeyStore(String path, char[] password) throws GeneralSecurityException, IOException
+    {
+        String type = path.toLowerCase().endsWith(".p12") || path.toLowerCase().endsWith(".pfx") ? "PKCS12" : KeyStore.getDefaultType();
+        KeyStore keyStore = KeyStore.getInstance(type);
+        try (InputStream inputStream = new FileInputStream(path))
+        {
+            keyStore.load(inputStream, password);
+        }
+        return keyStore;
+    }
+
+    private static boolean isSet(String value)
+    {
+        return null != value && !value.isEmpty();
+    }
+}
+
+/*
+    d-fens Graylog SYSLOG Output Plugin
+    Copyright (C) 2015  Ronald Rink, d-fens GmbH
+
+    This library is free software; you can redistribute it and/or
+    modify it under the terms of the GNU Lesser General Public
+    License as published by the Free Software Foundation; either
+    version 2.1 of the License, or (at your option) any later version.
+
+    This library is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+    Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public
+    License along with this library; if not, write to the Free Software
+    Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+
+ */
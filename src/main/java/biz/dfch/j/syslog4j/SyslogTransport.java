@@ -0,0 +1,38 @@
+package biz.dfch.j.syslog4j;
+
+import java.io.IOException;
+
+/**
+ * Network transport for encoded syslog messages. A transport takes care of
+ * connecting, so one call to {@link #send(SyslogFrames)} sends a whole batch
+ * of messages.
+ */
+public interface SyslogTransport
+{
+    /**
+     * Sends all frames in order.
+     */
+    void send(SyslogFrames frames) throws IOException;
+
+    void close();
+}
+
+/*
+    d-fens Graylog SYSLOG Output Plugin
+    Copyright (C) 2015  Ronald Rink, d-fens GmbH
+
+    This library is free software; you can redistribute it and/or
+    modify it under the terms of the GNU Lesser General Public
+    License as published by the Free Software Foundation; either
+    version 2.1 of the License, or (at your option) any later version.
+
+    This library is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+    Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public
+    License along with this library; if not, write to the Free Software
+    Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+
+ */
@@ -0,0 +1,310 @@
+package biz.dfch.j.syslog4j;
+
+import org.msgpack.annotation.NotNullable;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Shares transports between clients that send to the same destinations with
+ * the same settings, so several outputs sending to one server use one
+ * connection instead of one each. Transports are reference counted: the
+ * transport is created by the first client and closed when the last client
+ * that acquired it is closed.
+ *
+ * The listeners of all clients sharing a transport are notified about its
+ * reconnects, handshakes and destinations going down or up, as those concern
+ * every client. Acknowledgments and errors of a send only go to the client
+ * that sent, see {@link #getSender(SyslogClientListener)}.
+ */
+public final class SyslogTransportRegistry
+{
+    /**
+     * Creates the transport of a key that is not shared yet.
+     */
+    public interface Factory
+    {
+        SyslogTransport create(@NotNullable SyslogClientListener listener);
+    }
+
+    private final Map<String, Entry> entries = new HashMap<>();
+
+    /**
+     * Returns the transport of the key, creating it with the factory if no
+     * other client holds it. Closing the returned transport releases it.
+     *
+     * @param key describes the destinations and every setting of the transport
+     * @param listener notified about the transport until it is released
+     */
+    public SyslogTransport acquire(@NotNullable String key, @NotNullable SyslogClientListener listener, @NotNullable Factory factory)
+    {
+        Entry entry;
+        synchronized (this)
+        {
+            entry = entries.get(key);
+            if (null == entry)
+            {
+                entry = new Entry(key);
+                entry.transport = factory.create(entry.listeners);
+                entries.put(key, entry);
+            }
+            entry.referenceCount++;
+            entry.listeners.add(listener);
+        }
+        return new SharedTransport(entry, listener);
+    }
+
+    /**
+     * @return number of transports currently shared
+     */
+    public synchronized int size()
+    {
+        return entries.size();
+    }
+
+    /**
+     * Returns the listener of the client that is sending on the calling
+     * thread, so transports can keep it for notifications about a message
+     * that arrive later, i.e. RELP acknowledgments.
+     *
+     * @param listener the listener the transport was created with
+     * @return the listener of the sending client if the transport is shared, the given listener otherwise
+     */
+    static SyslogClientListener getSender(@NotNullable SyslogClientListener listener)
+    {
+        if (listener instanceof ListenerGroup)
+        {
+            SyslogClientListener sender = ((ListenerGroup) listener).sender.get();
+            return null == sender ? SyslogClientListener.NONE : sender;
+        }
+        return listener;
+    }
+
+    private void release(Entry entry, SyslogClientListener listener)
+    {
+        synchronized (this)
+        {
+            entry.listeners.remove(listener);
+            if (0 < --entry.referenceCount)
+            {
+                return;
+            }
+            entries.remove(entry.key);
+        }
+        // closing waits for pending acknowledgments, so not while holding the lock
+        entry.transport.close();
+    }
+
+    private static final class Entry
+    {
+        private final String key;
+        private final ListenerGroup listeners = new ListenerGroup();
+        private SyslogTransport transport;
+        private int referenceCount;
+
+        private Entry(String key)
+        {
+            this.key = key;
+        }
+    }
+
+    private final class SharedTransport implements SyslogTransport
+    {
+        private final Entry entry;
+        private final SyslogClientListener listener;
+        private final AtomicBoolean isClosed = new AtomicBoolean(false);
+
+        private SharedTransport(Entry entry, SyslogClientListener listener)
+        {
+            this.entry = entry;
+            this.listener = listener;
+        }
+
+        @Override
+        public void send(SyslogFrames frames) throws IOException
+        {
+            if (isClosed.get())
+            {
+                throw new IOException("Transport is closed.");
+            }
+            entry.listeners.sender.set(listener);
+            try
+            {
+                entry.transport.send(frames);
+            }
+            finally
+            {
+                entry.listeners.sender.remove();
+            }
+        }
+
+        @Override
+        public void close()
+        {
+            if (isClosed.compareAndSet(false, true))
+            {
+                release(entry, listener);
+            }
+        }
+    }
+
+    /**
+     * Forwards notifications about the connections of a shared transport to
+     * the listeners of all clients sharing it, and notifications about a send
+     * to the listener of the client sending on the calling thread.
+     */
+    private static final class ListenerGroup implements SyslogClientListener
+    {
+        private final CopyOnWriteArrayList<SyslogClientListener> listeners = new CopyOnWriteArrayList<>();
+        private final ThreadLocal<SyslogClientListener> sender = new ThreadLocal<>();
+
+        private void add(SyslogClientListener listener)
+        {
+            listeners.add(listener);
+        }
+
+        private void remove(SyslogClientListener listener)
+        {
+            listeners.remove(listener);
+        }
+
+        @Override
+        public void onEncoded(int messageCount, long nanos)
+        {
+            SyslogClientListener sender = this.sender.get();
+            if (null != sender)
+            {
+                sender.onEncoded(messageCount, nanos);
+            }
+        }
+
+        @Override
+        public void onSent(int messageCount, int byteCount, long nanos)
+        {
+            SyslogClientListener sender = this.sender.get();
+            if (null != sender)
+            {
+                sender.onSent(messageCount, byteCount, nanos);
+            }
+        }
+
+        @Override
+        public void onReconnect()
+        {
+            for (SyslogClientListener listener : listeners)
+            {
+                listener.onReconnect();
+            }
+        }
+
+        @Override
+        public void onHandshake(long nanos, boolean isResumed)
+        {
+            for (SyslogClientListener listener : listeners)
+            {
+                listener.onHandshake(nanos, isResumed);
+            }
+        }
+
+        @Override
+        public void onError(Exception ex)
+        {
+            SyslogClientListener sender = this.sender.get();
+            if (null != sender)
+            {
+                sender.onError(ex);
+            }
+        }
+
+        @Override
+        public void onDestinationDown(String destination)
+        {
+            for (SyslogClientListener listener : listeners)
+            {
+                listener.onDestinationDown(destination);
+            }
+        }
+
+        @Override
+        public void onDestinationUp(String destination)
+        {
+            for (SyslogClientListener listener : listeners)
+            {
+                listener.onDestinationUp(destination);
+            }
+        }
+
+        @Override
+        public void onSpooled(int messageCount, int lostCount)
+        {
+            SyslogClientListener sender = this.sender.get();
+            if (null != sender)
+            {
+                sender.onSpooled(messageCount, lostCount);
+            }
+        }
+
+        @Override
+        public void onReplayed(int messageCount)
+        {
+            SyslogClientListener sender = this.sender.get();
+            if (null != sender)
+            {
+                sender.onReplayed(messageCount);
+            }
+        }
+
+        @Override
+        public void onAcknowledged(long nanos)
+        {
+            SyslogClientListener sender = this.sender.get();
+            if (null != sender)
+            {
+                sender.onAcknowledged(nanos);
+            }
+        }
+
+        @Override
+        public void onTruncated(int truncatedCount, int oversizeCount)
+        {
+            SyslogClientListener sender = this.sender.get();
+            if (null != sender)
+            {
+                sender.onTruncated(truncatedCount, oversizeCount);
+            }
+        }
+
+        @Override
+        public void onHeaderCache(int hitCount, int missCount)
+        {
+            SyslogClientListener sender = this.sender.get();
+            if (null != sender)
+            {
+                sender.onHeaderCache(hitCount, missCount);
+            }
+        }
+    }
+}
+
+/*
+    d-fens Graylog SYSLOG Output Plugin
+    Copyright (C) 2015  Ronald Rink, d-fens GmbH
+
+    This library is free software; you can redistribute it and/or
+    modify it under the terms of the GNU Lesser General Public
+    License as published by the Free Software Foundation; either
+    version 2.1 of the License, or (at your option) any later version.
+
+    This library is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+    Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public
+    License along with this library; if not, write to the Free Software
+    Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+
+ */
@@ -0,0 +1,139 @@
+package biz.dfch.j.syslog4j;
+
+import org.msgpack.annotation.NotNullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+
+/**
+ * Sends messages over a persistent TCP connection. The frames of a batch
+ * already carry their delimiters and are written with one write.
+ *
+ * If writing fails, the batch is written again on a new connection, starting
+ * with the first frame the socket did not take completely. Frames taken
+ * before are not sent twice, but they are lost if the connection was already
+ * broken; TCP syslog has no acknowledgments, RELP does.
+ */
+public class TcpSyslogTransport implements SyslogTransport
+{
+    private static final Logger LOG = LoggerFactory.getLogger(TcpSyslogTransport.class);
+    private static final int CONNECT_TIMEOUT_MILLIS = 5000;
+
+    private final InetSocketAddress address;
+    private final SyslogClientListener listener;
+    private SocketChannel channel;
+
+    public TcpSyslogTransport(@NotNullable String host, int port)
+    {
+        this(host, port, SyslogClientListener.NONE);
+    }
+
+    public TcpSyslogTransport(@NotNullable String host, int port, @NotNullable SyslogClientListener listener)
+    {
+        this.address = new InetSocketAddress(host, port);
+        this.listener = listener;
+    }
+
+    @Override
+    public synchronized void send(SyslogFrames frames) throws IOException
+    {
+        ByteBuffer stream = frames.getFrames();
+        try
+        {
+            write(getChannel(), stream);
+        }
+        catch (IOException ex)
+        {
+            // the connection may have been closed by the server since the last write, retry once on a new one
+            LOG.debug(String.format("Writing to '%s' FAILED. Reconnecting ...", address), ex);
+            close();
+            listener.onReconnect();
+            stream.position(getFrameStart(frames, stream.position()));
+            write(getChannel(), stream);
+        }
+    }
+
+    /**
+     * @return offset of the frame the given offset is in, or the offset itself if it is at the start of a frame
+     */
+    private static int getFrameStart(SyslogFrames frames, int offset)
+    {
+        int start = 0;
+        for (int i = 0; i < frames.getFrameCount() && offset >= frames.getFrameEnd(i); i++)
+        {
+            start = frames.getFrameEnd(i);
+        }
+        return start;
+    }
+
+    private static void write(SocketChannel socketChannel, ByteBuffer stream) throws IOException
+    {
+        while (stream.hasRemaining())
+        {
+            socketChannel.write(stream);
+        }
+    }
+
+    private SocketChannel getChannel() throws IOException
+    {
+        if (null == channel)
+        {
+            SocketChannel opened = SocketChannel.open();
+            try
+            {
+                // a server that silently drops packets must not block the sending thread for the SYN timeout of the OS
+                opened.socket().connect(address, CONNECT_TIMEOUT_MILLIS);
+                opened.socket().setKeepAlive(true);
+            }
+            catch (IOException | RuntimeException ex)
+            {
+                opened.close();
+                throw ex;
+            }
+            channel = opened;
+        }
+        return channel;
+    }
+
+    @Override
+    public synchronized void close()
+    {
+        if (null == channel)
+        {
+            return;
+        }
+        try
+        {
+            channel.close();
+        }
+        catch (IOException ex)
+        {
+            LOG.warn(String.format("Closing TCP connection to '%s' FAILED.", address), ex);
+        }
+        channel = null;
+    }
+}
+
+/*
+    d-fens Graylog SYSLOG Output Plugin
+    Copyright (C) 2015  Ronald Rink, d-fens GmbH
+
+    This library is free software; you can redistribute it and/or
+    modify it under the terms of the GNU Lesser General Public
+    License as published by the Free Software Foundation; either
+    version 2.1 of the License, or (at your option) any later version.
+
+    This library is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+    Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public
+    License along with this library; if not, write to the Free Software
+    Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+
+ */
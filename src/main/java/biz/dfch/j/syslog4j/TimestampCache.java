@@ -0,0 +1,105 @@
+package biz.dfch.j.syslog4j;
+
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.joda.time.chrono.ISOChronology;
+import org.joda.time.format.DateTimeFormatter;
+import org.joda.time.format.ISODateTimeFormat;
+
+/**
+ * Formats timestamps like {@link ISODateTimeFormat#dateTime()}, i.e.
+ * '2015-03-05T07:08:09.010+01:00'. Date, time and zone are formatted once per
+ * second and reused, for every timestamp within that second only the
+ * milliseconds are written. Not thread-safe, every thread needs its own.
+ */
+public final class TimestampCache
+{
+    private static final ThreadLocal<TimestampCache> UTC = new ThreadLocal<TimestampCache>()
+    {
+        @Override
+        protected TimestampCache initialValue()
+        {
+            return new TimestampCache(DateTimeZone.UTC);
+        }
+    };
+
+    private final DateTimeFormatter formatter;
+    private long second = Long.MIN_VALUE;
+    private String prefix;
+    private String zone;
+
+    /**
+     * Formats in the default time zone.
+     */
+    public TimestampCache()
+    {
+        this.formatter = ISODateTimeFormat.dateTime();
+    }
+
+    public TimestampCache(DateTimeZone zone)
+    {
+        this.formatter = ISODateTimeFormat.dateTime().withZone(zone);
+    }
+
+    /**
+     * Formats the timestamp as {@link DateTime#toString()} does, with the
+     * cache of the calling thread for timestamps in UTC like the ones of
+     * Graylog messages.
+     */
+    public static String format(DateTime timestamp)
+    {
+        if (DateTimeZone.UTC != timestamp.getZone() || !(timestamp.getChronology() instanceof ISOChronology))
+        {
+            return timestamp.toString();
+        }
+        return UTC.get().format(timestamp.getMillis());
+    }
+
+    public String format(long millis)
+    {
+        StringBuilder timestamp = new StringBuilder(29);
+        appendTo(timestamp, millis);
+        return timestamp.toString();
+    }
+
+    public void appendTo(StringBuilder target, long millis)
+    {
+        // rounds down for timestamps before 1970 as well
+        long second = 0 <= millis ? millis / 1000 : (millis - 999) / 1000;
+        if (this.second != second)
+        {
+            String formatted = formatter.print(second * 1000);
+            int dot = formatted.lastIndexOf('.');
+            prefix = formatted.substring(0, dot);
+            zone = formatted.substring(dot + 4);
+            this.second = second;
+        }
+        int fraction = (int) (millis - second * 1000);
+        target.append(prefix)
+                .append('.')
+                .append((char) ('0' + fraction / 100))
+                .append((char) ('0' + fraction / 10 % 10))
+                .append((char) ('0' + fraction % 10))
+                .append(zone);
+    }
+}
+
+/*
+    d-fens Graylog SYSLOG Output Plugin
+    Copyright (C) 2015  Ronald Rink, d-fens GmbH
+
+    This library is free software; you can redistribute it and/or
+    modify it under the terms of the GNU Lesser General Public
+    License as published by the Free Software Foundation; either
+    version 2.1 of the License, or (at your option) any later version.
+
+    This library is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+    Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public
+    License along with this library; if not, write to the Free Software
+    Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+
+ */
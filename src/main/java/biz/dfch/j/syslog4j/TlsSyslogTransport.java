@@ -0,0 +1,218 @@
+package biz.dfch.j.syslog4j;
+
+import org.msgpack.annotation.NotNullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.net.ssl.SSLParameters;
+import javax.net.ssl.SSLSession;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.SSLSocketFactory;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Sends messages over a persistent TLS connection. The frames of a batch
+ * already carry their delimiters and are written in chunks of whole frames
+ * up to the size of a TLS record, so they are encrypted into few records.
+ * If writing fails, the batch is written again on a new connection, starting
+ * with the chunk that failed; chunks written before are not sent twice, but
+ * they are lost if the connection was already broken. The handshake is done
+ * explicitly when connecting so its duration and whether the session was
+ * resumed can be reported to the listener. The certificate of the server has
+ * to match the host name connected to unless that check is turned off.
+ */
+public class TlsSyslogTransport implements SyslogTransport
+{
+    private static final Logger LOG = LoggerFactory.getLogger(TlsSyslogTransport.class);
+    private static final int CONNECT_TIMEOUT_MILLIS = 5000;
+    private static final int RECORD_SIZE = 16384;
+
+    private final String host;
+    private final int port;
+    private final SSLSocketFactory socketFactory;
+    private final String[] protocols;
+    private final String[] cipherSuites;
+    private final boolean isHostnameVerified;
+    private final SyslogClientListener listener;
+    private SSLSocket socket;
+    private byte[] lastSessionId;
+    private OutputStream outputStream;
+
+    public TlsSyslogTransport(@NotNullable String host, int port, @NotNullable SSLSocketFactory socketFactory)
+    {
+        this(host, port, socketFactory, SyslogClientListener.NONE);
+    }
+
+    public TlsSyslogTransport(@NotNullable String host, int port, @NotNullable SSLSocketFactory socketFactory, @NotNullable SyslogClientListener listener)
+    {
+        this(host, port, socketFactory, null, null, listener);
+    }
+
+    /**
+     * @param protocols enabled protocols, or null for the defaults of the socket factory
+     * @param cipherSuites enabled cipher suites, or null for the defaults of the socket factory
+     */
+    public TlsSyslogTransport(@NotNullable String host, int port, @NotNullable SSLSocketFactory socketFactory, String[] protocols, String[] cipherSuites, @NotNullable SyslogClientListener listener)
+    {
+        this(host, port, socketFactory, protocols, cipherSuites, true, listener);
+    }
+
+    /**
+     * @param isHostnameVerified false to accept any trusted certificate regardless of the host name it was issued for
+     */
+    public TlsSyslogTransport(@NotNullable String host, int port, @NotNullable SSLSocketFactory socketFactory, String[] protocols, String[] cipherSuites, boolean isHostnameVerified, @NotNullable SyslogClientListener listener)
+    {
+        this.listener = listener;
+        this.host = host;
+        this.port = port;
+        this.socketFactory = socketFactory;
+        this.protocols = null == protocols ? null : protocols.clone();
+        this.cipherSuites = null == cipherSuites ? null : cipherSuites.clone();
+        this.isHostnameVerified = isHostnameVerified;
+    }
+
+    @Override
+    public synchronized void send(SyslogFrames frames) throws IOException
+    {
+        ByteBuffer stream = frames.getFrames();
+        // index of the first frame not written yet
+        int next = 0;
+        for (int attempt = 0; ; attempt++)
+        {
+            try
+            {
+                OutputStream out = getOutputStream();
+                while (next < frames.getFrameCount())
+                {
+                    int start = 0 == next ? 0 : frames.getFrameEnd(next - 1);
+                    int last = next;
+                    while (last + 1 < frames.getFrameCount() && RECORD_SIZE >= frames.getFrameEnd(last + 1) - start)
+                    {
+                        last++;
+                    }
+                    out.write(stream.array(), stream.arrayOffset() + start, frames.getFrameEnd(last) - start);
+                    next = last + 1;
+                }
+                return;
+            }
+            catch (IOException ex)
+            {
+                if (0 < attempt)
+                {
+                    throw ex;
+                }
+                // the connection may have been closed by the server since the last write, retry once on a new one
+                LOG.debug(String.format("Writing to '%s:%d' FAILED. Reconnecting ...", host, port), ex);
+                close();
+                listener.onReconnect();
+            }
+        }
+    }
+
+    private OutputStream getOutputStream() throws IOException
+    {
+        if (null == socket)
+        {
+            // a server that silently drops packets must not block the sending thread for the SYN timeout of the OS
+            Socket plainSocket = new Socket();
+            SSLSocket sslSocket;
+            try
+            {
+                plainSocket.connect(new InetSocketAddress(host, port), CONNECT_TIMEOUT_MILLIS);
+                sslSocket = (SSLSocket) socketFactory.createSocket(plainSocket, host, port, true);
+            }
+            catch (IOException | RuntimeException ex)
+            {
+                plainSocket.close();
+                throw ex;
+            }
+            try
+            {
+                sslSocket.setKeepAlive(true);
+                sslSocket.setSoTimeout(CONNECT_TIMEOUT_MILLIS);
+                if (null != protocols)
+                {
+                    sslSocket.setEnabledProtocols(protocols);
+                }
+                if (null != cipherSuites)
+                {
+                    sslSocket.setEnabledCipherSuites(cipherSuites);
+                }
+                if (isHostnameVerified)
+                {
+                    SSLParameters parameters = sslSocket.getSSLParameters();
+                    parameters.setEndpointIdentificationAlgorithm("HTTPS");
+                    sslSocket.setSSLParameters(parameters);
+                }
+                handshake(sslSocket);
+                sslSocket.setSoTimeout(0);
+                outputStream = sslSocket.getOutputStream();
+            }
+            catch (IOException | RuntimeException ex)
+            {
+                sslSocket.close();
+                throw ex;
+            }
+            socket = sslSocket;
+        }
+        return outputStream;
+    }
+
+    private void handshake(SSLSocket sslSocket) throws IOException
+    {
+        long start = System.currentTimeMillis();
+        long startNanos = System.nanoTime();
+        sslSocket.startHandshake();
+        long nanos = System.nanoTime() - startNanos;
+        SSLSession session = sslSocket.getSession();
+        // a resumed session keeps its id and was created by an earlier handshake
+        boolean isResumed = Arrays.equals(lastSessionId, session.getId()) || session.getCreationTime() < start;
+        lastSessionId = session.getId();
+        listener.onHandshake(nanos, isResumed);
+        LOG.debug(String.format("TLS handshake with '%s:%d' completed in %d ms (%s, %s, %s).", host, port, nanos / 1000000, session.getProtocol(), session.getCipherSuite(), isResumed ? "resumed" : "full"));
+    }
+
+    @Override
+    public synchronized void close()
+    {
+        if (null == socket)
+        {
+            return;
+        }
+        try
+        {
+            socket.close();
+        }
+        catch (IOException ex)
+        {
+            LOG.warn(String.format("Closing TLS connection to '%s:%d' FAILED.", host, port), ex);
+        }
+        socket = null;
+        outputStream = null;
+    }
+}
+
+/*
+    d-fens Graylog SYSLOG Output Plugin
+    Copyright (C) 2015  Ronald Rink, d-fens GmbH
+
+    This library is free software; you can redistribute it and/or
+    modify it under the terms of the GNU Lesser General Public
+    License as published by the Free Software Foundation; either
+    version 2.1 of the License, or (at your option) any later version.
+
+    This library is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+    Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public
+    License along with this library; if not, write to the Free Software
+    Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+
+ */
@@ -0,0 +1,99 @@
+package biz.dfch.j.syslog4j;
+
+import org.msgpack.annotation.NotNullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+
+/**
+ * Sends each message as one datagram over a single connected channel.
+ */
+public class UdpSyslogTransport implements SyslogTransport
+{
+    private static final Logger LOG = LoggerFactory.getLogger(UdpSyslogTransport.class);
+
+    private final InetSocketAddress address;
+    private volatile DatagramChannel channel;
+
+    public UdpSyslogTransport(@NotNullable String host, int port)
+    {
+        this.address = new InetSocketAddress(host, port);
+    }
+
+    @Override
+    public void send(SyslogFrames frames) throws IOException
+    {
+        DatagramChannel datagramChannel = getChannel();
+        ByteBuffer datagram = frames.getFrames();
+        int start = 0;
+        for (int i = 0; i < frames.getFrameCount(); i++)
+        {
+            int end = frames.getFrameEnd(i);
+            datagram.limit(end);
+            datagram.position(start);
+            datagramChannel.write(datagram);
+            start = end;
+        }
+    }
+
+    private DatagramChannel getChannel() throws IOException
+    {
+        DatagramChannel datagramChannel = channel;
+        if (null != datagramChannel)
+        {
+            return datagramChannel;
+        }
+        synchronized (this)
+        {
+            if (null == channel)
+            {
+                datagramChannel = DatagramChannel.open();
+                datagramChannel.connect(address);
+                channel = datagramChannel;
+            }
+            return channel;
+        }
+    }
+
+    @Override
+    public synchronized void close()
+    {
+        if (null == channel)
+        {
+            return;
+        }
+        try
+        {
+            channel.close();
+        }
+        catch (IOException ex)
+        {
+            LOG.warn(String.format("Closing UDP channel to '%s' FAILED.", address), ex);
+        }
+        channel = null;
+    }
+}
+
+/*
+    d-fens Graylog SYSLOG Output Plugin
+    Copyright (C) 2015  Ronald Rink, d-fens GmbH
+
+    This library is free software; you can redistribute it and/or
+    modify it under the terms of the GNU Lesser General Public
+    License as published by the Free Software Foundation; either
+    version 2.1 of the License, or (at your option) any later version.
+
+    This library is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+    Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public
+    License along with this library; if not, write to the Free Software
+    Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+
+ */
@@ -0,0 +1,75 @@
+package biz.dfch.j.graylog.plugin.output;
+
+import org.graylog2.plugin.Message;
+import org.joda.time.DateTime;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+
+public class MessageTemplateTest
+{
+    @Test
+    public void placeholdersAreReplacedPerMessage()
+    {
+        MessageTemplate template = MessageTemplate.compile("${source} ${level}: ${message} [${stream}] $${literal}", "mystream");
+
+        assertEquals("host1 ERROR: first [mystream] ${literal}", template.render(createMessage("first", "host1", "ERROR")));
+        assertEquals("host2 INFO: second [mystream] ${literal}", template.render(createMessage("second", "host2", "INFO")));
+    }
+
+    @Test
+    public void missingFieldsRenderEmpty()
+    {
+        MessageTemplate template = MessageTemplate.compile("${source}:${unknown}", "mystream");
+
+        assertEquals("host1:", template.render(createMessage("first", "host1", "ERROR")));
+    }
+
+    @Test
+    public void singleFieldAndConstantTemplates()
+    {
+        assertEquals("ERROR", MessageTemplate.compile("${level}", "mystream").render(createMessage("first", "host1", "ERROR")));
+        assertEquals("mystream", MessageTemplate.compile("${stream}", "mystream").render(createMessage("first", "host1", "ERROR")));
+        assertEquals("fixed", MessageTemplate.compile("fixed", "mystream").render(createMessage("first", "host1", "ERROR")));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void unclosedPlaceholderIsRejected()
+    {
+        MessageTemplate.compile("${source", "mystream");
+    }
+
+    private static Message createMessage(String text, String source, String level)
+    {
+        Map<String, Object> fields = new HashMap<>();
+        fields.put("_id", "01234567-89ab-cdef-0123-456789abcdef");
+        fields.put("message", text);
+        fields.put("source", source);
+        fields.put("timestamp", DateTime.now());
+        fields.put("level", level);
+        return new Message(fields);
+    }
+}
+
+/*
+    d-fens Graylog SYSLOG Output Plugin
+    Copyright (C) 2015  Ronald Rink, d-fens GmbH
+
+    This library is free software; you can redistribute it and/or
+    modify it under the terms of the GNU Lesser General Public
+    License as published by the Free Software Foundation; either
+    version 2.1 of the License, or (at your option) any later version.
+
+    This library is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+    Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public
+    License along with this library; if not, write to the Free Software
+    Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+
+ */
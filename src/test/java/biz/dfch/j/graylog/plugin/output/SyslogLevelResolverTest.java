@@ -0,0 +1,80 @@
+package biz.dfch.j.graylog.plugin.output;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class SyslogLevelResolverTest
+{
+    @Test
+    public void severityIsResolvedFromNumbersAndNames()
+    {
+        SyslogLevelResolver resolver = SyslogLevelResolver.forSeverity(5);
+
+        assertEquals(3, resolver.resolve(3));
+        assertEquals(3, resolver.resolve(3L));
+        assertEquals(3, resolver.resolve("3"));
+        assertEquals(6, resolver.resolve("info"));
+        assertEquals(6, resolver.resolve("Info"));
+        assertEquals(4, resolver.resolve("WARN"));
+        assertEquals(7, resolver.resolve("trace"));
+        assertEquals(6, resolver.resolve("info"));
+    }
+
+    @Test
+    public void unknownValuesResolveToDefault()
+    {
+        SyslogLevelResolver resolver = SyslogLevelResolver.forSeverity(5);
+
+        assertEquals(5, resolver.resolve("verbose"));
+        assertEquals(5, resolver.resolve("verbose"));
+        assertEquals(5, resolver.resolve("8"));
+        assertEquals(5, resolver.resolve(-1));
+        assertEquals(5, resolver.resolve("-1"));
+        assertEquals(5, resolver.resolve(""));
+        assertEquals(5, resolver.resolve("12345678901"));
+        assertEquals(5, resolver.resolve(2.5));
+    }
+
+    @Test
+    public void severityIsParsedWithoutDefault()
+    {
+        assertEquals(3, SyslogLevelResolver.parseSeverity("3"));
+        assertEquals(4, SyslogLevelResolver.parseSeverity("warn"));
+        assertEquals(-1, SyslogLevelResolver.parseSeverity("8"));
+        assertEquals(-1, SyslogLevelResolver.parseSeverity("verbose"));
+        assertEquals(-1, SyslogLevelResolver.parseSeverity(""));
+    }
+
+    @Test
+    public void facilityIsResolvedFromNumbersAndNames()
+    {
+        SyslogLevelResolver resolver = SyslogLevelResolver.forFacility(16);
+
+        assertEquals(23, resolver.resolve("23"));
+        assertEquals(17, resolver.resolve("local1"));
+        assertEquals(4, resolver.resolve("AUTH"));
+        assertEquals(16, resolver.resolve("24"));
+        assertEquals(16, resolver.resolve("mystream"));
+    }
+}
+
+/*
+    d-fens Graylog SYSLOG Output Plugin
+    Copyright (C) 2015  Ronald Rink, d-fens GmbH
+
+    This library is free software; you can redistribute it and/or
+    modify it under the terms of the GNU Lesser General Public
+    License as published by the Free Software Foundation; either
+    version 2.1 of the License, or (at your option) any later version.
+
+    This library is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+    Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public
+    License along with this library; if not, write to the Free Software
+    Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+
+ */
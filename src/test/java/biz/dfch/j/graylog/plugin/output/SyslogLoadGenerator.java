@@ -0,0 +1,190 @@
+package biz.dfch.j.graylog.plugin.output;
+
+import biz.dfch.j.syslog4j.SyslogTestServer;
+import org.graylog2.plugin.Message;
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Drives a SyslogOutput from several threads and measures what arrives at a
+ * SyslogTestServer. Every message carries its thread, sequence number and
+ * send time in the message field as 'load &lt;thread&gt;-&lt;sequence&gt; &lt;nanos&gt;',
+ * which must be rendered verbatim into the syslog message.
+ */
+final class SyslogLoadGenerator
+{
+    static final String PREFIX = "load ";
+
+    private final SyslogOutput output;
+    private final int threadCount;
+    private final int messagesPerThread;
+
+    SyslogLoadGenerator(SyslogOutput output, int threadCount, int messagesPerThread)
+    {
+        this.output = output;
+        this.threadCount = threadCount;
+        this.messagesPerThread = messagesPerThread;
+    }
+
+    static String source(int thread)
+    {
+        return "load-" + thread + ".example.com";
+    }
+
+    /**
+     * Writes all messages and waits until they were received or no message
+     * arrived for quietMillis.
+     */
+    Result run(SyslogTestServer server, long quietMillis) throws Exception
+    {
+        final CountDownLatch start = new CountDownLatch(1);
+        final AtomicReference<Exception> failure = new AtomicReference<>();
+        Thread[] threads = new Thread[threadCount];
+        for (int t = 0; t < threadCount; t++)
+        {
+            final int thread = t;
+            threads[t] = new Thread(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    try
+                    {
+                        start.await();
+                        for (int sequence = 0; sequence < messagesPerThread; sequence++)
+                        {
+                            output.write(createMessage(thread, sequence));
+                        }
+                    }
+                    catch (Exception ex)
+                    {
+                        failure.compareAndSet(null, ex);
+                    }
+                }
+            }, "syslog-load-" + t);
+            threads[t].start();
+        }
+
+        int offset = server.getMessages().size();
+        long startNanos = System.nanoTime();
+        start.countDown();
+        for (Thread thread : threads)
+        {
+            thread.join();
+        }
+        if (null != failure.get())
+        {
+            throw failure.get();
+        }
+
+        int expected = offset + threadCount * messagesPerThread;
+        int received = offset;
+        while (!server.awaitMessages(expected, quietMillis) && server.getMessages().size() > received)
+        {
+            received = server.getMessages().size();
+        }
+        List<SyslogTestServer.ReceivedMessage> messages = server.getMessages();
+        return new Result(threadCount * messagesPerThread, messages.subList(offset, messages.size()), startNanos);
+    }
+
+    private static Message createMessage(int thread, int sequence)
+    {
+        Map<String, Object> fields = new HashMap<>();
+        fields.put("_id", String.format("00000000-0000-0000-%04x-%012x", thread, sequence));
+        fields.put("message", PREFIX + thread + "-" + sequence + " " + System.nanoTime());
+        fields.put("source", source(thread));
+        fields.put("timestamp", new DateTime(DateTimeZone.UTC));
+        fields.put("level", 6);
+        fields.put("facility", "local0");
+        return new Message(fields);
+    }
+
+    /**
+     * Throughput, loss and latency of one run. Latency is the time from
+     * SyslogOutput.write() to the message being parsed by the server.
+     */
+    static final class Result
+    {
+        private final int sent;
+        private final List<SyslogTestServer.ReceivedMessage> received;
+        private final long[] latencies;
+        private final long elapsedNanos;
+
+        Result(int sent, List<SyslogTestServer.ReceivedMessage> received, long startNanos)
+        {
+            this.sent = sent;
+            this.received = received;
+            latencies = new long[received.size()];
+            long lastNanos = startNanos;
+            for (int i = 0; i < latencies.length; i++)
+            {
+                SyslogTestServer.ReceivedMessage message = received.get(i);
+                String text = message.getMessage();
+                latencies[i] = message.getReceivedNanos() - Long.parseLong(text.substring(text.lastIndexOf(' ') + 1));
+                lastNanos = Math.max(lastNanos, message.getReceivedNanos());
+            }
+            Arrays.sort(latencies);
+            elapsedNanos = Math.max(1, lastNanos - startNanos);
+        }
+
+        List<SyslogTestServer.ReceivedMessage> getReceived()
+        {
+            return received;
+        }
+
+        double getMessagesPerSecond()
+        {
+            return received.size() * (double) TimeUnit.SECONDS.toNanos(1) / elapsedNanos;
+        }
+
+        double getLossRate()
+        {
+            return 1.0 - received.size() / (double) sent;
+        }
+
+        long getLatencyMicros(double percentile)
+        {
+            if (0 == latencies.length)
+            {
+                return 0;
+            }
+            int index = (int) Math.ceil(percentile * latencies.length) - 1;
+            return TimeUnit.NANOSECONDS.toMicros(latencies[Math.max(0, index)]);
+        }
+
+        @Override
+        public String toString()
+        {
+            return String.format("%d/%d messages, %.0f msg/s, loss %.2f%%, p50 %d us, p99 %d us",
+                    received.size(), sent, getMessagesPerSecond(), getLossRate() * 100, getLatencyMicros(0.5), getLatencyMicros(0.99));
+        }
+    }
+}
+
+/*
+    d-fens Graylog SYSLOG Output Plugin
+    Copyright (C) 2015  Ronald Rink, d-fens GmbH
+
+    This library is free software; you can redistribute it and/or
+    modify it under the terms of the GNU Lesser General Public
+    License as published by the Free Software Foundation; either
+    version 2.1 of the License, or (at your option) any later version.
+
+    This library is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+    Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public
+    License along with this library; if not, write to the Free Software
+    Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+
+ */
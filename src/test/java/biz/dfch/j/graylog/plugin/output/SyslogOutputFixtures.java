@@ -0,0 +1,118 @@
+package biz.dfch.j.graylog.plugin.output;
+
+import org.graylog2.plugin.Message;
+import org.graylog2.plugin.configuration.Configuration;
+import org.graylog2.plugin.streams.Stream;
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Messages, streams and configurations shared by the output tests and benchmarks.
+ */
+final class SyslogOutputFixtures
+{
+    static final String STREAM_ID = "000000000000000000000001";
+    static final String STREAM_TITLE = "benchmark";
+
+    private SyslogOutputFixtures()
+    {
+    }
+
+    /**
+     * @return a message with the built-in fields, a level and the given number of additional fields
+     */
+    static Message createMessage(int fieldCount)
+    {
+        Map<String, Object> fields = new HashMap<>();
+        fields.put("_id", "01234567-89ab-cdef-0123-456789abcdef");
+        fields.put("message", "GET /index.html HTTP/1.1 200 1024 \"Mozilla/5.0 (X11; Linux x86_64)\" 0.012");
+        fields.put("source", "web-01.example.com");
+        fields.put("timestamp", new DateTime(2015, 2, 22, 12, 0, DateTimeZone.UTC));
+        fields.put("level", 6);
+        fields.put("facility", "local0");
+        for (int i = 0; i < fieldCount; i++)
+        {
+            fields.put("field_" + i, 0 == i % 2 ? "value " + i : Integer.valueOf(i));
+        }
+        return new Message(fields);
+    }
+
+    static Stream createStream()
+    {
+        return (Stream) Proxy.newProxyInstance(Stream.class.getClassLoader(), new Class<?>[] {Stream.class}, new InvocationHandler()
+        {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args)
+            {
+                switch (method.getName())
+                {
+                    case "getId":
+                        return STREAM_ID;
+                    case "getTitle":
+                        return STREAM_TITLE;
+                    case "toString":
+                        return STREAM_TITLE;
+                    default:
+                        throw new UnsupportedOperationException(method.getName());
+                }
+            }
+        });
+    }
+
+    /**
+     * @param protocol one of CONFIG_TRANSPORT_PROTOCOL_OPTIONS
+     */
+    static Configuration createConfiguration(String protocol, int port, boolean useStructuredData)
+    {
+        return new Configuration(createConfigurationValues(protocol, port, useStructuredData));
+    }
+
+    /**
+     * @return the values of createConfiguration() for tests that override some of them
+     */
+    static Map<String, Object> createConfigurationValues(String protocol, int port, boolean useStructuredData)
+    {
+        Map<String, Object> values = new HashMap<>();
+        values.put("CONFIG_TRANSPORT_PROTOCOL", protocol);
+        values.put("CONFIG_SERVER_NAME", "127.0.0.1");
+        values.put("CONFIG_SERVER_PORT", port);
+        values.put("CONFIG_LOGLEVEL_SEVERITY", "level");
+        values.put("CONFIG_LOGLEVEL_FACILITY", "facility");
+        values.put("CONFIG_FIELDS", "*");
+        values.put("CONFIG_MESSAGE_TEMPLATE", "");
+        values.put("CONFIG_MESSAGE_ID", "<stream>");
+        values.put("CONFIG_STRUCTURED_DATA_TAG", "SDATA");
+        values.put("CONFIG_STRUCTURED_DATA_MAPPING", "origin@32473=source; meta@32473=level,facility");
+        values.put("CONFIG_INCLUDE_FIELD_NAMES", true);
+        values.put("CONFIG_USE_MESSAGE_SOURCE", true);
+        values.put("CONFIG_USE_STRUCTURED_DATA", useStructuredData);
+        values.put("CONFIG_ASYNC_ENABLED", false);
+        return values;
+    }
+}
+
+/*
+    d-fens Graylog SYSLOG Output Plugin
+    Copyright (C) 2015  Ronald Rink, d-fens GmbH
+
+    This library is free software; you can redistribute it and/or
+    modify it under the terms of the GNU Lesser General Public
+    License as published by the Free Software Foundation; either
+    version 2.1 of the License, or (at your option) any later version.
+
+    This library is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+    Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public
+    License along with this library; if not, write to the Free Software
+    Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+
+ */
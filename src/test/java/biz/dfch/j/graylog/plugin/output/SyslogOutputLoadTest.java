@@ -0,0 +1,151 @@
+package biz.dfch.j.graylog.plugin.output;
+
+import biz.dfch.j.syslog4j.SyslogTestServer;
+import com.codahale.metrics.MetricRegistry;
+import org.graylog2.plugin.configuration.Configuration;
+import org.junit.After;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Drives SyslogOutput from several threads against an in-process syslog
+ * server and checks the bytes on the wire.
+ */
+public class SyslogOutputLoadTest
+{
+    private static final Logger LOG = LoggerFactory.getLogger(SyslogOutputLoadTest.class);
+
+    private static final int THREAD_COUNT = 4;
+    private static final int MESSAGES_PER_THREAD = 2500;
+
+    private SyslogTestServer server;
+    private SyslogOutput output;
+
+    @After
+    public void after() throws Exception
+    {
+        if (null != output)
+        {
+            output.stop();
+        }
+        if (null != server)
+        {
+            server.close();
+        }
+    }
+
+    @Test
+    public void tcpDeliversEveryMessageUnchanged() throws Exception
+    {
+        server = SyslogTestServer.tcp();
+        output = createOutput(SyslogOutputFixtures.createConfigurationValues("TCP-RFC5424", server.getPort(), true));
+
+        SyslogLoadGenerator.Result result = new SyslogLoadGenerator(output, THREAD_COUNT, MESSAGES_PER_THREAD).run(server, 2000);
+        LOG.info(String.format("TCP-RFC5424: %s", result));
+
+        assertEquals(Collections.emptyList(), server.getErrors());
+        assertEquals(0.0, result.getLossRate(), 0.0);
+        assertMessagesIntact(result);
+    }
+
+    @Test
+    public void octetCountingTlsDeliversEveryMessageUnchanged() throws Exception
+    {
+        String keyStorePath = new File(getClass().getResource("/syslog-tls-test.jks").toURI()).getPath();
+        server = SyslogTestServer.tls(keyStorePath, "changeit");
+        Map<String, Object> values = SyslogOutputFixtures.createConfigurationValues("TCPTLS-RFC5424", server.getPort(), true);
+        values.put("CONFIG_SERVER_NAME", "localhost");
+        values.put("CONFIG_TLS_TRUSTSTORE", keyStorePath);
+        values.put("CONFIG_TLS_TRUSTSTORE_PASSWORD", "changeit");
+        values.put("CONFIG_TCP_FRAMING", "OCTET_COUNTING");
+        output = createOutput(values);
+
+        SyslogLoadGenerator.Result result = new SyslogLoadGenerator(output, THREAD_COUNT, MESSAGES_PER_THREAD).run(server, 2000);
+        LOG.info(String.format("TCPTLS-RFC5424: %s", result));
+
+        assertEquals(Collections.emptyList(), server.getErrors());
+        assertEquals(0.0, result.getLossRate(), 0.0);
+        assertMessagesIntact(result);
+    }
+
+    @Test
+    public void udpMessagesThatArriveAreIntact() throws Exception
+    {
+        server = SyslogTestServer.udp();
+        output = createOutput(SyslogOutputFixtures.createConfigurationValues("UDP-RFC5424", server.getPort(), true));
+
+        SyslogLoadGenerator.Result result = new SyslogLoadGenerator(output, THREAD_COUNT, MESSAGES_PER_THREAD).run(server, 1000);
+        LOG.info(String.format("UDP-RFC5424: %s", result));
+
+        assertEquals(Collections.emptyList(), server.getErrors());
+        assertTrue(result.toString(), 0 < result.getReceived().size());
+        assertMessagesIntact(result);
+    }
+
+    private SyslogOutput createOutput(Map<String, Object> values) throws Exception
+    {
+        values.put("CONFIG_MESSAGE_TEMPLATE", "${message}");
+        values.put("CONFIG_STRUCTURED_DATA_MAPPING", "origin@32473=source");
+        return new SyslogOutput(SyslogOutputFixtures.createStream(), new Configuration(values), new MetricRegistry());
+    }
+
+    /**
+     * Every message must arrive once, with the header and structured data
+     * of the message it was rendered from.
+     */
+    private static void assertMessagesIntact(SyslogLoadGenerator.Result result)
+    {
+        Set<String> seen = new HashSet<>();
+        Map<Integer, Integer> lastSequence = new HashMap<>();
+        for (SyslogTestServer.ReceivedMessage message : result.getReceived())
+        {
+            String text = message.getMessage();
+            assertTrue(message.toString(), text.startsWith(SyslogLoadGenerator.PREFIX));
+            String id = text.substring(SyslogLoadGenerator.PREFIX.length(), text.lastIndexOf(' '));
+            assertTrue(message.toString(), seen.add(id));
+            int thread = Integer.parseInt(id.substring(0, id.indexOf('-')));
+            int sequence = Integer.parseInt(id.substring(id.indexOf('-') + 1));
+
+            assertEquals(message.toString(), 1, message.getVersion());
+            assertEquals(message.toString(), 16, message.getFacility());
+            assertEquals(message.toString(), 6, message.getSeverity());
+            assertEquals(message.toString(), SyslogLoadGenerator.source(thread), message.getHostname());
+            assertEquals(message.toString(), SyslogOutputFixtures.STREAM_TITLE, message.getMessageId());
+            assertEquals(message.toString(), SyslogLoadGenerator.source(thread), message.getStructuredData().get("origin@32473").get("source"));
+
+            Integer last = lastSequence.put(thread, sequence);
+            assertTrue(message.toString(), null == last || last < sequence);
+        }
+    }
+}
+
+/*
+    d-fens Graylog SYSLOG Output Plugin
+    Copyright (C) 2015  Ronald Rink, d-fens GmbH
+
+    This library is free software; you can redistribute it and/or
+    modify it under the terms of the GNU Lesser General Public
+    License as published by the Free Software Foundation; either
+    version 2.1 of the License, or (at your option) any later version.
+
+    This library is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+    Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public
+    License along with this library; if not, write to the Free Software
+    Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+
+ */
@@ -0,0 +1,176 @@
+package biz.dfch.j.graylog.plugin.output;
+
+import biz.dfch.j.syslog4j.SyslogTestServer;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.Metric;
+import com.codahale.metrics.MetricFilter;
+import com.codahale.metrics.MetricRegistry;
+import org.graylog2.plugin.Message;
+import org.graylog2.plugin.configuration.Configuration;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SyslogRateLimiterTest
+{
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    @Test
+    public void burstIsAdmittedAndThenHeldToTheRate()
+    {
+        SyslogRateLimiter.TokenBucket bucket = new SyslogRateLimiter.TokenBucket(10, 1, 0);
+
+        for (int i = 0; i < 10; i++)
+        {
+            assertTrue(bucket.tryAcquire(1, 0));
+        }
+        assertFalse(bucket.tryAcquire(1, 0));
+        assertFalse(bucket.tryAcquire(1, SECOND / 10 - 1));
+        assertTrue(bucket.tryAcquire(1, SECOND / 10));
+        assertFalse(bucket.tryAcquire(1, SECOND / 10));
+
+        for (int i = 0; i < 10; i++)
+        {
+            assertTrue(bucket.tryAcquire(1, 5 * SECOND));
+        }
+        assertFalse(bucket.tryAcquire(1, 5 * SECOND));
+    }
+
+    @Test
+    public void oversizedRequestIsAdmittedOnlyByAFullBucket()
+    {
+        SyslogRateLimiter.TokenBucket bucket = new SyslogRateLimiter.TokenBucket(100, 1, 0);
+
+        assertTrue(bucket.tryAcquire(150, 0));
+        assertFalse(bucket.tryAcquire(1, SECOND / 2));
+        assertTrue(bucket.tryAcquire(1, SECOND / 2 + SECOND / 100));
+    }
+
+    @Test
+    public void exemptSeveritiesAreNeverLimited()
+    {
+        SyslogRateLimiter limiter = new SyslogRateLimiter(1, 0, 1, 3, 0);
+
+        assertTrue(limiter.tryAcquire(6, 100, 0));
+        assertFalse(limiter.tryAcquire(6, 100, 0));
+        assertFalse(limiter.tryAcquire(4, 100, 0));
+        assertTrue(limiter.tryAcquire(3, 100, 0));
+        assertTrue(limiter.tryAcquire(0, 100, 0));
+        assertEquals(2, limiter.drainSuppressedCount());
+        assertEquals(0, limiter.drainSuppressedCount());
+    }
+
+    @Test
+    public void messageRejectedForBytesDoesNotUseAMessageToken()
+    {
+        SyslogRateLimiter limiter = new SyslogRateLimiter(2, 1000, 1, -1, 0);
+
+        assertTrue(limiter.tryAcquire(6, 1000, 0));
+        assertFalse(limiter.tryAcquire(6, 10, 0));
+        assertTrue(limiter.tryAcquire(6, 10, SECOND / 100));
+        assertEquals(1, limiter.drainSuppressedCount());
+    }
+
+    @Test
+    public void concurrentCallersNeverExceedTheBurst() throws Exception
+    {
+        final SyslogRateLimiter.TokenBucket bucket = new SyslogRateLimiter.TokenBucket(1000, 1, 0);
+        final AtomicInteger admitted = new AtomicInteger();
+        Thread[] threads = new Thread[8];
+        for (int t = 0; t < threads.length; t++)
+        {
+            threads[t] = new Thread(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    for (int i = 0; i < 10000; i++)
+                    {
+                        if (bucket.tryAcquire(1, 0))
+                        {
+                            admitted.incrementAndGet();
+                        }
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads)
+        {
+            thread.join();
+        }
+        assertEquals(1000, admitted.get());
+    }
+
+    @Test
+    public void outputDropsMessagesAboveTheLimitAndSendsANotice() throws Exception
+    {
+        try (SyslogTestServer server = SyslogTestServer.tcp())
+        {
+            Map<String, Object> values = SyslogOutputFixtures.createConfigurationValues("TCP-RFC5424", server.getPort(), false);
+            values.put("CONFIG_RATE_LIMIT_MESSAGES", 10);
+            values.put("CONFIG_RATE_LIMIT_EXEMPT_SEVERITY", 3);
+            MetricRegistry metricRegistry = new MetricRegistry();
+            SyslogOutput output = new SyslogOutput(SyslogOutputFixtures.createStream(), new Configuration(values), metricRegistry);
+            for (int i = 0; i < 100; i++)
+            {
+                output.write(SyslogOutputFixtures.createMessage(0));
+            }
+            Message error = SyslogOutputFixtures.createMessage(0);
+            error.addField("level", 3);
+            output.write(error);
+            // a second output on the same stream neither shares nor removes the metrics of the first
+            new SyslogOutput(SyslogOutputFixtures.createStream(), new Configuration(values), metricRegistry).stop();
+            // the output name adds a hash of the destination to the stream id
+            final String prefix = MetricRegistry.name(SyslogOutput.class, SyslogOutputFixtures.STREAM_ID);
+            SortedMap<String, Meter> meters = metricRegistry.getMeters(new MetricFilter()
+            {
+                @Override
+                public boolean matches(String name, Metric metric)
+                {
+                    return name.startsWith(prefix + "-") && name.endsWith(".messagesRateLimited");
+                }
+            });
+            assertEquals(1, meters.size());
+            long rateLimited = meters.values().iterator().next().getCount();
+            output.stop();
+
+            assertTrue(String.valueOf(rateLimited), 80 <= rateLimited);
+            assertTrue(server.awaitMessages(101 - (int) rateLimited + 1, 5000));
+            List<SyslogTestServer.ReceivedMessage> messages = server.getMessages();
+            SyslogTestServer.ReceivedMessage notice = messages.get(messages.size() - 1);
+            assertEquals(notice.toString(), "RATELIMIT", notice.getMessageId());
+            assertEquals(notice.toString(), 5, notice.getSeverity());
+            assertTrue(notice.toString(), notice.getMessage().startsWith(rateLimited + " messages suppressed"));
+            assertEquals(3, messages.get(messages.size() - 2).getSeverity());
+        }
+    }
+}
+
+/*
+    d-fens Graylog SYSLOG Output Plugin
+    Copyright (C) 2015  Ronald Rink, d-fens GmbH
+
+    This library is free software; you can redistribute it and/or
+    modify it under the terms of the GNU Lesser General Public
+    License as published by the Free Software Foundation; either
+    version 2.1 of the License, or (at your option) any later version.
+
+    This library is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+    Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public
+    License along with this library; if not, write to the Free Software
+    Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+
+ */
@@ -0,0 +1,174 @@
+package biz.dfch.j.graylog.plugin.output;
+
+import biz.dfch.j.syslog4j.SyslogHeader;
+import biz.dfch.j.syslog4j.SyslogTestServer;
+import com.codahale.metrics.MetricRegistry;
+import org.graylog2.plugin.configuration.Configuration;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SyslogRepeatFilterTest
+{
+    private static SyslogEvent event(int severity, String source, String message)
+    {
+        return new SyslogEvent(new SyslogHeader(16, severity, source, "msgid"), null, message);
+    }
+
+    @Test
+    public void repeatsWithinTheWindowAreSummarizedByTheNextOccurrence()
+    {
+        SyslogRepeatFilter filter = new SyslogRepeatFilter(1000, 10);
+        List<SyslogEvent> summaries = new ArrayList<>();
+
+        assertTrue(filter.tryAccept(event(3, "host", "crash"), 0, summaries));
+        for (int i = 1; i <= 5; i++)
+        {
+            assertFalse(filter.tryAccept(event(3, "host", "crash"), i * 100, summaries));
+        }
+        assertTrue(summaries.isEmpty());
+
+        assertTrue(filter.tryAccept(event(3, "host", "crash"), 1000, summaries));
+        assertEquals(1, summaries.size());
+        assertEquals("last message repeated 5 times", summaries.get(0).getMessage());
+        assertEquals(3, summaries.get(0).getHeader().getSeverity());
+        assertEquals("host", summaries.get(0).getHeader().getLocalName());
+    }
+
+    @Test
+    public void severityAndSourceArePartOfTheKey()
+    {
+        SyslogRepeatFilter filter = new SyslogRepeatFilter(1000, 10);
+        List<SyslogEvent> summaries = new ArrayList<>();
+
+        assertTrue(filter.tryAccept(event(3, "host", "crash"), 0, summaries));
+        assertTrue(filter.tryAccept(event(4, "host", "crash"), 0, summaries));
+        assertTrue(filter.tryAccept(event(3, "other", "crash"), 0, summaries));
+        assertTrue(filter.tryAccept(event(3, "host", "crash!"), 0, summaries));
+        assertFalse(filter.tryAccept(event(3, "host", "crash"), 0, summaries));
+        assertEquals(4, filter.size());
+    }
+
+    @Test
+    public void sourceIsPartOfTheKeyWithoutHostName()
+    {
+        SyslogRepeatFilter filter = new SyslogRepeatFilter(1000, 10);
+        List<SyslogEvent> summaries = new ArrayList<>();
+
+        // CONFIG_USE_MESSAGE_SOURCE=false sends no host name, the source still tells the messages apart
+        assertTrue(filter.tryAccept(new SyslogEvent(new SyslogHeader(16, 3, null, "msgid"), null, "crash", null, "web-1"), 0, summaries));
+        assertTrue(filter.tryAccept(new SyslogEvent(new SyslogHeader(16, 3, null, "msgid"), null, "crash", null, "web-2"), 0, summaries));
+        assertFalse(filter.tryAccept(new SyslogEvent(new SyslogHeader(16, 3, null, "msgid"), null, "crash", null, "web-2"), 0, summaries));
+        assertEquals(2, filter.size());
+
+        filter.flush(summaries);
+        assertEquals(1, summaries.size());
+        assertEquals("web-2", summaries.get(0).getSource());
+    }
+
+    @Test
+    public void stripedFilterKeepsMaxEntries()
+    {
+        SyslogRepeatFilter filter = new SyslogRepeatFilter(1000, 10000);
+        List<SyslogEvent> summaries = new ArrayList<>();
+        for (int i = 0; i < 20000; i++)
+        {
+            assertTrue(filter.tryAccept(event(3, "host", "message " + i), 0, summaries));
+        }
+        assertEquals(10000, filter.size());
+        assertFalse(filter.tryAccept(event(3, "host", "message 19999"), 0, summaries));
+    }
+
+    @Test
+    public void expiredEntriesAreRemovedAndSummarized()
+    {
+        SyslogRepeatFilter filter = new SyslogRepeatFilter(1000, 10);
+        List<SyslogEvent> summaries = new ArrayList<>();
+        filter.tryAccept(event(3, "host", "a"), 0, summaries);
+        filter.tryAccept(event(3, "host", "a"), 10, summaries);
+        filter.tryAccept(event(3, "host", "b"), 0, summaries);
+        filter.tryAccept(event(3, "host", "c"), 500, summaries);
+        filter.tryAccept(event(3, "host", "c"), 600, summaries);
+
+        filter.expire(1000, summaries);
+
+        assertEquals(1, summaries.size());
+        assertEquals("last message repeated 1 times", summaries.get(0).getMessage());
+        assertEquals(1, filter.size());
+
+        filter.flush(summaries);
+
+        assertEquals(2, summaries.size());
+        assertEquals(0, filter.size());
+    }
+
+    @Test
+    public void leastRecentlySeenEntryIsEvictedAndSummarized()
+    {
+        SyslogRepeatFilter filter = new SyslogRepeatFilter(1000, 2);
+        List<SyslogEvent> summaries = new ArrayList<>();
+        filter.tryAccept(event(3, "host", "a"), 0, summaries);
+        filter.tryAccept(event(3, "host", "b"), 0, summaries);
+        filter.tryAccept(event(3, "host", "a"), 0, summaries);
+        filter.tryAccept(event(3, "host", "b"), 0, summaries);
+        filter.tryAccept(event(3, "host", "b"), 0, summaries);
+
+        assertTrue(filter.tryAccept(event(3, "host", "c"), 0, summaries));
+
+        assertEquals(2, filter.size());
+        assertEquals(1, summaries.size());
+        assertEquals("last message repeated 1 times", summaries.get(0).getMessage());
+        assertFalse(filter.tryAccept(event(3, "host", "b"), 0, summaries));
+        assertTrue(filter.tryAccept(event(3, "host", "a"), 0, summaries));
+    }
+
+    @Test
+    public void outputSendsOneMessageAndASummaryForABurst() throws Exception
+    {
+        try (SyslogTestServer server = SyslogTestServer.tcp())
+        {
+            Map<String, Object> values = SyslogOutputFixtures.createConfigurationValues("TCP-RFC5424", server.getPort(), false);
+            values.put("CONFIG_REPEAT_WINDOW", 60);
+            SyslogOutput output = new SyslogOutput(SyslogOutputFixtures.createStream(), new Configuration(values), new MetricRegistry());
+            for (int i = 0; i < 100; i++)
+            {
+                output.write(SyslogOutputFixtures.createMessage(0));
+            }
+            output.stop();
+
+            assertTrue(server.awaitMessages(2, 5000));
+            Thread.sleep(100);
+            List<SyslogTestServer.ReceivedMessage> messages = server.getMessages();
+            assertEquals(2, messages.size());
+            assertEquals(messages.get(1).toString(), "last message repeated 99 times", messages.get(1).getMessage());
+            assertEquals(messages.get(0).getHostname(), messages.get(1).getHostname());
+            assertEquals(messages.get(0).getSeverity(), messages.get(1).getSeverity());
+        }
+    }
+}
+
+/*
+    d-fens Graylog SYSLOG Output Plugin
+    Copyright (C) 2015  Ronald Rink, d-fens GmbH
+
+    This library is free software; you can redistribute it and/or
+    modify it under the terms of the GNU Lesser General Public
+    License as published by the Free Software Foundation; either
+    version 2.1 of the License, or (at your option) any later version.
+
+    This library is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+    Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public
+    License along with this library; if not, write to the Free Software
+    Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+
+ */
@@ -0,0 +1,181 @@
+package biz.dfch.j.graylog.plugin.output;
+
+import biz.dfch.j.syslog4j.SyslogClient;
+import biz.dfch.j.syslog4j.SyslogTestServer;
+import com.codahale.metrics.MetricRegistry;
+import org.graylog2.plugin.Message;
+import org.graylog2.plugin.configuration.Configuration;
+import org.graylog2.plugin.outputs.MessageOutputConfigurationException;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class SyslogRouterTest
+{
+    private static Map<String, SyslogRouter.Destination> destinations()
+    {
+        Map<String, SyslogRouter.Destination> destinations = new HashMap<>();
+        destinations.put("default", new SyslogRouter.Destination("default", new SyslogClient("UDP", "127.0.0.1", 514), true));
+        destinations.put("siem", new SyslogRouter.Destination("siem", new SyslogClient("TCP", "127.0.0.1", 6514), false));
+        destinations.put("siem2", new SyslogRouter.Destination("siem2", new SyslogClient("TCP", "127.0.0.2", 6514), false));
+        destinations.put("archive", new SyslogRouter.Destination("archive", new SyslogClient("UDP", "127.0.0.3", 514), false));
+        return destinations;
+    }
+
+    private static Message message(String field, Object value)
+    {
+        Message message = SyslogOutputFixtures.createMessage(0);
+        message.addField(field, value);
+        return message;
+    }
+
+    private static String names(SyslogRouter.Route route)
+    {
+        StringBuilder names = new StringBuilder();
+        for (SyslogRouter.Destination[] group : route.getGroups())
+        {
+            names.append('[');
+            for (SyslogRouter.Destination destination : group)
+            {
+                names.append(destination.getName()).append(' ');
+            }
+            names.setLength(names.length() - 1);
+            names.append(']');
+        }
+        return names.toString();
+    }
+
+    @Test
+    public void firstMatchingRuleDecides() throws Exception
+    {
+        SyslogRouter router = new SyslogRouter("<severity>=..error => siem; <source>^=web- & component~=^pay => archive; status=500..599 => siem2; team=ops => default, archive", destinations());
+
+        assertEquals("[siem]", names(router.route(message("component", "payments"), 3)));
+        assertEquals("[archive]", names(router.route(message("component", "payments"), 6)));
+        assertEquals("[default]", names(router.route(message("component", "search"), 6)));
+        assertEquals("[siem2]", names(router.route(message("status", 503), 6)));
+        assertEquals("[siem2]", names(router.route(message("status", "500"), 6)));
+        assertEquals("[siem2]", names(router.route(message("status", "5.5e2"), 6)));
+        assertEquals("[default]", names(router.route(message("status", "5xx"), 6)));
+        assertEquals("[default]", names(router.route(message("status", "-"), 6)));
+        assertEquals("[default]", names(router.route(message("status", 404), 6)));
+        assertEquals("[default][archive]", names(router.route(message("team", "ops"), 6)));
+        assertSame(router.getDefaultRoute(), router.route(message("team", "dev"), 6));
+    }
+
+    @Test
+    public void severityAcceptsNamesAndNumbers() throws Exception
+    {
+        SyslogRouter router = new SyslogRouter("<severity>=warning => siem; <severity>=6..debug => archive; * => siem2", destinations());
+
+        assertEquals("[siem]", names(router.route(message("a", "b"), 4)));
+        assertEquals("[archive]", names(router.route(message("a", "b"), 7)));
+        assertEquals("[siem2]", names(router.route(message("a", "b"), 5)));
+    }
+
+    @Test
+    public void destinationsWithTheSameFormatShareOneGroup() throws Exception
+    {
+        SyslogRouter router = new SyslogRouter("* => siem, archive, siem2, siem", destinations());
+
+        assertEquals("[siem siem2][archive]", names(router.route(message("a", "b"), 6)));
+    }
+
+    @Test
+    public void invalidRulesAreRejected()
+    {
+        String[] rules = {"component=payments", "component=payments => unknown", "=x => siem", "component~=( => siem", "<severity>=verbose => siem"};
+        for (String rule : rules)
+        {
+            try
+            {
+                new SyslogRouter(rule, destinations());
+                fail(rule);
+            }
+            catch (MessageOutputConfigurationException ex)
+            {
+                assertTrue(ex.getMessage(), ex.getMessage().startsWith("CONFIG_ROUTES: Parameter validation FAILED."));
+            }
+        }
+    }
+
+    @Test
+    public void outputSendsEveryMessageToItsRoute() throws Exception
+    {
+        try (SyslogTestServer defaultServer = SyslogTestServer.tcp();
+             SyslogTestServer siem = SyslogTestServer.tcp();
+             SyslogTestServer archive = SyslogTestServer.udp())
+        {
+            Map<String, Object> values = SyslogOutputFixtures.createConfigurationValues("TCP-RFC5424", defaultServer.getPort(), true);
+            values.put("CONFIG_MESSAGE_TEMPLATE", "${message}");
+            values.put("CONFIG_ROUTE_DESTINATIONS", String.format("siem=TCP-RFC5424://127.0.0.1:%d; archive=UDP-RFC3164://127.0.0.1:%d", siem.getPort(), archive.getPort()));
+            values.put("CONFIG_ROUTES", "<severity>=..error => siem, archive, default; component=payments => siem");
+            SyslogOutput output = new SyslogOutput(SyslogOutputFixtures.createStream(), new Configuration(values), new MetricRegistry());
+
+            Message error = SyslogOutputFixtures.createMessage(0);
+            error.addField("level", 3);
+            error.addField("message", "error");
+            Message payment = message("component", "payments");
+            payment.addField("message", "payment");
+            Message other = SyslogOutputFixtures.createMessage(0);
+            other.addField("message", "other");
+            output.write(error);
+            output.write(payment);
+            output.write(other);
+            output.stop();
+
+            assertTrue(defaultServer.awaitMessages(2, 5000));
+            assertTrue(siem.awaitMessages(2, 5000));
+            assertTrue(archive.awaitMessages(1, 5000));
+            Thread.sleep(100);
+            assertEquals("[error, other]", messages(defaultServer));
+            assertEquals("[error, payment]", messages(siem));
+            assertEquals("[error]", messages(archive));
+            assertEquals(1, siem.getMessages().get(0).getVersion());
+            assertEquals(0, archive.getMessages().get(0).getVersion());
+        }
+    }
+
+    private static String messages(SyslogTestServer server)
+    {
+        StringBuilder messages = new StringBuilder("[");
+        List<SyslogTestServer.ReceivedMessage> received = server.getMessages();
+        for (SyslogTestServer.ReceivedMessage message : received)
+        {
+            String text = message.getMessage();
+            messages.append(text.substring(text.lastIndexOf(' ') + 1)).append(", ");
+        }
+        if (!received.isEmpty())
+        {
+            messages.setLength(messages.length() - 2);
+        }
+        return messages.append(']').toString();
+    }
+}
+
+/*
+    d-fens Graylog SYSLOG Output Plugin
+    Copyright (C) 2015  Ronald Rink, d-fens GmbH
+
+    This library is free software; you can redistribute it and/or
+    modify it under the terms of the GNU Lesser General Public
+    License as published by the Free Software Foundation; either
+    version 2.1 of the License, or (at your option) any later version.
+
+    This library is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+    Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public
+    License along with this library; if not, write to the Free Software
+    Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+
+ */
@@ -0,0 +1,118 @@
+package biz.dfch.j.graylog.plugin.output;
+
+import org.graylog2.plugin.Message;
+import org.graylog2.plugin.outputs.MessageOutputConfigurationException;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class SyslogSamplerTest
+{
+    private static Message message(String field, Object value)
+    {
+        Message message = SyslogOutputFixtures.createMessage(0);
+        if (null != field)
+        {
+            message.addField(field, value);
+        }
+        return message;
+    }
+
+    @Test
+    public void unmatchedSeveritiesAreKept() throws Exception
+    {
+        SyslogSampler sampler = new SyslogSampler("debug,info:0");
+
+        assertFalse(sampler.isSampled(7, message(null, null)));
+        assertFalse(sampler.isSampled(6, message(null, null)));
+        assertTrue(sampler.isSampled(5, message(null, null)));
+        assertTrue(sampler.isSampled(3, message(null, null)));
+    }
+
+    @Test
+    public void firstMatchingRuleDecides() throws Exception
+    {
+        SyslogSampler sampler = new SyslogSampler("info/component=payments:1; info:0; *:0.5");
+
+        assertTrue(sampler.isSampled(6, message("component", "payments")));
+        assertFalse(sampler.isSampled(6, message("component", "search")));
+        assertFalse(sampler.isSampled(6, message(null, null)));
+    }
+
+    @Test
+    public void randomSamplingKeepsTheConfiguredFraction() throws Exception
+    {
+        SyslogSampler sampler = new SyslogSampler("7:0.1");
+        Message message = message(null, null);
+        int kept = 0;
+        for (int i = 0; i < 100000; i++)
+        {
+            if (sampler.isSampled(7, message))
+            {
+                kept++;
+            }
+        }
+        assertTrue(String.valueOf(kept), 9000 < kept && 11000 > kept);
+    }
+
+    @Test
+    public void hashSamplingKeepsMessagesOfOneTraceTogether() throws Exception
+    {
+        SyslogSampler sampler = new SyslogSampler("debug:0.25@trace_id");
+        int keptTraces = 0;
+        for (int trace = 0; trace < 10000; trace++)
+        {
+            boolean isKept = sampler.isSampled(7, message("trace_id", "trace-" + trace));
+            for (int i = 0; i < 5; i++)
+            {
+                assertEquals(isKept, sampler.isSampled(7, message("trace_id", "trace-" + trace)));
+            }
+            if (isKept)
+            {
+                keptTraces++;
+            }
+        }
+        assertTrue(String.valueOf(keptTraces), 2200 < keptTraces && 2800 > keptTraces);
+    }
+
+    @Test
+    public void invalidRulesAreRejected()
+    {
+        String[] rules = {"debug", "debug:2", "debug:x", "verbose:0.5", "debug/component:0.5", "debug:0.5@"};
+        for (String rule : rules)
+        {
+            try
+            {
+                new SyslogSampler(rule);
+                fail(rule);
+            }
+            catch (MessageOutputConfigurationException ex)
+            {
+                assertTrue(ex.getMessage(), ex.getMessage().startsWith("CONFIG_SAMPLING_RULES: Parameter validation FAILED."));
+            }
+        }
+    }
+}
+
+/*
+    d-fens Graylog SYSLOG Output Plugin
+    Copyright (C) 2015  Ronald Rink, d-fens GmbH
+
+    This library is free software; you can redistribute it and/or
+    modify it under the terms of the GNU Lesser General Public
+    License as published by the Free Software Foundation; either
+    version 2.1 of the License, or (at your option) any later version.
+
+    This library is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+    Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public
+    License along with this library; if not, write to the Free Software
+    Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+
+ */
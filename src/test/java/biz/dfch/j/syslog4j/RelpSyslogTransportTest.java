@@ -0,0 +1,401 @@
+package biz.dfch.j.syslog4j;
+
+import org.graylog2.syslog4j.SyslogConstants;
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class RelpSyslogTransportTest
+{
+    private RelpStubServer server;
+
+    @After
+    public void stopServer() throws IOException
+    {
+        if (null != server)
+        {
+            server.close();
+        }
+    }
+
+    @Test
+    public void messagesArePipelinedAndAcknowledged() throws Exception
+    {
+        server = new RelpStubServer(Integer.MAX_VALUE);
+        CountingListener listener = new CountingListener();
+        RelpSyslogTransport transport = new RelpSyslogTransport("localhost", server.getPort(), 16, listener);
+        try
+        {
+            for (int i = 0; i < 100; i++)
+            {
+                transport.send(createFrames(10 * i, 10));
+            }
+            awaitUnacknowledged(transport, 0);
+        }
+        finally
+        {
+            transport.close();
+        }
+
+        assertEquals(1000, listener.acknowledged.get());
+        List<String> messages = server.getMessages();
+        assertEquals(1000, messages.size());
+        for (int i = 0; i < messages.size(); i++)
+        {
+            assertEquals(true, messages.get(i).endsWith(" h message " + i));
+        }
+    }
+
+    @Test
+    public void unacknowledgedMessagesAreResentAfterReconnect() throws Exception
+    {
+        server = new RelpStubServer(5);
+        CountingListener listener = new CountingListener();
+        RelpSyslogTransport transport = new RelpSyslogTransport("localhost", server.getPort(), 16, listener);
+        try
+        {
+            transport.send(createFrames(0, 10));
+            for (int i = 0; i < 100 && 1 > server.getConnectionsClosed(); i++)
+            {
+                Thread.sleep(20);
+            }
+            Thread.sleep(100);
+            assertEquals(5, transport.getUnacknowledgedCount());
+
+            transport.send(createFrames(10, 1));
+            awaitUnacknowledged(transport, 0);
+        }
+        finally
+        {
+            transport.close();
+        }
+
+        assertEquals(11, listener.acknowledged.get());
+        assertEquals(1, listener.reconnects.get());
+        List<String> messages = server.getMessages();
+        assertEquals(16, messages.size());
+        for (int i = 0; i < 11; i++)
+        {
+            assertEquals(true, messages.get(i < 10 ? i : i + 5).endsWith(" h message " + i));
+        }
+        for (int i = 5; i < 10; i++)
+        {
+            assertEquals(true, messages.get(i + 5).endsWith(" h message " + i));
+        }
+    }
+
+    @Test
+    public void messagesAreSentOnceAfterConnectionDropsMidBatch() throws Exception
+    {
+        server = new RelpStubServer(0, 3);
+        CountingListener listener = new CountingListener();
+        RelpSyslogTransport transport = new RelpSyslogTransport("localhost", server.getPort(), 10000, listener);
+        int count = 4000;
+        try
+        {
+            // far more than the socket buffers hold, so writing fails once the server reset the connection
+            transport.send(createFrames(0, count, repeat('x', 1000)));
+            awaitUnacknowledged(transport, 0);
+        }
+        finally
+        {
+            transport.close();
+        }
+
+        assertEquals(1, listener.reconnects.get());
+        assertEquals(count, listener.acknowledged.get());
+        List<String> messages = server.getMessages(1);
+        assertEquals(count, messages.size());
+        for (int i = 0; i < count; i++)
+        {
+            assertEquals(true, messages.get(i).contains(" h message " + i + " "));
+        }
+    }
+
+    @Test
+    public void failedBatchIsNotSentAgainWithTheNextOne() throws Exception
+    {
+        server = new RelpStubServer(0, 3, 2);
+        CountingListener listener = new CountingListener();
+        RelpSyslogTransport transport = new RelpSyslogTransport("localhost", server.getPort(), 10000, listener);
+        try
+        {
+            try
+            {
+                transport.send(createFrames(0, 4000, repeat('x', 1000)));
+                fail();
+            }
+            catch (IOException ex)
+            {
+                // both connections were reset
+            }
+            assertEquals(0, transport.getUnacknowledgedCount());
+
+            transport.send(createFrames(4000, 5));
+            awaitUnacknowledged(transport, 0);
+        }
+        finally
+        {
+            transport.close();
+        }
+
+        assertEquals(5, listener.acknowledged.get());
+        List<String> messages = server.getMessages(2);
+        assertEquals(5, messages.size());
+        assertEquals(true, messages.get(0).contains(" h message 4000"));
+    }
+
+    private static void awaitUnacknowledged(RelpSyslogTransport transport, int count) throws InterruptedException
+    {
+        for (int i = 0; i < 250 && count != transport.getUnacknowledgedCount(); i++)
+        {
+            Thread.sleep(20);
+        }
+        assertEquals(count, transport.getUnacknowledgedCount());
+    }
+
+    private static SyslogFrames createFrames(int first, int count)
+    {
+        return createFrames(first, count, null);
+    }
+
+    private static SyslogFrames createFrames(int first, int count, String padding)
+    {
+        SyslogEncoder encoder = new SyslogEncoder(null);
+        for (int i = first; i < first + count; i++)
+        {
+            encoder.beginRfc3164(SyslogConstants.FACILITY_USER, SyslogConstants.LEVEL_INFO, 0, "h");
+            encoder.write(null == padding ? "message " + i : "message " + i + " " + padding);
+            encoder.endFrame();
+        }
+        return encoder;
+    }
+
+    private static String repeat(char c, int count)
+    {
+        char[] repeated = new char[count];
+        Arrays.fill(repeated, c);
+        return new String(repeated);
+    }
+
+    /**
+     * Answers the RELP commands of one connection after the other. The first
+     * connection is closed without acknowledging the messages received after
+     * the given number of acknowledgments, or reset after the given number of
+     * messages.
+     */
+    private static final class RelpStubServer implements Runnable
+    {
+        private final ServerSocket serverSocket = new ServerSocket(0);
+        private final int firstConnectionAcknowledgments;
+        private final int firstConnectionMessages;
+        private final int firstConnections;
+        private final List<String> messages = Collections.synchronizedList(new ArrayList<String>());
+        private final List<Integer> messageConnections = Collections.synchronizedList(new ArrayList<Integer>());
+        private final AtomicInteger connectionsClosed = new AtomicInteger();
+
+        RelpStubServer(int firstConnectionAcknowledgments) throws IOException
+        {
+            this(firstConnectionAcknowledgments, Integer.MAX_VALUE);
+        }
+
+        RelpStubServer(int firstConnectionAcknowledgments, int firstConnectionMessages) throws IOException
+        {
+            this(firstConnectionAcknowledgments, firstConnectionMessages, 1);
+        }
+
+        /**
+         * @param firstConnections number of connections that acknowledge and receive the given number of messages only
+         */
+        RelpStubServer(int firstConnectionAcknowledgments, int firstConnectionMessages, int firstConnections) throws IOException
+        {
+            this.firstConnectionAcknowledgments = firstConnectionAcknowledgments;
+            this.firstConnectionMessages = firstConnectionMessages;
+            this.firstConnections = firstConnections;
+            Thread thread = new Thread(this, "relp-stub-server");
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        int getPort()
+        {
+            return serverSocket.getLocalPort();
+        }
+
+        List<String> getMessages()
+        {
+            synchronized (messages)
+            {
+                return new ArrayList<>(messages);
+            }
+        }
+
+        /**
+         * @return the messages received on the connection with the given index
+         */
+        List<String> getMessages(int connection)
+        {
+            List<String> received = new ArrayList<>();
+            synchronized (messages)
+            {
+                for (int i = 0; i < messages.size(); i++)
+                {
+                    if (connection == messageConnections.get(i))
+                    {
+                        received.add(messages.get(i));
+                    }
+                }
+            }
+            return received;
+        }
+
+        int getConnectionsClosed()
+        {
+            return connectionsClosed.get();
+        }
+
+        @Override
+        public void run()
+        {
+            for (int connection = 0; !serverSocket.isClosed(); connection++)
+            {
+                try (Socket socket = serverSocket.accept())
+                {
+                    if (firstConnections > connection)
+                    {
+                        serve(socket, connection, firstConnectionAcknowledgments, firstConnectionMessages);
+                    }
+                    else
+                    {
+                        serve(socket, connection, Integer.MAX_VALUE, Integer.MAX_VALUE);
+                    }
+                }
+                catch (IOException ex)
+                {
+                    // connection closed by the client or the test
+                }
+                connectionsClosed.incrementAndGet();
+            }
+        }
+
+        private void serve(Socket socket, int connection, int acknowledgments, int messageCount) throws IOException
+        {
+            InputStream in = socket.getInputStream();
+            OutputStream out = new BufferedOutputStream(socket.getOutputStream());
+            int acknowledged = 0;
+            int received = 0;
+            while (true)
+            {
+                RelpSyslogTransport.RelpFrame frame = RelpSyslogTransport.RelpFrame.read(in);
+                switch (frame.getCommand())
+                {
+                    case "open":
+                        respond(out, frame.getTxnr(), "200 OK\nrelp_version=0\ncommands=syslog");
+                        break;
+                    case "syslog":
+                        synchronized (messages)
+                        {
+                            messages.add(frame.getDataAsString());
+                            messageConnections.add(connection);
+                        }
+                        if (++received == messageCount)
+                        {
+                            // closing with linger 0 resets the connection
+                            socket.setSoLinger(true, 0);
+                            return;
+                        }
+                        if (acknowledged == acknowledgments)
+                        {
+                            if (5 == messages.size() - acknowledged)
+                            {
+                                out.flush();
+                                return;
+                            }
+                            break;
+                        }
+                        respond(out, frame.getTxnr(), "200 OK");
+                        acknowledged++;
+                        break;
+                    case "close":
+                        respond(out, frame.getTxnr(), "");
+                        out.write("0 serverclose 0\n".getBytes(StandardCharsets.US_ASCII));
+                        out.flush();
+                        return;
+                    default:
+                        respond(out, frame.getTxnr(), "500 unknown command");
+                        break;
+                }
+                if (0 == in.available())
+                {
+                    out.flush();
+                }
+            }
+        }
+
+        private static void respond(OutputStream out, int txnr, String data) throws IOException
+        {
+            byte[] bytes = data.getBytes(StandardCharsets.UTF_8);
+            out.write((txnr + " rsp " + bytes.length + (0 < bytes.length ? " " : "")).getBytes(StandardCharsets.US_ASCII));
+            out.write(bytes);
+            out.write('\n');
+        }
+
+        void close() throws IOException
+        {
+            serverSocket.close();
+        }
+    }
+
+    private static final class CountingListener extends SyslogClientListenerAdapter
+    {
+        private final AtomicInteger acknowledged = new AtomicInteger();
+        private final AtomicInteger reconnects = new AtomicInteger();
+
+        @Override
+        public void onReconnect()
+        {
+            reconnects.incrementAndGet();
+        }
+
+        @Override
+        public void onAcknowledged(long nanos)
+        {
+            acknowledged.incrementAndGet();
+        }
+    }
+}
+
+/*
+    d-fens Graylog SYSLOG Output Plugin
+    Copyright (C) 2015  Ronald Rink, d-fens GmbH
+
+    This library is free software; you can redistribute it and/or
+    modify it under the terms of the GNU Lesser General Public
+    License as published by the Free Software Foundation; either
+    version 2.1 of the License, or (at your option) any later version.
+
+    This library is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+    Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public
+    License along with this library; if not, write to the Free Software
+    Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+
+ */
@@ -1,5 +1,7 @@
 package biz.dfch.j.syslog4j;
 
+import org.joda.time.DateTime;
+import org.joda.time.format.ISODateTimeFormat;
 import org.junit.Before;
 import org.junit.BeforeClass;
 import org.junit.Test;
@@ -7,6 +9,17 @@ import org.graylog2.syslog4j.SyslogConfigIF;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
 /**
  * Created by root on 2/22/15.
  */
@@ -27,44 +40,137 @@ public class SyslogClientTest
     }
 
     @Test
-    public void doLogDebugSucceeds()
+    public void doLogDebugSucceeds() throws Exception
     {
         System.out.println("doLogDebugSucceeds");
-        
-        SyslogClient client = new SyslogClient("udp", "192.168.1.111", 514);
-        client.logDebug("logDebug");
-        client.logInfo("logInfo");
-        client.logError("logError");
-        client.logEmergency("logEmergency");
+
+        try (SyslogTestServer server = SyslogTestServer.udp())
+        {
+            SyslogClient client = new SyslogClient("udp", "127.0.0.1", server.getPort());
+            client.logDebug("logDebug");
+            client.logInfo("logInfo");
+            client.logError("logError");
+            client.logEmergency("logEmergency");
+            client.close();
+
+            assertTrue(server.awaitMessages(4, 5000));
+            List<SyslogTestServer.ReceivedMessage> messages = server.getMessages();
+            int[] severities = {7, 6, 3, 0};
+            String[] texts = {"logDebug", "logInfo", "logError", "logEmergency"};
+            for (int i = 0; i < messages.size(); i++)
+            {
+                SyslogTestServer.ReceivedMessage message = messages.get(i);
+                assertEquals(message.toString(), severities[i], message.getSeverity());
+                assertTrue(message.toString(), message.getMessage().endsWith(texts[i]));
+            }
+        }
     }
+
     @Test
-    public void doLogRFC5424()
+    public void doLogRFC5424() throws Exception
     {
         System.out.println("doLogRFC5424");
 
-        SyslogClient client = new SyslogClient("udp", "192.168.174.1", 514);
-        SyslogConfigIF config = client.getConfig();
-        client.logDebug("logDebug1");
-        config.setLocalName("tralala");
-        client.setFacility(0);
-        client.logDebug("logDebug fac0");
-        client.setFacility(16);
-        client.logDebug("logDebug fac16");
-        client.setFacility(17);
-        client.logDebug("logDebug fac17");
-        client.setFacility(18);
-        client.logDebug("logDebug fac18");
-        client.setFacility(23);
-        client.logDebug("logDebug fac23");
-        client.setFacility(16);
-        client.logDebug("logDebug2");
-        client.log(0, "myMessage");
-        client.getConfig().setFacility("LOCAL0");
-        client.logDebug("logDebug3");
-        client.getConfig().setFacility("LOCAL1");
-        client.logDebug("logDebug3");
-        client.getConfig().setFacility("LOCAL2");
-        client.logDebug("logDebug3");
+        try (SyslogTestServer server = SyslogTestServer.udp())
+        {
+            SyslogClient client = new SyslogClient("udp", "127.0.0.1", server.getPort());
+            SyslogConfigIF config = client.getConfig();
+            config.setLocalName("tralala");
+            int[] facilities = {0, 16, 17, 18, 23};
+            for (int facility : facilities)
+            {
+                client.setFacility(facility);
+                client.logDebug("logDebug fac" + facility);
+            }
+            client.log(0, "myMessage");
+            client.close();
+
+            assertTrue(server.awaitMessages(facilities.length + 1, 5000));
+            List<SyslogTestServer.ReceivedMessage> messages = server.getMessages();
+            for (int i = 0; i < facilities.length; i++)
+            {
+                SyslogTestServer.ReceivedMessage message = messages.get(i);
+                assertEquals(message.toString(), facilities[i], message.getFacility());
+                assertEquals(message.toString(), 7, message.getSeverity());
+                assertEquals(message.toString(), "tralala", message.getHostname());
+                assertTrue(message.toString(), message.getMessage().endsWith("logDebug fac" + facilities[i]));
+            }
+            SyslogTestServer.ReceivedMessage message = messages.get(facilities.length);
+            assertEquals(message.toString(), 23, message.getFacility());
+            assertEquals(message.toString(), 0, message.getSeverity());
+        }
+    }
+
+    @Test
+    public void headerTimestampIsSent() throws Exception
+    {
+        long timestamp = new DateTime(2015, 3, 5, 7, 8, 9, 10).getMillis();
+        try (SyslogTestServer server = SyslogTestServer.udp())
+        {
+            SyslogClient client = new SyslogClient("udp", "127.0.0.1", server.getPort());
+            client.setStructuredData(true, null);
+            client.logStructured(new SyslogHeader(16, 6, "h", "ID", null, timestamp), null, "event time");
+            client.logStructured(new SyslogHeader(16, 6, "h", "ID", null, timestamp + 1), null, "event time");
+            client.logStructured(new SyslogHeader(16, 6, "h", "ID"), null, "current time");
+            client.close();
+
+            assertTrue(server.awaitMessages(3, 5000));
+            List<SyslogTestServer.ReceivedMessage> messages = server.getMessages();
+            assertEquals(ISODateTimeFormat.dateTime().print(timestamp), messages.get(0).getTimestamp());
+            assertEquals(ISODateTimeFormat.dateTime().print(timestamp + 1), messages.get(1).getTimestamp());
+            long sent = ISODateTimeFormat.dateTime().parseMillis(messages.get(2).getTimestamp());
+            assertTrue(messages.get(2).toString(), Math.abs(System.currentTimeMillis() - sent) < 60000);
+        }
+    }
+
+    @Test
+    public void concurrentHeadersDoNotMix() throws Exception
+    {
+        final int threadCount = 4;
+        final int messageCount = 250;
+        final ServerSocket server = new ServerSocket(0, 1, InetAddress.getLoopbackAddress());
+        final SyslogClient client = new SyslogClient("tcp", "127.0.0.1", server.getLocalPort());
+        try
+        {
+            Thread[] threads = new Thread[threadCount];
+            for (int t = 0; t < threadCount; t++)
+            {
+                final int facility = 16 + t;
+                threads[t] = new Thread(new Runnable()
+                {
+                    @Override
+                    public void run()
+                    {
+                        SyslogHeader header = new SyslogHeader(facility, facility - 16, "host" + facility, null);
+                        for (int i = 0; i < messageCount; i++)
+                        {
+                            client.log(header, "fac" + facility);
+                        }
+                    }
+                });
+                threads[t].start();
+            }
 
+            Socket socket = server.accept();
+            BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            for (int i = 0; i < threadCount * messageCount; i++)
+            {
+                String line = reader.readLine();
+                int facility = Integer.parseInt(line.substring(line.lastIndexOf("fac") + 3));
+                int priority = Integer.parseInt(line.substring(1, line.indexOf('>')));
+                assertEquals(line, facility * 8 + facility - 16, priority);
+                assertTrue(line, line.contains(" host" + facility + " "));
+            }
+            for (Thread thread : threads)
+            {
+                thread.join();
+            }
+            socket.close();
+        }
+        finally
+        {
+            client.close();
+            server.close();
+        }
     }
 }
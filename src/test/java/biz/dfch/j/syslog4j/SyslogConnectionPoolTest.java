@@ -0,0 +1,139 @@
+package biz.dfch.j.syslog4j;
+
+import org.graylog2.syslog4j.SyslogConstants;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class SyslogConnectionPoolTest
+{
+    @Test
+    public void roundRobinSendsBatchesInTurn() throws Exception
+    {
+        RecordingTransport[] connections = createConnections(3);
+        SyslogConnectionPool pool = new SyslogConnectionPool(connections, SyslogConnectionPool.Sharding.ROUND_ROBIN);
+
+        for (int i = 0; i < 6; i++)
+        {
+            SyslogEncoder encoder = new SyslogEncoder(new byte[] {'\n'});
+            encode(encoder, "message" + i, i);
+            pool.send(encoder);
+        }
+
+        for (int i = 0; i < connections.length; i++)
+        {
+            assertEquals(2, connections[i].lines.size());
+            assertEquals(true, connections[i].lines.get(0).endsWith(" message" + i));
+            assertEquals(true, connections[i].lines.get(1).endsWith(" message" + (i + 3)));
+        }
+    }
+
+    @Test
+    public void keyHashKeepsMessagesWithSameKeyInOrder() throws Exception
+    {
+        RecordingTransport[] connections = createConnections(4);
+        SyslogConnectionPool pool = new SyslogConnectionPool(connections, SyslogConnectionPool.Sharding.KEY_HASH);
+
+        SyslogEncoder encoder = new SyslogEncoder(new byte[] {'\n'});
+        for (int i = 0; i < 100; i++)
+        {
+            String source = "source" + (i % 10);
+            encode(encoder, source + " " + i, new SyslogHeader(1, 6, null, null, source).getRoutingKey());
+        }
+        pool.send(encoder);
+
+        int total = 0;
+        for (RecordingTransport connection : connections)
+        {
+            int[] last = new int[10];
+            Arrays.fill(last, -1);
+            for (String line : connection.lines)
+            {
+                String[] parts = line.substring(line.indexOf(" source") + 1).split(" ");
+                int source = Integer.parseInt(parts[0].substring("source".length()));
+                int index = Integer.parseInt(parts[1]);
+                assertEquals(true, last[source] < index);
+                last[source] = index;
+                assertEquals(new SyslogHeader(1, 6, null, null, parts[0]).getRoutingKey() % connections.length, indexOf(connections, connection));
+            }
+            total += connection.lines.size();
+        }
+        assertEquals(100, total);
+    }
+
+    private static void encode(SyslogEncoder encoder, String message, int key)
+    {
+        encoder.beginRfc3164(SyslogConstants.FACILITY_USER, SyslogConstants.LEVEL_INFO, 0, "h");
+        encoder.write(message);
+        encoder.endFrame(key);
+    }
+
+    private static int indexOf(RecordingTransport[] connections, RecordingTransport connection)
+    {
+        for (int i = 0; i < connections.length; i++)
+        {
+            if (connections[i] == connection)
+            {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static RecordingTransport[] createConnections(int count)
+    {
+        RecordingTransport[] connections = new RecordingTransport[count];
+        for (int i = 0; i < count; i++)
+        {
+            connections[i] = new RecordingTransport();
+        }
+        return connections;
+    }
+
+    private static final class RecordingTransport implements SyslogTransport
+    {
+        private final List<String> lines = new ArrayList<>();
+
+        @Override
+        public void send(SyslogFrames frames)
+        {
+            ByteBuffer buffer = frames.getFrames();
+            String stream = new String(buffer.array(), buffer.arrayOffset(), buffer.limit(), StandardCharsets.UTF_8);
+            for (String line : stream.split("\n"))
+            {
+                lines.add(line);
+            }
+        }
+
+        @Override
+        public void close()
+        {
+        }
+    }
+}
+
+/*
+    d-fens Graylog SYSLOG Output Plugin
+    Copyright (C) 2015  Ronald Rink, d-fens GmbH
+
+    This library is free software; you can redistribute it and/or
+    modify it under the terms of the GNU Lesser General Public
+    License as published by the Free Software Foundation; either
+    version 2.1 of the License, or (at your option) any later version.
+
+    This library is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+    Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public
+    License along with this library; if not, write to the Free Software
+    Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+
+ */
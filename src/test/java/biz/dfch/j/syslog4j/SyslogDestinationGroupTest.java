@@ -0,0 +1,176 @@
+package biz.dfch.j.syslog4j;
+
+import org.graylog2.syslog4j.SyslogConstants;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.channels.UnresolvedAddressException;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class SyslogDestinationGroupTest
+{
+    @Test
+    public void destinationsAreParsedWithDefaultPort()
+    {
+        List<SyslogDestination> destinations = SyslogDestination.parseList("relay1:1514, relay2 ,[::1]:6514", 514);
+
+        assertEquals(3, destinations.size());
+        assertEquals("relay1:1514", destinations.get(0).toString());
+        assertEquals("relay2:514", destinations.get(1).toString());
+        assertEquals("[::1]:6514", destinations.get(2).toString());
+    }
+
+    @Test
+    public void failedDestinationIsEjectedAndProbedBackIn() throws Exception
+    {
+        CountingTransport first = new CountingTransport();
+        CountingTransport second = new CountingTransport();
+        SyslogDestinationGroup group = createGroup(SyslogDestinationGroup.Policy.FAILOVER, 200, first, second);
+        try
+        {
+            group.send(createFrames());
+            assertEquals(1, first.sent);
+
+            first.isFailing = true;
+            group.send(createFrames());
+            group.send(createFrames());
+            assertEquals(1, first.sent);
+            assertEquals(2, second.sent);
+            assertEquals(1, group.getHealthyCount());
+
+            first.isFailing = false;
+            for (int i = 0; i < 50 && 2 != group.getHealthyCount(); i++)
+            {
+                Thread.sleep(20);
+            }
+            assertEquals(2, group.getHealthyCount());
+            group.send(createFrames());
+            assertEquals(2, first.sent);
+        }
+        finally
+        {
+            group.close();
+        }
+    }
+
+    @Test
+    public void uncheckedFailureEjectsDestination() throws Exception
+    {
+        CountingTransport first = new CountingTransport();
+        CountingTransport second = new CountingTransport();
+        first.isFailingUnchecked = true;
+        SyslogDestinationGroup group = createGroup(SyslogDestinationGroup.Policy.FAILOVER, 60000, first, second);
+        try
+        {
+            group.send(createFrames());
+            assertEquals(1, second.sent);
+            assertEquals(1, group.getHealthyCount());
+        }
+        finally
+        {
+            group.close();
+        }
+    }
+
+    @Test
+    public void roundRobinUsesAllDestinations() throws Exception
+    {
+        CountingTransport first = new CountingTransport();
+        CountingTransport second = new CountingTransport();
+        SyslogDestinationGroup group = createGroup(SyslogDestinationGroup.Policy.ROUND_ROBIN, 60000, first, second);
+
+        for (int i = 0; i < 10; i++)
+        {
+            group.send(createFrames());
+        }
+        assertEquals(5, first.sent);
+        assertEquals(5, second.sent);
+    }
+
+    @Test
+    public void sendFailsIfNoDestinationIsHealthy() throws Exception
+    {
+        CountingTransport first = new CountingTransport();
+        CountingTransport second = new CountingTransport();
+        first.isFailing = true;
+        second.isFailing = true;
+        SyslogDestinationGroup group = createGroup(SyslogDestinationGroup.Policy.LEAST_OUTSTANDING, 60000, first, second);
+        try
+        {
+            group.send(createFrames());
+            fail();
+        }
+        catch (IOException ex)
+        {
+            assertEquals(0, group.getHealthyCount());
+        }
+        finally
+        {
+            group.close();
+        }
+    }
+
+    private static SyslogDestinationGroup createGroup(SyslogDestinationGroup.Policy policy, long probeIntervalMillis, CountingTransport first, CountingTransport second)
+    {
+        return new SyslogDestinationGroup(SyslogDestination.parseList("first, second", 514), Arrays.asList(first, second), policy, false, probeIntervalMillis, SyslogClientListener.NONE);
+    }
+
+    private static SyslogFrames createFrames()
+    {
+        SyslogEncoder encoder = new SyslogEncoder(null);
+        encoder.beginRfc3164(SyslogConstants.FACILITY_USER, SyslogConstants.LEVEL_INFO, 0, "h");
+        encoder.write("message");
+        encoder.endFrame();
+        return encoder;
+    }
+
+    private static final class CountingTransport implements SyslogTransport
+    {
+        private volatile boolean isFailing = false;
+        private volatile boolean isFailingUnchecked = false;
+        private int sent = 0;
+
+        @Override
+        public void send(SyslogFrames frames) throws IOException
+        {
+            if (isFailing)
+            {
+                throw new IOException("failing");
+            }
+            if (isFailingUnchecked)
+            {
+                throw new UnresolvedAddressException();
+            }
+            sent++;
+        }
+
+        @Override
+        public void close()
+        {
+        }
+    }
+}
+
+/*
+    d-fens Graylog SYSLOG Output Plugin
+    Copyright (C) 2015  Ronald Rink, d-fens GmbH
+
+    This library is free software; you can redistribute it and/or
+    modify it under the terms of the GNU Lesser General Public
+    License as published by the Free Software Foundation; either
+    version 2.1 of the License, or (at your option) any later version.
+
+    This library is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+    Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public
+    License along with this library; if not, write to the Free Software
+    Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+
+ */
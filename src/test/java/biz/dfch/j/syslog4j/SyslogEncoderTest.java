@@ -0,0 +1,328 @@
+package biz.dfch.j.syslog4j;
+
+import org.graylog2.syslog4j.SyslogConstants;
+import org.graylog2.syslog4j.SyslogMessageProcessorIF;
+import org.graylog2.syslog4j.impl.message.processor.SyslogMessageProcessor;
+import org.graylog2.syslog4j.impl.message.processor.structured.StructuredSyslogMessageProcessor;
+import org.graylog2.syslog4j.impl.message.structured.StructuredSyslogMessage;
+import org.joda.time.DateTime;
+import org.joda.time.format.ISODateTimeFormat;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+
+public class SyslogEncoderTest
+{
+    private static final String RFC3164_TIMESTAMP = "[A-Z][a-z]{2} [ 0-9]\\d \\d{2}:\\d{2}:\\d{2}";
+    private static final String RFC5424_TIMESTAMP = "\\d{4}-\\d{2}-\\d{2}T\\d{2}:\\d{2}:\\d{2}\\.\\d{3}(Z|[+-]\\d{2}:\\d{2})";
+
+    @Test
+    public void rfc3164IsIdenticalToSyslog4j()
+    {
+        assertRfc3164(SyslogConstants.FACILITY_LOCAL0, SyslogConstants.LEVEL_ERROR, "myhost", "[message] hello|");
+        assertRfc3164(SyslogConstants.FACILITY_KERN, SyslogConstants.LEVEL_EMERGENCY, null, "no local name");
+        assertRfc3164(SyslogConstants.FACILITY_LOCAL7, SyslogConstants.LEVEL_DEBUG, "höst", "grüße € 😀 \"quoted\" ]");
+        assertRfc3164(SyslogConstants.FACILITY_USER, SyslogConstants.LEVEL_INFO, "myhost", "");
+    }
+
+    @Test
+    public void rfc5424IsIdenticalToSyslog4j()
+    {
+        Map<String, String> params = new LinkedHashMap<>();
+        params.put("source", "myhost");
+        params.put("escaped", "a\"b\\c]d");
+        params.put("utf8", "äöü 😀");
+        Map<String, Map<String, String>> structuredData = new LinkedHashMap<>();
+        structuredData.put("SDATA", params);
+        structuredData.put("other@32473", params);
+
+        assertRfc5424(SyslogConstants.FACILITY_LOCAL0, SyslogConstants.LEVEL_INFO, "myhost", "MSGID", structuredData, "[source] myhost|");
+        assertRfc5424(SyslogConstants.FACILITY_LOCAL1, SyslogConstants.LEVEL_WARN, null, null, structuredData, "no local name");
+        assertRfc5424(SyslogConstants.FACILITY_LOCAL1, SyslogConstants.LEVEL_WARN, "myhost", "", structuredData, "");
+    }
+
+    @Test
+    public void structuredDataFollowsRfc5424()
+    {
+        assertEquals("-", structuredData(null));
+        assertEquals("-", structuredData(new LinkedHashMap<String, Map<String, String>>()));
+
+        Map<String, Map<String, String>> structuredData = new LinkedHashMap<>();
+        structuredData.put("empty@32473", new LinkedHashMap<String, String>());
+        structuredData.put("null@32473", null);
+        assertEquals("-", structuredData(structuredData));
+
+        Map<String, String> params = new LinkedHashMap<>();
+        params.put("escaped", "a\"b\\c]d");
+        params.put("gl2 remote=ip\"]", "10.0.0.1");
+        params.put("a_very_long_parameter_name_longer_than_32", "x");
+        params.put("null", null);
+        structuredData.put("meta@32473", params);
+        structuredData.put("origin", params);
+        assertEquals("[meta@32473 escaped=\"a\\\"b\\\\c\\]d\" gl2_remote_ip__=\"10.0.0.1\" a_very_long_parameter_name_longe=\"x\" null=\"\"]"
+                + "[origin escaped=\"a\\\"b\\\\c\\]d\" gl2_remote_ip__=\"10.0.0.1\" a_very_long_parameter_name_longe=\"x\" null=\"\"]",
+                structuredData(structuredData));
+    }
+
+    @Test
+    public void timestampsAreFormattedLikeSyslog4j() throws Exception
+    {
+        long millis = new DateTime(2015, 3, 5, 7, 8, 9, 10).getMillis();
+
+        SyslogEncoder encoder = new SyslogEncoder(null);
+        encoder.beginRfc3164(SyslogConstants.FACILITY_USER, SyslogConstants.LEVEL_INFO, millis, "h");
+        encoder.endFrame();
+        String expected = new SimpleDateFormat("MMM dd HH:mm:ss", Locale.ENGLISH).format(millis);
+        assertEquals("Mar 05", expected.substring(0, 6));
+        assertEquals("<14>Mar  5" + expected.substring(6) + " h ", frame(encoder, 0));
+
+        encoder.clear();
+        encoder.beginRfc5424(SyslogConstants.FACILITY_USER, SyslogConstants.LEVEL_INFO, millis, "h", "-");
+        encoder.writeStructuredData(null);
+        encoder.endFrame();
+        assertEquals("<14>1 " + ISODateTimeFormat.dateTime().print(millis) + " h unknown - - -", frame(encoder, 0));
+    }
+
+    @Test
+    public void framesAreKeptBackToBackWithTrailer()
+    {
+        SyslogEncoder encoder = new SyslogEncoder(new byte[] {'\n'});
+        for (int i = 0; i < 100; i++)
+        {
+            encoder.beginRfc3164(SyslogConstants.FACILITY_USER, SyslogConstants.LEVEL_INFO, 0, "h");
+            encoder.write("message " + i);
+            encoder.endFrame();
+        }
+        assertEquals(100, encoder.getFrameCount());
+        for (int i = 0; i < 100; i++)
+        {
+            String frame = frame(encoder, i);
+            assertEquals(true, frame.endsWith(" h message " + i + "\n"));
+        }
+        assertEquals(encoder.getFrames().limit(), encoder.getFrameEnd(99));
+    }
+
+    @Test
+    public void octetCountingPrefixesEveryFrameWithItsLength()
+    {
+        SyslogEncoder encoder = new SyslogEncoder(SyslogFraming.OCTET_COUNTING, new byte[] {'\n'});
+        int[] lengths = {0, 1, 80, 2000, 3, 70000, 500, 500};
+        for (int length : lengths)
+        {
+            StringBuilder message = new StringBuilder("line1\nline2 ü");
+            while (message.length() < length)
+            {
+                message.append((char) ('a' + message.length() % 26));
+            }
+            encoder.beginRfc5424(SyslogConstants.FACILITY_USER, SyslogConstants.LEVEL_INFO, 0, "h", "ID");
+            encoder.writeStructuredData(null);
+            encoder.beginMessage();
+            encoder.write(message);
+            encoder.endFrame();
+        }
+        assertEquals(lengths.length, encoder.getFrameCount());
+
+        ByteBuffer frames = encoder.getFrames();
+        for (int i = 0; i < lengths.length; i++)
+        {
+            int length = 0;
+            for (byte digit = frames.get(); ' ' != digit; digit = frames.get())
+            {
+                length = length * 10 + digit - '0';
+            }
+            byte[] payload = new byte[length];
+            frames.get(payload);
+            assertEquals(encoder.getFrameEnd(i), frames.position());
+            String message = new String(payload, StandardCharsets.UTF_8);
+            assertEquals(true, message.startsWith("<14>1 "));
+            assertEquals(true, message.contains(" h unknown - ID - line1\nline2 ü"));
+        }
+        assertEquals(frames.limit(), frames.position());
+    }
+
+    @Test
+    public void bodyPartsWithLowestPriorityAreShortenedFirst()
+    {
+        SyslogEncoder encoder = new SyslogEncoder(new byte[] {'\n'});
+        encoder.setMaxFrameLength(480);
+        SyslogBody body = new SyslogBody.Builder()
+                .append("[message] ").append(repeat('m', 100), 3).append("|")
+                .append("[a] ").append(repeat('a', 300), 2).append("|")
+                .append("[b] ").append(repeat("b\u00fc", 150), 1).append("|")
+                .build();
+        encoder.beginRfc5424(SyslogConstants.FACILITY_USER, SyslogConstants.LEVEL_INFO, 0, "h", "ID");
+        encoder.writeStructuredData(null);
+        encoder.beginMessage();
+        encoder.write(body);
+        encoder.endFrame();
+
+        String frame = frame(encoder, 0);
+        assertEquals(480, encoder.getFrameEnd(0));
+        assertEquals(480, frame.getBytes(StandardCharsets.UTF_8).length);
+        assertEquals(true, frame.contains(" ID - [message] " + repeat('m', 100) + "|[a] " + repeat('a', 300) + "|[b] b"));
+        assertEquals(true, frame.endsWith("...|\n"));
+        assertEquals(false, frame.contains("\ufffd"));
+        assertEquals(1, encoder.getTruncatedCount());
+        assertEquals(0, encoder.getOversizeCount());
+    }
+
+    @Test
+    public void framesAreCutAtMaxFrameLength()
+    {
+        SyslogEncoder encoder = new SyslogEncoder(null);
+        encoder.setMaxFrameLength(480);
+        encoder.beginRfc3164(SyslogConstants.FACILITY_USER, SyslogConstants.LEVEL_INFO, 0, "h");
+        encoder.write("short");
+        encoder.endFrame();
+        encoder.beginRfc3164(SyslogConstants.FACILITY_USER, SyslogConstants.LEVEL_INFO, 0, "h");
+        encoder.write(repeat("\u00fc", 1000));
+        encoder.endFrame();
+        encoder.beginRfc5424(SyslogConstants.FACILITY_USER, SyslogConstants.LEVEL_INFO, 0, repeat('h', 1000), "ID");
+        encoder.writeStructuredData(null);
+        encoder.endFrame();
+
+        assertEquals(true, frame(encoder, 0).endsWith(" h short"));
+        String truncated = frame(encoder, 1);
+        assertEquals(true, truncated.endsWith("\u00fc..."));
+        assertEquals(true, 478 <= truncated.getBytes(StandardCharsets.UTF_8).length && 480 >= truncated.getBytes(StandardCharsets.UTF_8).length);
+        assertEquals(480, encoder.getFrameEnd(2) - encoder.getFrameEnd(1));
+        assertEquals(1, encoder.getTruncatedCount());
+        assertEquals(1, encoder.getOversizeCount());
+
+        encoder.clear();
+        assertEquals(0, encoder.getTruncatedCount());
+        assertEquals(0, encoder.getOversizeCount());
+    }
+
+    @Test
+    public void cachedHeadersAreIdenticalToEncodedOnes()
+    {
+        long millis = new DateTime(2015, 3, 5, 7, 8, 9, 10).getMillis();
+        SyslogEncoder encoder = new SyslogEncoder(null);
+        for (int i = 0; i < 2; i++)
+        {
+            encoder.beginRfc3164(SyslogConstants.FACILITY_LOCAL0, SyslogConstants.LEVEL_ERROR, millis, "höst");
+            encoder.endFrame();
+            encoder.beginRfc5424(SyslogConstants.FACILITY_LOCAL0, SyslogConstants.LEVEL_ERROR, millis, "höst", "ID");
+            encoder.endFrame();
+            encoder.beginRfc5424(SyslogConstants.FACILITY_LOCAL0, SyslogConstants.LEVEL_ERROR, millis, null, null);
+            encoder.endFrame();
+        }
+        assertEquals(3, encoder.getHeaderCacheMissCount());
+        assertEquals(3, encoder.getHeaderCacheHitCount());
+        for (int i = 0; i < 3; i++)
+        {
+            assertEquals(frame(encoder, i), frame(encoder, i + 3));
+        }
+        assertEquals("<131>1 " + ISODateTimeFormat.dateTime().print(millis) + " höst unknown - ID ", frame(encoder, 1));
+
+        encoder.clear();
+        assertEquals(0, encoder.getHeaderCacheHitCount());
+        for (int i = 1; i < SyslogEncoder.HEADER_CACHE_SIZE; i++)
+        {
+            encoder.beginRfc3164(SyslogConstants.FACILITY_LOCAL0, SyslogConstants.LEVEL_ERROR, millis, "host" + i);
+            encoder.endFrame();
+        }
+        encoder.beginRfc3164(SyslogConstants.FACILITY_LOCAL0, SyslogConstants.LEVEL_ERROR, millis, "höst");
+        encoder.endFrame();
+        assertEquals(SyslogEncoder.HEADER_CACHE_SIZE - 1, encoder.getHeaderCacheMissCount());
+        assertEquals(1, encoder.getHeaderCacheHitCount());
+        // one more host name drops the least recently used one, not the one just used
+        encoder.beginRfc3164(SyslogConstants.FACILITY_LOCAL0, SyslogConstants.LEVEL_ERROR, millis, "host0");
+        encoder.endFrame();
+        encoder.beginRfc3164(SyslogConstants.FACILITY_LOCAL0, SyslogConstants.LEVEL_ERROR, millis, "höst");
+        encoder.endFrame();
+        encoder.beginRfc3164(SyslogConstants.FACILITY_LOCAL0, SyslogConstants.LEVEL_ERROR, millis, "host1");
+        encoder.endFrame();
+        assertEquals(2, encoder.getHeaderCacheHitCount());
+        assertEquals(SyslogEncoder.HEADER_CACHE_SIZE + 1, encoder.getHeaderCacheMissCount());
+    }
+
+    private static void assertRfc3164(int facility, int severity, String localName, String message)
+    {
+        SyslogMessageProcessorIF processor = SyslogMessageProcessor.getDefault();
+        String expected = processor.createSyslogHeader(facility, severity, localName, true, true) + message;
+
+        SyslogEncoder encoder = new SyslogEncoder(null);
+        encoder.beginRfc3164(facility, severity, System.currentTimeMillis(), localName);
+        encoder.write(message);
+        encoder.endFrame();
+
+        assertEquals(expected.replaceFirst(RFC3164_TIMESTAMP, "TIMESTAMP"), frame(encoder, 0).replaceFirst(RFC3164_TIMESTAMP, "TIMESTAMP"));
+    }
+
+    private static void assertRfc5424(int facility, int severity, String localName, String messageId, Map<String, Map<String, String>> structuredData, String message)
+    {
+        SyslogMessageProcessorIF processor = StructuredSyslogMessageProcessor.getDefault();
+        String expected = processor.createSyslogHeader(facility, severity, localName, true, true)
+                + new StructuredSyslogMessage(messageId, null, structuredData, message).createMessage();
+
+        SyslogEncoder encoder = new SyslogEncoder(null);
+        encoder.beginRfc5424(facility, severity, System.currentTimeMillis(), localName, messageId);
+        encoder.writeStructuredData(structuredData);
+        encoder.beginMessage();
+        encoder.write(message);
+        encoder.endFrame();
+
+        assertEquals(expected.replaceFirst(RFC5424_TIMESTAMP, "TIMESTAMP"), frame(encoder, 0).replaceFirst(RFC5424_TIMESTAMP, "TIMESTAMP"));
+    }
+
+    private static String structuredData(Map<String, Map<String, String>> structuredData)
+    {
+        SyslogEncoder encoder = new SyslogEncoder(null);
+        encoder.beginRfc5424(SyslogConstants.FACILITY_USER, SyslogConstants.LEVEL_INFO, 0, "h", "ID");
+        encoder.writeStructuredData(structuredData);
+        encoder.endFrame();
+        String frame = frame(encoder, 0);
+        return frame.substring(frame.indexOf(" ID ") + " ID ".length());
+    }
+
+    private static String repeat(char c, int count)
+    {
+        return repeat(String.valueOf(c), count);
+    }
+
+    private static String repeat(String value, int count)
+    {
+        StringBuilder repeated = new StringBuilder(value.length() * count);
+        for (int i = 0; i < count; i++)
+        {
+            repeated.append(value);
+        }
+        return repeated.toString();
+    }
+
+    private static String frame(SyslogEncoder encoder, int index)
+    {
+        ByteBuffer frames = encoder.getFrames();
+        int start = 0 == index ? 0 : encoder.getFrameEnd(index - 1);
+        return new String(frames.array(), start, encoder.getFrameEnd(index) - start, StandardCharsets.UTF_8);
+    }
+}
+
+/*
+    d-fens Graylog SYSLOG Output Plugin
+    Copyright (C) 2015  Ronald Rink, d-fens GmbH
+
+    This library is free software; you can redistribute it and/or
+    modify it under the terms of the GNU Lesser General Public
+    License as published by the Free Software Foundation; either
+    version 2.1 of the License, or (at your option) any later version.
+
+    This library is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+    Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public
+    License along with this library; if not, write to the Free Software
+    Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+
+ */
@@ -0,0 +1,220 @@
+package biz.dfch.j.syslog4j;
+
+import org.graylog2.syslog4j.SyslogConstants;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class SyslogSpoolTest
+{
+    private static final int SEGMENT_SIZE = 4096;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void framesAreReadBackInOrderAcrossSegmentsAndRestarts() throws Exception
+    {
+        File directory = folder.newFolder("spool");
+        SyslogSpool spool = new SyslogSpool(directory, SEGMENT_SIZE, 64 * SEGMENT_SIZE, SyslogSpool.Eviction.DROP_OLDEST);
+        for (int i = 0; i < 200; i++)
+        {
+            assertEquals(0, spool.append(createFrames(i)));
+        }
+        assertEquals(true, spool.getSize() > SEGMENT_SIZE);
+
+        List<String> read = readAll(spool, 120);
+        assertEquals(120, read.size());
+        FrameBuffer unacknowledged = new FrameBuffer();
+        spool.read(unacknowledged, 10);
+        spool.close();
+
+        spool = new SyslogSpool(directory, SEGMENT_SIZE, 64 * SEGMENT_SIZE, SyslogSpool.Eviction.DROP_OLDEST);
+        read.addAll(readAll(spool, Integer.MAX_VALUE));
+        assertEquals(true, spool.isEmpty());
+        spool.close();
+
+        assertEquals(200, read.size());
+        for (int i = 0; i < read.size(); i++)
+        {
+            assertEquals(true, read.get(i).endsWith(" h message " + i));
+        }
+    }
+
+    @Test
+    public void directoryIsUsedByOneSpoolOnly() throws Exception
+    {
+        File directory = folder.newFolder("locked");
+        SyslogSpool spool = new SyslogSpool(directory, SEGMENT_SIZE, 2 * SEGMENT_SIZE, SyslogSpool.Eviction.DROP_OLDEST);
+        try
+        {
+            new SyslogSpool(directory, SEGMENT_SIZE, 2 * SEGMENT_SIZE, SyslogSpool.Eviction.DROP_OLDEST);
+            fail();
+        }
+        catch (IOException ex)
+        {
+            assertEquals(true, ex.getMessage().endsWith("It is used by another spool."));
+        }
+        spool.close();
+
+        new SyslogSpool(directory, SEGMENT_SIZE, 2 * SEGMENT_SIZE, SyslogSpool.Eviction.DROP_OLDEST).close();
+    }
+
+    @Test
+    public void fullSpoolEvictsOldestOrDropsNewest() throws Exception
+    {
+        SyslogSpool oldest = new SyslogSpool(folder.newFolder("oldest"), SEGMENT_SIZE, 2 * SEGMENT_SIZE, SyslogSpool.Eviction.DROP_OLDEST);
+        SyslogSpool newest = new SyslogSpool(folder.newFolder("newest"), SEGMENT_SIZE, 2 * SEGMENT_SIZE, SyslogSpool.Eviction.DROP_NEWEST);
+        int oldestLost = 0;
+        int newestLost = 0;
+        for (int i = 0; i < 200; i++)
+        {
+            oldestLost += oldest.append(createFrames(i));
+            newestLost += newest.append(createFrames(i));
+        }
+        assertEquals(2L * SEGMENT_SIZE, oldest.getSize());
+        assertEquals(2L * SEGMENT_SIZE, newest.getSize());
+
+        List<String> oldestRead = readAll(oldest, Integer.MAX_VALUE);
+        List<String> newestRead = readAll(newest, Integer.MAX_VALUE);
+        assertEquals(200, oldestLost + oldestRead.size());
+        assertEquals(200, newestLost + newestRead.size());
+        assertEquals(true, oldestRead.get(oldestRead.size() - 1).endsWith(" message 199"));
+        assertEquals(true, newestRead.get(0).endsWith(" message 0"));
+        oldest.close();
+        newest.close();
+    }
+
+    @Test
+    public void messagesAreSpooledWhileDestinationFailsAndReplayedInOrder() throws Exception
+    {
+        RecordingTransport destination = new RecordingTransport();
+        SyslogSpool spool = new SyslogSpool(folder.newFolder("replay"), SEGMENT_SIZE, 64 * SEGMENT_SIZE, SyslogSpool.Eviction.DROP_OLDEST);
+        SpoolingSyslogTransport transport = new SpoolingSyslogTransport(destination, spool, 100000, SyslogClientListener.NONE);
+        try
+        {
+            transport.send(createFrames(0));
+            destination.isFailing = true;
+            for (int i = 1; i < 100; i++)
+            {
+                transport.send(createFrames(i));
+            }
+            assertEquals(false, spool.isEmpty());
+            destination.isFailing = false;
+            for (int i = 0; i < 200 && !spool.isEmpty(); i++)
+            {
+                Thread.sleep(20);
+            }
+            for (int i = 100; i < 110; i++)
+            {
+                transport.send(createFrames(i));
+            }
+        }
+        finally
+        {
+            transport.close();
+        }
+
+        assertEquals(110, destination.messages.size());
+        for (int i = 0; i < destination.messages.size(); i++)
+        {
+            assertEquals(true, destination.messages.get(i).endsWith(" h message " + i));
+        }
+    }
+
+    private static List<String> readAll(SyslogSpool spool, int maxFrames) throws IOException
+    {
+        List<String> messages = new ArrayList<>();
+        FrameBuffer frames = new FrameBuffer();
+        while (messages.size() < maxFrames)
+        {
+            frames.clear();
+            if (0 == spool.read(frames, Math.min(7, maxFrames - messages.size())))
+            {
+                if (spool.isEmpty())
+                {
+                    break;
+                }
+                continue;
+            }
+            messages.addAll(toStrings(frames));
+            spool.acknowledge();
+        }
+        return messages;
+    }
+
+    private static List<String> toStrings(SyslogFrames frames)
+    {
+        List<String> messages = new ArrayList<>();
+        ByteBuffer buffer = frames.getFrames();
+        int start = 0;
+        for (int i = 0; i < frames.getFrameCount(); i++)
+        {
+            int end = frames.getFrameEnd(i);
+            messages.add(new String(buffer.array(), buffer.arrayOffset() + start, end - start, StandardCharsets.UTF_8));
+            start = end;
+        }
+        return messages;
+    }
+
+    private static SyslogFrames createFrames(int index)
+    {
+        SyslogEncoder encoder = new SyslogEncoder(null);
+        encoder.beginRfc3164(SyslogConstants.FACILITY_USER, SyslogConstants.LEVEL_INFO, 0, "h");
+        encoder.write("message " + index);
+        encoder.endFrame(index);
+        return encoder;
+    }
+
+    private static final class RecordingTransport implements SyslogTransport
+    {
+        private volatile boolean isFailing = false;
+        private final List<String> messages = Collections.synchronizedList(new ArrayList<String>());
+
+        @Override
+        public void send(SyslogFrames frames) throws IOException
+        {
+            if (isFailing)
+            {
+                throw new IOException("failing");
+            }
+            messages.addAll(toStrings(frames));
+        }
+
+        @Override
+        public void close()
+        {
+        }
+    }
+}
+
+/*
+    d-fens Graylog SYSLOG Output Plugin
+    Copyright (C) 2015  Ronald Rink, d-fens GmbH
+
+    This library is free software; you can redistribute it and/or
+    modify it under the terms of the GNU Lesser General Public
+    License as published by the Free Software Foundation; either
+    version 2.1 of the License, or (at your option) any later version.
+
+    This library is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+    Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public
+    License along with this library; if not, write to the Free Software
+    Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+
+ */
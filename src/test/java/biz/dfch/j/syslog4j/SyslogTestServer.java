@@ -0,0 +1,560 @@
+package biz.dfch.j.syslog4j;
+
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * In-process syslog server on an ephemeral loopback port. It receives over
+ * UDP, TCP or TLS, parses RFC3164 and RFC5424 messages and records them with
+ * the time they were received. TCP and TLS accept both octet-counting and
+ * LF-terminated framing.
+ */
+public final class SyslogTestServer implements Closeable
+{
+    private static final int UDP_RECEIVE_BUFFER_SIZE = 8 * 1024 * 1024;
+
+    private final Closeable socket;
+    private final int port;
+    private final List<ReceivedMessage> messages = Collections.synchronizedList(new ArrayList<ReceivedMessage>());
+    private final List<Socket> connections = new CopyOnWriteArrayList<>();
+    private final List<Exception> errors = new CopyOnWriteArrayList<>();
+    private volatile boolean isRecording = true;
+
+    private SyslogTestServer(Closeable socket, int port)
+    {
+        this.socket = socket;
+        this.port = port;
+    }
+
+    public static SyslogTestServer udp() throws IOException
+    {
+        final DatagramSocket socket = new DatagramSocket(0, InetAddress.getLoopbackAddress());
+        socket.setReceiveBufferSize(UDP_RECEIVE_BUFFER_SIZE);
+        final SyslogTestServer server = new SyslogTestServer(socket, socket.getLocalPort());
+        server.start(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                DatagramPacket packet = new DatagramPacket(new byte[65536], 65536);
+                while (!socket.isClosed())
+                {
+                    try
+                    {
+                        socket.receive(packet);
+                        server.receive(Arrays.copyOfRange(packet.getData(), packet.getOffset(), packet.getOffset() + packet.getLength()));
+                    }
+                    catch (IOException ex)
+                    {
+                        // closed
+                    }
+                }
+            }
+        });
+        return server;
+    }
+
+    public static SyslogTestServer tcp() throws IOException
+    {
+        return listen(new ServerSocket(0, 50, InetAddress.getLoopbackAddress()));
+    }
+
+    /**
+     * @param keyStorePath JKS file with the certificate of the server
+     */
+    public static SyslogTestServer tls(String keyStorePath, String password) throws IOException, GeneralSecurityException
+    {
+        KeyStore keyStore = KeyStore.getInstance("JKS");
+        try (InputStream inputStream = new FileInputStream(keyStorePath))
+        {
+            keyStore.load(inputStream, password.toCharArray());
+        }
+        KeyManagerFactory keyManagerFactory = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+        keyManagerFactory.init(keyStore, password.toCharArray());
+        SSLContext sslContext = SSLContext.getInstance("TLS");
+        sslContext.init(keyManagerFactory.getKeyManagers(), null, null);
+        return listen(sslContext.getServerSocketFactory().createServerSocket(0, 50, InetAddress.getLoopbackAddress()));
+    }
+
+    private static SyslogTestServer listen(final ServerSocket socket)
+    {
+        final SyslogTestServer server = new SyslogTestServer(socket, socket.getLocalPort());
+        server.start(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                while (!socket.isClosed())
+                {
+                    try
+                    {
+                        final Socket connection = socket.accept();
+                        server.connections.add(connection);
+                        server.start(new Runnable()
+                        {
+                            @Override
+                            public void run()
+                            {
+                                server.read(connection);
+                            }
+                        });
+                    }
+                    catch (IOException ex)
+                    {
+                        // closed
+                    }
+                }
+            }
+        });
+        return server;
+    }
+
+    public int getPort()
+    {
+        return port;
+    }
+
+    /**
+     * @param isRecording false to read and discard messages without parsing them, i.e. for benchmarks
+     */
+    public void setRecording(boolean isRecording)
+    {
+        this.isRecording = isRecording;
+    }
+
+    /**
+     * @return number of TCP and TLS connections accepted so far
+     */
+    public int getConnectionCount()
+    {
+        return connections.size();
+    }
+
+    /**
+     * @return the messages received so far, in the order they were received
+     */
+    public List<ReceivedMessage> getMessages()
+    {
+        synchronized (messages)
+        {
+            return new ArrayList<>(messages);
+        }
+    }
+
+    /**
+     * @return messages or frames that could not be parsed
+     */
+    public List<Exception> getErrors()
+    {
+        return new ArrayList<>(errors);
+    }
+
+    /**
+     * Waits until at least count messages were received.
+     *
+     * @return true if they were received within the timeout
+     */
+    public boolean awaitMessages(int count, long timeoutMillis) throws InterruptedException
+    {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        while (messages.size() < count)
+        {
+            if (System.currentTimeMillis() > deadline)
+            {
+                return false;
+            }
+            Thread.sleep(10);
+        }
+        return true;
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        socket.close();
+        for (Socket connection : connections)
+        {
+            connection.close();
+        }
+    }
+
+    private void read(Socket connection)
+    {
+        try (InputStream in = new BufferedInputStream(connection.getInputStream()))
+        {
+            ByteArrayOutputStream frame = new ByteArrayOutputStream();
+            for (int c = in.read(); 0 <= c; c = in.read())
+            {
+                if ('0' <= c && '9' >= c)
+                {
+                    receive(readOctetCounted(in, c - '0'));
+                    continue;
+                }
+                frame.reset();
+                for (; 0 <= c && '\n' != c; c = in.read())
+                {
+                    frame.write(c);
+                }
+                byte[] bytes = frame.toByteArray();
+                int length = bytes.length;
+                if (0 < length && '\r' == bytes[length - 1])
+                {
+                    length--;
+                }
+                receive(Arrays.copyOf(bytes, length));
+            }
+        }
+        catch (IOException ex)
+        {
+            // closed
+        }
+    }
+
+    private static byte[] readOctetCounted(InputStream in, int firstDigit) throws IOException
+    {
+        int length = firstDigit;
+        int c;
+        for (c = in.read(); '0' <= c && '9' >= c; c = in.read())
+        {
+            length = length * 10 + c - '0';
+        }
+        if (' ' != c)
+        {
+            throw new IOException("Invalid octet count.");
+        }
+        byte[] bytes = new byte[length];
+        for (int read = 0; read < length; )
+        {
+            int count = in.read(bytes, read, length - read);
+            if (0 > count)
+            {
+                throw new IOException("Incomplete frame.");
+            }
+            read += count;
+        }
+        return bytes;
+    }
+
+    private void receive(byte[] bytes)
+    {
+        if (!isRecording)
+        {
+            return;
+        }
+        long receivedNanos = System.nanoTime();
+        try
+        {
+            messages.add(ReceivedMessage.parse(bytes, receivedNanos));
+        }
+        catch (IllegalArgumentException ex)
+        {
+            errors.add(ex);
+        }
+    }
+
+    private void start(Runnable runnable)
+    {
+        Thread thread = new Thread(runnable, "syslog-test-server-" + port);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * A parsed syslog message. Fields that RFC3164 does not have are null.
+     */
+    public static final class ReceivedMessage
+    {
+        private final byte[] raw;
+        private final long receivedNanos;
+        private int priority;
+        private int version;
+        private String timestamp;
+        private String hostname;
+        private String appName;
+        private String procId;
+        private String messageId;
+        private Map<String, Map<String, String>> structuredData;
+        private String message;
+
+        private ReceivedMessage(byte[] raw, long receivedNanos)
+        {
+            this.raw = raw;
+            this.receivedNanos = receivedNanos;
+        }
+
+        public static ReceivedMessage parse(byte[] raw, long receivedNanos)
+        {
+            ReceivedMessage received = new ReceivedMessage(raw, receivedNanos);
+            String text = new String(raw, StandardCharsets.UTF_8);
+            Parser parser = new Parser(text);
+            parser.expect('<');
+            received.priority = parser.number();
+            parser.expect('>');
+            if (parser.startsWith("1 "))
+            {
+                received.version = parser.number();
+                parser.expect(' ');
+                received.timestamp = parser.token();
+                received.hostname = parser.token();
+                received.appName = parser.token();
+                received.procId = parser.token();
+                received.messageId = parser.token();
+                received.structuredData = parser.structuredData();
+                received.message = parser.isAtEnd() ? "" : parser.rest(1);
+            }
+            else
+            {
+                received.timestamp = parser.fixed(15);
+                parser.expect(' ');
+                received.hostname = parser.token();
+                received.message = parser.rest(0);
+            }
+            return received;
+        }
+
+        public byte[] getRaw()
+        {
+            return raw.clone();
+        }
+
+        public long getReceivedNanos()
+        {
+            return receivedNanos;
+        }
+
+        public int getFacility()
+        {
+            return priority / 8;
+        }
+
+        public int getSeverity()
+        {
+            return priority % 8;
+        }
+
+        /**
+         * @return 1 for RFC5424 messages, 0 for RFC3164 messages
+         */
+        public int getVersion()
+        {
+            return version;
+        }
+
+        public String getTimestamp()
+        {
+            return timestamp;
+        }
+
+        public String getHostname()
+        {
+            return hostname;
+        }
+
+        public String getAppName()
+        {
+            return appName;
+        }
+
+        public String getProcId()
+        {
+            return procId;
+        }
+
+        public String getMessageId()
+        {
+            return messageId;
+        }
+
+        /**
+         * @return SD-ID to parameters, empty for NILVALUE
+         */
+        public Map<String, Map<String, String>> getStructuredData()
+        {
+            return structuredData;
+        }
+
+        public String getMessage()
+        {
+            return message;
+        }
+
+        @Override
+        public String toString()
+        {
+            return new String(raw, StandardCharsets.UTF_8);
+        }
+    }
+
+    private static final class Parser
+    {
+        private final String text;
+        private int position = 0;
+
+        Parser(String text)
+        {
+            this.text = text;
+        }
+
+        boolean isAtEnd()
+        {
+            return position >= text.length();
+        }
+
+        boolean startsWith(String prefix)
+        {
+            return text.startsWith(prefix, position);
+        }
+
+        void expect(char c)
+        {
+            if (isAtEnd() || c != text.charAt(position))
+            {
+                throw new IllegalArgumentException(String.format("Expected '%c' at %d: %s", c, position, text));
+            }
+            position++;
+        }
+
+        int number()
+        {
+            int start = position;
+            while (!isAtEnd() && Character.isDigit(text.charAt(position)))
+            {
+                position++;
+            }
+            if (start == position)
+            {
+                throw new IllegalArgumentException(String.format("Expected a number at %d: %s", start, text));
+            }
+            return Integer.parseInt(text.substring(start, position));
+        }
+
+        /**
+         * @return the characters up to the next space, which is skipped
+         */
+        String token()
+        {
+            int end = text.indexOf(' ', position);
+            if (0 > end)
+            {
+                throw new IllegalArgumentException(String.format("Expected a space after %d: %s", position, text));
+            }
+            String token = text.substring(position, end);
+            position = end + 1;
+            return token;
+        }
+
+        String fixed(int length)
+        {
+            if (position + length > text.length())
+            {
+                throw new IllegalArgumentException(String.format("Message too short: %s", text));
+            }
+            String value = text.substring(position, position + length);
+            position += length;
+            return value;
+        }
+
+        String rest(int skip)
+        {
+            return text.substring(Math.min(text.length(), position + skip));
+        }
+
+        Map<String, Map<String, String>> structuredData()
+        {
+            Map<String, Map<String, String>> elements = new LinkedHashMap<>();
+            if (startsWith("-"))
+            {
+                position++;
+                return elements;
+            }
+            while (startsWith("["))
+            {
+                position++;
+                String id = name();
+                Map<String, String> params = new LinkedHashMap<>();
+                while (startsWith(" "))
+                {
+                    position++;
+                    String name = name();
+                    expect('=');
+                    expect('"');
+                    params.put(name, value());
+                }
+                expect(']');
+                elements.put(id, params);
+            }
+            if (elements.isEmpty())
+            {
+                throw new IllegalArgumentException(String.format("Expected structured data at %d: %s", position, text));
+            }
+            return elements;
+        }
+
+        private String name()
+        {
+            int start = position;
+            while (!isAtEnd() && " =]\"".indexOf(text.charAt(position)) < 0)
+            {
+                position++;
+            }
+            return text.substring(start, position);
+        }
+
+        private String value()
+        {
+            StringBuilder value = new StringBuilder();
+            while (!isAtEnd() && '"' != text.charAt(position))
+            {
+                char c = text.charAt(position++);
+                if ('\\' == c && !isAtEnd() && "\"\\]".indexOf(text.charAt(position)) >= 0)
+                {
+                    c = text.charAt(position++);
+                }
+                value.append(c);
+            }
+            expect('"');
+            return value.toString();
+        }
+    }
+}
+
+/*
+    d-fens Graylog SYSLOG Output Plugin
+    Copyright (C) 2015  Ronald Rink, d-fens GmbH
+
+    This library is free software; you can redistribute it and/or
+    modify it under the terms of the GNU Lesser General Public
+    License as published by the Free Software Foundation; either
+    version 2.1 of the License, or (at your option) any later version.
+
+    This library is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+    Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public
+    License along with this library; if not, write to the Free Software
+    Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+
+ */
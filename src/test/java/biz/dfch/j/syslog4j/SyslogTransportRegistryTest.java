@@ -0,0 +1,223 @@
+package biz.dfch.j.syslog4j;
+
+import org.graylog2.syslog4j.SyslogConstants;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SyslogTransportRegistryTest
+{
+    @Test
+    public void clientsWithSameDestinationShareOneConnection() throws Exception
+    {
+        SyslogTransportRegistry registry = new SyslogTransportRegistry();
+        try (SyslogTestServer server = SyslogTestServer.tcp())
+        {
+            SyslogClient first = createClient(registry, server.getPort(), SyslogFraming.NON_TRANSPARENT);
+            SyslogClient second = createClient(registry, server.getPort(), SyslogFraming.NON_TRANSPARENT);
+            first.setLocalName("first");
+            second.setLocalName("second");
+
+            first.log(SyslogConstants.LEVEL_INFO, "message 1");
+            second.log(SyslogConstants.LEVEL_INFO, "message 2");
+            assertTrue(server.awaitMessages(2, 5000));
+            assertEquals(1, server.getConnectionCount());
+            assertEquals(1, registry.size());
+            assertEquals("first", server.getMessages().get(0).getHostname());
+            assertEquals("second", server.getMessages().get(1).getHostname());
+
+            // the connection stays open for the client still using it
+            first.close();
+            assertEquals(1, registry.size());
+            second.log(SyslogConstants.LEVEL_INFO, "message 3");
+            assertTrue(server.awaitMessages(3, 5000));
+            assertEquals(1, server.getConnectionCount());
+
+            second.close();
+            assertEquals(0, registry.size());
+        }
+    }
+
+    @Test
+    public void clientsWithDifferentSettingsAreIsolated() throws Exception
+    {
+        SyslogTransportRegistry registry = new SyslogTransportRegistry();
+        try (SyslogTestServer server1 = SyslogTestServer.tcp(); SyslogTestServer server2 = SyslogTestServer.tcp())
+        {
+            SyslogClient client1 = createClient(registry, server1.getPort(), SyslogFraming.NON_TRANSPARENT);
+            SyslogClient client2 = createClient(registry, server2.getPort(), SyslogFraming.NON_TRANSPARENT);
+            SyslogClient client3 = createClient(registry, server2.getPort(), SyslogFraming.OCTET_COUNTING);
+
+            client1.log(SyslogConstants.LEVEL_INFO, "message 1");
+            client2.log(SyslogConstants.LEVEL_INFO, "message 2");
+            client3.log(SyslogConstants.LEVEL_INFO, "message 3");
+            assertTrue(server1.awaitMessages(1, 5000));
+            assertTrue(server2.awaitMessages(2, 5000));
+            assertEquals(3, registry.size());
+            assertEquals(1, server1.getConnectionCount());
+            assertEquals(2, server2.getConnectionCount());
+            assertEquals(1, server1.getMessages().size());
+            assertEquals("message 1", server1.getMessages().get(0).getMessage());
+
+            client1.close();
+            client2.close();
+            client3.close();
+            assertEquals(0, registry.size());
+        }
+    }
+
+    @Test
+    public void lastReleaseClosesTransportAndListenersFollowReferences() throws Exception
+    {
+        SyslogTransportRegistry registry = new SyslogTransportRegistry();
+        final AtomicInteger createCount = new AtomicInteger();
+        final AtomicInteger closeCount = new AtomicInteger();
+        final SyslogClientListener[] transportListener = new SyslogClientListener[1];
+        SyslogTransportRegistry.Factory factory = new SyslogTransportRegistry.Factory()
+        {
+            @Override
+            public SyslogTransport create(SyslogClientListener listener)
+            {
+                createCount.incrementAndGet();
+                transportListener[0] = listener;
+                return new SyslogTransport()
+                {
+                    @Override
+                    public void send(SyslogFrames frames)
+                    {
+                    }
+
+                    @Override
+                    public void close()
+                    {
+                        closeCount.incrementAndGet();
+                    }
+                };
+            }
+        };
+        CountingListener listener1 = new CountingListener();
+        CountingListener listener2 = new CountingListener();
+
+        SyslogTransport transport1 = registry.acquire("key", listener1, factory);
+        SyslogTransport transport2 = registry.acquire("key", listener2, factory);
+        assertEquals(1, createCount.get());
+        transportListener[0].onReconnect();
+        assertEquals(1, listener1.reconnectCount.get());
+        assertEquals(1, listener2.reconnectCount.get());
+
+        transport1.close();
+        transport1.close();
+        assertEquals(0, closeCount.get());
+        transportListener[0].onReconnect();
+        assertEquals(1, listener1.reconnectCount.get());
+        assertEquals(2, listener2.reconnectCount.get());
+
+        transport2.close();
+        assertEquals(1, closeCount.get());
+        assertEquals(0, registry.size());
+
+        registry.acquire("key", listener1, factory).close();
+        assertEquals(2, createCount.get());
+        assertEquals(2, closeCount.get());
+    }
+
+    @Test
+    public void sendNotificationsOnlyReachTheSender() throws Exception
+    {
+        SyslogTransportRegistry registry = new SyslogTransportRegistry();
+        SyslogTransportRegistry.Factory factory = new SyslogTransportRegistry.Factory()
+        {
+            @Override
+            public SyslogTransport create(final SyslogClientListener listener)
+            {
+                return new SyslogTransport()
+                {
+                    @Override
+                    public void send(SyslogFrames frames)
+                    {
+                        listener.onReconnect();
+                        listener.onError(new IOException("rejected"));
+                        SyslogTransportRegistry.getSender(listener).onAcknowledged(1);
+                    }
+
+                    @Override
+                    public void close()
+                    {
+                    }
+                };
+            }
+        };
+        CountingListener listener1 = new CountingListener();
+        CountingListener listener2 = new CountingListener();
+        SyslogTransport transport1 = registry.acquire("key", listener1, factory);
+        SyslogTransport transport2 = registry.acquire("key", listener2, factory);
+
+        transport1.send(null);
+        assertEquals(1, listener1.reconnectCount.get());
+        assertEquals(1, listener2.reconnectCount.get());
+        assertEquals(1, listener1.errorCount.get());
+        assertEquals(1, listener1.acknowledgedCount.get());
+        assertEquals(0, listener2.errorCount.get());
+        assertEquals(0, listener2.acknowledgedCount.get());
+
+        transport1.close();
+        transport2.close();
+    }
+
+    private static SyslogClient createClient(SyslogTransportRegistry registry, int port, SyslogFraming framing)
+    {
+        SyslogClient client = new SyslogClient("TCP", "127.0.0.1", port);
+        client.setFraming(framing, null);
+        client.setTransportRegistry(registry);
+        return client;
+    }
+
+    private static final class CountingListener extends SyslogClientListenerAdapter
+    {
+        private final AtomicInteger reconnectCount = new AtomicInteger();
+        private final AtomicInteger errorCount = new AtomicInteger();
+        private final AtomicInteger acknowledgedCount = new AtomicInteger();
+
+        @Override
+        public void onReconnect()
+        {
+            reconnectCount.incrementAndGet();
+        }
+
+        @Override
+        public void onError(Exception ex)
+        {
+            errorCount.incrementAndGet();
+        }
+
+        @Override
+        public void onAcknowledged(long nanos)
+        {
+            acknowledgedCount.incrementAndGet();
+        }
+    }
+}
+
+/*
+    d-fens Graylog SYSLOG Output Plugin
+    Copyright (C) 2015  Ronald Rink, d-fens GmbH
+
+    This library is free software; you can redistribute it and/or
+    modify it under the terms of the GNU Lesser General Public
+    License as published by the Free Software Foundation; either
+    version 2.1 of the License, or (at your option) any later version.
+
+    This library is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+    Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public
+    License along with this library; if not, write to the Free Software
+    Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+
+ */
@@ -0,0 +1,69 @@
+package biz.dfch.j.syslog4j;
+
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.joda.time.format.ISODateTimeFormat;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+public class TimestampCacheTest
+{
+    @Test
+    public void timestampsAreFormattedLikeJoda()
+    {
+        String[] zones = {"UTC", "Europe/Zurich", "America/St_Johns", "Asia/Kathmandu"};
+        long dstChange = new DateTime(2015, 3, 29, 1, 59, 59, 0, DateTimeZone.UTC).getMillis();
+        long[] millis = {0, 1, 999, 1000, -1, -999, -1000, -1001, dstChange - 1, dstChange, dstChange + 1000, dstChange + 1001, 253402300799999L};
+        for (String id : zones)
+        {
+            DateTimeZone zone = DateTimeZone.forID(id);
+            TimestampCache cache = new TimestampCache(zone);
+            for (long value : millis)
+            {
+                assertEquals(ISODateTimeFormat.dateTime().withZone(zone).print(value), cache.format(value));
+            }
+            // ascending and within the same second, as the cache sees them
+            Random random = new Random(42);
+            long value = new DateTime(2015, 10, 25, 0, 0, DateTimeZone.UTC).getMillis();
+            for (int i = 0; i < 10000; i++)
+            {
+                value += random.nextInt(700);
+                assertEquals(ISODateTimeFormat.dateTime().withZone(zone).print(value), cache.format(value));
+            }
+        }
+    }
+
+    @Test
+    public void dateTimesAreFormattedLikeToString()
+    {
+        DateTime utc = new DateTime(2015, 3, 5, 7, 8, 9, 10, DateTimeZone.UTC);
+        DateTime zurich = new DateTime(2015, 3, 5, 7, 8, 9, 10, DateTimeZone.forID("Europe/Zurich"));
+
+        assertEquals("2015-03-05T07:08:09.010Z", TimestampCache.format(utc));
+        assertEquals(utc.plusMillis(5).toString(), TimestampCache.format(utc.plusMillis(5)));
+        assertEquals("2015-03-05T07:08:09.010+01:00", TimestampCache.format(zurich));
+    }
+}
+
+/*
+    d-fens Graylog SYSLOG Output Plugin
+    Copyright (C) 2015  Ronald Rink, d-fens GmbH
+
+    This library is free software; you can redistribute it and/or
+    modify it under the terms of the GNU Lesser General Public
+    License as published by the Free Software Foundation; either
+    version 2.1 of the License, or (at your option) any later version.
+
+    This library is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+    Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public
+    License along with this library; if not, write to the Free Software
+    Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+
+ */
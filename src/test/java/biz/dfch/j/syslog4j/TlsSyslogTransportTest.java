@@ -0,0 +1,220 @@
+package biz.dfch.j.syslog4j;
+
+import org.graylog2.syslog4j.SyslogConstants;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLHandshakeException;
+import javax.net.ssl.SSLServerSocket;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.security.KeyStore;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class TlsSyslogTransportTest
+{
+    private static final String PASSWORD = "changeit";
+    private static final String[] PROTOCOLS = {"TLSv1.2"};
+
+    private final LinkedBlockingQueue<String> received = new LinkedBlockingQueue<>();
+    private String keyStorePath;
+    private SSLServerSocket serverSocket;
+    private Thread acceptor;
+
+    @Before
+    public void startServer() throws Exception
+    {
+        startServer("/syslog-tls-test.jks");
+    }
+
+    private void startServer(String keyStoreResource) throws Exception
+    {
+        keyStorePath = new File(getClass().getResource(keyStoreResource).toURI()).getPath();
+        KeyStore keyStore = KeyStore.getInstance("JKS");
+        try (InputStream inputStream = new FileInputStream(keyStorePath))
+        {
+            keyStore.load(inputStream, PASSWORD.toCharArray());
+        }
+        KeyManagerFactory keyManagerFactory = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+        keyManagerFactory.init(keyStore, PASSWORD.toCharArray());
+        SSLContext sslContext = SSLContext.getInstance("TLS");
+        sslContext.init(keyManagerFactory.getKeyManagers(), null, null);
+
+        serverSocket = (SSLServerSocket) sslContext.getServerSocketFactory().createServerSocket(0, 10, InetAddress.getLoopbackAddress());
+        serverSocket.setEnabledProtocols(PROTOCOLS);
+        acceptor = new Thread(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                accept();
+            }
+        });
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    @After
+    public void stopServer() throws Exception
+    {
+        serverSocket.close();
+        acceptor.join(5000);
+    }
+
+    @Test
+    public void reconnectResumesSession() throws Exception
+    {
+        RecordingListener listener = new RecordingListener();
+        SSLContext sslContext = new SyslogTlsConfig(keyStorePath, PASSWORD, null, null, PROTOCOLS, null).createSslContext();
+        TlsSyslogTransport transport = new TlsSyslogTransport("localhost", serverSocket.getLocalPort(), sslContext.getSocketFactory(), PROTOCOLS, null, listener);
+        try
+        {
+            transport.send(createFrames("first"));
+            assertEquals(true, received.poll(5, TimeUnit.SECONDS).endsWith(" first"));
+
+            transport.close();
+            transport.send(createFrames("second"));
+            assertEquals(true, received.poll(5, TimeUnit.SECONDS).endsWith(" second"));
+        }
+        finally
+        {
+            transport.close();
+        }
+        assertEquals(2, listener.handshakes.size());
+        assertEquals(false, listener.handshakes.get(0));
+        assertEquals(true, listener.handshakes.get(1));
+    }
+
+    @Test
+    public void certificateForOtherHostIsRejected() throws Exception
+    {
+        stopServer();
+        // trusted, but issued for relay.example.com
+        startServer("/syslog-tls-other-host.jks");
+        SSLContext sslContext = new SyslogTlsConfig(keyStorePath, PASSWORD, null, null, PROTOCOLS, null).createSslContext();
+        TlsSyslogTransport transport = new TlsSyslogTransport("localhost", serverSocket.getLocalPort(), sslContext.getSocketFactory(), PROTOCOLS, null, new RecordingListener());
+        try
+        {
+            transport.send(createFrames("impersonated"));
+            fail("The handshake must fail for a certificate of another host.");
+        }
+        catch (SSLHandshakeException ex)
+        {
+            // expected
+        }
+        finally
+        {
+            transport.close();
+        }
+        assertEquals(null, received.poll(100, TimeUnit.MILLISECONDS));
+
+        transport = new TlsSyslogTransport("localhost", serverSocket.getLocalPort(), sslContext.getSocketFactory(), PROTOCOLS, null, false, new RecordingListener());
+        try
+        {
+            transport.send(createFrames("unverified"));
+            assertEquals(true, received.poll(5, TimeUnit.SECONDS).endsWith(" unverified"));
+        }
+        finally
+        {
+            transport.close();
+        }
+    }
+
+    private void accept()
+    {
+        while (!serverSocket.isClosed())
+        {
+            try
+            {
+                final Socket socket = serverSocket.accept();
+                Thread reader = new Thread(new Runnable()
+                {
+                    @Override
+                    public void run()
+                    {
+                        read(socket);
+                    }
+                });
+                reader.setDaemon(true);
+                reader.start();
+            }
+            catch (IOException ex)
+            {
+                return;
+            }
+        }
+    }
+
+    private void read(Socket socket)
+    {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8)))
+        {
+            String line;
+            while (null != (line = reader.readLine()))
+            {
+                received.add(line);
+            }
+        }
+        catch (IOException ex)
+        {
+            // connection closed by the client
+        }
+    }
+
+    private static SyslogFrames createFrames(String message)
+    {
+        SyslogEncoder encoder = new SyslogEncoder(new byte[] {'\n'});
+        encoder.beginRfc3164(SyslogConstants.FACILITY_USER, SyslogConstants.LEVEL_INFO, System.currentTimeMillis(), "h");
+        encoder.write(message);
+        encoder.endFrame();
+        return encoder;
+    }
+
+    private static final class RecordingListener extends SyslogClientListenerAdapter
+    {
+        private final List<Boolean> handshakes = Collections.synchronizedList(new ArrayList<Boolean>());
+
+        @Override
+        public void onHandshake(long nanos, boolean isResumed)
+        {
+            handshakes.add(isResumed);
+        }
+    }
+}
+
+/*
+    d-fens Graylog SYSLOG Output Plugin
+    Copyright (C) 2015  Ronald Rink, d-fens GmbH
+
+    This library is free software; you can redistribute it and/or
+    modify it under the terms of the GNU Lesser General Public
+    License as published by the Free Software Foundation; either
+    version 2.1 of the License, or (at your option) any later version.
+
+    This library is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+    Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public
+    License along with this library; if not, write to the Free Software
+    Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+
+ */